@@ -0,0 +1,51 @@
+package api;
+
+import model.Expense;
+import model.Money;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** JSON building and parsing done by the HTTP handlers on every request. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({ "10", "1000" })
+    public int rows;
+
+    private List<Expense> expenses;
+    private String requestBody;
+
+    @Setup
+    public void setup() {
+        String[] categories = { "Food", "Transport", "Rent", "Entertainment", "Health", "Other" };
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 9, 30);
+        expenses = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            expenses.add(new Expense(i + 1, categories[i % categories.length],
+                    Money.ofMinor(1000 + i * 37L), (i % 4 == 0) ? "receipts/r" + i + ".png" : null,
+                    base.plusHours(i)));
+        }
+        requestBody = "{\"category\":\"Food\",\"amount\":\"249.50\",\"currency\":\"INR\",\"receiptPath\":\"\"}";
+    }
+
+    @Benchmark
+    public String expensesToJson() {
+        return ExpenseAPI.expensesToJson(expenses);
+    }
+
+    @Benchmark
+    public Map<String, String> parseJson() {
+        return ExpenseAPI.parseJson(requestBody);
+    }
+}
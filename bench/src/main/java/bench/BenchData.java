@@ -0,0 +1,72 @@
+package bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/** Builds a deterministic embedded H2 (MySQL mode) database for service benchmarks. */
+public class BenchData {
+
+    public static final int USER = 1;
+    public static final String[] CATEGORIES = { "Food", "Transport", "Rent", "Entertainment", "Health", "Other",
+            "Shopping", "Utilities" };
+
+    public static Connection openDatabase(String name, int expenses, int months) throws SQLException {
+        Connection conn = DriverManager.getConnection(
+                "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS categories (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        name VARCHAR(100) UNIQUE NOT NULL,
+                        active BOOLEAN NOT NULL DEFAULT TRUE
+                    )""");
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS expenses (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        user_id INT NOT NULL,
+                        category_id INT NOT NULL,
+                        amount DECIMAL(10, 2) NOT NULL CHECK (amount > 0),
+                        currency VARCHAR(3) DEFAULT 'INR',
+                        receipt_path VARCHAR(255),
+                        date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        INDEX idx_exp_user_date (user_id, date)
+                    )""");
+            stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS expenses_archive (
+                        id INT PRIMARY KEY,
+                        user_id INT NOT NULL,
+                        category_id INT NOT NULL,
+                        amount DECIMAL(10, 2) NOT NULL,
+                        currency VARCHAR(3) DEFAULT 'INR',
+                        receipt_path VARCHAR(255),
+                        date TIMESTAMP NOT NULL,
+                        INDEX idx_arc_user_date (user_id, date)
+                    )""");
+            for (String category : CATEGORIES)
+                stmt.execute("INSERT IGNORE INTO categories (name) VALUES ('" + category + "')");
+        }
+        Random rnd = new Random(42);
+        LocalDateTime end = LocalDateTime.now();
+        long spanMinutes = months * 30L * 24 * 60;
+        String sql = "INSERT INTO expenses (user_id, category_id, amount, currency, date) VALUES (?, ?, ?, 'INR', ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < expenses; i++) {
+                ps.setInt(1, USER);
+                ps.setInt(2, 1 + rnd.nextInt(CATEGORIES.length));
+                ps.setBigDecimal(3, java.math.BigDecimal.valueOf(100 + rnd.nextInt(500_000), 2));
+                ps.setTimestamp(4, Timestamp.valueOf(end.minusMinutes((long) (rnd.nextDouble() * spanMinutes))));
+                ps.addBatch();
+                if (i % 1000 == 999)
+                    ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+        return conn;
+    }
+}
@@ -0,0 +1,43 @@
+package bench;
+
+import model.Expense;
+import model.Money;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/** Construction and formatting of {@link Expense}, done once per row on every list and export. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpenseModelBenchmark {
+
+    private final Money amount = Money.parse("1249.50");
+    private final LocalDateTime date = LocalDateTime.of(2025, 6, 15, 18, 45);
+    private Expense expense;
+
+    @Setup
+    public void setup() {
+        expense = new Expense(42, "Food", amount, null, date);
+    }
+
+    @Benchmark
+    public Expense construct() {
+        return new Expense(42, "Food", amount, null, date);
+    }
+
+    @Benchmark
+    public String formattedDate() {
+        return expense.getFormattedDate();
+    }
+
+    @Benchmark
+    public String toStringFormat() {
+        return expense.toString();
+    }
+}
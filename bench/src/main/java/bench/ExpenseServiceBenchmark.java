@@ -0,0 +1,67 @@
+package bench;
+
+import model.Money;
+import service.ExpenseService;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Aggregation queries behind the dashboard, report, trends and predictions endpoints. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpenseServiceBenchmark {
+
+    @Param({ "20000" })
+    public int expenses;
+
+    private Connection conn;
+    private int month;
+    private int year;
+
+    @Setup
+    public void setup() throws SQLException {
+        conn = BenchData.openDatabase("service" + expenses, expenses, 24);
+        month = LocalDate.now().getMonthValue();
+        year = LocalDate.now().getYear();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public Money totalForMonth() throws SQLException {
+        return ExpenseService.getTotalExpensesForMonth(conn, BenchData.USER, month, year);
+    }
+
+    @Benchmark
+    public Map<String, Money> categoryBreakdown() throws SQLException {
+        return ExpenseService.getCategoryBreakdown(conn, BenchData.USER, month, year);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> monthlyTrend() throws SQLException {
+        return ExpenseService.getMonthlyTrend(conn, BenchData.USER, 12);
+    }
+
+    @Benchmark
+    public Map<Integer, Money> dailySpending() throws SQLException {
+        return ExpenseService.getDailySpending(conn, BenchData.USER, month, year);
+    }
+
+    @Benchmark
+    public Map<String, Money> predictions() throws SQLException {
+        return ExpenseService.getPredictions(conn, BenchData.USER, 3);
+    }
+}
@@ -0,0 +1,68 @@
+package bench;
+
+import model.Money;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/** {@link Money} against the BigDecimal code it replaced: request parsing, summing and JSON output. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private final String text = "1249.50";
+    private final Money[] monies = new Money[64];
+    private final BigDecimal[] decimals = new BigDecimal[64];
+    private final StringBuilder sb = new StringBuilder(32);
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < monies.length; i++) {
+            monies[i] = Money.ofMinor(1000 + i * 37L);
+            decimals[i] = BigDecimal.valueOf(1000 + i * 37L, 2);
+        }
+    }
+
+    @Benchmark
+    public Money parseMoney() {
+        return Money.parse(text);
+    }
+
+    @Benchmark
+    public BigDecimal parseBigDecimal() {
+        return new BigDecimal(text);
+    }
+
+    @Benchmark
+    public Money sumMoney() {
+        Money total = Money.ZERO;
+        for (Money m : monies)
+            total = total.plus(m);
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal sumBigDecimal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal d : decimals)
+            total = total.add(d);
+        return total;
+    }
+
+    @Benchmark
+    public int formatMoney() {
+        sb.setLength(0);
+        return monies[7].appendTo(sb).length();
+    }
+
+    @Benchmark
+    public String formatBigDecimal() {
+        return String.format("%.2f", decimals[7]);
+    }
+}
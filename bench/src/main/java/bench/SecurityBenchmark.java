@@ -0,0 +1,29 @@
+package bench;
+
+import security.SecurityUtils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** PBKDF2 cost paid on every login, signup and password change. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityBenchmark {
+
+    private String salt;
+
+    @Setup
+    public void setup() {
+        salt = SecurityUtils.generateSalt();
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return SecurityUtils.hashPassword("correct horse battery staple", salt);
+    }
+}
@@ -0,0 +1,49 @@
+package bench;
+
+import cli.TableUtils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** CLI table rendering on large result sets; output goes to a discarding stream. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableUtilsBenchmark {
+
+    @Param({ "1000", "50000" })
+    public int rows;
+
+    private final String[] headers = { "ID", "Category", "Amount", "Date" };
+    private List<String[]> data;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setup() {
+        data = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            data.add(new String[] { String.valueOf(i + 1), (i % 3 == 0) ? "Entertainment" : "Food",
+                    String.format("Rs. %.2f", i * 1.25), "15-06-2025 18:45" });
+        }
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void printTable() {
+        TableUtils.printTable(headers, data);
+    }
+}
@@ -0,0 +1,131 @@
+package api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A GET sub-request of /api/batch, run in-process against a regular handler.
+ * It carries the outer request's headers (and so its bearer token) and keeps
+ * the response in memory instead of writing it to a socket.
+ */
+final class BatchExchange extends HttpExchange {
+
+    private final HttpExchange outer;
+    private final URI uri;
+    private final Headers requestHeaders = new Headers();
+    private final Headers responseHeaders = new Headers();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private InputStream in = InputStream.nullInputStream();
+    private OutputStream out = body;
+    private int code = -1;
+
+    BatchExchange(HttpExchange outer, URI uri) {
+        this.outer = outer;
+        this.uri = uri;
+        outer.getRequestHeaders().forEach(requestHeaders::put);
+    }
+
+    /** The response body the handler wrote, as UTF-8 text. */
+    String bodyText() {
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return "GET";
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return outer.getHttpContext();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return out;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) {
+        code = rCode;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return outer.getRemoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return code;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return outer.getLocalAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return outer.getProtocol();
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null)
+            in = i;
+        if (o != null)
+            out = o;
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return outer.getPrincipal();
+    }
+}
@@ -0,0 +1,138 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-user fan-out for the /api/events Server-Sent Events stream. Open
+ * streams do not hold an HTTP worker thread. Each one has a bounded queue,
+ * drained by a small writer pool. A client that falls more than
+ * {@link #BUFFER} events behind is disconnected; EventSource reconnects on
+ * its own and the page reloads what it shows. A comment line every
+ * {@link #HEARTBEAT_SECONDS} keeps proxies from closing idle streams and
+ * detects dead clients.
+ */
+final class EventHub {
+
+    static final int BUFFER = 64;
+    static final int HEARTBEAT_SECONDS = 15;
+
+    private final Map<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService writers = Executors.newFixedThreadPool(4, daemon("sse-writer"));
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(daemon("sse-heartbeat"));
+
+    EventHub() {
+        timer.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Turns the exchange into an event stream for the user; returns without blocking. */
+    void subscribe(int userId, HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        ex.sendResponseHeaders(200, 0);
+        Subscriber s = new Subscriber(userId, ex);
+        subscribers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(s);
+        s.offer("retry: 3000\n\n");
+    }
+
+    boolean hasSubscribers(int userId) {
+        Set<Subscriber> set = subscribers.get(userId);
+        return set != null && !set.isEmpty();
+    }
+
+    Set<Integer> connectedUsers() {
+        return subscribers.keySet();
+    }
+
+    /** Sends {@code event} with a JSON payload to every open stream of the user. */
+    void publish(int userId, String event, String json) {
+        Set<Subscriber> set = subscribers.get(userId);
+        if (set == null)
+            return;
+        String frame = "event: " + event + "\ndata: " + json + "\n\n";
+        for (Subscriber s : set)
+            s.offer(frame);
+    }
+
+    private void heartbeat() {
+        for (Set<Subscriber> set : subscribers.values()) {
+            for (Subscriber s : set)
+                s.offer(": ping\n\n");
+        }
+    }
+
+    private void remove(Subscriber s) {
+        subscribers.computeIfPresent(s.userId, (id, set) -> {
+            set.remove(s);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static java.util.concurrent.ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private final class Subscriber {
+        final int userId;
+        final HttpExchange ex;
+        final BlockingQueue<String> queue = new ArrayBlockingQueue<>(BUFFER);
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+
+        Subscriber(int userId, HttpExchange ex) {
+            this.userId = userId;
+            this.ex = ex;
+        }
+
+        void offer(String frame) {
+            if (closed)
+                return;
+            if (!queue.offer(frame)) {
+                close();
+                return;
+            }
+            if (draining.compareAndSet(false, true))
+                writers.execute(this::drain);
+        }
+
+        private void drain() {
+            try {
+                OutputStream out = ex.getResponseBody();
+                String frame;
+                while (!closed && (frame = queue.poll()) != null)
+                    out.write(frame.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } catch (IOException e) {
+                close();
+            } finally {
+                draining.set(false);
+                if (!closed && !queue.isEmpty() && draining.compareAndSet(false, true))
+                    writers.execute(this::drain);
+            }
+        }
+
+        void close() {
+            closed = true;
+            remove(this);
+            ex.close();
+        }
+    }
+}
@@ -1,58 +1,203 @@
 package api;
 
+import model.CategoryRule;
 import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+import model.Reminder;
+import model.User;
+import service.BudgetTrackingRepository;
+import service.CategorizingRepository;
+import service.ChangeLog;
+import service.ColumnarAnalyticsRepository;
 import service.DatabaseManager;
-import service.ExpenseService;
+import service.ExpenseJournal;
+import service.ExpenseRepository;
+import service.GroupCommitExpenseRepository;
+import service.IdempotencyKeys;
+import service.InMemoryExpenseRepository;
+import service.JdbcExpenseRepository;
+import service.JournalingRepository;
+import service.MappedExpenseRepository;
+import service.QueryMetrics;
+import service.ReminderScheduler;
+import service.SearchIndexRepository;
 import security.SecurityUtils;
 
+import com.sun.net.httpserver.Filter;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 
 import java.io.*;
-import java.math.BigDecimal;
 import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.sql.*;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ExpenseAPI {
     private static final int PORT = 8080;
-    private static final Map<String, String> sessions = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> sessions = new ConcurrentHashMap<>();
+    private static ExpenseRepository repo;
+    private static final SingleFlightFilter singleFlight = new SingleFlightFilter(ExpenseAPI::getUserId);
+    private static final EventHub events = new EventHub();
+    private static ReminderScheduler reminders;
+    private static IdempotencyKeys idempotencyKeys;
+    private static CategorizingRepository rules;
+    /** Null unless search.index. */
+    private static SearchIndexRepository search;
+    /** Null unless journal.enabled. */
+    private static ExpenseJournal journal;
+    /** Null unless ingest.async. */
+    private static GroupCommitExpenseRepository ingest;
+    /** Read endpoints that /api/batch may call, by path. */
+    private static final Map<String, HttpHandler> batchable = new ConcurrentHashMap<>();
+    private static final int MAX_BATCH = 20;
+    /** Width of expenses.notes. */
+    private static final int MAX_NOTES = 255;
+    private static final int MAX_SEARCH_RESULTS = 100;
+    private static final int MAX_METRICS_TOP = 500;
+    private static final Pattern JSON_STRING = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern JSON_PAIR = Pattern.compile(
+            "\"([^\"\\\\]*)\"\\s*:\\s*(?:\"((?:[^\"\\\\]|\\\\.)*)\"|([^,}\\s]+))");
+    private static ExecutorService batchPool;
+    /** Runs POST /api/rules/apply jobs one at a time, off the request threads. */
+    private static final ExecutorService rulesPool = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "rules-apply");
+        t.setDaemon(true);
+        return t;
+    });
+    /** Users with an apply job queued or running. */
+    private static final Set<Integer> applyingRules = ConcurrentHashMap.newKeySet();
 
     public static void main(String[] args) throws Exception {
-        DatabaseManager.initializeDatabase();
+        // "--demo" (or storage=memory in db.properties) runs without MySQL; data lives until shutdown
+        boolean demo = Arrays.asList(args).contains("--demo")
+                || "memory".equalsIgnoreCase(DatabaseManager.getSetting("storage", "jdbc"));
+        if (demo) {
+            repo = new InMemoryExpenseRepository();
+        } else {
+            DatabaseManager.initializeDatabase();
+            if (Boolean.parseBoolean(DatabaseManager.getSetting("ingest.async", "false"))) {
+                // Expense inserts are queued and committed in batches
+                ingest = new GroupCommitExpenseRepository(
+                        Integer.parseInt(DatabaseManager.getSetting("ingest.queueCapacity", "10000")),
+                        Long.parseLong(DatabaseManager.getSetting("ingest.maxDelayMs", "5")),
+                        Integer.parseInt(DatabaseManager.getSetting("ingest.maxBatch", "500")));
+                repo = ingest;
+            } else {
+                repo = new JdbcExpenseRepository();
+            }
+        }
+        if ("mapped".equalsIgnoreCase(DatabaseManager.getSetting("storage", "jdbc"))) {
+            // Expenses in local memory-mapped files; everything else stays in the database
+            MappedExpenseRepository mapped = new MappedExpenseRepository(repo,
+                    Path.of(DatabaseManager.getSetting("storage.dir", "data/expenses")));
+            mapped.startCompaction(Long.parseLong(DatabaseManager.getSetting("storage.compactMinutes", "10")) * 60_000);
+            repo = mapped;
+        }
+        if (Boolean.parseBoolean(DatabaseManager.getSetting("journal.enabled", "false"))) {
+            long segmentMB = Long.parseLong(DatabaseManager.getSetting("journal.segmentMB", "64"));
+            long snapshotHours = Long.parseLong(DatabaseManager.getSetting("journal.snapshotHours", "24"));
+            journal = ExpenseJournal.open(Path.of(DatabaseManager.getSetting("journal.dir", "data/journal")),
+                    segmentMB << 20);
+            journal.startSnapshots((ExpenseJournal.Source) repo, snapshotHours * 3_600_000);
+            repo = new JournalingRepository(repo, journal);
+        }
+        if (Boolean.parseBoolean(DatabaseManager.getSetting("analytics.columnar", "false"))) {
+            long idleMinutes = Long.parseLong(DatabaseManager.getSetting("analytics.idleMinutes", "10"));
+            repo = new ColumnarAnalyticsRepository(repo, idleMinutes * 60_000);
+        }
+        if (Boolean.parseBoolean(DatabaseManager.getSetting("search.index", "true"))) {
+            long searchIdleMinutes = Long.parseLong(DatabaseManager.getSetting("search.idleMinutes", "30"));
+            search = new SearchIndexRepository(repo, searchIdleMinutes * 60_000);
+            repo = search;
+        }
+        long budgetIdleMinutes = Long.parseLong(DatabaseManager.getSetting("budgets.idleMinutes", "30"));
+        BudgetTrackingRepository budgets = new BudgetTrackingRepository(repo, budgetIdleMinutes * 60_000);
+        budgets.setThresholdListener(ExpenseAPI::announceBudgetCrossing);
+        repo = budgets;
+        long ruleIdleMinutes = Long.parseLong(DatabaseManager.getSetting("rules.idleMinutes", "30"));
+        rules = new CategorizingRepository(repo, ruleIdleMinutes * 60_000);
+        rules.startHitFlush(60_000);
+        repo = rules;
+        LocalTime notifyAt = LocalTime.parse(DatabaseManager.getSetting("reminders.notifyAt", "09:00"));
+        long refreshMinutes = Long.parseLong(DatabaseManager.getSetting("reminders.refreshMinutes", "60"));
+        reminders = new ReminderScheduler(repo, notifyAt, refreshMinutes * 60_000);
+        for (String notifier : DatabaseManager.getSetting("reminders.notify", "event").split(","))
+            reminders.addNotifier(notifier(notifier.trim()));
+        repo = reminders;
+        long idempotencyHours = Long.parseLong(DatabaseManager.getSetting("idempotency.ttlHours", "24"));
+        idempotencyKeys = new IdempotencyKeys(repo,
+                Integer.parseInt(DatabaseManager.getSetting("idempotency.cacheSize", "10000")),
+                Duration.ofHours(idempotencyHours));
+        idempotencyKeys.startPurge();
         HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
 
         // Auth
-        server.createContext("/api/login", new LoginHandler());
-        server.createContext("/api/signup", new SignupHandler());
+        api(server, "/api/login", new LoginHandler());
+        api(server, "/api/signup", new SignupHandler());
         // Core
-        server.createContext("/api/expenses", new ExpensesHandler());
-        server.createContext("/api/categories", new CategoriesHandler());
-        server.createContext("/api/dashboard", new DashboardHandler());
-        server.createContext("/api/report", new ReportHandler());
+        api(server, "/api/expenses", new ExpensesHandler());
+        api(server, "/api/categories", new CategoriesHandler());
+        api(server, "/api/dashboard", new DashboardHandler());
+        api(server, "/api/report", new ReportHandler());
         // New endpoints
-        server.createContext("/api/budgets", new BudgetsHandler());
-        server.createContext("/api/budget-status", new BudgetStatusHandler());
-        server.createContext("/api/trends", new TrendsHandler());
-        server.createContext("/api/daily-spending", new DailySpendingHandler());
-        server.createContext("/api/predictions", new PredictionsHandler());
-        server.createContext("/api/export", new ExportHandler());
-        server.createContext("/api/profile", new ProfileHandler());
-        server.createContext("/api/recurring", new RecurringExpensesHandler());
-        server.createContext("/api/reminders", new RemindersHandler());
+        api(server, "/api/budgets", new BudgetsHandler());
+        api(server, "/api/budget-status", new BudgetStatusHandler());
+        api(server, "/api/trends", new TrendsHandler());
+        api(server, "/api/daily-spending", new DailySpendingHandler());
+        api(server, "/api/predictions", new PredictionsHandler());
+        api(server, "/api/export", new ExportHandler());
+        api(server, "/api/profile", new ProfileHandler());
+        api(server, "/api/recurring", new RecurringExpensesHandler());
+        api(server, "/api/reminders", new RemindersHandler());
+        api(server, "/api/changes", new ChangesHandler());
+        api(server, "/api/rules", new RulesHandler());
+        api(server, "/api/rules/apply", new ApplyRulesHandler());
+        api(server, "/api/search", new SearchHandler());
+        // Live updates; long-lived, so not behind the single-flight filter
+        server.createContext("/api/events", new EventsHandler());
+        // Several reads in one round trip
+        api(server, "/api/batch", new BatchHandler());
+        // Diagnostics
+        api(server, "/api/metrics", new MetricsHandler());
+        // Only plain JSON reads may be batched
+        batchable.keySet().removeAll(List.of("/api/login", "/api/signup", "/api/export", "/api/batch", "/api/metrics",
+                "/api/rules/apply"));
+        batchPool = Executors.newFixedThreadPool(Integer.parseInt(DatabaseManager.getSetting("api.batchThreads", "8")));
         // Static files
         server.createContext("/", new StaticFileHandler());
 
-        server.setExecutor(null);
+        // Handlers block on JDBC, so run them on a pool rather than the single dispatcher thread
+        server.setExecutor(Executors.newFixedThreadPool(Integer.parseInt(DatabaseManager.getSetting("api.threads", "32"))));
         server.start();
-        System.out.println("Expense Tracker API running at http://localhost:" + PORT);
+        reminders.start();
+        System.out.println("Expense Tracker API running at http://localhost:" + PORT + (demo ? " (in-memory demo mode)" : ""));
+    }
+
+    /** Registers an API endpoint behind the single-flight filter. */
+    private static void api(HttpServer server, String path, HttpHandler handler) {
+        server.createContext(path, handler).getFilters().add(singleFlight);
+        batchable.put(path, handler);
     }
 
     // ─── Utility Methods ─────────────────────────────────
@@ -61,21 +206,14 @@ public class ExpenseAPI {
         return new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
     }
 
-    private static Map<String, String> parseJson(String json) {
+    /** Top-level pairs of a flat JSON object; string values are unescaped, other values kept as written. */
+    static Map<String, String> parseJson(String json) {
         Map<String, String> map = new HashMap<>();
-        json = json.trim();
-        if (json.startsWith("{"))
-            json = json.substring(1);
-        if (json.endsWith("}"))
-            json = json.substring(0, json.length() - 1);
-        for (String pair : json.split(",")) {
-            String[] kv = pair.split(":", 2);
-            if (kv.length == 2) {
-                String key = kv[0].trim().replaceAll("\"", "");
-                String val = kv[1].trim().replaceAll("\"", "");
-                map.put(key, val);
-            }
-        }
+        Matcher m = JSON_PAIR.matcher(json);
+        while (m.find())
+            map.put(m.group(1), m.group(2) != null
+                    ? m.group(2).replace("\\/", "/").replace("\\\"", "\"").replace("\\\\", "\\")
+                    : m.group(3));
         return map;
     }
 
@@ -97,7 +235,7 @@ public class ExpenseAPI {
         ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
         ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
         ex.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        ex.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        ex.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization, Idempotency-Key");
         ex.sendResponseHeaders(code, bytes.length);
         ex.getResponseBody().write(bytes);
         ex.getResponseBody().close();
@@ -106,11 +244,12 @@ public class ExpenseAPI {
     private static void handleCors(HttpExchange ex) throws IOException {
         ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
         ex.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-        ex.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization");
+        ex.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization, Idempotency-Key");
         ex.sendResponseHeaders(204, -1);
     }
 
-    private static String getUser(HttpExchange ex) {
+    /** The users.id the bearer token was issued for, or null if it is missing or unknown. */
+    private static Integer getUserId(HttpExchange ex) {
         String auth = ex.getRequestHeaders().getFirst("Authorization");
         if (auth != null && auth.startsWith("Bearer ")) {
             return sessions.get(auth.substring(7));
@@ -118,12 +257,154 @@ public class ExpenseAPI {
         return null;
     }
 
-    private static String esc(String s) {
+    static String esc(String s) {
         if (s == null)
             return "";
         return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
     }
 
+    static String expensesToJson(List<Expense> expenses) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < expenses.size(); i++) {
+            Expense e = expenses.get(i);
+            if (i > 0)
+                sb.append(",");
+            String rp = e.getReceiptPath();
+            sb.append("{\"id\":").append(e.getId())
+                    .append(",\"category\":\"").append(esc(e.getCategory()))
+                    .append("\",\"amount\":");
+            e.getAmount().appendTo(sb)
+                    .append(",\"currency\":\"").append(esc(e.getCurrency()))
+                    .append("\",\"receiptPath\":")
+                    .append((rp != null && !rp.isEmpty()) ? "\"" + esc(rp) + "\"" : "null")
+                    .append(",\"date\":\"").append(e.getFormattedDate())
+                    .append("\",\"notes\":").append(e.getNotes() != null ? "\"" + esc(e.getNotes()) + "\"" : "null")
+                    .append("}");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    static String recurringToJson(List<RecurringExpense> items) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < items.size(); i++) {
+            RecurringExpense r = items.get(i);
+            if (i > 0)
+                sb.append(",");
+            sb.append("{\"id\":").append(r.getId())
+                    .append(",\"description\":\"").append(esc(r.getDescription()))
+                    .append("\",\"amount\":");
+            r.getAmount().appendTo(sb)
+                    .append(",\"category\":\"").append(esc(r.getCategory()))
+                    .append("\",\"interval\":\"").append(r.getInterval())
+                    .append("\",\"startDate\":\"").append(r.getStartDate()).append("\"}");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    static String remindersToJson(List<Reminder> reminders) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < reminders.size(); i++) {
+            Reminder r = reminders.get(i);
+            if (i > 0)
+                sb.append(",");
+            String notes = r.getNotes();
+            sb.append(String.format(
+                    "{\"id\":%d,\"title\":\"%s\",\"dueDate\":\"%s\",\"notes\":%s}",
+                    r.getId(), esc(r.getTitle()), r.getDueDate(),
+                    notes != null ? "\"" + esc(notes) + "\"" : "null"));
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    static String budgetStatusToJson(List<Map<String, Object>> status) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < status.size(); i++) {
+            if (i > 0)
+                sb.append(",");
+            var item = status.get(i);
+            sb.append("{\"category\":\"").append(esc((String) item.get("category"))).append("\",\"spent\":");
+            ((Money) item.get("spent")).appendTo(sb).append(",\"limit\":");
+            ((Money) item.get("limit")).appendTo(sb).append("}");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    /** Appends basis points as a percentage with one decimal place, rounded half up. */
+    static StringBuilder appendPercent(StringBuilder sb, long basisPoints) {
+        long tenths = (basisPoints + 5) / 10;
+        return sb.append(tenths / 10).append('.').append(tenths % 10);
+    }
+
+    // ─── Live Events ─────────────────────────────────────
+
+    private static void announceBudgetCrossing(int userId, String category, int percent, long basisPoints) {
+        StringBuilder sb = new StringBuilder("{\"category\":\"").append(esc(category))
+                .append("\",\"threshold\":").append(percent).append(",\"percent\":");
+        events.publish(userId, "budget", appendPercent(sb, basisPoints).append("}").toString());
+    }
+
+    private static ReminderScheduler.Notifier notifier(String name) {
+        return switch (name) {
+            case "event" -> ExpenseAPI::pushReminder;
+            case "log" -> ReminderScheduler.LOG;
+            case "webhook" -> webhook(URI.create(DatabaseManager.getSetting("reminders.webhookUrl", "")));
+            default -> throw new IllegalArgumentException("Unknown reminders.notify entry: " + name);
+        };
+    }
+
+    /** In-app delivery; fails while the user has no open event stream, so it is retried when one opens. */
+    private static void pushReminder(int userId, Reminder r) throws IOException {
+        if (!events.hasSubscribers(userId))
+            throw new IOException("No open event stream");
+        events.publish(userId, "reminder", reminderJson(userId, r));
+    }
+
+    /** POSTs each due reminder as JSON to a local endpoint; any status but 2xx is retried. */
+    private static ReminderScheduler.Notifier webhook(URI url) {
+        if (url.getHost() == null || !(url.getHost().equals("localhost") || url.getHost().startsWith("127.")))
+            throw new IllegalArgumentException("reminders.webhookUrl must point at localhost");
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        return (userId, r) -> {
+            HttpRequest request = HttpRequest.newBuilder(url).timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(reminderJson(userId, r))).build();
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status / 100 != 2)
+                throw new IOException("Webhook answered " + status);
+        };
+    }
+
+    private static String reminderJson(int userId, Reminder r) {
+        return String.format("{\"userId\":%d,\"id\":%d,\"title\":\"%s\",\"dueDate\":\"%s\"}",
+                userId, r.getId(), esc(r.getTitle()), r.getDueDate());
+    }
+
+    static class EventsHandler implements HttpHandler {
+        public void handle(HttpExchange ex) throws IOException {
+            if ("OPTIONS".equals(ex.getRequestMethod())) {
+                handleCors(ex);
+                return;
+            }
+            // EventSource cannot send headers, so the token may come as a query parameter
+            Integer userId = getUserId(ex);
+            if (userId == null) {
+                String token = parseQuery(ex.getRequestURI().getQuery()).get("token");
+                userId = (token != null) ? sessions.get(token) : null;
+            }
+            if (userId == null) {
+                sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
+                return;
+            }
+            events.subscribe(userId, ex);
+            // Due reminders that found no open stream are delivered now
+            reminders.retryNow(userId);
+        }
+    }
+
     // ─── Auth Handlers ───────────────────────────────────
 
     static class LoginHandler implements HttpHandler {
@@ -136,23 +417,17 @@ public class ExpenseAPI {
                 Map<String, String> body = parseJson(readBody(ex));
                 String username = body.get("username");
                 String password = body.get("password");
-                try (Connection conn = DatabaseManager.getConnection()) {
-                    PreparedStatement ps = conn.prepareStatement(
-                            "SELECT password_hash, salt FROM users WHERE username = ?");
-                    ps.setString(1, username);
-                    ResultSet rs = ps.executeQuery();
-                    if (rs.next()) {
-                        String hash = rs.getString("password_hash");
-                        String salt = rs.getString("salt");
-                        if (SecurityUtils.verifyPassword(password, salt, hash)) {
-                            String token = UUID.randomUUID().toString();
-                            sessions.put(token, username);
-                            // Apply recurring expenses on login
-                            ExpenseService.applyRecurringExpenses(conn, username);
-                            sendJson(ex, 200, "{\"token\":\"" + token + "\",\"username\":\"" + esc(username) + "\"}");
-                            return;
-                        }
-                    }
+                User account = repo.findUser(username);
+                if (account != null && SecurityUtils.verifyPassword(password, account.getSalt(),
+                        account.getPasswordHash())) {
+                    String token = UUID.randomUUID().toString();
+                    sessions.put(token, account.getId());
+                    // Apply recurring expenses on login
+                    int applied = repo.applyRecurringExpenses(account.getId());
+                    if (applied > 0)
+                        events.publish(account.getId(), "recurring", "{\"applied\":" + applied + "}");
+                    sendJson(ex, 200, "{\"token\":\"" + token + "\",\"username\":\"" + esc(username) + "\"}");
+                    return;
                 }
                 sendJson(ex, 401, "{\"error\":\"Invalid username or password\"}");
             } catch (Exception e) {
@@ -177,19 +452,14 @@ public class ExpenseAPI {
                 }
                 String salt = SecurityUtils.generateSalt();
                 String hash = SecurityUtils.hashPassword(password, salt);
-                try (Connection conn = DatabaseManager.getConnection()) {
-                    PreparedStatement ps = conn.prepareStatement(
-                            "INSERT INTO users (username, password_hash, salt) VALUES (?, ?, ?)");
-                    ps.setString(1, username);
-                    ps.setString(2, hash);
-                    ps.setString(3, salt);
-                    ps.executeUpdate();
-                    String token = UUID.randomUUID().toString();
-                    sessions.put(token, username);
-                    sendJson(ex, 201, "{\"token\":\"" + token + "\",\"username\":\"" + esc(username) + "\"}");
+                int userId = repo.createUser(username, hash, salt);
+                if (userId == 0) {
+                    sendJson(ex, 409, "{\"error\":\"Username already exists\"}");
+                    return;
                 }
-            } catch (java.sql.SQLIntegrityConstraintViolationException e) {
-                sendJson(ex, 409, "{\"error\":\"Username already exists\"}");
+                String token = UUID.randomUUID().toString();
+                sessions.put(token, userId);
+                sendJson(ex, 201, "{\"token\":\"" + token + "\",\"username\":\"" + esc(username) + "\"}");
             } catch (Exception e) {
                 sendJson(ex, 500, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
             }
@@ -204,63 +474,93 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 switch (ex.getRequestMethod()) {
                     case "GET" -> {
                         Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
                         String category = q.get("category");
                         String keyword = q.get("keyword");
-                        BigDecimal minAmt = q.containsKey("minAmount") ? new BigDecimal(q.get("minAmount")) : null;
-                        BigDecimal maxAmt = q.containsKey("maxAmount") ? new BigDecimal(q.get("maxAmount")) : null;
+                        Money minAmt = q.containsKey("minAmount") ? Money.parse(q.get("minAmount")) : null;
+                        Money maxAmt = q.containsKey("maxAmount") ? Money.parse(q.get("maxAmount")) : null;
                         LocalDate start = q.containsKey("startDate") ? LocalDate.parse(q.get("startDate")) : null;
                         LocalDate end = q.containsKey("endDate") ? LocalDate.parse(q.get("endDate")) : null;
-                        List<Expense> expenses = ExpenseService.searchExpenses(conn, user, category, keyword, minAmt,
-                                maxAmt, start, end);
-                        StringBuilder sb = new StringBuilder("[");
-                        for (int i = 0; i < expenses.size(); i++) {
-                            Expense e = expenses.get(i);
-                            if (i > 0)
-                                sb.append(",");
-                            String rp = e.getReceiptPath();
-                            sb.append(String.format(
-                                    "{\"id\":%d,\"category\":\"%s\",\"amount\":%.2f,\"currency\":\"%s\",\"receiptPath\":%s,\"date\":\"%s\"}",
-                                    e.getId(), esc(e.getCategory()), e.getAmount(), esc(e.getCurrency()),
-                                    (rp != null && !rp.isEmpty()) ? "\"" + esc(rp) + "\"" : "null",
-                                    e.getFormattedDate()));
-                        }
-                        sb.append("]");
-                        sendJson(ex, 200, sb.toString());
+                        List<Expense> expenses = repo.searchExpenses(userId, category, keyword, minAmt, maxAmt, start,
+                                end);
+                        sendJson(ex, 200, expensesToJson(expenses));
                     }
                     case "POST" -> {
                         Map<String, String> body = parseJson(readBody(ex));
                         String cat = body.get("category");
-                        BigDecimal amt = new BigDecimal(body.get("amount"));
-                        String curr = body.getOrDefault("currency", "INR");
+                        String curr = body.getOrDefault("currency", Money.DEFAULT_CURRENCY);
+                        Money amt;
+                        try {
+                            amt = Money.parse(body.get("amount"), curr);
+                        } catch (NumberFormatException e) {
+                            sendJson(ex, 400, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
+                            return;
+                        }
                         String receipt = body.get("receiptPath");
-                        ExpenseService.addExpense(conn, user, cat, amt, curr, receipt, LocalDateTime.now());
-                        List<String> cats = ExpenseService.getCategories(conn);
-                        if (!cats.contains(cat)) {
+                        String notes = body.get("notes");
+                        if (notes != null && notes.isBlank())
+                            notes = null;
+                        if (notes != null && notes.length() > MAX_NOTES) {
+                            sendJson(ex, 400, "{\"error\":\"Notes must be at most " + MAX_NOTES + " characters\"}");
+                            return;
+                        }
+                        // A retry with the same key gets the first answer instead of a second expense
+                        String key = ex.getRequestHeaders().getFirst("Idempotency-Key");
+                        if (key != null) {
+                            if (!IdempotencyKeys.isValid(key)) {
+                                sendJson(ex, 400, "{\"error\":\"Idempotency-Key must be 1-100 printable ASCII characters\"}");
+                                return;
+                            }
+                            Integer prior = idempotencyKeys.claim(userId, key);
+                            if (prior != null && prior == 0) {
+                                sendJson(ex, 409, "{\"error\":\"A request with this Idempotency-Key is still in progress\"}");
+                                return;
+                            }
+                            if (prior != null) {
+                                ex.getResponseHeaders().set("Idempotent-Replayed", "true");
+                                sendJson(ex, 201, "{\"message\":\"Expense added\",\"id\":" + prior + "}");
+                                return;
+                            }
+                        }
+                        Expense added;
+                        try {
+                            added = repo.addExpense(userId, cat, amt, receipt, LocalDateTime.now(), notes);
+                        } catch (Exception e) {
+                            if (key != null)
+                                idempotencyKeys.release(userId, key);
+                            throw e;
+                        }
+                        if (key != null)
+                            idempotencyKeys.complete(userId, key, added.getId());
+                        // What was stored, not what was typed: a rule may have replaced a payee
+                        String stored = added.getCategory();
+                        if (stored != null && !stored.isBlank() && !repo.getCategories().contains(stored)) {
                             try {
-                                ExpenseService.addCategory(conn, cat);
-                            } catch (Exception ignored) {
+                                repo.addCategory(stored);
+                            } catch (SQLException e) {
+                                System.err.println("Could not list category " + stored + ": " + e.getMessage());
                             }
                         }
-                        sendJson(ex, 201, "{\"message\":\"Expense added\"}");
+                        sendJson(ex, 201, "{\"message\":\"Expense added\",\"id\":" + added.getId() + "}");
+                        if (events.hasSubscribers(userId))
+                            events.publish(userId, "expense",
+                                    "{\"action\":\"added\",\"expenses\":" + expensesToJson(List.of(added)) + "}");
                     }
                     case "DELETE" -> {
                         Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
                         int id = Integer.parseInt(q.get("id"));
-                        PreparedStatement ps = conn.prepareStatement(
-                                "DELETE FROM expenses WHERE id = ? AND username = ?");
-                        ps.setInt(1, id);
-                        ps.setString(2, user);
-                        int rows = ps.executeUpdate();
+                        int rows = repo.deleteExpense(userId, id) != null ? 1 : 0;
                         sendJson(ex, 200, "{\"deleted\":" + rows + "}");
+                        if (rows > 0)
+                            events.publish(userId, "expense", "{\"action\":\"deleted\",\"id\":" + id + "}");
                     }
                     default -> sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
                 }
@@ -276,15 +576,15 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 switch (ex.getRequestMethod()) {
                     case "GET" -> {
-                        List<String> cats = ExpenseService.getCategories(conn);
+                        List<String> cats = repo.getCategories();
                         StringBuilder sb = new StringBuilder("[");
                         for (int i = 0; i < cats.size(); i++) {
                             if (i > 0)
@@ -297,7 +597,7 @@ public class ExpenseAPI {
                     case "POST" -> {
                         Map<String, String> body = parseJson(readBody(ex));
                         String name = body.get("name");
-                        if (ExpenseService.addCategory(conn, name))
+                        if (repo.addCategory(name))
                             sendJson(ex, 201, "{\"message\":\"Category added\"}");
                         else
                             sendJson(ex, 400, "{\"error\":\"Failed to add category\"}");
@@ -305,7 +605,7 @@ public class ExpenseAPI {
                     case "DELETE" -> {
                         Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
                         String name = q.get("name");
-                        if (ExpenseService.deleteCategory(conn, name))
+                        if (repo.deleteCategory(name))
                             sendJson(ex, 200, "{\"message\":\"Category deleted\"}");
                         else
                             sendJson(ex, 400, "{\"error\":\"Category not found\"}");
@@ -324,48 +624,49 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 LocalDate now = LocalDate.now();
                 int month = now.getMonthValue();
                 int year = now.getYear();
-                BigDecimal total = ExpenseService.getTotalExpensesForMonth(conn, user, month, year);
-                String topCat = ExpenseService.getTopCategoryForMonth(conn, user, month, year);
-                int count = ExpenseService.getExpenseCount(conn, user, month, year);
+                Money total = repo.getTotalExpensesForMonth(userId, month, year);
+                String topCat = repo.getTopCategoryForMonth(userId, month, year);
+                int count = repo.getExpenseCount(userId, month, year);
 
                 // Recent 5 expenses
-                List<Expense> recent = ExpenseService.searchExpenses(conn, user, null, null, null, null, null, null);
+                List<Expense> recent = repo.getRecentExpenses(userId, 5);
                 StringBuilder recentJson = new StringBuilder("[");
-                int limit = Math.min(recent.size(), 5);
-                for (int i = 0; i < limit; i++) {
+                for (int i = 0; i < recent.size(); i++) {
                     Expense e = recent.get(i);
                     if (i > 0)
                         recentJson.append(",");
-                    recentJson.append(String.format(
-                            "{\"category\":\"%s\",\"amount\":%.2f,\"date\":\"%s\"}",
-                            esc(e.getCategory()), e.getAmount(), e.getFormattedDate()));
+                    recentJson.append("{\"id\":").append(e.getId()).append(",\"category\":\"")
+                            .append(esc(e.getCategory())).append("\",\"amount\":");
+                    e.getAmount().appendTo(recentJson).append(",\"date\":\"").append(e.getFormattedDate())
+                            .append("\"}");
                 }
                 recentJson.append("]");
 
                 // Budget alerts for dashboard
-                List<Map<String, Object>> budgetStatus = ExpenseService.getBudgetStatus(conn, user);
+                List<Map<String, Object>> budgetStatus = repo.getBudgetStatus(userId);
                 StringBuilder alertsJson = new StringBuilder("[");
                 int alertIdx = 0;
                 for (var bs : budgetStatus) {
-                    BigDecimal spent = (BigDecimal) bs.get("spent");
-                    BigDecimal budgetLimit = (BigDecimal) bs.get("limit");
-                    double pct = budgetLimit.doubleValue() > 0 ? (spent.doubleValue() / budgetLimit.doubleValue() * 100)
-                            : 0;
-                    if (pct >= 80) { // Show alert at 80%+
+                    Money spent = (Money) bs.get("spent");
+                    Money budgetLimit = (Money) bs.get("limit");
+                    long basisPoints = spent.basisPointsOf(budgetLimit);
+                    if (basisPoints >= 8000) { // Show alert at 80%+
                         if (alertIdx > 0)
                             alertsJson.append(",");
-                        alertsJson.append(String.format(
-                                "{\"category\":\"%s\",\"spent\":%.2f,\"limit\":%.2f,\"percent\":%.1f}",
-                                esc((String) bs.get("category")), spent, budgetLimit, pct));
+                        alertsJson.append("{\"category\":\"").append(esc((String) bs.get("category")))
+                                .append("\",\"spent\":");
+                        spent.appendTo(alertsJson).append(",\"limit\":");
+                        budgetLimit.appendTo(alertsJson).append(",\"percent\":");
+                        appendPercent(alertsJson, basisPoints).append("}");
                         alertIdx++;
                     }
                 }
@@ -375,8 +676,8 @@ public class ExpenseAPI {
                         "July", "August", "September", "October", "November", "December" };
 
                 String json = String.format(
-                        "{\"monthlyTotal\":%.2f,\"topCategory\":\"%s\",\"expenseCount\":%d,\"month\":\"%s %d\",\"recent\":%s,\"budgetAlerts\":%s}",
-                        total, esc(topCat), count, monthNames[month], year, recentJson, alertsJson);
+                        "{\"monthlyTotal\":%s,\"topCategory\":\"%s\",\"expenseCount\":%d,\"month\":\"%s %d\",\"recent\":%s,\"budgetAlerts\":%s}",
+                        total.toPlainString(), esc(topCat), count, monthNames[month], year, recentJson, alertsJson);
                 sendJson(ex, 200, json);
             } catch (Exception e) {
                 sendJson(ex, 500, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
@@ -390,24 +691,25 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
                 int month = Integer.parseInt(q.getOrDefault("month", String.valueOf(LocalDate.now().getMonthValue())));
                 int year = Integer.parseInt(q.getOrDefault("year", String.valueOf(LocalDate.now().getYear())));
-                Map<String, BigDecimal> breakdown = ExpenseService.getCategoryBreakdown(conn, user, month, year);
-                BigDecimal total = ExpenseService.getTotalExpensesForMonth(conn, user, month, year);
-                StringBuilder sb = new StringBuilder("{\"total\":" + total + ",\"breakdown\":[");
+                Map<String, Money> breakdown = repo.getCategoryBreakdown(userId, month, year);
+                Money total = repo.getTotalExpensesForMonth(userId, month, year);
+                StringBuilder sb = new StringBuilder("{\"total\":");
+                total.appendTo(sb).append(",\"breakdown\":[");
                 int i = 0;
                 for (var entry : breakdown.entrySet()) {
                     if (i > 0)
                         sb.append(",");
-                    sb.append(String.format("{\"category\":\"%s\",\"amount\":%.2f}", esc(entry.getKey()),
-                            entry.getValue()));
+                    sb.append("{\"category\":\"").append(esc(entry.getKey())).append("\",\"amount\":");
+                    entry.getValue().appendTo(sb).append("}");
                     i++;
                 }
                 sb.append("]}");
@@ -426,31 +728,19 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 switch (ex.getRequestMethod()) {
-                    case "GET" -> {
-                        List<Map<String, Object>> status = ExpenseService.getBudgetStatus(conn, user);
-                        StringBuilder sb = new StringBuilder("[");
-                        for (int i = 0; i < status.size(); i++) {
-                            if (i > 0)
-                                sb.append(",");
-                            var item = status.get(i);
-                            sb.append(String.format("{\"category\":\"%s\",\"spent\":%.2f,\"limit\":%.2f}",
-                                    esc((String) item.get("category")), item.get("spent"), item.get("limit")));
-                        }
-                        sb.append("]");
-                        sendJson(ex, 200, sb.toString());
-                    }
+                    case "GET" -> sendJson(ex, 200, budgetStatusToJson(repo.getBudgetStatus(userId)));
                     case "POST" -> {
                         Map<String, String> body = parseJson(readBody(ex));
                         String cat = body.get("category");
-                        BigDecimal limit = new BigDecimal(body.get("limit"));
-                        if (ExpenseService.setBudget(conn, user, cat, limit))
+                        Money limit = Money.parse(body.get("limit"));
+                        if (repo.setBudget(userId, cat, limit))
                             sendJson(ex, 201, "{\"message\":\"Budget set\"}");
                         else
                             sendJson(ex, 400, "{\"error\":\"Failed to set budget\"}");
@@ -458,7 +748,7 @@ public class ExpenseAPI {
                     case "DELETE" -> {
                         Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
                         String cat = q.get("category");
-                        if (ExpenseService.deleteBudget(conn, user, cat))
+                        if (repo.deleteBudget(userId, cat))
                             sendJson(ex, 200, "{\"message\":\"Budget removed\"}");
                         else
                             sendJson(ex, 400, "{\"error\":\"Budget not found\"}");
@@ -477,23 +767,13 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
-                List<Map<String, Object>> status = ExpenseService.getBudgetStatus(conn, user);
-                StringBuilder sb = new StringBuilder("[");
-                for (int i = 0; i < status.size(); i++) {
-                    if (i > 0)
-                        sb.append(",");
-                    var item = status.get(i);
-                    sb.append(String.format("{\"category\":\"%s\",\"spent\":%.2f,\"limit\":%.2f}",
-                            esc((String) item.get("category")), item.get("spent"), item.get("limit")));
-                }
-                sb.append("]");
-                sendJson(ex, 200, sb.toString());
+            try {
+                sendJson(ex, 200, budgetStatusToJson(repo.getBudgetStatus(userId)));
             } catch (Exception e) {
                 sendJson(ex, 500, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
             }
@@ -506,22 +786,23 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
                 int months = Integer.parseInt(q.getOrDefault("months", "6"));
-                List<Map<String, Object>> trend = ExpenseService.getMonthlyTrend(conn, user, months);
+                List<Map<String, Object>> trend = repo.getMonthlyTrend(userId, months);
                 StringBuilder sb = new StringBuilder("[");
                 for (int i = 0; i < trend.size(); i++) {
                     if (i > 0)
                         sb.append(",");
                     var pt = trend.get(i);
-                    sb.append(String.format("{\"year\":%d,\"month\":%d,\"total\":%.2f}",
-                            pt.get("year"), pt.get("month"), pt.get("total")));
+                    sb.append("{\"year\":").append(pt.get("year")).append(",\"month\":").append(pt.get("month"))
+                            .append(",\"total\":");
+                    ((Money) pt.get("total")).appendTo(sb).append("}");
                 }
                 sb.append("]");
                 sendJson(ex, 200, sb.toString());
@@ -537,22 +818,23 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
                 int month = Integer.parseInt(q.getOrDefault("month", String.valueOf(LocalDate.now().getMonthValue())));
                 int year = Integer.parseInt(q.getOrDefault("year", String.valueOf(LocalDate.now().getYear())));
-                Map<Integer, BigDecimal> daily = ExpenseService.getDailySpending(conn, user, month, year);
+                Map<Integer, Money> daily = repo.getDailySpending(userId, month, year);
                 StringBuilder sb = new StringBuilder("{");
                 int i = 0;
                 for (var entry : daily.entrySet()) {
                     if (i > 0)
                         sb.append(",");
-                    sb.append(String.format("\"%d\":%.2f", entry.getKey(), entry.getValue()));
+                    sb.append("\"").append(entry.getKey()).append("\":");
+                    entry.getValue().appendTo(sb);
                     i++;
                 }
                 sb.append("}");
@@ -569,26 +851,26 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
-                Map<String, BigDecimal> predictions = ExpenseService.getPredictions(conn, user, 3);
-                BigDecimal totalPredicted = BigDecimal.ZERO;
+            try {
+                Map<String, Money> predictions = repo.getPredictions(userId, 3);
+                Money totalPredicted = Money.ZERO;
                 StringBuilder cats = new StringBuilder("[");
                 int i = 0;
                 for (var entry : predictions.entrySet()) {
                     if (i > 0)
                         cats.append(",");
-                    cats.append(String.format("{\"category\":\"%s\",\"predicted\":%.2f}", esc(entry.getKey()),
-                            entry.getValue()));
-                    totalPredicted = totalPredicted.add(entry.getValue());
+                    cats.append("{\"category\":\"").append(esc(entry.getKey())).append("\",\"predicted\":");
+                    entry.getValue().appendTo(cats).append("}");
+                    totalPredicted = totalPredicted.plus(entry.getValue());
                     i++;
                 }
                 cats.append("]");
-                String json = String.format("{\"totalPredicted\":%.2f,\"categories\":%s}", totalPredicted, cats);
+                String json = "{\"totalPredicted\":" + totalPredicted.toPlainString() + ",\"categories\":" + cats + "}";
                 sendJson(ex, 200, json);
             } catch (Exception e) {
                 sendJson(ex, 500, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
@@ -602,23 +884,26 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
-                List<Expense> expenses = ExpenseService.searchExpenses(conn, user, null, null, null, null, null, null);
-                StringBuilder csv = new StringBuilder("ID,Category,Amount,Date\n");
+            try {
+                List<Expense> expenses = repo.searchExpenses(userId, null, null, null, null, null, null);
+                StringBuilder csv = new StringBuilder("ID,Category,Amount,Date,Notes\n");
                 for (Expense e : expenses) {
-                    csv.append(String.format("%d,\"%s\",%.2f,%s\n",
-                            e.getId(), e.getCategory().replace("\"", "\"\""), e.getAmount(), e.getFormattedDate()));
+                    csv.append(e.getId()).append(",\"").append(e.getCategory().replace("\"", "\"\"")).append("\",");
+                    e.getAmount().appendTo(csv).append(',').append(e.getFormattedDate()).append(',');
+                    if (e.getNotes() != null)
+                        csv.append('"').append(e.getNotes().replace("\"", "\"\"")).append('"');
+                    csv.append('\n');
                 }
                 byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
                 ex.getResponseHeaders().set("Content-Type", "text/csv; charset=utf-8");
                 ex.getResponseHeaders().set("Content-Disposition", "attachment; filename=expenses.csv");
                 ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-                ex.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization");
+                ex.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization, Idempotency-Key");
                 ex.sendResponseHeaders(200, bytes.length);
                 ex.getResponseBody().write(bytes);
                 ex.getResponseBody().close();
@@ -634,64 +919,32 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 switch (ex.getRequestMethod()) {
                     case "GET" -> {
-                        String sql = "SELECT * FROM recurring_expenses WHERE username = ?";
-                        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                            ps.setString(1, user);
-                            ResultSet rs = ps.executeQuery();
-                            StringBuilder sb = new StringBuilder("[");
-                            int i = 0;
-                            while (rs.next()) {
-                                if (i > 0)
-                                    sb.append(",");
-                                sb.append(String.format(
-                                        "{\"id\":%d,\"description\":\"%s\",\"amount\":%.2f,\"category\":\"%s\",\"interval\":\"%s\",\"startDate\":\"%s\"}",
-                                        rs.getInt("id"), esc(rs.getString("description")), rs.getBigDecimal("amount"),
-                                        esc(rs.getString("category")), rs.getString("interval_type"),
-                                        rs.getDate("start_date").toString()));
-                                i++;
-                            }
-                            sb.append("]");
-                            sendJson(ex, 200, sb.toString());
-                        }
+                        sendJson(ex, 200, recurringToJson(repo.getRecurringExpenses(userId)));
                     }
                     case "POST" -> {
                         Map<String, String> body = parseJson(readBody(ex));
                         String desc = body.get("description");
-                        BigDecimal amt = new BigDecimal(body.get("amount"));
+                        Money amt = Money.parse(body.get("amount"));
                         String cat = body.get("category");
                         String interval = body.get("interval");
                         String start = body.get("startDate");
-
-                        String sql = "INSERT INTO recurring_expenses (username, description, amount, category, interval_type, start_date) VALUES (?, ?, ?, ?, ?, ?)";
-                        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                            ps.setString(1, user);
-                            ps.setString(2, desc);
-                            ps.setBigDecimal(3, amt);
-                            ps.setString(4, cat);
-                            ps.setString(5, interval);
-                            ps.setDate(6, java.sql.Date.valueOf(start != null ? start : LocalDate.now().toString()));
-                            ps.executeUpdate();
-                        }
+                        repo.addRecurringExpense(userId, desc, amt, cat, interval,
+                                start != null ? LocalDate.parse(start) : LocalDate.now());
                         sendJson(ex, 201, "{\"message\":\"Recurring expense added\"}");
                     }
                     case "DELETE" -> {
                         Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
                         int id = Integer.parseInt(q.get("id"));
-                        String sql = "DELETE FROM recurring_expenses WHERE id = ? AND username = ?";
-                        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                            ps.setInt(1, id);
-                            ps.setString(2, user);
-                            int rows = ps.executeUpdate();
-                            sendJson(ex, 200, "{\"deleted\":" + rows + "}");
-                        }
+                        int rows = repo.deleteRecurringExpense(userId, id) ? 1 : 0;
+                        sendJson(ex, 200, "{\"deleted\":" + rows + "}");
                     }
                     default -> sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
                 }
@@ -707,8 +960,8 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
@@ -716,7 +969,7 @@ public class ExpenseAPI {
                 sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 Map<String, String> body = parseJson(readBody(ex));
                 String currentPass = body.get("currentPassword");
                 String newPass = body.get("newPassword");
@@ -725,26 +978,16 @@ public class ExpenseAPI {
                     return;
                 }
                 // Verify current password
-                PreparedStatement ps = conn.prepareStatement(
-                        "SELECT password_hash, salt FROM users WHERE username = ?");
-                ps.setString(1, user);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    String hash = rs.getString("password_hash");
-                    String salt = rs.getString("salt");
-                    if (!SecurityUtils.verifyPassword(currentPass, salt, hash)) {
+                User account = repo.findUserById(userId);
+                if (account != null) {
+                    if (!SecurityUtils.verifyPassword(currentPass, account.getSalt(), account.getPasswordHash())) {
                         sendJson(ex, 401, "{\"error\":\"Current password is incorrect\"}");
                         return;
                     }
                     // Update password
                     String newSalt = SecurityUtils.generateSalt();
                     String newHash = SecurityUtils.hashPassword(newPass, newSalt);
-                    PreparedStatement up = conn.prepareStatement(
-                            "UPDATE users SET password_hash = ?, salt = ? WHERE username = ?");
-                    up.setString(1, newHash);
-                    up.setString(2, newSalt);
-                    up.setString(3, user);
-                    up.executeUpdate();
+                    repo.updatePassword(userId, newHash, newSalt);
                     sendJson(ex, 200, "{\"message\":\"Password updated successfully\"}");
                 } else {
                     sendJson(ex, 404, "{\"error\":\"User not found\"}");
@@ -763,34 +1006,15 @@ public class ExpenseAPI {
                 handleCors(ex);
                 return;
             }
-            String user = getUser(ex);
-            if (user == null) {
+            Integer userId = getUserId(ex);
+            if (userId == null) {
                 sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
                 return;
             }
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try {
                 switch (ex.getRequestMethod()) {
                     case "GET" -> {
-                        String sql = "SELECT id, title, due_date, notes FROM reminders WHERE username = ? ORDER BY due_date ASC";
-                        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                            ps.setString(1, user);
-                            ResultSet rs = ps.executeQuery();
-                            StringBuilder sb = new StringBuilder("[");
-                            int i = 0;
-                            while (rs.next()) {
-                                if (i > 0)
-                                    sb.append(",");
-                                String notes = rs.getString("notes");
-                                sb.append(String.format(
-                                        "{\"id\":%d,\"title\":\"%s\",\"dueDate\":\"%s\",\"notes\":%s}",
-                                        rs.getInt("id"), esc(rs.getString("title")),
-                                        rs.getDate("due_date").toString(),
-                                        notes != null ? "\"" + esc(notes) + "\"" : "null"));
-                                i++;
-                            }
-                            sb.append("]");
-                            sendJson(ex, 200, sb.toString());
-                        }
+                        sendJson(ex, 200, remindersToJson(repo.getReminders(userId)));
                     }
                     case "POST" -> {
                         Map<String, String> body = parseJson(readBody(ex));
@@ -801,26 +1025,424 @@ public class ExpenseAPI {
                             sendJson(ex, 400, "{\"error\":\"Title and due date are required\"}");
                             return;
                         }
-                        String sql = "INSERT INTO reminders (username, title, due_date, notes) VALUES (?, ?, ?, ?)";
-                        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                            ps.setString(1, user);
-                            ps.setString(2, title);
-                            ps.setDate(3, java.sql.Date.valueOf(dueDate));
-                            ps.setString(4, notes);
-                            ps.executeUpdate();
-                        }
+                        repo.addReminder(userId, title, LocalDate.parse(dueDate), notes);
                         sendJson(ex, 201, "{\"message\":\"Reminder added\"}");
                     }
                     case "DELETE" -> {
                         Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
                         int id = Integer.parseInt(q.get("id"));
-                        String sql = "DELETE FROM reminders WHERE id = ? AND username = ?";
-                        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                            ps.setInt(1, id);
-                            ps.setString(2, user);
-                            int rows = ps.executeUpdate();
-                            sendJson(ex, 200, "{\"deleted\":" + rows + "}");
+                        int rows = repo.deleteReminder(userId, id) ? 1 : 0;
+                        sendJson(ex, 200, "{\"deleted\":" + rows + "}");
+                    }
+                    default -> sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
+                }
+            } catch (Exception e) {
+                sendJson(ex, 500, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
+            }
+        }
+    }
+
+    // ─── Search ──────────────────────────────────────────
+
+    /** Ranked search over categories and notes: GET ?q=words&limit=20 (at most 100). */
+    static class SearchHandler implements HttpHandler {
+        public void handle(HttpExchange ex) throws IOException {
+            if ("OPTIONS".equals(ex.getRequestMethod())) {
+                handleCors(ex);
+                return;
+            }
+            Integer userId = getUserId(ex);
+            if (userId == null) {
+                sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
+                return;
+            }
+            if (!"GET".equals(ex.getRequestMethod())) {
+                sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
+                return;
+            }
+            try {
+                Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
+                String query = q.get("q");
+                if (query == null || query.isBlank()) {
+                    sendJson(ex, 400, "{\"error\":\"q is required\"}");
+                    return;
+                }
+                int limit = Math.min(Integer.parseInt(q.getOrDefault("limit", "20")), MAX_SEARCH_RESULTS);
+                sendJson(ex, 200, expensesToJson(repo.searchText(userId, query, limit)));
+            } catch (Exception e) {
+                sendJson(ex, 500, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
+            }
+        }
+    }
+
+    // ─── Category Rules ──────────────────────────────────
+
+    static class RulesHandler implements HttpHandler {
+        public void handle(HttpExchange ex) throws IOException {
+            if ("OPTIONS".equals(ex.getRequestMethod())) {
+                handleCors(ex);
+                return;
+            }
+            Integer userId = getUserId(ex);
+            if (userId == null) {
+                sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
+                return;
+            }
+            try {
+                switch (ex.getRequestMethod()) {
+                    case "GET" -> {
+                        sendJson(ex, 200, rulesToJson(repo.getCategoryRules(userId)));
+                    }
+                    case "POST" -> {
+                        Map<String, String> body = parseJson(readBody(ex));
+                        String curr = body.getOrDefault("currency", Money.DEFAULT_CURRENCY);
+                        String min = body.get("minAmount");
+                        String max = body.get("maxAmount");
+                        String priority = body.get("priority");
+                        CategoryRule rule;
+                        try {
+                            CategoryRule.checkUserPattern(body.get("matchType"), body.get("pattern"));
+                            rule = new CategoryRule(0, body.get("matchType"), body.get("pattern"),
+                                    min != null && !min.isEmpty() ? Money.parse(min, curr) : null,
+                                    max != null && !max.isEmpty() ? Money.parse(max, curr) : null,
+                                    body.get("category"),
+                                    priority != null && !priority.isEmpty() ? Integer.parseInt(priority) : 100, 0);
+                        } catch (IllegalArgumentException e) {
+                            sendJson(ex, 400, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
+                            return;
+                        }
+                        CategoryRule added = repo.addCategoryRule(userId, rule);
+                        sendJson(ex, 201, "{\"message\":\"Rule added\",\"id\":" + added.getId() + "}");
+                    }
+                    case "DELETE" -> {
+                        Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
+                        int id = Integer.parseInt(q.get("id"));
+                        int rows = repo.deleteCategoryRule(userId, id) ? 1 : 0;
+                        sendJson(ex, 200, "{\"deleted\":" + rows + "}");
+                    }
+                    default -> sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
+                }
+            } catch (Exception e) {
+                sendJson(ex, 500, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
+            }
+        }
+    }
+
+    /**
+     * POST /api/rules/apply runs the user's rules over their existing expenses
+     * in the background and answers 202 at once; the number moved follows as
+     * a "rules" event. 409 while the user's previous run is unfinished.
+     */
+    static class ApplyRulesHandler implements HttpHandler {
+        public void handle(HttpExchange ex) throws IOException {
+            if ("OPTIONS".equals(ex.getRequestMethod())) {
+                handleCors(ex);
+                return;
+            }
+            Integer userId = getUserId(ex);
+            if (userId == null) {
+                sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
+                return;
+            }
+            if (!"POST".equals(ex.getRequestMethod())) {
+                sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
+                return;
+            }
+            if (!applyingRules.add(userId)) {
+                sendJson(ex, 409, "{\"error\":\"Rules are already being applied\"}");
+                return;
+            }
+            rulesPool.execute(() -> {
+                try {
+                    int moved = rules.recategorizeHistory(userId);
+                    events.publish(userId, "rules", "{\"recategorized\":" + moved + "}");
+                } catch (Exception e) {
+                    System.err.println("Applying rules for user " + userId + " failed: " + e.getMessage());
+                } finally {
+                    applyingRules.remove(userId);
+                }
+            });
+            sendJson(ex, 202, "{\"message\":\"Applying rules in the background\"}");
+        }
+    }
+
+    static String rulesToJson(List<CategoryRule> items) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < items.size(); i++) {
+            CategoryRule r = items.get(i);
+            if (i > 0)
+                sb.append(",");
+            Money bound = r.getMinAmount() != null ? r.getMinAmount() : r.getMaxAmount();
+            sb.append("{\"id\":").append(r.getId())
+                    .append(",\"matchType\":\"").append(r.getMatchType())
+                    .append("\",\"pattern\":")
+                    .append(r.getPattern() != null ? "\"" + esc(r.getPattern()) + "\"" : "null")
+                    .append(",\"minAmount\":");
+            if (r.getMinAmount() != null)
+                r.getMinAmount().appendTo(sb);
+            else
+                sb.append("null");
+            sb.append(",\"maxAmount\":");
+            if (r.getMaxAmount() != null)
+                r.getMaxAmount().appendTo(sb);
+            else
+                sb.append("null");
+            sb.append(",\"currency\":").append(bound != null ? "\"" + bound.getCurrency() + "\"" : "null")
+                    .append(",\"category\":\"").append(esc(r.getCategory()))
+                    .append("\",\"priority\":").append(r.getPriority())
+                    .append(",\"hits\":").append(r.getHits()).append("}");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    // ─── Change Feed ─────────────────────────────────────
+
+    /**
+     * GET /api/changes?since=V returns what changed in the user's expenses,
+     * budgets, recurring items and reminders after version V, as upserted rows
+     * and deleted ids per entity, plus the version to ask from next. Without
+     * since, or when the log cannot bridge the gap, the answer is
+     * {@code {"version":V,"reset":true}}: reload the lists, then poll from V.
+     */
+    static class ChangesHandler implements HttpHandler {
+        private static final int PAGE = 1000;
+
+        public void handle(HttpExchange ex) throws IOException {
+            if ("OPTIONS".equals(ex.getRequestMethod())) {
+                handleCors(ex);
+                return;
+            }
+            Integer userId = getUserId(ex);
+            if (userId == null) {
+                sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
+                return;
+            }
+            try {
+                Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
+                long since = Long.parseLong(q.getOrDefault("since", String.valueOf(Long.MAX_VALUE)));
+                // Read first: everything up to it has committed by the time the changes are read
+                long settled = repo.getSettledChangeVersion(userId);
+                List<ChangeLog.Change> changes = repo.getChanges(userId, since, PAGE);
+                if (!changes.isEmpty() && changes.get(0).entity().equals(ChangeLog.RESET)) {
+                    long version = Math.min(changes.get(changes.size() - 1).version(), settled);
+                    sendJson(ex, 200, "{\"version\":" + version + ",\"reset\":true}");
+                    return;
+                }
+                changes = changes.stream().filter(c -> c.version() <= settled).toList();
+                long version = changes.isEmpty() ? since : changes.get(changes.size() - 1).version();
+                sendJson(ex, 200, changesToJson(userId, changes, version, changes.size() == PAGE));
+            } catch (Exception e) {
+                sendJson(ex, 500, "{\"error\":\"" + esc(e.getMessage()) + "\"}");
+            }
+        }
+    }
+
+    /** Collapses the changes to the latest state per row and renders them with the current rows. */
+    private static String changesToJson(int userId, List<ChangeLog.Change> changes, long version, boolean more)
+            throws SQLException {
+        Map<String, Map<String, Character>> firstOps = new LinkedHashMap<>();
+        Map<String, Map<String, Character>> lastOps = new LinkedHashMap<>();
+        for (ChangeLog.Change c : changes) {
+            firstOps.computeIfAbsent(c.entity(), k -> new LinkedHashMap<>()).putIfAbsent(c.key(), c.op());
+            lastOps.computeIfAbsent(c.entity(), k -> new LinkedHashMap<>()).put(c.key(), c.op());
+        }
+        Map<String, Set<String>> upserted = new HashMap<>();
+        Map<String, Set<String>> deleted = new HashMap<>();
+        lastOps.forEach((entity, ops) -> ops.forEach((key, op) -> {
+            // Created and deleted since the client last looked: it never had the row
+            if (op == ChangeLog.DELETE && firstOps.get(entity).get(key) == ChangeLog.INSERT)
+                return;
+            (op == ChangeLog.DELETE ? deleted : upserted).computeIfAbsent(entity, k -> new LinkedHashSet<>()).add(key);
+        }));
+
+        StringBuilder sb = new StringBuilder("{\"version\":").append(version).append(",\"reset\":false,\"more\":")
+                .append(more);
+        Set<String> ids = upserted.getOrDefault(ChangeLog.EXPENSE, Set.of());
+        List<Expense> expenses = ids.isEmpty() ? List.of()
+                : repo.getExpensesById(userId, ids.stream().map(Integer::valueOf).toList());
+        appendChanges(sb, "expenses", expensesToJson(expenses), deleted.get(ChangeLog.EXPENSE), false);
+
+        ids = upserted.getOrDefault(ChangeLog.BUDGET, Set.of());
+        StringBuilder budgets = new StringBuilder("[");
+        if (!ids.isEmpty()) {
+            for (var b : repo.getBudgets(userId).entrySet()) {
+                if (!ids.contains(b.getKey()))
+                    continue;
+                if (budgets.length() > 1)
+                    budgets.append(",");
+                budgets.append("{\"category\":\"").append(esc(b.getKey())).append("\",\"limit\":");
+                b.getValue().appendTo(budgets).append("}");
+            }
+        }
+        appendChanges(sb, "budgets", budgets.append("]").toString(), deleted.get(ChangeLog.BUDGET), true);
+
+        Set<String> recurringIds = upserted.getOrDefault(ChangeLog.RECURRING, Set.of());
+        List<RecurringExpense> recurring = recurringIds.isEmpty() ? List.of()
+                : repo.getRecurringExpenses(userId).stream()
+                        .filter(r -> recurringIds.contains(String.valueOf(r.getId()))).toList();
+        appendChanges(sb, "recurring", recurringToJson(recurring), deleted.get(ChangeLog.RECURRING), false);
+
+        Set<String> reminderIds = upserted.getOrDefault(ChangeLog.REMINDER, Set.of());
+        List<Reminder> reminders = reminderIds.isEmpty() ? List.of()
+                : repo.getReminders(userId).stream()
+                        .filter(r -> reminderIds.contains(String.valueOf(r.getId()))).toList();
+        appendChanges(sb, "reminders", remindersToJson(reminders), deleted.get(ChangeLog.REMINDER), false);
+        return sb.append("}").toString();
+    }
+
+    private static void appendChanges(StringBuilder sb, String name, String upsertedJson, Set<String> deleted,
+            boolean quoteKeys) {
+        sb.append(",\"").append(name).append("\":{\"upserted\":").append(upsertedJson).append(",\"deleted\":[");
+        if (deleted != null) {
+            int i = 0;
+            for (String key : deleted) {
+                if (i++ > 0)
+                    sb.append(",");
+                sb.append(quoteKeys ? "\"" + esc(key) + "\"" : key);
+            }
+        }
+        sb.append("]}");
+    }
+
+    // ─── Batch Handler ──────────────────────────────────
+
+    /**
+     * Runs several GETs in one round trip. The body is
+     * {@code {"requests":["/api/trends?months=7","/api/categories"]}} and the
+     * answer is {@code {"responses":[{"path":...,"status":200,"body":...}]}}
+     * in the same order. Sub-requests run concurrently, each with the
+     * caller's token, and still go through the single-flight filter.
+     */
+    static class BatchHandler implements HttpHandler {
+        public void handle(HttpExchange ex) throws IOException {
+            if ("OPTIONS".equals(ex.getRequestMethod())) {
+                handleCors(ex);
+                return;
+            }
+            if (!"POST".equals(ex.getRequestMethod())) {
+                sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
+                return;
+            }
+            if (getUserId(ex) == null) {
+                sendJson(ex, 401, "{\"error\":\"Unauthorized\"}");
+                return;
+            }
+            List<String> paths = parseBatch(readBody(ex));
+            if (paths.isEmpty() || paths.size() > MAX_BATCH) {
+                sendJson(ex, 400, "{\"error\":\"Expected 1 to " + MAX_BATCH + " request paths\"}");
+                return;
+            }
+            List<Future<String>> results = new ArrayList<>();
+            for (String path : paths)
+                results.add(batchPool.submit(() -> runBatched(ex, path)));
+            StringBuilder sb = new StringBuilder("{\"responses\":[");
+            for (int i = 0; i < results.size(); i++) {
+                if (i > 0)
+                    sb.append(",");
+                try {
+                    sb.append(results.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    sendJson(ex, 503, "{\"error\":\"Interrupted\"}");
+                    return;
+                } catch (ExecutionException e) {
+                    sb.append(batchEntry(paths.get(i), 500,
+                            "{\"error\":\"" + esc(String.valueOf(e.getCause().getMessage())) + "\"}"));
+                }
+            }
+            sendJson(ex, 200, sb.append("]}").toString());
+        }
+    }
+
+    /** Request paths from a /api/batch body: {"requests":[...]} or a bare array of strings. */
+    static List<String> parseBatch(String json) {
+        List<String> paths = new ArrayList<>();
+        int start = json.indexOf('[');
+        int end = json.lastIndexOf(']');
+        if (start < 0 || end < start)
+            return paths;
+        Matcher m = JSON_STRING.matcher(json.substring(start + 1, end));
+        while (m.find())
+            paths.add(m.group(1).replace("\\/", "/").replace("\\\"", "\"").replace("\\\\", "\\"));
+        return paths;
+    }
+
+    private static String runBatched(HttpExchange outer, String path) throws IOException {
+        URI uri;
+        try {
+            uri = new URI(path);
+        } catch (URISyntaxException e) {
+            return batchEntry(path, 400, "{\"error\":\"Malformed path\"}");
+        }
+        HttpHandler handler = batchable.get(uri.getPath());
+        if (handler == null || uri.isAbsolute())
+            return batchEntry(path, 404, "{\"error\":\"Not available in a batch\"}");
+        BatchExchange sub = new BatchExchange(outer, uri);
+        new Filter.Chain(List.of(singleFlight), handler).doFilter(sub);
+        String body = sub.bodyText();
+        return batchEntry(path, sub.getResponseCode(), body.isEmpty() ? "null" : body);
+    }
+
+    private static String batchEntry(String path, int status, String body) {
+        return "{\"path\":\"" + esc(path) + "\",\"status\":" + status + ",\"body\":" + body + "}";
+    }
+
+    // ─── Metrics Handler ────────────────────────────────
+
+    /** Top-N SQL statements by cumulative time. Only served to loopback clients. */
+    static class MetricsHandler implements HttpHandler {
+        public void handle(HttpExchange ex) throws IOException {
+            if ("OPTIONS".equals(ex.getRequestMethod())) {
+                handleCors(ex);
+                return;
+            }
+            if (!ex.getRemoteAddress().getAddress().isLoopbackAddress()) {
+                sendJson(ex, 403, "{\"error\":\"Metrics are only available from localhost\"}");
+                return;
+            }
+            try {
+                switch (ex.getRequestMethod()) {
+                    case "GET" -> {
+                        Map<String, String> q = parseQuery(ex.getRequestURI().getQuery());
+                        int top;
+                        try {
+                            top = Math.max(1, Math.min(MAX_METRICS_TOP, Integer.parseInt(q.getOrDefault("top", "20"))));
+                        } catch (NumberFormatException e) {
+                            sendJson(ex, 400, "{\"error\":\"top must be a number\"}");
+                            return;
+                        }
+                        List<QueryMetrics.StatementStats> stats = QueryMetrics.topStatements(top);
+                        StringBuilder sb = new StringBuilder("{\"slowQueryThresholdMs\":")
+                                .append(QueryMetrics.getSlowQueryThresholdMs()).append(",\"coalescedRequests\":")
+                                .append(singleFlight.coalescedCount());
+                        if (journal != null)
+                            sb.append(",\"journal\":{\"lastSeq\":").append(journal.lastSeq()).append(",\"appends\":")
+                                    .append(journal.appendCount()).append(",\"syncs\":").append(journal.syncCount())
+                                    .append("}");
+                        if (ingest != null)
+                            sb.append(",\"ingest\":{\"rows\":").append(ingest.rowCount()).append(",\"commits\":")
+                                    .append(ingest.commitCount()).append("}");
+                        sb.append(",\"categorizedByRules\":").append(rules.categorizedCount());
+                        if (search != null)
+                            sb.append(",\"searchIndexedUsers\":").append(search.residentUsers());
+                        sb.append(",\"statements\":[");
+                        for (int i = 0; i < stats.size(); i++) {
+                            var st = stats.get(i);
+                            if (i > 0)
+                                sb.append(",");
+                            long n = Math.max(st.getExecutions(), 1);
+                            sb.append(String.format(Locale.ROOT,
+                                    "{\"sql\":\"%s\",\"executions\":%d,\"errors\":%d,\"totalMs\":%.3f,\"avgMs\":%.3f,\"maxMs\":%.3f,\"rows\":%d,\"bytes\":%d}",
+                                    esc(st.getSql()), st.getExecutions(), st.getErrors(), st.getTotalNanos() / 1e6,
+                                    st.getTotalNanos() / 1e6 / n, st.getMaxNanos() / 1e6, st.getRows(), st.getBytes()));
                         }
+                        sb.append("]}");
+                        sendJson(ex, 200, sb.toString());
+                    }
+                    case "DELETE" -> {
+                        QueryMetrics.reset();
+                        sendJson(ex, 200, "{\"message\":\"Metrics reset\"}");
                     }
                     default -> sendJson(ex, 405, "{\"error\":\"Method not allowed\"}");
                 }
@@ -0,0 +1,148 @@
+package api;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Coalesces identical concurrent GETs: while a request for the same user,
+ * path and query is already running, later ones wait for it and get a copy
+ * of its response instead of querying the database again. The web app
+ * fires its analytics calls in parallel, and several tabs often poll the
+ * same dashboard.
+ * <p>
+ * Any other method from the user bumps that user's generation before and
+ * after it runs. A GET issued after a write therefore never joins a flight
+ * that started before the write finished.
+ */
+final class SingleFlightFilter extends Filter {
+
+    private record Response(int code, Headers headers, byte[] body) {
+    }
+
+    private final Function<HttpExchange, Integer> users;
+    private final Map<String, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    SingleFlightFilter(Function<HttpExchange, Integer> users) {
+        this.users = users;
+    }
+
+    /** Requests answered from another request's result since startup. */
+    long coalescedCount() {
+        return coalesced.get();
+    }
+
+    @Override
+    public String description() {
+        return "Coalesces identical in-flight GET requests per user";
+    }
+
+    @Override
+    public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+        Integer userId = users.apply(ex);
+        if (userId == null || "OPTIONS".equals(ex.getRequestMethod())) {
+            chain.doFilter(ex);
+            return;
+        }
+        AtomicLong generation = generations.computeIfAbsent(userId, id -> new AtomicLong());
+        if (!"GET".equals(ex.getRequestMethod())) {
+            generation.incrementAndGet();
+            try {
+                chain.doFilter(ex);
+            } finally {
+                generation.incrementAndGet();
+            }
+            return;
+        }
+
+        String key = userId + "#" + generation.get() + " " + ex.getRequestURI();
+        CompletableFuture<Response> mine = new CompletableFuture<>();
+        CompletableFuture<Response> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            replay(ex, await(running));
+            return;
+        }
+        try {
+            Capture capture = new Capture(ex.getResponseBody());
+            ex.setStreams(null, capture);
+            chain.doFilter(ex);
+            mine.complete(new Response(ex.getResponseCode(), copy(ex.getResponseHeaders()), capture.bytes()));
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static Response await(CompletableFuture<Response> running) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an identical request", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Identical in-flight request failed", e.getCause());
+        }
+    }
+
+    private static void replay(HttpExchange ex, Response response) throws IOException {
+        for (Map.Entry<String, List<String>> header : response.headers().entrySet())
+            ex.getResponseHeaders().put(header.getKey(), header.getValue());
+        ex.sendResponseHeaders(response.code(), response.body().length == 0 ? -1 : response.body().length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(response.body());
+        }
+    }
+
+    private static Headers copy(Headers headers) {
+        Headers copy = new Headers();
+        headers.forEach((name, values) -> {
+            // Framing headers are recomputed by sendResponseHeaders for each copy
+            if (!name.equalsIgnoreCase("Content-length") && !name.equalsIgnoreCase("Date")
+                    && !name.equalsIgnoreCase("Transfer-encoding"))
+                copy.put(name, List.copyOf(values));
+        });
+        return copy;
+    }
+
+    /** Passes the response through while keeping a copy for waiting requests. */
+    private static final class Capture extends FilterOutputStream {
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Capture(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copy.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy.write(b, off, len);
+        }
+
+        byte[] bytes() {
+            return copy.toByteArray();
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package cli;
 
 import model.Expense;
+import model.Money;
+import service.ChangeLog;
 import service.DatabaseManager;
+import service.ExpenseArchive;
 import service.ExpenseService;
+import service.JdbcExpenseRepository;
 import security.SecurityUtils;
 
 import java.io.BufferedReader;
@@ -11,12 +15,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
@@ -39,7 +41,11 @@ public class ExpenseTracker {
     private static final int PREDICTION_MONTHS = 3;
 
     private static String currentUser = null;
-    private static BigDecimal monthlyBudget = BigDecimal.ZERO;
+    private static int currentUserId = 0;
+    private static Money monthlyBudget = Money.ZERO;
+    /** Running total for the budget check, loaded on first use and again when the month changes. */
+    private static Money spentThisMonth = null;
+    private static YearMonth spentMonth = null;
 
     public static void main(String[] args) {
         try (Scanner sc = new Scanner(System.in)) {
@@ -51,7 +57,7 @@ public class ExpenseTracker {
             }
             loadBudget();
 
-            try (Connection conn = DatabaseManager.getConnection()) {
+            try (Connection conn = DatabaseManager.getConnection(currentUserId)) {
                 System.out.println("Connected to Expense Tracker Database.");
                 applyRecurringExpenses(conn);
                 showDashboard(conn);
@@ -95,8 +101,8 @@ public class ExpenseTracker {
         System.out.print("Password: ");
         String password = sc.nextLine();
 
-        try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "SELECT password_hash, salt FROM users WHERE username = ?";
+        try (Connection conn = DatabaseManager.getConnection(username)) {
+            String sql = "SELECT id, password_hash, salt FROM users WHERE username = ?";
             try (PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, username);
                 ResultSet rs = ps.executeQuery();
@@ -105,6 +111,7 @@ public class ExpenseTracker {
                     String salt = rs.getString("salt");
                     if (SecurityUtils.verifyPassword(password, salt, hash)) {
                         currentUser = username;
+                        currentUserId = rs.getInt("id");
                         System.out.println("Login successful!");
                         return true;
                     }
@@ -125,24 +132,20 @@ public class ExpenseTracker {
         String salt = SecurityUtils.generateSalt();
         String hash = SecurityUtils.hashPassword(password, salt);
 
-        try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "INSERT INTO users (username, password_hash, salt) VALUES (?, ?, ?)";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, username);
-                ps.setString(2, hash);
-                ps.setString(3, salt);
-                ps.executeUpdate();
-                currentUser = username;
-                monthlyBudget = BigDecimal.ZERO;
-                saveBudget();
-                return true;
-            }
-        } catch (SQLException e) {
-            if (e.getErrorCode() == 1062) {
+        try {
+            // The repository reserves the id in the shard directory when sharding is on
+            int userId = new JdbcExpenseRepository().createUser(username, hash, salt);
+            if (userId == 0) {
                 System.out.println("Username already taken.");
-            } else {
-                System.err.println("Signup error: " + e.getMessage());
+                return false;
             }
+            currentUserId = userId;
+            currentUser = username;
+            monthlyBudget = Money.ZERO;
+            saveBudget();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Signup error: " + e.getMessage());
             return false;
         }
     }
@@ -185,8 +188,10 @@ public class ExpenseTracker {
         List<String> categories = ExpenseService.getCategories(conn);
         System.out.println("\nAvailable Categories: " + String.join(", ", categories));
         String category = readNonEmptyString(sc, "Enter category (or a new one): ");
-        BigDecimal amount = readPositiveBigDecimal(sc, "Enter amount: ");
-        if (addExpenseInternal(conn, category, amount, LocalDateTime.now())) {
+        Money amount = readPositiveMoney(sc, "Enter amount: ");
+        System.out.print("Enter optional notes, e.g. the shop (press Enter to skip): ");
+        String notes = sc.nextLine().trim();
+        if (addExpenseInternal(conn, category, amount, LocalDateTime.now(), notes.isEmpty() ? null : notes)) {
             // Check if it's a new category and add it automatically if so?
             // For now, let's just add it if it doesn't exist to keep it simple.
             if (!categories.contains(category)) {
@@ -199,16 +204,13 @@ public class ExpenseTracker {
         }
     }
 
-    private static boolean addExpenseInternal(Connection conn, String category, BigDecimal amount, LocalDateTime date)
-            throws SQLException {
-        String sql = "INSERT INTO expenses (username, category, amount, date) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
-            ps.setString(2, category);
-            ps.setBigDecimal(3, amount);
-            ps.setTimestamp(4, Timestamp.valueOf(date));
-            return ps.executeUpdate() > 0;
-        }
+    private static boolean addExpenseInternal(Connection conn, String category, Money amount, LocalDateTime date,
+            String notes) throws SQLException {
+        // Through the service so the insert reaches the change log too
+        boolean added = ExpenseService.addExpense(conn, currentUserId, category, amount, null, date, notes) > 0;
+        if (added && spentThisMonth != null && YearMonth.from(date).equals(spentMonth))
+            spentThisMonth = spentThisMonth.plus(amount);
+        return added;
     }
 
     private static void exportToCSV(Connection conn, Scanner sc) throws SQLException {
@@ -216,22 +218,25 @@ public class ExpenseTracker {
         if (!filename.toLowerCase().endsWith(".csv"))
             filename += ".csv";
 
-        String sql = "SELECT id, category, amount, date FROM expenses WHERE username = ? ORDER BY date DESC";
+        String sql = "SELECT e.id, c.name AS category, e.amount, e.date, e.notes FROM " + ExpenseArchive.ALL_EXPENSES
+                + " JOIN categories c ON c.id = e.category_id WHERE e.user_id = ? ORDER BY e.date DESC";
         try (PreparedStatement ps = conn.prepareStatement(sql);
                 BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            ps.setString(1, currentUser);
+            ps.setInt(1, currentUserId);
             ResultSet rs = ps.executeQuery();
 
-            writer.write("ID,Category,Amount,Date");
+            writer.write("ID,Category,Amount,Date,Notes");
             writer.newLine();
 
             int count = 0;
             while (rs.next()) {
-                writer.write(String.format("%d,%s,%.2f,%s",
+                String notes = rs.getString("notes");
+                writer.write(String.format("%d,%s,%s,%s,%s",
                         rs.getInt("id"),
                         rs.getString("category"),
-                        rs.getBigDecimal("amount"),
-                        rs.getTimestamp("date").toString()));
+                        Money.fromBigDecimal(rs.getBigDecimal("amount")).toPlainString(),
+                        rs.getTimestamp("date").toString(),
+                        notes == null ? "" : "\"" + notes.replace("\"", "\"\"") + "\""));
                 writer.newLine();
                 count++;
             }
@@ -242,24 +247,26 @@ public class ExpenseTracker {
     }
 
     private static void viewExpenses(Connection conn) throws SQLException {
-        String sql = "SELECT id, category, amount, date FROM expenses WHERE username = ? ORDER BY date DESC";
+        String sql = "SELECT e.id, c.name AS category, e.amount, e.date, e.notes FROM " + ExpenseArchive.ALL_EXPENSES
+                + " JOIN categories c ON c.id = e.category_id WHERE e.user_id = ? ORDER BY e.date DESC";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
+            ps.setInt(1, currentUserId);
             ResultSet rs = ps.executeQuery();
 
-            String[] headers = { "ID", "Category", "Amount", "Date" };
+            String[] headers = { "ID", "Category", "Amount", "Date", "Notes" };
             List<String[]> rows = new ArrayList<>();
-            BigDecimal total = BigDecimal.ZERO;
+            Money total = Money.ZERO;
 
             while (rs.next()) {
-                BigDecimal amt = rs.getBigDecimal("amount");
-                total = total.add(amt);
+                Money amt = Money.fromBigDecimal(rs.getBigDecimal("amount"));
+                total = total.plus(amt);
                 rows.add(new String[] {
                         String.valueOf(rs.getInt("id")),
                         rs.getString("category"),
-                        String.format("Rs. %.2f", amt),
+                        "Rs. " + amt.toPlainString(),
                         rs.getTimestamp("date").toLocalDateTime()
-                                .format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm"))
+                                .format(DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm")),
+                        rs.getString("notes") != null ? rs.getString("notes") : ""
                 });
             }
 
@@ -268,7 +275,7 @@ public class ExpenseTracker {
             } else {
                 System.out.println("\n--- Your Expenses ---");
                 TableUtils.printTable(headers, rows);
-                System.out.printf("Total Expenses: Rs. %.2f\n", total);
+                System.out.printf("Total Expenses: Rs. %s\n", total.toPlainString());
             }
         }
     }
@@ -281,7 +288,7 @@ public class ExpenseTracker {
         YearMonth ym = YearMonth.of(year, month);
         System.out.printf("\n--- Monthly Report for %s ---\n", ym.format(YM_FMT));
 
-        Map<String, BigDecimal> breakdown = ExpenseService.getCategoryBreakdown(conn, currentUser, month.getValue(),
+        Map<String, Money> breakdown = ExpenseService.getCategoryBreakdown(conn, currentUserId, month.getValue(),
                 year);
 
         if (breakdown.isEmpty()) {
@@ -289,21 +296,21 @@ public class ExpenseTracker {
         } else {
             String[] headers = { "Category", "Amount" };
             List<String[]> rows = new ArrayList<>();
-            BigDecimal monthlyTotal = BigDecimal.ZERO;
+            Money monthlyTotal = Money.ZERO;
 
-            for (Map.Entry<String, BigDecimal> entry : breakdown.entrySet()) {
-                monthlyTotal = monthlyTotal.add(entry.getValue());
-                rows.add(new String[] { entry.getKey(), String.format("Rs. %.2f", entry.getValue()) });
+            for (Map.Entry<String, Money> entry : breakdown.entrySet()) {
+                monthlyTotal = monthlyTotal.plus(entry.getValue());
+                rows.add(new String[] { entry.getKey(), "Rs. " + entry.getValue().toPlainString() });
             }
 
             TableUtils.printTable(headers, rows);
-            System.out.printf("Total Spent:           Rs. %.2f\n", monthlyTotal);
+            System.out.printf("Total Spent:           Rs. %s\n", monthlyTotal.toPlainString());
 
-            if (monthlyBudget.compareTo(BigDecimal.ZERO) > 0) {
-                System.out.printf("Budget Set:            Rs. %.2f\n", monthlyBudget);
-                BigDecimal rem = monthlyBudget.subtract(monthlyTotal);
-                System.out.printf("Remaining/Over Budget: Rs. %.2f %s\n", rem.abs(),
-                        (rem.compareTo(BigDecimal.ZERO) < 0 ? "(Over!)" : ""));
+            if (monthlyBudget.isPositive()) {
+                System.out.printf("Budget Set:            Rs. %s\n", monthlyBudget.toPlainString());
+                Money rem = monthlyBudget.minus(monthlyTotal);
+                System.out.printf("Remaining/Over Budget: Rs. %s %s\n", rem.abs().toPlainString(),
+                        (rem.signum() < 0 ? "(Over!)" : ""));
             } else {
                 System.out.println("Budget Set:            Not Set");
             }
@@ -318,13 +325,13 @@ public class ExpenseTracker {
             return;
         }
 
-        String sqlCheck = "SELECT COUNT(*) FROM " + tableName + " WHERE id = ? AND username = ?";
-        String sqlDelete = "DELETE FROM " + tableName + " WHERE id = ? AND username = ?";
+        String sqlCheck = "SELECT COUNT(*) FROM " + tableName + " WHERE id = ? AND user_id = ?";
+        String sqlDelete = "DELETE FROM " + tableName + " WHERE id = ? AND user_id = ?";
         boolean ownsItem = false;
 
         try (PreparedStatement psCheck = conn.prepareStatement(sqlCheck)) {
             psCheck.setInt(1, idToDelete);
-            psCheck.setString(2, currentUser);
+            psCheck.setInt(2, currentUserId);
             ResultSet rs = psCheck.executeQuery();
             if (rs.next() && rs.getInt(1) > 0)
                 ownsItem = true;
@@ -337,9 +344,12 @@ public class ExpenseTracker {
 
         try (PreparedStatement psDelete = conn.prepareStatement(sqlDelete)) {
             psDelete.setInt(1, idToDelete);
-            psDelete.setString(2, currentUser);
+            psDelete.setInt(2, currentUserId);
             int rowsAffected = psDelete.executeUpdate();
             if (rowsAffected > 0) {
+                ChangeLog.record(conn, currentUserId,
+                        tableName.equals("reminders") ? ChangeLog.REMINDER : ChangeLog.RECURRING, idToDelete,
+                        ChangeLog.DELETE);
                 System.out.println(itemType + " ID " + idToDelete + " deleted successfully.");
             } else {
                 System.err.println("Failed to delete " + itemType.toLowerCase() + " ID " + idToDelete + ".");
@@ -349,29 +359,46 @@ public class ExpenseTracker {
 
     private static void deleteExpense(Connection conn, Scanner sc) throws SQLException {
         viewExpenses(conn);
-        deleteItem(conn, sc, "Expense", "expenses", "viewExpenses");
+        int idToDelete = readInteger(sc, "\nEnter Expense ID to delete (0 to cancel): ", 0, Integer.MAX_VALUE);
+        if (idToDelete == 0) {
+            System.out.println("Deletion cancelled.");
+            return;
+        }
+        // The list includes archived years, so go through the service, which checks both tables
+        Expense removed = ExpenseService.deleteExpense(conn, currentUserId, idToDelete);
+        if (removed != null) {
+            if (spentThisMonth != null && YearMonth.from(removed.getDate()).equals(spentMonth))
+                spentThisMonth = spentThisMonth.minus(removed.getAmount());
+            System.out.println("Expense ID " + idToDelete + " deleted successfully.");
+        } else {
+            System.out.println("Expense ID " + idToDelete + " not found or does not belong to you.");
+        }
     }
 
     private static void setMonthlyBudget(Scanner sc) {
-        monthlyBudget = readNonNegativeBigDecimal(sc, "Enter new monthly budget (0 to unset): ");
+        monthlyBudget = readNonNegativeMoney(sc, "Enter new monthly budget (0 to unset): ");
         System.out.printf("Monthly budget %s.\n",
-                (monthlyBudget.compareTo(BigDecimal.ZERO) > 0 ? "set to Rs. " + monthlyBudget.toPlainString()
+                (monthlyBudget.isPositive() ? "set to Rs. " + monthlyBudget.toPlainString()
                         : "unset"));
         saveBudget();
         System.out.println("Budget saved.");
     }
 
     private static void checkBudgetExceeded(Connection conn) throws SQLException {
-        if (monthlyBudget.compareTo(BigDecimal.ZERO) <= 0)
+        if (!monthlyBudget.isPositive())
             return;
         YearMonth currentMonth = YearMonth.now();
-        BigDecimal totalThisMonth = ExpenseService.getTotalExpensesForMonth(conn, currentUser,
-                currentMonth.getMonthValue(), currentMonth.getYear());
+        if (spentThisMonth == null || !currentMonth.equals(spentMonth)) {
+            spentThisMonth = ExpenseService.getTotalExpensesForMonth(conn, currentUserId,
+                    currentMonth.getMonthValue(), currentMonth.getYear());
+            spentMonth = currentMonth;
+        }
+        Money totalThisMonth = spentThisMonth;
         if (totalThisMonth.compareTo(monthlyBudget) > 0) {
             System.out.println("\n\uD83D\uDEA8 BUDGET WARNING \uD83D\uDEA8");
-            System.out.printf(" You have exceeded your monthly budget of Rs. %.2f!\n", monthlyBudget);
-            System.out.printf(" Amount spent this month: Rs. %.2f (Over by Rs. %.2f)\n",
-                    totalThisMonth, totalThisMonth.subtract(monthlyBudget));
+            System.out.printf(" You have exceeded your monthly budget of Rs. %s!\n", monthlyBudget.toPlainString());
+            System.out.printf(" Amount spent this month: Rs. %s (Over by Rs. %s)\n",
+                    totalThisMonth.toPlainString(), totalThisMonth.minus(monthlyBudget).toPlainString());
             System.out.println("-".repeat(40));
         }
     }
@@ -395,41 +422,43 @@ public class ExpenseTracker {
 
     private static void loadBudget() {
         if (currentUser == null) {
-            monthlyBudget = BigDecimal.ZERO;
+            monthlyBudget = Money.ZERO;
             return;
         }
         File f = new File(getBudgetFilename());
         if (!f.exists()) {
-            monthlyBudget = BigDecimal.ZERO;
+            monthlyBudget = Money.ZERO;
             saveBudget();
             return;
         }
         try (BufferedReader r = new BufferedReader(new FileReader(f))) {
             String line = r.readLine();
-            monthlyBudget = (line != null && !line.trim().isEmpty()) ? new BigDecimal(line.trim()) : BigDecimal.ZERO;
+            monthlyBudget = (line != null && !line.trim().isEmpty()) ? Money.parse(line) : Money.ZERO;
         } catch (IOException | NumberFormatException | IllegalStateException e) {
             System.err.println("Error loading/parsing budget file '" + getBudgetFilename() + "': " + e.getMessage()
                     + ". Setting budget to 0.");
-            monthlyBudget = BigDecimal.ZERO;
+            monthlyBudget = Money.ZERO;
         }
     }
 
     private static void applyRecurringExpenses(Connection conn) throws SQLException {
         System.out.println("Checking for due recurring expenses...");
-        String sqlSelect = "SELECT id, description, amount, category, interval_type, start_date, last_applied_date FROM recurring_expenses WHERE username = ?";
+        String sqlSelect = "SELECT r.id, r.description, r.amount, c.name AS category, r.interval_type, r.start_date, r.last_applied_date "
+                + "FROM recurring_expenses r JOIN categories c ON c.id = r.category_id WHERE r.user_id = ?";
         String sqlUpdate = "UPDATE recurring_expenses SET last_applied_date = ? WHERE id = ?";
         LocalDate today = LocalDate.now();
         int appliedCount = 0;
+        List<Integer> appliedIds = new ArrayList<>();
 
         try (PreparedStatement psSelect = conn.prepareStatement(sqlSelect);
                 PreparedStatement psUpdate = conn.prepareStatement(sqlUpdate)) {
 
-            psSelect.setString(1, currentUser);
+            psSelect.setInt(1, currentUserId);
             ResultSet rs = psSelect.executeQuery();
 
             while (rs.next()) {
                 int id = rs.getInt("id");
-                BigDecimal amount = rs.getBigDecimal("amount");
+                Money amount = Money.fromBigDecimal(rs.getBigDecimal("amount"));
                 String category = rs.getString("category");
                 String intervalType = rs.getString("interval_type");
                 LocalDate startDate = rs.getDate("start_date").toLocalDate();
@@ -439,12 +468,14 @@ public class ExpenseTracker {
                 LocalDate nextDueDate = calculateNextDueDate(startDate, lastAppliedDate, intervalType);
 
                 if (nextDueDate != null && !nextDueDate.isAfter(today)) {
-                    System.out.printf("Applying recurring expense: %s (Rs. %.2f, %s)\n", rs.getString("description"),
-                            amount, category);
-                    if (addExpenseInternal(conn, category, amount, today.atStartOfDay())) {
+                    System.out.printf("Applying recurring expense: %s (Rs. %s, %s)\n", rs.getString("description"),
+                            amount.toPlainString(), category);
+                    if (addExpenseInternal(conn, category, amount, today.atStartOfDay(),
+                            rs.getString("description"))) {
                         psUpdate.setDate(1, java.sql.Date.valueOf(today));
                         psUpdate.setInt(2, id);
                         psUpdate.addBatch();
+                        appliedIds.add(id);
                         appliedCount++;
                     } else {
                         System.err.printf("Failed to add recurring expense entry for ID %d\n", id);
@@ -454,6 +485,8 @@ public class ExpenseTracker {
             rs.close();
             if (appliedCount > 0) {
                 psUpdate.executeBatch();
+                for (int id : appliedIds)
+                    ChangeLog.record(conn, currentUserId, ChangeLog.RECURRING, id, ChangeLog.UPDATE);
             }
         }
         if (appliedCount > 0) {
@@ -504,14 +537,15 @@ public class ExpenseTracker {
     }
 
     private static void viewRecurringExpenses(Connection conn) throws SQLException {
-        String sql = "SELECT id, description, amount, category, interval_type, start_date, last_applied_date FROM recurring_expenses WHERE username = ? ORDER BY start_date";
+        String sql = "SELECT r.id, r.description, r.amount, c.name AS category, r.interval_type, r.start_date, r.last_applied_date "
+                + "FROM recurring_expenses r JOIN categories c ON c.id = r.category_id WHERE r.user_id = ? ORDER BY r.start_date";
         System.out.println("\n--- Your Recurring Expenses ---");
 
         String[] headers = { "ID", "Description", "Amount", "Category", "Interval", "Start Date", "Last Applied" };
         List<String[]> rows = new ArrayList<>();
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
+            ps.setInt(1, currentUserId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
                 LocalDate lastApplied = rs.getDate("last_applied_date") == null ? null
@@ -519,7 +553,7 @@ public class ExpenseTracker {
                 rows.add(new String[] {
                         String.valueOf(rs.getInt("id")),
                         rs.getString("description"),
-                        String.format("Rs. %.2f", rs.getBigDecimal("amount")),
+                        "Rs. " + Money.fromBigDecimal(rs.getBigDecimal("amount")).toPlainString(),
                         rs.getString("category"),
                         rs.getString("interval_type"),
                         rs.getDate("start_date").toLocalDate().format(DATE_ONLY_FMT),
@@ -538,24 +572,16 @@ public class ExpenseTracker {
     private static void addRecurringExpense(Connection conn, Scanner sc) throws SQLException {
         System.out.println("\n--- Add New Recurring Expense ---");
         String description = readNonEmptyString(sc, "Enter description: ");
-        BigDecimal amount = readPositiveBigDecimal(sc, "Enter amount: ");
+        Money amount = readPositiveMoney(sc, "Enter amount: ");
         String category = readNonEmptyString(sc, "Enter category: ");
         String interval = readIntervalType(sc);
         LocalDate startDate = readLocalDate(sc, "Enter start date (yyyy-MM-dd): ");
 
-        String sql = "INSERT INTO recurring_expenses (username, description, amount, category, interval_type, start_date) VALUES (?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
-            ps.setString(2, description);
-            ps.setBigDecimal(3, amount);
-            ps.setString(4, category);
-            ps.setString(5, interval);
-            ps.setDate(6, java.sql.Date.valueOf(startDate));
-            if (ps.executeUpdate() > 0)
-                System.out.println("Recurring expense added successfully!");
-            else
-                System.err.println("Failed to add recurring expense.");
-        }
+        if (ExpenseService.addRecurringExpense(conn, currentUserId, description, amount, category, interval,
+                startDate) > 0)
+            System.out.println("Recurring expense added successfully!");
+        else
+            System.err.println("Failed to add recurring expense.");
     }
 
     private static String readIntervalType(Scanner sc) {
@@ -600,7 +626,7 @@ public class ExpenseTracker {
     }
 
     private static void viewReminders(Connection conn, boolean upcomingOnly) throws SQLException {
-        String sql = "SELECT id, title, due_date, notes FROM reminders WHERE username = ?";
+        String sql = "SELECT id, title, due_date, notes FROM reminders WHERE user_id = ?";
         if (upcomingOnly)
             sql += " AND due_date BETWEEN CURDATE() AND DATE_ADD(CURDATE(), INTERVAL ? DAY)";
         sql += " ORDER BY due_date";
@@ -612,7 +638,7 @@ public class ExpenseTracker {
         List<String[]> rows = new ArrayList<>();
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
+            ps.setInt(1, currentUserId);
             if (upcomingOnly)
                 ps.setInt(2, REMINDER_DAYS_AHEAD);
             ResultSet rs = ps.executeQuery();
@@ -640,17 +666,10 @@ public class ExpenseTracker {
         System.out.print("Enter optional notes (press Enter to skip): ");
         String notes = sc.nextLine().trim();
 
-        String sql = "INSERT INTO reminders (username, title, due_date, notes) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
-            ps.setString(2, title);
-            ps.setDate(3, java.sql.Date.valueOf(dueDate));
-            ps.setString(4, notes.isEmpty() ? null : notes);
-            if (ps.executeUpdate() > 0)
-                System.out.println("Reminder added successfully!");
-            else
-                System.err.println("Failed to add reminder.");
-        }
+        if (ExpenseService.addReminder(conn, currentUserId, title, dueDate, notes.isEmpty() ? null : notes) > 0)
+            System.out.println("Reminder added successfully!");
+        else
+            System.err.println("Failed to add reminder.");
     }
 
     private static void deleteReminder(Connection conn, Scanner sc) throws SQLException {
@@ -660,14 +679,14 @@ public class ExpenseTracker {
 
     private static void showPrediction(Connection conn) throws SQLException {
         System.out.println("\n📈 Predicted Expenses (based on last " + PREDICTION_MONTHS + " months average):");
-        Map<String, BigDecimal> predictions = ExpenseService.getPredictions(conn, currentUser, PREDICTION_MONTHS);
+        Map<String, Money> predictions = ExpenseService.getPredictions(conn, currentUserId, PREDICTION_MONTHS);
 
         if (predictions.isEmpty()) {
             System.out.println("  (Not enough historical data for prediction)");
             return;
         }
-        for (Map.Entry<String, BigDecimal> entry : predictions.entrySet()) {
-            System.out.printf("  - %-20s: Rs. %.2f (Avg/month)\n", entry.getKey(), entry.getValue());
+        for (Map.Entry<String, Money> entry : predictions.entrySet()) {
+            System.out.printf("  - %-20s: Rs. %s (Avg/month)\n", entry.getKey(), entry.getValue().toPlainString());
         }
         System.out.println("-".repeat(40));
     }
@@ -679,18 +698,18 @@ public class ExpenseTracker {
         System.out.printf("\n--- Dashboard: %s (%s) ---\n", currentUser, currentMonth.format(YM_FMT));
         System.out.println("-".repeat(40));
         try {
-            BigDecimal totalThisMonth = ExpenseService.getTotalExpensesForMonth(conn, currentUser,
+            Money totalThisMonth = ExpenseService.getTotalExpensesForMonth(conn, currentUserId,
                     currentMonth.getMonthValue(), currentMonth.getYear());
-            String topCategoryThisMonth = ExpenseService.getTopCategoryForMonth(conn, currentUser,
+            String topCategoryThisMonth = ExpenseService.getTopCategoryForMonth(conn, currentUserId,
                     currentMonth.getMonthValue(), currentMonth.getYear());
-            System.out.printf("  Total Expenses (This Month): Rs. %.2f\n", totalThisMonth);
+            System.out.printf("  Total Expenses (This Month): Rs. %s\n", totalThisMonth.toPlainString());
             System.out.printf("  Top Spending (This Month):   %s\n", topCategoryThisMonth);
 
-            if (monthlyBudget.compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal remaining = monthlyBudget.subtract(totalThisMonth);
-                System.out.printf("  Monthly Budget:              Rs. %.2f\n", monthlyBudget);
-                System.out.printf("  Remaining Budget:            Rs. %.2f %s\n", remaining.abs(),
-                        (remaining.compareTo(BigDecimal.ZERO) < 0 ? "⚠️ (Over Budget!)" : ""));
+            if (monthlyBudget.isPositive()) {
+                Money remaining = monthlyBudget.minus(totalThisMonth);
+                System.out.printf("  Monthly Budget:              Rs. %s\n", monthlyBudget.toPlainString());
+                System.out.printf("  Remaining Budget:            Rs. %s %s\n", remaining.abs().toPlainString(),
+                        (remaining.signum() < 0 ? "⚠️ (Over Budget!)" : ""));
             } else
                 System.out.println("  Monthly Budget:              Not Set");
             System.out.println("-".repeat(40));
@@ -704,8 +723,8 @@ public class ExpenseTracker {
     }
 
     private static void printMainMenu() {
-        String budgetStatus = (monthlyBudget.compareTo(BigDecimal.ZERO) > 0)
-                ? String.format("Budget: Rs. %.2f", monthlyBudget)
+        String budgetStatus = monthlyBudget.isPositive()
+                ? "Budget: Rs. " + monthlyBudget.toPlainString()
                 : "Budget: Not Set";
         System.out.printf("\n=== Main Menu === (User: %s | %s)\n", currentUser, budgetStatus);
         System.out.println(" 1. Add Expense        | 7. Manage Reminders");
@@ -751,13 +770,13 @@ public class ExpenseTracker {
         }
     }
 
-    private static BigDecimal readPositiveBigDecimal(Scanner sc, String prompt) {
+    private static Money readPositiveMoney(Scanner sc, String prompt) {
         while (true) {
             System.out.print(prompt);
             String line = sc.nextLine();
             try {
-                BigDecimal val = new BigDecimal(line);
-                if (val.compareTo(BigDecimal.ZERO) > 0)
+                Money val = Money.parse(line);
+                if (val.isPositive())
                     return val;
                 System.out.println("Amount must be positive.");
             } catch (NumberFormatException e) {
@@ -766,13 +785,13 @@ public class ExpenseTracker {
         }
     }
 
-    private static BigDecimal readNonNegativeBigDecimal(Scanner sc, String prompt) {
+    private static Money readNonNegativeMoney(Scanner sc, String prompt) {
         while (true) {
             System.out.print(prompt);
             String line = sc.nextLine();
             try {
-                BigDecimal val = new BigDecimal(line);
-                if (val.compareTo(BigDecimal.ZERO) >= 0)
+                Money val = Money.parse(line);
+                if (val.signum() >= 0)
                     return val;
                 System.out.println("Amount cannot be negative.");
             } catch (NumberFormatException e) {
@@ -824,42 +843,43 @@ public class ExpenseTracker {
     private static void searchExpensesUI(Connection conn, Scanner sc) throws SQLException {
         System.out.println("\n--- Search Expenses ---");
         System.out.println("Enter filters (press Enter to skip):");
-        System.out.print("Category keyword: ");
+        System.out.print("Keyword (in category or notes): ");
         String cat = sc.nextLine().trim();
         System.out.print("Min amount: ");
-        BigDecimal min = readOptionalBigDecimal(sc);
+        Money min = readOptionalMoney(sc);
         System.out.print("Max amount: ");
-        BigDecimal max = readOptionalBigDecimal(sc);
+        Money max = readOptionalMoney(sc);
         System.out.print("Start Date (yyyy-MM-dd): ");
         LocalDate start = readOptionalDate(sc);
         System.out.print("End Date (yyyy-MM-dd): ");
         LocalDate end = readOptionalDate(sc);
 
-        List<Expense> results = ExpenseService.searchExpenses(conn, currentUser, null, cat, min, max, start, end);
+        List<Expense> results = ExpenseService.searchExpenses(conn, currentUserId, null, cat, min, max, start, end);
 
         if (results.isEmpty()) {
             System.out.println("No expenses found matching the criteria.");
         } else {
-            String[] headers = { "ID", "Category", "Amount", "Date" };
+            String[] headers = { "ID", "Category", "Amount", "Date", "Notes" };
             List<String[]> rows = new ArrayList<>();
             for (Expense e : results) {
                 rows.add(new String[] {
                         String.valueOf(e.getId()),
                         e.getCategory(),
-                        String.format("Rs. %.2f", e.getAmount()),
-                        e.getFormattedDate()
+                        "Rs. " + e.getAmount().toPlainString(),
+                        e.getFormattedDate(),
+                        e.getNotes() != null ? e.getNotes() : ""
                 });
             }
             TableUtils.printTable(headers, rows);
         }
     }
 
-    private static BigDecimal readOptionalBigDecimal(Scanner sc) {
+    private static Money readOptionalMoney(Scanner sc) {
         String input = sc.nextLine().trim();
         if (input.isEmpty())
             return null;
         try {
-            return new BigDecimal(input);
+            return Money.parse(input);
         } catch (Exception e) {
             System.out.println("Invalid amount, skipping filter.");
             return null;
@@ -0,0 +1,165 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A user's rule for choosing the category of an incoming expense from its
+ * text and amount. A "keyword" rule matches when the text contains the
+ * pattern, a "regex" rule when the pattern is found in the text (both ignore
+ * case), and an "amount" rule on the amount alone. Any rule may also carry an
+ * amount range, inclusive at both ends, that only matches amounts in the
+ * range's currency. Lower priorities are tried first.
+ */
+public class CategoryRule {
+    public static final List<String> MATCH_TYPES = List.of("keyword", "regex", "amount");
+    /** Longest pattern a user may store. */
+    public static final int MAX_PATTERN = 100;
+
+    private final int id;
+    private final String matchType;
+    private final String pattern;
+    private final Money minAmount;
+    private final Money maxAmount;
+    private final String category;
+    private final int priority;
+    private final long hits;
+
+    public CategoryRule(int id, String matchType, String pattern, Money minAmount, Money maxAmount, String category,
+            int priority, long hits) {
+        if (matchType == null || !MATCH_TYPES.contains(matchType.toLowerCase())) {
+            throw new IllegalArgumentException("Match type must be keyword, regex or amount.");
+        }
+        if (category == null || category.trim().isEmpty()) {
+            throw new IllegalArgumentException("Category cannot be empty.");
+        }
+        String type = matchType.toLowerCase();
+        if (!type.equals("amount") && (pattern == null || pattern.trim().isEmpty())) {
+            throw new IllegalArgumentException("A " + type + " rule needs a pattern.");
+        }
+        if (type.equals("amount") && minAmount == null && maxAmount == null) {
+            throw new IllegalArgumentException("An amount rule needs a minimum or a maximum.");
+        }
+        if (minAmount != null && maxAmount != null) {
+            if (!minAmount.getCurrency().equals(maxAmount.getCurrency()))
+                throw new IllegalArgumentException("Minimum and maximum must be in the same currency.");
+            if (minAmount.compareTo(maxAmount) > 0)
+                throw new IllegalArgumentException("Minimum cannot be above maximum.");
+        }
+        if (type.equals("regex")) {
+            try {
+                Pattern.compile(pattern);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regex: " + e.getDescription());
+            }
+        }
+        this.id = id;
+        this.matchType = type;
+        this.pattern = type.equals("amount") ? null : pattern;
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.category = category;
+        this.priority = priority;
+        this.hits = hits;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getMatchType() {
+        return matchType;
+    }
+
+    /** Null for amount rules. */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /** Null when unbounded below. */
+    public Money getMinAmount() {
+        return minAmount;
+    }
+
+    /** Null when unbounded above. */
+    public Money getMaxAmount() {
+        return maxAmount;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /** Expenses this rule has categorized, as last stored. */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Rejects a pattern a user may not store: one longer than
+     * {@link #MAX_PATTERN}, or a regex that can backtrack exponentially. That
+     * means a back-reference, or a repeated group that repeats inside, like
+     * {@code (a+)+}. Checked where rules are created, not in the constructor,
+     * so rules stored before the check still load.
+     */
+    public static void checkUserPattern(String matchType, String pattern) {
+        if (pattern == null)
+            return;
+        if (pattern.length() > MAX_PATTERN)
+            throw new IllegalArgumentException("Pattern must be at most " + MAX_PATTERN + " characters.");
+        if (!"regex".equalsIgnoreCase(matchType))
+            return;
+        // Per open group: whether something inside it repeats
+        Deque<Boolean> outer = new ArrayDeque<>();
+        boolean repeats = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            switch (c) {
+                case '\\' -> {
+                    char n = i + 1 < pattern.length() ? pattern.charAt(++i) : 0;
+                    if ((n >= '1' && n <= '9') || n == 'k')
+                        throw new IllegalArgumentException("Back-references are not allowed in rules.");
+                }
+                case '[' -> {
+                    for (i++; i < pattern.length() && pattern.charAt(i) != ']'; i++) {
+                        if (pattern.charAt(i) == '\\')
+                            i++;
+                    }
+                }
+                case '(' -> {
+                    outer.push(repeats);
+                    repeats = false;
+                }
+                case ')' -> {
+                    boolean inner = repeats;
+                    repeats = !outer.isEmpty() && outer.pop();
+                    boolean repeated = i + 1 < pattern.length() && "+*{".indexOf(pattern.charAt(i + 1)) >= 0;
+                    if (inner && repeated)
+                        throw new IllegalArgumentException("Nested repetition such as (a+)+ is not allowed in rules.");
+                    repeats |= inner || repeated;
+                }
+                case '+', '*', '{' -> repeats = true;
+                default -> {
+                }
+            }
+        }
+    }
+
+    /** Whether the amount is inside this rule's range; always true without one. */
+    public boolean acceptsAmount(Money amount) {
+        Money bound = minAmount != null ? minAmount : maxAmount;
+        if (bound == null)
+            return true;
+        if (!bound.getCurrency().equals(amount.getCurrency()))
+            return false;
+        return (minAmount == null || amount.compareTo(minAmount) >= 0)
+                && (maxAmount == null || amount.compareTo(maxAmount) <= 0);
+    }
+}
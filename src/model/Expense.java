@@ -1,25 +1,27 @@
 package model;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class Expense {
     private final int id;
     private final String category;
-    private final BigDecimal amount;
-    private final String currency;
+    private final Money amount;
     private final String receiptPath;
     private final LocalDateTime date;
+    private final String notes;
     private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
 
-    public Expense(int id, String category, BigDecimal amount, LocalDateTime date) {
-        this(id, category, amount, "INR", null, date);
+    public Expense(int id, String category, Money amount, LocalDateTime date) {
+        this(id, category, amount, null, date);
     }
 
-    public Expense(int id, String category, BigDecimal amount, String currency, String receiptPath,
-            LocalDateTime date) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+    public Expense(int id, String category, Money amount, String receiptPath, LocalDateTime date) {
+        this(id, category, amount, receiptPath, date, null);
+    }
+
+    public Expense(int id, String category, Money amount, String receiptPath, LocalDateTime date, String notes) {
+        if (amount == null || !amount.isPositive()) {
             throw new IllegalArgumentException("Amount must be positive.");
         }
         if (category == null || category.trim().isEmpty()) {
@@ -28,9 +30,9 @@ public class Expense {
         this.id = id;
         this.category = category;
         this.amount = amount;
-        this.currency = (currency != null) ? currency : "INR";
         this.receiptPath = receiptPath;
         this.date = (date != null) ? date : LocalDateTime.now();
+        this.notes = notes;
     }
 
     public int getId() {
@@ -41,7 +43,7 @@ public class Expense {
         return category;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
@@ -50,20 +52,25 @@ public class Expense {
     }
 
     public String getCurrency() {
-        return currency;
+        return amount.getCurrency();
     }
 
     public String getReceiptPath() {
         return receiptPath;
     }
 
+    /** Free text such as the merchant or what was bought; null if none was given. */
+    public String getNotes() {
+        return notes;
+    }
+
     public String getFormattedDate() {
         return date.format(FMT);
     }
 
     @Override
     public String toString() {
-        return String.format("ID: %d, Category: %s, Amount: Rs. %.2f, Date: %s",
-                id, category, amount, getFormattedDate());
+        return String.format("ID: %d, Category: %s, Amount: Rs. %s, Date: %s",
+                id, category, amount.toPlainString(), getFormattedDate());
     }
 }
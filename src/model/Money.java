@@ -0,0 +1,198 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Immutable currency amount held as a long count of minor units (paise,
+ * cents) with two decimal places, matching the DECIMAL(10, 2) columns.
+ * Arithmetic and comparison are exact and never allocate a BigDecimal;
+ * {@link #fromBigDecimal} and {@link #toBigDecimal} exist only for JDBC.
+ * Amounts in different currencies cannot be added or compared.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final String DEFAULT_CURRENCY = "INR";
+    public static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+
+    private static final int SCALE = 2;
+
+    private final long minorUnits;
+    private final String currency;
+
+    private Money(long minorUnits, String currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinor(long minorUnits, String currency) {
+        if (minorUnits == 0 && (currency == null || DEFAULT_CURRENCY.equals(currency)))
+            return ZERO;
+        return new Money(minorUnits, currency != null ? currency : DEFAULT_CURRENCY);
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return ofMinor(minorUnits, DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Parses a plain decimal such as "1249.5", "-3" or "+0.07". Digits beyond
+     * the second decimal place are rounded half up, as MySQL does on insert.
+     *
+     * @throws NumberFormatException if the text is not a plain decimal number
+     *         or does not fit in a long of minor units
+     */
+    public static Money parse(CharSequence text, String currency) {
+        if (text == null)
+            throw new NumberFormatException("Amount is missing");
+        int i = 0, end = text.length();
+        while (i < end && text.charAt(i) == ' ')
+            i++;
+        while (end > i && text.charAt(end - 1) == ' ')
+            end--;
+        boolean negative = false;
+        if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+            negative = text.charAt(i++) == '-';
+        long units = 0;
+        int digits = 0, fraction = -1;
+        boolean roundUp = false;
+        try {
+            for (; i < end; i++) {
+                char ch = text.charAt(i);
+                if (ch == '.' && fraction < 0) {
+                    fraction = 0;
+                    continue;
+                }
+                if (ch < '0' || ch > '9')
+                    throw new NumberFormatException("Invalid amount: " + text);
+                digits++;
+                if (fraction >= SCALE) {
+                    if (fraction++ == SCALE)
+                        roundUp = ch >= '5';
+                    continue;
+                }
+                if (fraction >= 0)
+                    fraction++;
+                units = Math.addExact(Math.multiplyExact(units, 10), ch - '0');
+            }
+            if (digits == 0)
+                throw new NumberFormatException("Invalid amount: " + text);
+            for (int f = Math.max(fraction, 0); f < SCALE; f++)
+                units = Math.multiplyExact(units, 10);
+            if (roundUp)
+                units = Math.addExact(units, 1);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount too large: " + text);
+        }
+        return ofMinor(negative ? -units : units, currency);
+    }
+
+    public static Money parse(CharSequence text) {
+        return parse(text, DEFAULT_CURRENCY);
+    }
+
+    public static Money fromBigDecimal(BigDecimal amount, String currency) {
+        return ofMinor(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact(), currency);
+    }
+
+    public static Money fromBigDecimal(BigDecimal amount) {
+        return fromBigDecimal(amount, DEFAULT_CURRENCY);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public Money plus(Money other) {
+        checkCurrency(other);
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        checkCurrency(other);
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money abs() {
+        return minorUnits < 0 ? ofMinor(Math.negateExact(minorUnits), currency) : this;
+    }
+
+    /** Divides into {@code parts}, rounding half up to the nearest minor unit. */
+    public Money dividedBy(long parts) {
+        return ofMinor(divideHalfUp(minorUnits, parts), currency);
+    }
+
+    /** This amount as a share of {@code whole} in basis points (1/100 of a percent), rounded half up; 0 if whole is 0. */
+    public long basisPointsOf(Money whole) {
+        checkCurrency(whole);
+        if (whole.minorUnits == 0)
+            return 0;
+        return divideHalfUp(Math.multiplyExact(minorUnits, 10_000L), whole.minorUnits);
+    }
+
+    private static long divideHalfUp(long dividend, long divisor) {
+        long q = dividend / divisor;
+        long r = dividend % divisor;
+        if (Math.abs(r) * 2 >= Math.abs(divisor))
+            q += ((dividend < 0) == (divisor < 0)) ? 1 : -1;
+        return q;
+    }
+
+    private void checkCurrency(Money other) {
+        if (!currency.equals(other.currency))
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    /** Appends the amount as a plain decimal ("-12.05"), with no currency, for JSON and CSV. */
+    public StringBuilder appendTo(StringBuilder sb) {
+        long abs = Math.abs(minorUnits);
+        if (minorUnits < 0)
+            sb.append('-');
+        long frac = abs % 100;
+        sb.append(abs / 100).append('.');
+        if (frac < 10)
+            sb.append('0');
+        return sb.append(frac);
+    }
+
+    public String toPlainString() {
+        return appendTo(new StringBuilder(16)).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money m && m.minorUnits == minorUnits && m.currency.equals(currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits) * 31 + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toPlainString() + " " + currency;
+    }
+}
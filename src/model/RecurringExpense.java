@@ -0,0 +1,82 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RecurringExpense {
+    private final int id;
+    private final String description;
+    private final Money amount;
+    private final String category;
+    private final String interval;
+    private final LocalDate startDate;
+    private final LocalDate lastAppliedDate;
+
+    public RecurringExpense(int id, String description, Money amount, String category, String interval,
+            LocalDate startDate, LocalDate lastAppliedDate) {
+        if (amount == null || !amount.isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive.");
+        }
+        if (category == null || category.trim().isEmpty()) {
+            throw new IllegalArgumentException("Category cannot be empty.");
+        }
+        if (interval == null || !List.of("daily", "weekly", "monthly").contains(interval.toLowerCase())) {
+            throw new IllegalArgumentException("Interval must be daily, weekly or monthly.");
+        }
+        this.id = id;
+        this.description = description;
+        this.amount = amount;
+        this.category = category;
+        this.interval = interval.toLowerCase();
+        this.startDate = (startDate != null) ? startDate : LocalDate.now();
+        this.lastAppliedDate = lastAppliedDate;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    public LocalDate getLastAppliedDate() {
+        return lastAppliedDate;
+    }
+
+    public LocalDate nextDate(LocalDate from) {
+        return switch (interval) {
+            case "daily" -> from.plusDays(1);
+            case "weekly" -> from.plusWeeks(1);
+            default -> from.plusMonths(1);
+        };
+    }
+
+    /** Occurrences not yet applied, up to and including {@code today}. */
+    public List<LocalDate> dueDates(LocalDate today) {
+        List<LocalDate> due = new ArrayList<>();
+        LocalDate next = (lastAppliedDate == null) ? startDate : nextDate(lastAppliedDate);
+        while (!next.isAfter(today)) {
+            due.add(next);
+            next = nextDate(next);
+        }
+        return due;
+    }
+}
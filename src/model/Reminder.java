@@ -0,0 +1,39 @@
+package model;
+
+import java.time.LocalDate;
+
+public class Reminder {
+    private final int id;
+    private final String title;
+    private final LocalDate dueDate;
+    private final String notes;
+
+    public Reminder(int id, String title, LocalDate dueDate, String notes) {
+        if (title == null || title.trim().isEmpty()) {
+            throw new IllegalArgumentException("Title cannot be empty.");
+        }
+        if (dueDate == null) {
+            throw new IllegalArgumentException("Due date is required.");
+        }
+        this.id = id;
+        this.title = title;
+        this.dueDate = dueDate;
+        this.notes = notes;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+}
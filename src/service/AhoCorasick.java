@@ -0,0 +1,106 @@
+package service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Aho-Corasick automaton over a fixed set of patterns, matched ignoring case:
+ * one pass over a text finds every pattern in it, however many there are.
+ * Each state keeps its transitions as a sorted char array searched by
+ * bisection, plus a failure link and a link to the nearest state on the
+ * failure chain where a pattern ends. Immutable once built.
+ */
+final class AhoCorasick {
+
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] fail;
+    /** Nearest state on the failure chain that ends a pattern, or -1. */
+    private final int[] outputLink;
+    /** Patterns ending exactly at each state. */
+    private final int[][] outputs;
+
+    AhoCorasick(List<String> patterns) {
+        List<TreeMap<Character, Integer>> next = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        next.add(new TreeMap<>());
+        ends.add(new ArrayList<>());
+        for (int p = 0; p < patterns.size(); p++) {
+            int state = 0;
+            String pattern = patterns.get(p);
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = Character.toLowerCase(pattern.charAt(i));
+                Integer to = next.get(state).get(c);
+                if (to == null) {
+                    to = next.size();
+                    next.get(state).put(c, to);
+                    next.add(new TreeMap<>());
+                    ends.add(new ArrayList<>());
+                }
+                state = to;
+            }
+            ends.get(state).add(p);
+        }
+
+        int n = next.size();
+        labels = new char[n][];
+        targets = new int[n][];
+        outputs = new int[n][];
+        for (int s = 0; s < n; s++) {
+            labels[s] = new char[next.get(s).size()];
+            targets[s] = new int[labels[s].length];
+            int i = 0;
+            for (Map.Entry<Character, Integer> e : next.get(s).entrySet()) {
+                labels[s][i] = e.getKey();
+                targets[s][i++] = e.getValue();
+            }
+            outputs[s] = ends.get(s).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        // Breadth first, so that every failure target is finished before it is used
+        fail = new int[n];
+        outputLink = new int[n];
+        Arrays.fill(outputLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0])
+            queue.add(child);
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int i = 0; i < labels[s].length; i++) {
+                int child = targets[s][i];
+                int f = step(fail[s], labels[s][i]);
+                fail[child] = f;
+                outputLink[child] = outputs[f].length > 0 ? f : outputLink[f];
+                queue.add(child);
+            }
+        }
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int i = Arrays.binarySearch(labels[state], c);
+            if (i >= 0)
+                return targets[state][i];
+            if (state == 0)
+                return 0;
+            state = fail[state];
+        }
+    }
+
+    /** Calls {@code hit} with the index of each pattern found, once per occurrence. */
+    void search(CharSequence text, IntConsumer hit) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, Character.toLowerCase(text.charAt(i)));
+            for (int s = outputs[state].length > 0 ? state : outputLink[state]; s >= 0; s = outputLink[s]) {
+                for (int p : outputs[s])
+                    hit.accept(p);
+            }
+        }
+    }
+}
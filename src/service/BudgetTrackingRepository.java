@@ -0,0 +1,256 @@
+package service;
+
+import model.Expense;
+import model.Money;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps each active user's budget limits and current-month spend per category
+ * in memory, so {@link #getBudgetStatus} needs no query and an added or
+ * deleted expense adjusts one counter. The state is built from the delegate
+ * on first use, rebuilt when the month changes, and dropped after
+ * {@code idleMillis} without use. Like {@link ColumnarAnalyticsRepository},
+ * writes that reach the database some other way are not seen until then.
+ * <p>
+ * An expense that takes a category past 80% or 100% of its budget is
+ * reported to the {@link ThresholdListener}, once per crossing.
+ */
+public class BudgetTrackingRepository extends ForwardingExpenseRepository {
+
+    /** Receives budget threshold crossings; {@code percent} is 80 or 100. */
+    public interface ThresholdListener {
+        void crossed(int userId, String category, int percent, long basisPoints);
+    }
+
+    private static final int[] THRESHOLDS = { 100, 80 };
+
+    private static final class State {
+        final YearMonth month;
+        final Map<String, Money> limits;
+        final Map<String, Long> spent = new HashMap<>();
+        volatile long lastAccess = System.currentTimeMillis();
+
+        State(YearMonth month, Map<String, Money> limits, Map<String, Money> breakdown) {
+            this.month = month;
+            this.limits = new LinkedHashMap<>(limits);
+            breakdown.forEach((category, total) -> spent.put(category, total.getMinorUnits()));
+        }
+
+        /** Share of the budget spent in basis points, or -1 without a budget. */
+        long share(String category) {
+            Money limit = limits.get(category);
+            if (limit == null)
+                return -1;
+            return Money.ofMinor(spent.getOrDefault(category, 0L), limit.getCurrency()).basisPointsOf(limit);
+        }
+    }
+
+    private final Map<Integer, State> states = new ConcurrentHashMap<>();
+    private final long idleMillis;
+    private volatile long lastSweep = System.currentTimeMillis();
+    private volatile ThresholdListener listener;
+
+    public BudgetTrackingRepository(ExpenseRepository delegate, long idleMillis) {
+        super(delegate);
+        this.idleMillis = idleMillis;
+    }
+
+    public void setThresholdListener(ThresholdListener listener) {
+        this.listener = listener;
+    }
+
+    /** The user's state for the current month, building it if missing or from an earlier month. */
+    private State stateFor(int userId) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep > idleMillis / 2) {
+            lastSweep = now;
+            states.values().removeIf(s -> now - s.lastAccess > idleMillis);
+        }
+        YearMonth month = YearMonth.now();
+        State s = states.get(userId);
+        if (s == null || !s.month.equals(month)) {
+            // Built inside compute so that two first adds share one state instead of each building and
+            // putting its own, which would lose the increment made to the state that is replaced
+            try {
+                s = states.compute(userId, (k, current) -> {
+                    if (current != null && current.month.equals(month))
+                        return current;
+                    try {
+                        return new State(month, delegate.getBudgets(userId),
+                                delegate.getCategoryBreakdown(userId, month.getMonthValue(), month.getYear()));
+                    } catch (SQLException e) {
+                        throw new LoadFailed(e);
+                    }
+                });
+            } catch (LoadFailed e) {
+                throw e.getCause();
+            }
+        }
+        s.lastAccess = now;
+        return s;
+    }
+
+    /** Carries a delegate failure out of {@link ConcurrentHashMap#compute}. */
+    private static final class LoadFailed extends RuntimeException {
+        LoadFailed(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    // ─── Writes ──────────────────────────────────────────
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        boolean thisMonth = YearMonth.from(date).equals(YearMonth.now());
+        // Built before the insert so that the new row is counted exactly once
+        State s = thisMonth ? stateFor(userId) : null;
+        Expense added = delegate.addExpense(userId, category, amount, receiptPath, date, notes);
+        if (s != null) {
+            long before;
+            long after;
+            synchronized (s) {
+                before = s.share(category);
+                s.spent.merge(category, amount.getMinorUnits(), Long::sum);
+                after = s.share(category);
+            }
+            announce(userId, category, before, after);
+        }
+        return added;
+    }
+
+    @Override
+    public Expense deleteExpense(int userId, int id) throws SQLException {
+        Expense removed = delegate.deleteExpense(userId, id);
+        State s = states.get(userId);
+        if (removed != null && s != null && YearMonth.from(removed.getDate()).equals(s.month)) {
+            synchronized (s) {
+                s.spent.merge(removed.getCategory(), -removed.getAmount().getMinorUnits(), Long::sum);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Expense recategorizeExpense(int userId, int id, String category) throws SQLException {
+        Expense before = delegate.recategorizeExpense(userId, id, category);
+        State s = states.get(userId);
+        if (before != null && s != null && YearMonth.from(before.getDate()).equals(s.month)) {
+            long minor = before.getAmount().getMinorUnits();
+            long was;
+            long now;
+            synchronized (s) {
+                s.spent.merge(before.getCategory(), -minor, Long::sum);
+                was = s.share(category);
+                s.spent.merge(category, minor, Long::sum);
+                now = s.share(category);
+            }
+            announce(userId, category, was, now);
+        }
+        return before;
+    }
+
+    @Override
+    public int applyRecurringExpenses(int userId) throws SQLException {
+        State old = states.get(userId);
+        int added = delegate.applyRecurringExpenses(userId);
+        if (added > 0) {
+            // Rows were inserted below this layer; rebuild and report what they pushed over a threshold
+            states.remove(userId);
+            State s = stateFor(userId);
+            if (old != null && old.month.equals(s.month)) {
+                synchronized (s) {
+                    for (String category : s.limits.keySet())
+                        announce(userId, category, old.share(category), s.share(category));
+                }
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public boolean setBudget(int userId, String category, Money limit) throws SQLException {
+        boolean changed = delegate.setBudget(userId, category, limit);
+        State s = states.get(userId);
+        if (changed && s != null) {
+            synchronized (s) {
+                s.limits.put(category, limit);
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean deleteBudget(int userId, String category) throws SQLException {
+        boolean removed = delegate.deleteBudget(userId, category);
+        State s = states.get(userId);
+        if (removed && s != null) {
+            synchronized (s) {
+                s.limits.remove(category);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean deleteCategory(String name) throws SQLException {
+        boolean removed = delegate.deleteCategory(name);
+        // May have taken budgets and expenses of any user with it
+        if (removed)
+            states.clear();
+        return removed;
+    }
+
+    // ─── Reads ───────────────────────────────────────────
+
+    @Override
+    public Map<String, Money> getBudgets(int userId) throws SQLException {
+        State s = stateFor(userId);
+        synchronized (s) {
+            return new LinkedHashMap<>(s.limits);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> getBudgetStatus(int userId) throws SQLException {
+        State s = stateFor(userId);
+        List<Map<String, Object>> result = new ArrayList<>();
+        synchronized (s) {
+            for (var entry : s.limits.entrySet()) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("category", entry.getKey());
+                item.put("limit", entry.getValue());
+                item.put("spent", Money.ofMinor(s.spent.getOrDefault(entry.getKey(), 0L)));
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private void announce(int userId, String category, long before, long after) {
+        ThresholdListener l = listener;
+        if (l == null || after < 0)
+            return;
+        for (int percent : THRESHOLDS) {
+            long threshold = percent * 100L;
+            if (before < threshold && after >= threshold) {
+                l.crossed(userId, category, percent, after);
+                return;
+            }
+        }
+    }
+}
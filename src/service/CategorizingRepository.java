@@ -0,0 +1,408 @@
+package service;
+
+import model.CategoryRule;
+import model.Expense;
+import model.Money;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Applies each user's {@link CategoryRule}s to expenses as they are added
+ * without a category of their own: one left blank, or text that is not in
+ * the category list, such as a payee. That text is matched against the
+ * rules, and the first rule that matches, by priority, decides the category
+ * stored. If none does, the notes are tried the same way; with no match
+ * either way the text is stored as it is. A category the user picked is
+ * never overridden. Statement imports call {@link #categorize} on every
+ * line instead.
+ * <p>
+ * A user's rules are compiled on first use into one {@link AhoCorasick}
+ * automaton holding every keyword plus a literal that each regex cannot match
+ * without, so one pass over the text finds the candidate rules; a regex is
+ * only run when its literal occurs, and amount ranges are checked last. Only
+ * regexes without such a literal, such as alternations, run on every row.
+ * Compiled rules are rebuilt when the user's rules change here and dropped
+ * after {@code idleMillis} without use. The category list that decides what
+ * the user picked is cached too, reread when a category is added or deleted
+ * here and at least every {@code idleMillis}.
+ * <p>
+ * Hits are counted in memory and added to the stored counts by
+ * {@link #flushHits}, which {@link #startHitFlush} runs periodically.
+ */
+public class CategorizingRepository extends ForwardingExpenseRepository {
+
+    /** One user's rules, compiled. Immutable apart from the counters. */
+    private static final class RuleSet {
+        final CategoryRule[] rules;
+        final Pattern[] regexes;
+        final AhoCorasick automaton;
+        /** Rules to check when literal i is found, in rule order. */
+        final int[][] rulesOfLiteral;
+        /** Rules with nothing for the automaton to find, in rule order. */
+        final int[] unfiltered;
+        final LongAdder[] hits;
+        volatile long lastAccess = System.currentTimeMillis();
+
+        RuleSet(List<CategoryRule> sorted, Map<Integer, LongAdder> counters) {
+            rules = sorted.toArray(new CategoryRule[0]);
+            regexes = new Pattern[rules.length];
+            hits = new LongAdder[rules.length];
+            Map<String, List<Integer>> literals = new HashMap<>();
+            List<Integer> always = new ArrayList<>();
+            for (int r = 0; r < rules.length; r++) {
+                CategoryRule rule = rules[r];
+                hits[r] = counters.computeIfAbsent(rule.getId(), k -> new LongAdder());
+                String literal = switch (rule.getMatchType()) {
+                    case "keyword" -> rule.getPattern();
+                    case "regex" -> {
+                        regexes[r] = Pattern.compile(rule.getPattern(),
+                                Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                        yield requiredLiteral(rule.getPattern());
+                    }
+                    default -> null;
+                };
+                if (literal != null)
+                    literals.computeIfAbsent(literal.toLowerCase(), k -> new ArrayList<>()).add(r);
+                else
+                    always.add(r);
+            }
+            List<String> keys = new ArrayList<>(literals.keySet());
+            automaton = keys.isEmpty() ? null : new AhoCorasick(keys);
+            rulesOfLiteral = new int[keys.size()][];
+            for (int i = 0; i < keys.size(); i++)
+                rulesOfLiteral[i] = literals.get(keys.get(i)).stream().mapToInt(Integer::intValue).toArray();
+            unfiltered = always.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /** Index of the first rule that matches, or -1. */
+        int match(String text, Money amount) {
+            int[] best = { Integer.MAX_VALUE };
+            for (int r : unfiltered) {
+                if (r < best[0] && accepts(r, text, amount)) {
+                    best[0] = r;
+                    break;
+                }
+            }
+            if (automaton != null && text != null) {
+                automaton.search(text, literal -> {
+                    for (int r : rulesOfLiteral[literal]) {
+                        if (r >= best[0])
+                            break;
+                        if (accepts(r, text, amount))
+                            best[0] = r;
+                    }
+                });
+            }
+            return best[0] == Integer.MAX_VALUE ? -1 : best[0];
+        }
+
+        /** Whether rule r matches, given that its literal, if it has one, is in the text. */
+        private boolean accepts(int r, String text, Money amount) {
+            if (!rules[r].acceptsAmount(amount))
+                return false;
+            return regexes[r] == null || (text != null && regexes[r].matcher(text).find());
+        }
+    }
+
+    private final Map<Integer, RuleSet> ruleSets = new ConcurrentHashMap<>();
+    /** Lower-cased category list, or null until read; reread after {@code idleMillis} for other writers. */
+    private volatile Set<String> categoryNames;
+    private volatile long categoriesRead;
+    /** Unflushed hits, by user and rule id; outlives the rule sets that count into it. */
+    private final Map<Integer, Map<Integer, LongAdder>> pendingHits = new ConcurrentHashMap<>();
+    private final long idleMillis;
+    private volatile long lastSweep = System.currentTimeMillis();
+    private final AtomicLong categorized = new AtomicLong();
+    private ScheduledExecutorService flusher;
+
+    public CategorizingRepository(ExpenseRepository delegate, long idleMillis) {
+        super(delegate);
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * The longest run of plain characters outside any group that every match
+     * of {@code regex} contains, or null if there is none of at least two
+     * characters. Conservative: a top-level alternation has none, and anything
+     * quantified, bracketed or escaped as a class ends a run.
+     */
+    static String requiredLiteral(String regex) {
+        String longest = "";
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            char literal = 0;
+            switch (c) {
+                case '\\' -> {
+                    char n = i + 1 < regex.length() ? regex.charAt(++i) : 0;
+                    if (!Character.isLetterOrDigit(n)) {
+                        if (depth == 0)
+                            literal = n;
+                    } else {
+                        i = escapeEnd(regex, i);
+                    }
+                }
+                case '(' -> depth++;
+                case ')' -> depth--;
+                case '[' -> {
+                    for (i++; i < regex.length() && regex.charAt(i) != ']'; i++) {
+                        if (regex.charAt(i) == '\\')
+                            i++;
+                    }
+                }
+                case '{' -> {
+                    while (i < regex.length() && regex.charAt(i) != '}')
+                        i++;
+                }
+                case '|' -> {
+                    if (depth == 0)
+                        return null;
+                }
+                case '.', '^', '$', '+', '?', '*' -> {
+                }
+                default -> {
+                    if (depth == 0)
+                        literal = c;
+                }
+            }
+            // A character that may be absent ends the run before it
+            if (literal != 0 && (i + 1 >= regex.length() || "?*{".indexOf(regex.charAt(i + 1)) < 0)) {
+                run.append(literal);
+            } else {
+                if (run.length() > longest.length())
+                    longest = run.toString();
+                run.setLength(0);
+            }
+        }
+        if (run.length() > longest.length())
+            longest = run.toString();
+        return longest.length() >= 2 ? longest : null;
+    }
+
+    /**
+     * Index of the last character of the escape whose letter or digit is at
+     * {@code i}, so that the hex digits of \x41 or the text of \Q...\E
+     * are not read as plain characters.
+     */
+    private static int escapeEnd(String regex, int i) {
+        int end = switch (regex.charAt(i)) {
+            case 'x' -> i + 1 < regex.length() && regex.charAt(i + 1) == '{' ? regex.indexOf('}', i) : i + 2;
+            case 'u' -> i + 4;
+            case 'c' -> i + 1;
+            case 'p', 'P' -> i + 1 < regex.length() && regex.charAt(i + 1) == '{' ? regex.indexOf('}', i) : i + 1;
+            case 'N' -> regex.indexOf('}', i);
+            case 'k' -> regex.indexOf('>', i);
+            case 'Q' -> {
+                int quoteEnd = regex.indexOf("\\E", i);
+                yield quoteEnd < 0 ? regex.length() : quoteEnd + 1;
+            }
+            case '0' -> {
+                int j = i;
+                while (j < i + 3 && j + 1 < regex.length() && regex.charAt(j + 1) >= '0' && regex.charAt(j + 1) <= '7')
+                    j++;
+                yield j;
+            }
+            default -> i;
+        };
+        return end < 0 ? regex.length() - 1 : Math.min(end, regex.length() - 1);
+    }
+
+    private RuleSet ruleSetFor(int userId) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep > idleMillis / 2) {
+            lastSweep = now;
+            ruleSets.values().removeIf(r -> now - r.lastAccess > idleMillis);
+        }
+        RuleSet set = ruleSets.get(userId);
+        if (set == null) {
+            set = new RuleSet(delegate.getCategoryRules(userId),
+                    pendingHits.computeIfAbsent(userId, k -> new ConcurrentHashMap<>()));
+            ruleSets.put(userId, set);
+        }
+        set.lastAccess = now;
+        return set;
+    }
+
+    /** Expenses whose category a rule chose, at add time or by {@link #recategorizeHistory}. */
+    public long categorizedCount() {
+        return categorized.get();
+    }
+
+    /** The rule the user's rules pick for this text and amount, or null if none matches. Counts nothing. */
+    private CategoryRule match(int userId, String text, Money amount, boolean count) throws SQLException {
+        RuleSet set = ruleSetFor(userId);
+        if (set.rules.length == 0)
+            return null;
+        int r = set.match(text, amount);
+        if (r < 0)
+            return null;
+        if (count) {
+            set.hits[r].increment();
+            categorized.incrementAndGet();
+        }
+        return set.rules[r];
+    }
+
+    /** The category the user's rules give this text and amount, or null if no rule matches. Counts a hit. */
+    public String categorize(int userId, String text, Money amount) throws SQLException {
+        CategoryRule rule = match(userId, text, amount, true);
+        return rule != null ? rule.getCategory() : null;
+    }
+
+    /**
+     * Runs the user's current rules over all of their expenses, matching on
+     * each expense's category and then its notes, and moves those a rule now
+     * places elsewhere. Only moves count as hits. Returns how many moved.
+     */
+    public int recategorizeHistory(int userId) throws SQLException {
+        int moved = 0;
+        for (Expense e : delegate.searchExpenses(userId, null, null, null, null, null, null)) {
+            String text = e.getCategory();
+            CategoryRule rule = match(userId, text, e.getAmount(), false);
+            if (rule == null && e.getNotes() != null) {
+                text = e.getNotes();
+                rule = match(userId, text, e.getAmount(), false);
+            }
+            if (rule != null && !rule.getCategory().equals(e.getCategory())
+                    && delegate.recategorizeExpense(userId, e.getId(), rule.getCategory()) != null) {
+                match(userId, text, e.getAmount(), true);
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    // ─── Writes ──────────────────────────────────────────
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        String ruled = null;
+        if (ruleSetFor(userId).rules.length > 0 && !isChosenCategory(category)) {
+            ruled = categorize(userId, category, amount);
+            if (ruled == null && notes != null)
+                ruled = categorize(userId, notes, amount);
+        }
+        return delegate.addExpense(userId, ruled != null ? ruled : category, amount, receiptPath, date, notes);
+    }
+
+    /** Whether the text names an existing category, which rules must leave alone. */
+    private boolean isChosenCategory(String category) throws SQLException {
+        if (category == null || category.isBlank())
+            return false;
+        Set<String> names = categoryNames;
+        long now = System.currentTimeMillis();
+        if (names == null || now - categoriesRead > idleMillis) {
+            names = new HashSet<>();
+            for (String known : delegate.getCategories())
+                names.add(known.toLowerCase());
+            categoryNames = names;
+            categoriesRead = now;
+        }
+        return names.contains(category.trim().toLowerCase());
+    }
+
+    // ─── Categories ──────────────────────────────────────
+
+    @Override
+    public boolean addCategory(String name) throws SQLException {
+        boolean added = delegate.addCategory(name);
+        categoryNames = null;
+        return added;
+    }
+
+    @Override
+    public boolean deleteCategory(String name) throws SQLException {
+        boolean deleted = delegate.deleteCategory(name);
+        categoryNames = null;
+        return deleted;
+    }
+
+    // ─── Rules ───────────────────────────────────────────
+
+    @Override
+    public List<CategoryRule> getCategoryRules(int userId) throws SQLException {
+        flushHits(userId);
+        return delegate.getCategoryRules(userId);
+    }
+
+    @Override
+    public CategoryRule addCategoryRule(int userId, CategoryRule rule) throws SQLException {
+        CategoryRule added = delegate.addCategoryRule(userId, rule);
+        ruleSets.remove(userId);
+        return added;
+    }
+
+    @Override
+    public boolean deleteCategoryRule(int userId, int id) throws SQLException {
+        boolean deleted = delegate.deleteCategoryRule(userId, id);
+        ruleSets.remove(userId);
+        Map<Integer, LongAdder> counters = pendingHits.get(userId);
+        if (deleted && counters != null)
+            counters.remove(id);
+        return deleted;
+    }
+
+    // ─── Hit counts ──────────────────────────────────────
+
+    private void flushHits(int userId) throws SQLException {
+        Map<Integer, LongAdder> counters = pendingHits.get(userId);
+        if (counters == null)
+            return;
+        Map<Integer, Long> hits = new HashMap<>();
+        counters.forEach((ruleId, adder) -> {
+            long n = adder.sumThenReset();
+            if (n > 0)
+                hits.put(ruleId, n);
+        });
+        if (hits.isEmpty())
+            return;
+        try {
+            delegate.addCategoryRuleHits(userId, hits);
+        } catch (SQLException e) {
+            // Counted again next time rather than lost
+            hits.forEach((ruleId, n) -> counters.computeIfAbsent(ruleId, k -> new LongAdder()).add(n));
+            throw e;
+        }
+    }
+
+    /** Adds every user's unflushed hits to the stored counts. */
+    public void flushHits() {
+        for (int userId : pendingHits.keySet()) {
+            try {
+                flushHits(userId);
+            } catch (SQLException e) {
+                System.err.println("Could not store rule hits for user " + userId + ": " + e.getMessage());
+            }
+        }
+        // Users whose rules were dropped for idleness have nothing left to count into
+        pendingHits.keySet().removeIf(userId -> !ruleSets.containsKey(userId)
+                && pendingHits.get(userId).values().stream().allMatch(a -> a.sum() == 0));
+    }
+
+    public synchronized void startHitFlush(long intervalMillis) {
+        if (flusher != null)
+            return;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "category-rule-hits");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushHits, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,96 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps category names to the categories.id surrogate key that expenses,
+ * budgets and recurring_expenses store. Rows in categories are never renamed
+ * or removed (deleting a category only hides it), so both directions can be
+ * cached for the life of the process. Each shard assigns its own ids, so the
+ * cache is kept per database URL.
+ */
+public final class CategoryDictionary {
+
+    private static final class Entries {
+        final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+        final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+    }
+
+    private static final Map<String, Entries> byDatabase = new ConcurrentHashMap<>();
+
+    private CategoryDictionary() {
+    }
+
+    /** Id for the name, adding it as a hidden category if it is new. */
+    public static int idFor(Connection conn, String name) throws SQLException {
+        Integer id = lookup(conn, name);
+        if (id != null)
+            return id;
+        Entries entries = entries(conn);
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO categories (name, active) VALUES (?, FALSE)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, name);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    remember(entries, name, keys.getInt(1));
+                    return keys.getInt(1);
+                }
+            }
+        } catch (java.sql.SQLIntegrityConstraintViolationException e) {
+            /* Another connection added it first */ }
+        id = lookup(conn, name);
+        if (id == null)
+            throw new SQLException("Could not register category " + name);
+        return id;
+    }
+
+    /** Id for the name, or null if no such category has ever been stored. */
+    public static Integer lookup(Connection conn, String name) throws SQLException {
+        Entries entries = entries(conn);
+        Integer id = entries.idsByName.get(name);
+        if (id != null)
+            return id;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT id, name FROM categories WHERE name = ?")) {
+            ps.setString(1, name);
+            ResultSet rs = ps.executeQuery();
+            if (!rs.next())
+                return null;
+            id = rs.getInt("id");
+            entries.namesById.putIfAbsent(id, rs.getString("name"));
+            entries.idsByName.put(name, id);
+            return id;
+        }
+    }
+
+    public static String nameOf(Connection conn, int id) throws SQLException {
+        Entries entries = entries(conn);
+        String name = entries.namesById.get(id);
+        if (name != null)
+            return name;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT name FROM categories WHERE id = ?")) {
+            ps.setInt(1, id);
+            ResultSet rs = ps.executeQuery();
+            if (!rs.next())
+                throw new SQLException("Unknown category id " + id);
+            name = rs.getString(1);
+        }
+        remember(entries, name, id);
+        return name;
+    }
+
+    private static Entries entries(Connection conn) throws SQLException {
+        return byDatabase.computeIfAbsent(conn.getMetaData().getURL(), url -> new Entries());
+    }
+
+    private static void remember(Entries entries, String name, int id) {
+        entries.namesById.put(id, name);
+        entries.idsByName.put(name, id);
+    }
+}
@@ -0,0 +1,191 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user change log behind /api/changes. Every write to a user's expenses,
+ * budgets, recurring items or reminders adds a row to {@code changes}; the
+ * row is keyed by an AUTO_INCREMENT version that only grows. A client
+ * loads everything once, remembers the version it was given and from then on
+ * asks only for what changed after it.
+ * <p>
+ * Versions are handed out when a row is inserted but become visible when
+ * its transaction commits, so a reader may see version V+1 while V is
+ * still in flight. {@link #settled} is the version before the first gap
+ * younger than {@link #SETTLE_SECONDS}; /api/changes serves nothing past
+ * it, so a client is never moved past a change it could not yet see.
+ * <p>
+ * {@link #compact} drops old rows. A client that is further behind than the
+ * oldest row left, or that asks a shard the user was moved to, gets a single
+ * {@link #RESET} change and reloads everything.
+ */
+public final class ChangeLog {
+
+    public static final String EXPENSE = "expense";
+    public static final String BUDGET = "budget";
+    public static final String RECURRING = "recurring";
+    public static final String REMINDER = "reminder";
+    /** Entity of the marker telling the client to drop its copy and reload. */
+    public static final String RESET = "reset";
+
+    public static final char INSERT = 'I';
+    public static final char UPDATE = 'U';
+    public static final char DELETE = 'D';
+
+    /** One logged write. {@code key} is the row id, or the category name for budgets. */
+    public record Change(long version, String entity, String key, char op) {
+    }
+
+    /**
+     * A missing version followed by rows younger than this is taken to be a
+     * transaction that has not committed yet; an older gap is a rollback.
+     */
+    static final int SETTLE_SECONDS = 10;
+
+    private static ScheduledExecutorService compactor;
+
+    private ChangeLog() {
+    }
+
+    /** Compacts every shard's log once a day, keeping {@code keepDays} of history. */
+    static synchronized void startCompaction(int keepDays) {
+        if (compactor != null)
+            return;
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-log-compaction");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(() -> {
+            Timestamp before = Timestamp.valueOf(LocalDateTime.now().minusDays(keepDays));
+            for (int shard = 0; shard < DatabaseManager.shardCount(); shard++) {
+                try (Connection conn = DatabaseManager.getShardConnection(shard)) {
+                    compact(conn, before);
+                } catch (SQLException e) {
+                    System.err.println("Change log compaction failed on shard " + shard + ": " + e.getMessage());
+                }
+            }
+        }, 1, 24 * 60, TimeUnit.MINUTES);
+    }
+
+    public static void record(Connection conn, int userId, String entity, Object key, char op) throws SQLException {
+        String sql = "INSERT INTO changes (user_id, entity, entity_key, op) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ps.setString(2, entity);
+            ps.setString(3, String.valueOf(key));
+            ps.setString(4, String.valueOf(op));
+            ps.executeUpdate();
+        }
+    }
+
+    /** Logs the same operation for {@code keys[i]} of {@code userIds[i]}, as one JDBC batch. */
+    public static void record(Connection conn, int[] userIds, String entity, int[] keys, char op) throws SQLException {
+        String sql = "INSERT INTO changes (user_id, entity, entity_key, op) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < keys.length; i++) {
+                ps.setInt(1, userIds[i]);
+                ps.setString(2, entity);
+                ps.setString(3, String.valueOf(keys[i]));
+                ps.setString(4, String.valueOf(op));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** Version of the newest row on this database, or 0 if the log is empty. */
+    public static long latest(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT MAX(version) FROM changes");
+                ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * The user's changes after {@code since}, oldest first, at most {@code limit}.
+     * Returns just a {@link #RESET} change when the log cannot bring the client up to date.
+     */
+    public static List<Change> since(Connection conn, int userId, long since, int limit) throws SQLException {
+        long oldest;
+        long latest;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT MIN(version), MAX(version) FROM changes");
+                ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            oldest = rs.getLong(1);
+            latest = rs.getLong(2);
+        }
+        // Rows before the oldest one left may have been compacted away
+        if (since > latest || since < oldest - 1)
+            return List.of(new Change(latest, RESET, "", UPDATE));
+
+        List<Change> changes = new ArrayList<>();
+        String sql = "SELECT version, entity, entity_key, op FROM changes WHERE user_id = ? AND version > ? "
+                + "ORDER BY version LIMIT ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ps.setLong(2, since);
+            ps.setInt(3, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                Change c = new Change(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4).charAt(0));
+                // A move to this shard invalidates everything the client had
+                if (c.entity().equals(RESET))
+                    changes.clear();
+                changes.add(c);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Highest version no transaction still in flight can come in under: the
+     * last one before the first gap among recent rows, or {@code latest}.
+     */
+    public static long settled(Connection conn, long latest) throws SQLException {
+        List<Long> recent = new ArrayList<>();
+        // Database time on both sides, so the application's clock does not matter
+        String sql = "SELECT version FROM changes WHERE changed_at >= TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP) "
+                + "ORDER BY version";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, -SETTLE_SECONDS);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next())
+                recent.add(rs.getLong(1));
+        }
+        if (recent.isEmpty())
+            return latest;
+        long previous;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT MAX(version) FROM changes WHERE version < ?")) {
+            ps.setLong(1, recent.get(0));
+            ResultSet rs = ps.executeQuery();
+            previous = rs.next() && rs.getObject(1) != null ? rs.getLong(1) : recent.get(0) - 1;
+        }
+        for (long version : recent) {
+            if (version != previous + 1)
+                return previous;
+            previous = version;
+        }
+        return latest;
+    }
+
+    /** Deletes rows older than {@code before}, always keeping the newest row; returns how many went. */
+    public static int compact(Connection conn, Timestamp before) throws SQLException {
+        String sql = "DELETE FROM changes WHERE changed_at < ? AND version < (SELECT v FROM "
+                + "(SELECT MAX(version) AS v FROM changes) latest)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, before);
+            return ps.executeUpdate();
+        }
+    }
+}
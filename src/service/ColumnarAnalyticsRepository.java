@@ -0,0 +1,192 @@
+package service;
+
+import model.Expense;
+import model.Money;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers the dashboard, report, trend, daily-spending and prediction
+ * aggregates from an in-process {@link ExpenseColumns} per active user instead
+ * of a GROUP BY per request. A user's columns are loaded on first use, kept in
+ * step by {@link #addExpense} and {@link #deleteExpense}, and dropped after
+ * {@code idleMillis} without reads. Writes that reach the database some other
+ * way (the CLI, another server) are not seen until the user is evicted.
+ */
+public class ColumnarAnalyticsRepository extends ForwardingExpenseRepository {
+
+    private final Map<Integer, ExpenseColumns> columns = new ConcurrentHashMap<>();
+    private final long idleMillis;
+    private volatile long lastSweep = System.currentTimeMillis();
+
+    public ColumnarAnalyticsRepository(ExpenseRepository delegate, long idleMillis) {
+        super(delegate);
+        this.idleMillis = idleMillis;
+    }
+
+    /** Returns the user's columns, loading them if needed. Callers synchronize on the result. */
+    private ExpenseColumns columnsFor(int userId) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep > idleMillis / 2)
+            evictIdle(now);
+        ExpenseColumns c = columns.computeIfAbsent(userId, k -> new ExpenseColumns());
+        c.lastAccess = now;
+        synchronized (c) {
+            if (!c.loaded)
+                c.load(delegate.searchExpenses(userId, null, null, null, null, null, null));
+        }
+        return c;
+    }
+
+    private void evictIdle(long now) {
+        lastSweep = now;
+        columns.values().removeIf(c -> now - c.lastAccess > idleMillis);
+    }
+
+    /** Number of users currently held in memory. */
+    public int residentUsers() {
+        return columns.size();
+    }
+
+    // ─── Writes ──────────────────────────────────────────
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        Expense added = delegate.addExpense(userId, category, amount, receiptPath, date, notes);
+        ExpenseColumns c = columns.get(userId);
+        if (c != null) {
+            synchronized (c) {
+                // Not loaded yet means the load will read this row from the delegate
+                if (c.loaded)
+                    c.append(added);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public Expense deleteExpense(int userId, int id) throws SQLException {
+        Expense removed = delegate.deleteExpense(userId, id);
+        ExpenseColumns c = columns.get(userId);
+        if (removed != null && c != null) {
+            synchronized (c) {
+                c.remove(id);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Expense recategorizeExpense(int userId, int id, String category) throws SQLException {
+        Expense before = delegate.recategorizeExpense(userId, id, category);
+        ExpenseColumns c = columns.get(userId);
+        if (before != null && c != null) {
+            synchronized (c) {
+                if (c.loaded) {
+                    c.remove(id);
+                    c.append(new Expense(id, category, before.getAmount(), before.getReceiptPath(), before.getDate(),
+                            before.getNotes()));
+                }
+            }
+        }
+        return before;
+    }
+
+    @Override
+    public int applyRecurringExpenses(int userId) throws SQLException {
+        int added = delegate.applyRecurringExpenses(userId);
+        // Recurring rows are inserted below this layer; reload on next read
+        if (added > 0)
+            columns.remove(userId);
+        return added;
+    }
+
+    // ─── Aggregates ──────────────────────────────────────
+
+    @Override
+    public Money getTotalExpensesForMonth(int userId, int month, int year) throws SQLException {
+        ExpenseColumns c = columnsFor(userId);
+        synchronized (c) {
+            return Money.ofMinor(c.totalForMonth(month, year));
+        }
+    }
+
+    @Override
+    public String getTopCategoryForMonth(int userId, int month, int year) throws SQLException {
+        Map<String, Money> breakdown = getCategoryBreakdown(userId, month, year);
+        return breakdown.isEmpty() ? "N/A" : breakdown.keySet().iterator().next();
+    }
+
+    @Override
+    public int getExpenseCount(int userId, int month, int year) throws SQLException {
+        ExpenseColumns c = columnsFor(userId);
+        synchronized (c) {
+            return c.countForMonth(month, year);
+        }
+    }
+
+    @Override
+    public Map<String, Money> getCategoryBreakdown(int userId, int month, int year) throws SQLException {
+        ExpenseColumns c = columnsFor(userId);
+        long[] totals;
+        synchronized (c) {
+            totals = c.categoryTotals(month, year);
+        }
+        return ExpenseColumns.sortedByTotal(totals);
+    }
+
+    @Override
+    public Map<String, Money> getPredictions(int userId, int monthsToLookBack) throws SQLException {
+        LocalDate start = LocalDate.now().minusMonths(monthsToLookBack).withDayOfMonth(1);
+        ExpenseColumns c = columnsFor(userId);
+        synchronized (c) {
+            return c.averagePerActiveMonth(start);
+        }
+    }
+
+    @Override
+    public List<Map<String, Object>> getMonthlyTrend(int userId, int months) throws SQLException {
+        LocalDate start = LocalDate.now().minusMonths(months - 1).withDayOfMonth(1);
+        int year = start.getYear();
+        int month = start.getMonthValue();
+        ExpenseColumns c = columnsFor(userId);
+        long[] totals;
+        synchronized (c) {
+            totals = c.monthlyTotals(year, month);
+        }
+        List<Map<String, Object>> trend = new ArrayList<>();
+        for (int i = 0; i < totals.length; i++) {
+            if (totals[i] < 0)
+                continue;
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("year", ExpenseColumns.yearOf(year, month, i));
+            point.put("month", ExpenseColumns.monthOf(year, month, i));
+            point.put("total", Money.ofMinor(totals[i]));
+            trend.add(point);
+        }
+        return trend;
+    }
+
+    @Override
+    public Map<Integer, Money> getDailySpending(int userId, int month, int year) throws SQLException {
+        ExpenseColumns c = columnsFor(userId);
+        long[] totals;
+        synchronized (c) {
+            totals = c.dailyTotals(month, year);
+        }
+        Map<Integer, Money> daily = new LinkedHashMap<>();
+        for (int d = 1; d < totals.length; d++) {
+            if (totals[d] >= 0)
+                daily.put(d, Money.ofMinor(totals[d]));
+        }
+        return daily;
+    }
+}
@@ -0,0 +1,259 @@
+package service;
+
+import model.Money;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streaming reader for CSV statement exports, whose layout differs from bank
+ * to bank and is described by a {@link Profile}. Records are split as they
+ * are read, quoted fields included, into buffers reused from row to row.
+ */
+public final class CsvStatementParser implements StatementParser {
+
+    /**
+     * Where a bank puts each field. Columns are named by their header or
+     * given as 0-based indexes. Either {@code amount} or {@code debit} and
+     * {@code credit} must be set; {@code expensesPositive} says whether the
+     * amount column shows money out as positive, as card statements often
+     * do. {@code category} and {@code currency} columns are optional.
+     */
+    public record Profile(char delimiter, int skipLines, String date, String dateFormat, String amount,
+            String debit, String credit, boolean expensesPositive, String payee, String category,
+            String currency, char decimal) {
+
+        /** Reads profile {@code name} from the import.csv.&lt;name&gt;.* settings. */
+        public static Profile fromSettings(String name) {
+            String p = "import.csv." + (name != null ? name : "default") + ".";
+            String delimiter = DatabaseManager.getSetting(p + "delimiter", ",");
+            return new Profile(delimiter.equalsIgnoreCase("tab") ? '\t' : delimiter.charAt(0),
+                    Integer.parseInt(DatabaseManager.getSetting(p + "skipLines", "1")),
+                    DatabaseManager.getSetting(p + "date", "Date"),
+                    DatabaseManager.getSetting(p + "dateFormat", "yyyy-MM-dd"),
+                    DatabaseManager.getSetting(p + "amount", "Amount"),
+                    DatabaseManager.getSetting(p + "debit", null),
+                    DatabaseManager.getSetting(p + "credit", null),
+                    Boolean.parseBoolean(DatabaseManager.getSetting(p + "expensesPositive", "false")),
+                    DatabaseManager.getSetting(p + "payee", "Description"),
+                    DatabaseManager.getSetting(p + "category", null),
+                    DatabaseManager.getSetting(p + "currency", null),
+                    DatabaseManager.getSetting(p + "decimal", ".").charAt(0));
+        }
+    }
+
+    private final Profile profile;
+    private final String defaultCurrency;
+    private final DateTimeFormatter dates;
+    private final boolean dateHasTime;
+
+    public CsvStatementParser(Profile profile, String defaultCurrency) {
+        this.profile = profile;
+        this.defaultCurrency = defaultCurrency;
+        this.dates = DateTimeFormatter.ofPattern(profile.dateFormat(), Locale.ROOT);
+        this.dateHasTime = profile.dateFormat().replaceAll("'[^']*'", "").matches(".*[HhkKm].*");
+    }
+
+    /** Splits records as they are read; a quoted field may hold delimiters, quotes ("") and line breaks. */
+    private static final class Records {
+        private final Reader in;
+        private final char delimiter;
+        private final char[] buf = new char[1 << 16];
+        private int pos, len;
+        private final List<StringBuilder> fields = new ArrayList<>();
+        int count;
+        long line = 1, start;
+
+        Records(Reader in, char delimiter) {
+            this.in = in;
+            this.delimiter = delimiter;
+        }
+
+        private int next() throws IOException {
+            if (pos == len) {
+                len = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (len <= 0) {
+                    len = 0;
+                    return -1;
+                }
+            }
+            return buf[pos++];
+        }
+
+        private StringBuilder field(int i) {
+            if (i == fields.size())
+                fields.add(new StringBuilder(32));
+            StringBuilder sb = fields.get(i);
+            sb.setLength(0);
+            return sb;
+        }
+
+        StringBuilder get(int i) {
+            return i >= 0 && i < count ? fields.get(i) : null;
+        }
+
+        /** Reads the next record into the field buffers; false at the end of the input. */
+        boolean read() throws IOException {
+            start = line;
+            count = 0;
+            int c = next();
+            if (c < 0)
+                return false;
+            StringBuilder f = field(count++);
+            boolean quoted = false;
+            for (; c >= 0; c = next()) {
+                if (quoted) {
+                    if (c == '"') {
+                        int n = next();
+                        if (n == '"') {
+                            f.append('"');
+                            continue;
+                        }
+                        quoted = false;
+                        c = n;
+                        if (c < 0)
+                            break;
+                    } else {
+                        if (c == '\n')
+                            line++;
+                        f.append((char) c);
+                        continue;
+                    }
+                }
+                if (c == '"' && f.length() == 0) {
+                    quoted = true;
+                } else if (c == delimiter) {
+                    f = field(count++);
+                } else if (c == '\n') {
+                    line++;
+                    break;
+                } else if (c != '\r') {
+                    f.append((char) c);
+                }
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public void parse(Reader in, Sink sink) throws IOException, SQLException {
+        Records records = new Records(in, profile.delimiter());
+        List<String> header = List.of();
+        for (int i = 0; i < profile.skipLines() && records.read(); i++) {
+            if (i == 0) {
+                List<String> names = new ArrayList<>();
+                for (int f = 0; f < records.count; f++)
+                    names.add(records.get(f).toString().trim());
+                header = names;
+            }
+        }
+        int date = column(header, profile.date());
+        int amount = column(header, profile.amount());
+        int debit = column(header, profile.debit());
+        int credit = column(header, profile.credit());
+        int payee = column(header, profile.payee());
+        int category = column(header, profile.category());
+        int currency = column(header, profile.currency());
+        if (date < 0 || (amount < 0 && debit < 0))
+            throw new IOException("CSV profile needs a date column and an amount or debit column");
+
+        StringBuilder number = new StringBuilder(16);
+        // Statements list many rows per day, so the last date parsed is usually the next one too
+        String lastDate = null;
+        LocalDateTime lastAt = null;
+        while (records.read()) {
+            if (records.count == 1 && records.get(0).length() == 0)
+                continue;
+            StringBuilder d = records.get(date);
+            if (d == null || d.length() == 0) {
+                sink.rejected(records.start, "Row has no date");
+                continue;
+            }
+            String curr = text(records.get(currency));
+            if (curr == null)
+                curr = defaultCurrency;
+            Money money;
+            LocalDateTime at;
+            try {
+                if (debit >= 0) {
+                    Money out = amount(records.get(debit), number, curr);
+                    // Some banks fill the unused column with zero
+                    money = out != null && out.signum() != 0 ? Money.ofMinor(-out.abs().getMinorUnits(), curr)
+                            : amount(records.get(credit), number, curr);
+                } else {
+                    money = amount(records.get(amount), number, curr);
+                    if (money != null && profile.expensesPositive())
+                        money = Money.ofMinor(-money.getMinorUnits(), curr);
+                }
+                if (money == null) {
+                    sink.rejected(records.start, "Row has no amount");
+                    continue;
+                }
+                if (lastDate == null || !lastDate.contentEquals(d)) {
+                    String text = d.toString().trim();
+                    lastAt = dateHasTime ? LocalDateTime.parse(text, dates) : LocalDate.parse(text, dates).atStartOfDay();
+                    lastDate = d.toString();
+                }
+                at = lastAt;
+            } catch (NumberFormatException | DateTimeException e) {
+                sink.rejected(records.start, e.getMessage());
+                continue;
+            }
+            sink.transaction(new Transaction(at, money, text(records.get(payee)), text(records.get(category))));
+        }
+    }
+
+    /** The column a profile names, by header or index; -1 if not set or not found. */
+    private static int column(List<String> header, String ref) {
+        if (ref == null || ref.isEmpty())
+            return -1;
+        if (ref.chars().allMatch(Character::isDigit))
+            return Integer.parseInt(ref);
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).equalsIgnoreCase(ref))
+                return i;
+        }
+        return -1;
+    }
+
+    private static String text(StringBuilder field) {
+        if (field == null)
+            return null;
+        String s = field.toString().trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    /**
+     * The field as money, or null if it is blank. Currency symbols, spaces and
+     * thousands separators are dropped; (12.50) and 12.50- are negative.
+     */
+    private Money amount(StringBuilder field, StringBuilder number, String currency) {
+        if (field == null)
+            return null;
+        number.setLength(0);
+        boolean negative = false;
+        for (int i = 0; i < field.length(); i++) {
+            char ch = field.charAt(i);
+            if (ch >= '0' && ch <= '9')
+                number.append(ch);
+            else if (ch == profile.decimal())
+                number.append('.');
+            else if (ch == '-' || ch == '(')
+                negative = true;
+        }
+        if (number.length() == 0)
+            return null;
+        if (negative)
+            number.insert(0, '-');
+        return Money.parse(number, currency);
+    }
+}
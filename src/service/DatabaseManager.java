@@ -4,15 +4,20 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class DatabaseManager {
     private static String dbUrl;
     private static String dbUser;
     private static String dbPass;
+    /** url, user, password per shard; shard 0 is db.url unless db.shard.0.url says otherwise. */
+    private static String[][] shards;
+    private static ShardRouter router;
+    private static boolean instrument = true;
+    private static final Properties settings = new Properties();
 
     static {
         try {
@@ -20,110 +25,135 @@ public class DatabaseManager {
         } catch (ClassNotFoundException e) {
             System.err.println("JDBC Driver not found. Please add the connector JAR to your classpath.");
         }
-        Properties props = new Properties();
         try (FileInputStream fis = new FileInputStream("config/db.properties")) {
-            props.load(fis);
-            dbUrl = props.getProperty("db.url");
-            dbUser = props.getProperty("db.user");
-            dbPass = props.getProperty("db.password");
+            settings.load(fis);
+            dbUrl = settings.getProperty("db.url");
+            dbUser = settings.getProperty("db.user");
+            dbPass = settings.getProperty("db.password");
         } catch (IOException e) {
             System.err.println("Fatal: Could not load config/db.properties. Falling back to defaults.");
             dbUrl = "jdbc:mysql://localhost:3306/expensetracker?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
             dbUser = "root";
             dbPass = "Yash@mysql23";
         }
+        instrument = Boolean.parseBoolean(getSetting("db.instrument", "true"));
+        try {
+            QueryMetrics.setSlowQueryThresholdMs(Long.parseLong(getSetting("db.slowQueryMs", "200")));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid db.slowQueryMs, keeping default of " + QueryMetrics.getSlowQueryThresholdMs() + " ms.");
+        }
+        try {
+            ExpenseArchive.setKeepYears(Integer.parseInt(getSetting("archive.keepYears", "2")));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid archive.keepYears, keeping the last 2 years hot.");
+        }
+        configureShards();
+        configureReplicas();
     }
 
-    public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(dbUrl, dbUser, dbPass);
+    /** Reads an optional setting from config/db.properties. */
+    public static String getSetting(String key, String defaultValue) {
+        return settings.getProperty(key, defaultValue);
     }
 
-    public static void initializeDatabase() throws SQLException {
-        try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-            // Users table (Must be first for FK constraints)
-            stmt.execute("""
-                    CREATE TABLE IF NOT EXISTS users (
-                        id INT AUTO_INCREMENT PRIMARY KEY,
-                        username VARCHAR(50) UNIQUE NOT NULL,
-                        password_hash VARCHAR(255) NOT NULL,
-                        salt VARCHAR(255) NOT NULL
-                    )""");
+    /**
+     * Reads db.shards (default 1) and db.shard.N.url/user/password. A missing
+     * shard URL is fatal: falling back would quietly route users to the wrong
+     * database.
+     */
+    private static void configureShards() {
+        int count = Integer.parseInt(getSetting("db.shards", "1"));
+        shards = new String[count][];
+        for (int i = 0; i < count; i++) {
+            String url = getSetting("db.shard." + i + ".url", i == 0 ? dbUrl : null);
+            if (url == null)
+                throw new IllegalStateException("db.shards is " + count + " but db.shard." + i + ".url is not set");
+            shards[i] = new String[] { url, getSetting("db.shard." + i + ".user", dbUser),
+                    getSetting("db.shard." + i + ".password", dbPass) };
+        }
+        router = new ShardRouter(count);
+        ShardDirectory.setCacheSeconds(Integer.parseInt(getSetting("db.shardCacheSeconds", "5")));
+    }
+
+    /**
+     * Reads db.shard.N.replicas (comma-separated URLs, same credentials as the
+     * shard); db.replicas is accepted for shard 0 in an unsharded setup.
+     */
+    private static void configureReplicas() {
+        boolean any = false;
+        for (int i = 0; i < shards.length; i++) {
+            String urls = getSetting("db.shard." + i + ".replicas", i == 0 ? getSetting("db.replicas", "") : "");
+            List<String> list = new ArrayList<>();
+            for (String url : urls.split(",")) {
+                if (!url.isBlank())
+                    list.add(url.trim());
+            }
+            if (!list.isEmpty()) {
+                ReadReplicas.configure(i, list, shards[i][1], shards[i][2]);
+                any = true;
+            }
+        }
+        if (!any)
+            return;
+        ReadReplicas.setReadYourWritesSeconds(Integer.parseInt(getSetting("db.readYourWritesSeconds", "5")));
+        ReadReplicas.setMaxLagSeconds(Integer.parseInt(getSetting("db.replicaMaxLagSeconds", "30")));
+        ReadReplicas.startHealthChecks(Integer.parseInt(getSetting("db.replicaCheckSeconds", "10")));
+    }
+
+    public static int shardCount() {
+        return shards.length;
+    }
 
-            // Expenses table
-            stmt.execute("""
-                    CREATE TABLE IF NOT EXISTS expenses (
-                        id INT AUTO_INCREMENT PRIMARY KEY,
-                        username VARCHAR(50) NOT NULL,
-                        category VARCHAR(100),
-                        amount DECIMAL(10, 2) NOT NULL CHECK (amount > 0),
-                        currency VARCHAR(3) DEFAULT 'INR',
-                        receipt_path VARCHAR(255),
-                        date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                        INDEX idx_username (username), INDEX idx_date (date),
-                        FOREIGN KEY (username) REFERENCES users(username)
-                    )""");
+    public static ShardRouter getShardRouter() {
+        return router;
+    }
 
-            // Migrate existing expenses table: add missing columns
-            try {
-                stmt.execute("ALTER TABLE expenses ADD COLUMN currency VARCHAR(3) DEFAULT 'INR'");
-            } catch (SQLException ignored) {
-                /* Column already exists */ }
-            try {
-                stmt.execute("ALTER TABLE expenses ADD COLUMN receipt_path VARCHAR(255)");
-            } catch (SQLException ignored) {
-                /* Column already exists */ }
+    /** Connection to shard 0, which also holds the shard directory. For work that is not tied to one user. */
+    public static Connection getConnection() throws SQLException {
+        return getShardConnection(0);
+    }
 
-            // Recurring expenses table
-            stmt.execute("""
-                    CREATE TABLE IF NOT EXISTS recurring_expenses (
-                        id INT AUTO_INCREMENT PRIMARY KEY,
-                        username VARCHAR(100) NOT NULL,
-                        description VARCHAR(255) NOT NULL,
-                        amount DECIMAL(10, 2) NOT NULL CHECK (amount > 0),
-                        category VARCHAR(100) NOT NULL,
-                        interval_type ENUM('daily', 'weekly', 'monthly') NOT NULL,
-                        start_date DATE NOT NULL,
-                        last_applied_date DATE,
-                        INDEX idx_rec_username (username)
-                    )""");
+    /** Connection to the shard holding this user. */
+    public static Connection getConnection(int userId) throws SQLException {
+        return getShardConnection(ShardDirectory.shardOf(userId));
+    }
 
-            // Reminders table
-            stmt.execute("""
-                    CREATE TABLE IF NOT EXISTS reminders (
-                        id INT AUTO_INCREMENT PRIMARY KEY,
-                        username VARCHAR(100) NOT NULL,
-                        title VARCHAR(255) NOT NULL,
-                        due_date DATE NOT NULL,
-                        notes TEXT,
-                        INDEX idx_rem_username (username),
-                        INDEX idx_rem_due_date (due_date)
-                    )""");
+    /** Connection to the shard holding (or that would hold) this username; used at login. */
+    public static Connection getConnection(String username) throws SQLException {
+        return getShardConnection(ShardDirectory.shardOf(username));
+    }
 
-            // Categories table
-            stmt.execute("""
-                    CREATE TABLE IF NOT EXISTS categories (
-                        id INT AUTO_INCREMENT PRIMARY KEY,
-                        name VARCHAR(50) UNIQUE NOT NULL
-                    )""");
+    /**
+     * Connection for a read-only query about this user: a replica of the user's
+     * shard, unless the user wrote recently or no replica is healthy, in which
+     * case the primary.
+     */
+    public static Connection getReadConnection(int userId) throws SQLException {
+        int shard = ShardDirectory.shardOf(userId);
+        if (!ReadReplicas.recentlyWrote(userId)) {
+            Connection replica = ReadReplicas.connect(shard);
+            if (replica != null)
+                return instrument ? QueryMetrics.instrument(replica) : replica;
+        }
+        return getShardConnection(shard);
+    }
 
-            // Budgets table
-            stmt.execute("""
-                    CREATE TABLE IF NOT EXISTS budgets (
-                        id INT AUTO_INCREMENT PRIMARY KEY,
-                        username VARCHAR(50) NOT NULL,
-                        category VARCHAR(100) NOT NULL,
-                        monthly_limit DECIMAL(10, 2) NOT NULL CHECK (monthly_limit > 0),
-                        UNIQUE KEY uq_user_cat (username, category),
-                        FOREIGN KEY (username) REFERENCES users(username)
-                    )""");
+    public static Connection getShardConnection(int shard) throws SQLException {
+        String[] db = shards[shard];
+        Connection conn = DriverManager.getConnection(db[0], db[1], db[2]);
+        return instrument ? QueryMetrics.instrument(conn) : conn;
+    }
 
-            // Seed default categories if empty
-            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM categories")) {
-                if (rs.next() && rs.getInt(1) == 0) {
-                    stmt.execute(
-                            "INSERT INTO categories (name) VALUES ('Food'), ('Transport'), ('Rent'), ('Entertainment'), ('Health'), ('Other')");
-                }
+    /** Creates or upgrades the schema on every shard; a single version check each when already current. */
+    public static void initializeDatabase() throws SQLException {
+        for (int shard = 0; shard < shards.length; shard++) {
+            try (Connection conn = getShardConnection(shard)) {
+                SchemaMigrator.migrate(conn);
+                ExpenseArchive.ensureFuturePartitions(conn);
+                if (shard == 0 && shards.length > 1)
+                    ShardDirectory.adoptUnsharded(conn);
             }
         }
+        ChangeLog.startCompaction(Integer.parseInt(getSetting("changes.keepDays", "30")));
     }
 }
@@ -0,0 +1,262 @@
+package service;
+
+import model.Expense;
+import model.Money;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-based duplicate detection for bulk imports: an incoming row is a
+ * duplicate when the user already has an expense on the same day with the
+ * same category, amount and currency. Each importing user gets a Bloom filter
+ * of the fingerprints of their expenses, so a row that is new, which is most
+ * of them, is accepted without a query; only a possible match is checked
+ * against the delegate.
+ * <p>
+ * A filter is built from the delegate on first use, kept up to date by every
+ * add through this repository, rebuilt once it holds more than it was sized
+ * for, and dropped after {@code idleMillis} without use. Deletes leave their
+ * fingerprint behind, which only costs a query. Like
+ * {@link BudgetTrackingRepository}, rows written around the API (the CLI)
+ * are not seen until the filter is rebuilt.
+ * <p>
+ * A whole statement goes through an {@link Import}, which writes in batches
+ * and, unlike {@link #addExpenseIfNew}, keeps repeats within the statement.
+ */
+public class DeduplicatingRepository extends ForwardingExpenseRepository {
+
+    private static final class Filter {
+        /** Null until built. */
+        ExpenseBloomFilter bloom;
+        volatile long lastAccess = System.currentTimeMillis();
+    }
+
+    private final Map<Integer, Filter> filters = new ConcurrentHashMap<>();
+    private final long idleMillis;
+    private volatile long lastSweep = System.currentTimeMillis();
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    public DeduplicatingRepository(ExpenseRepository delegate, long idleMillis) {
+        super(delegate);
+        this.idleMillis = idleMillis;
+    }
+
+    /** Rows checked by {@link #isDuplicate}. */
+    public long checkCount() {
+        return checks.get();
+    }
+
+    /** Checks the filter could not answer alone; checks minus queries were ruled out for free. */
+    public long queryCount() {
+        return queries.get();
+    }
+
+    public long duplicateCount() {
+        return duplicates.get();
+    }
+
+    /**
+     * Returns the user's filter, building it if needed. Built while holding
+     * the filter's lock, so an add that finds the filter in the map waits and
+     * then records its row; an add that did not find it wrote before the
+     * scan, which then includes the row.
+     */
+    private Filter filterFor(int userId) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep > idleMillis / 2) {
+            lastSweep = now;
+            filters.values().removeIf(f -> now - f.lastAccess > idleMillis);
+        }
+        Filter f = filters.computeIfAbsent(userId, k -> new Filter());
+        f.lastAccess = now;
+        synchronized (f) {
+            if (f.bloom == null || f.bloom.isFull()) {
+                List<Expense> all = delegate.searchExpenses(userId, null, null, null, null, null, null);
+                ExpenseBloomFilter bloom = new ExpenseBloomFilter(all.size());
+                for (Expense e : all)
+                    bloom.add(ExpenseBloomFilter.fingerprint(e.getCategory(), e.getAmount(), e.getDate().toLocalDate()));
+                f.bloom = bloom;
+            }
+        }
+        return f;
+    }
+
+    /**
+     * How many of the user's expenses have this day, category (ignoring case),
+     * amount and currency; 0 without a query when the filter rules it out.
+     */
+    private int countExisting(int userId, String category, Money amount, LocalDate day) throws SQLException {
+        if (!mightExist(userId, ExpenseBloomFilter.fingerprint(category, amount, day)))
+            return 0;
+        int n = 0;
+        for (Expense e : delegate.searchExpenses(userId, null, null, null, null, day, day)) {
+            if (e.getCategory().equalsIgnoreCase(category) && e.getAmount().equals(amount))
+                n++;
+        }
+        return n;
+    }
+
+    /** Checks the filter; when it cannot rule the fingerprint out, a query follows and is counted. */
+    private boolean mightExist(int userId, long fingerprint) throws SQLException {
+        checks.incrementAndGet();
+        Filter f = filterFor(userId);
+        synchronized (f) {
+            if (!f.bloom.mightContain(fingerprint))
+                return false;
+        }
+        queries.incrementAndGet();
+        return true;
+    }
+
+    /** True if the user already has an expense on the same day with the same category, amount and currency. */
+    public boolean isDuplicate(int userId, String category, Money amount, LocalDateTime date) throws SQLException {
+        if (countExisting(userId, category, amount, date.toLocalDate()) == 0)
+            return false;
+        duplicates.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Adds the expense unless {@link #isDuplicate}; returns null if it was.
+     * Two imports of the same rows for one user at once can both add a row.
+     */
+    public Expense addExpenseIfNew(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date) throws SQLException {
+        LocalDateTime at = (date != null) ? date : LocalDateTime.now();
+        if (isDuplicate(userId, category, amount, at))
+            return null;
+        return addExpense(userId, category, amount, receiptPath, at);
+    }
+
+    /** Starts importing one statement for the user. */
+    public Import startImport(int userId, int batchSize) {
+        return new Import(userId, batchSize);
+    }
+
+    /**
+     * Adds one statement's rows in batches through the delegate's
+     * {@link ExpenseRepository#addExpenses}. Two coffees on the same day at the
+     * same price are both real, so a row is only a duplicate while the
+     * statement has shown fewer rows like it than the user had before the
+     * import began: importing a statement twice adds its rows once, and an
+     * overlapping statement adds only what is new. Not thread safe; call
+     * {@link #finish} at the end.
+     */
+    public final class Import {
+        private static final int CACHED_DAYS = 400;
+        private final int userId;
+        private final int batchSize;
+        /** By fingerprint: rows stored before the import, rows seen in the statement so far. */
+        private final Map<Long, int[]> seen = new HashMap<>();
+        /** Stored rows per fingerprint for recently queried days, so a re-import costs a query per day, not per row. */
+        private final Map<LocalDate, Map<Long, Integer>> days = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, Map<Long, Integer>> eldest) {
+                return size() > CACHED_DAYS;
+            }
+        };
+        private final List<Expense> pending = new ArrayList<>();
+        private long added;
+
+        private Import(int userId, int batchSize) {
+            this.userId = userId;
+            this.batchSize = batchSize;
+        }
+
+        /** Queues the row unless it is a duplicate; returns false if it was. Notes play no part in the match. */
+        public boolean add(String category, Money amount, String receiptPath, LocalDateTime date, String notes)
+                throws SQLException {
+            long key = ExpenseBloomFilter.fingerprint(category, amount, date.toLocalDate());
+            int[] counts = seen.get(key);
+            if (counts == null) {
+                // Before any row like it is written, so the count is what was there already
+                counts = new int[] { mightExist(userId, key) ? storedOn(date.toLocalDate()).getOrDefault(key, 0) : 0, 0 };
+                seen.put(key, counts);
+            }
+            if (counts[1]++ < counts[0]) {
+                duplicates.incrementAndGet();
+                return false;
+            }
+            pending.add(new Expense(0, category, amount, receiptPath, date, notes));
+            if (pending.size() >= batchSize)
+                flush();
+            return true;
+        }
+
+        /**
+         * A day's stored rows by fingerprint. May include rows this import
+         * wrote, but only under fingerprints already in {@code seen}, which
+         * are never looked up here again.
+         */
+        private Map<Long, Integer> storedOn(LocalDate day) throws SQLException {
+            Map<Long, Integer> counts = days.get(day);
+            if (counts == null) {
+                counts = new HashMap<>();
+                for (Expense e : delegate.searchExpenses(userId, null, null, null, null, day, day))
+                    counts.merge(ExpenseBloomFilter.fingerprint(e.getCategory(), e.getAmount(), day), 1, Integer::sum);
+                days.put(day, counts);
+            }
+            return counts;
+        }
+
+        private void flush() throws SQLException {
+            if (pending.isEmpty())
+                return;
+            List<Expense> stored = delegate.addExpenses(userId, pending);
+            added += stored.size();
+            pending.clear();
+            remember(userId, stored);
+        }
+
+        /** Writes what is still queued and returns how many rows the import added. */
+        public long finish() throws SQLException {
+            flush();
+            return added;
+        }
+    }
+
+    private void remember(int userId, List<Expense> added) {
+        Filter f = filters.get(userId);
+        if (f == null)
+            return;
+        synchronized (f) {
+            if (f.bloom != null) {
+                for (Expense e : added)
+                    f.bloom.add(ExpenseBloomFilter.fingerprint(e.getCategory(), e.getAmount(), e.getDate().toLocalDate()));
+            }
+        }
+    }
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        Expense added = delegate.addExpense(userId, category, amount, receiptPath, date, notes);
+        remember(userId, List.of(added));
+        return added;
+    }
+
+    @Override
+    public Expense recategorizeExpense(int userId, int id, String category) throws SQLException {
+        Expense before = delegate.recategorizeExpense(userId, id, category);
+        Filter f = filters.get(userId);
+        if (before != null && f != null) {
+            synchronized (f) {
+                if (f.bloom != null)
+                    f.bloom.add(ExpenseBloomFilter.fingerprint(category, before.getAmount(),
+                            before.getDate().toLocalDate()));
+            }
+        }
+        return before;
+    }
+}
@@ -0,0 +1,275 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hot/cold split of the expenses table. The last {@code archive.keepYears}
+ * calendar years stay in expenses; {@link #archiveClosedYears} moves older
+ * years into expenses_archive (ROW_FORMAT=COMPRESSED on MySQL). Queries whose
+ * date range starts inside the hot window read expenses alone. Earlier
+ * ranges read {@link #ALL_EXPENSES}, so historical reports keep working.
+ * <p>
+ * On MySQL, {@link #partitionByYear} can also RANGE-partition expenses by
+ * year. The hot window's date predicates then prune to the recent
+ * partitions, and archiving a year swaps its partition out with EXCHANGE
+ * PARTITION and archives the swapped-out rows. The emptied partition stays,
+ * so rows back-dated into the year later are archived by the next run.
+ * {@link #ensureFuturePartitions} splits next year's partition off the
+ * catch-all before it is needed; it runs at every start.
+ */
+public final class ExpenseArchive {
+
+    /** Every expense, hot or archived, aliased as {@code e}. */
+    public static final String ALL_EXPENSES = "(SELECT id, user_id, category_id, amount, currency, receipt_path, date, notes "
+            + "FROM expenses UNION ALL SELECT id, user_id, category_id, amount, currency, receipt_path, date, notes "
+            + "FROM expenses_archive) e";
+
+    private static final String CATCH_ALL = "pmax";
+    /** Table a year's partition is swapped into before it is archived. */
+    private static final String STAGE = "expenses_archive_stage";
+
+    private static volatile int keepYears = 2;
+
+    private ExpenseArchive() {
+    }
+
+    public static void setKeepYears(int years) {
+        if (years < 1)
+            throw new IllegalArgumentException("archive.keepYears must be at least 1");
+        keepYears = years;
+    }
+
+    /** First day that is never archived: 1 January, {@code keepYears - 1} years ago. */
+    public static LocalDate hotSince() {
+        return LocalDate.now().minusYears(keepYears - 1L).withDayOfYear(1);
+    }
+
+    /** Expenses table expression for rows dated from {@code since} on; null means all of them. */
+    public static String tableFrom(LocalDate since) {
+        return (since != null && !since.isBefore(hotSince())) ? "expenses e" : ALL_EXPENSES;
+    }
+
+    // ─── Archival ────────────────────────────────────────
+
+    /**
+     * Moves every year before {@link #hotSince} into expenses_archive, one
+     * year per transaction. Safe to re-run after a failure: rows already
+     * archived are not copied twice. Returns the number of rows moved.
+     */
+    public static int archiveClosedYears(Connection conn) throws SQLException {
+        LocalDate cutoff = hotSince();
+        List<String> partitions = partitions(conn);
+        int moved = 0;
+        if (isMySql(conn))
+            compressArchive(conn);
+        if (!partitions.isEmpty()) {
+            createStage(conn);
+            moved += drainStage(conn);
+        }
+        int oldest;
+        try (PreparedStatement ps = conn.prepareStatement("SELECT MIN(date) FROM expenses WHERE date < ?")) {
+            ps.setTimestamp(1, Timestamp.valueOf(cutoff.atStartOfDay()));
+            ResultSet rs = ps.executeQuery();
+            Timestamp min = rs.next() ? rs.getTimestamp(1) : null;
+            if (min == null)
+                return moved;
+            oldest = min.toLocalDateTime().getYear();
+        }
+        for (int year = oldest; year < cutoff.getYear(); year++)
+            moved += archiveYear(conn, year, partitions.contains("p" + year));
+        return moved;
+    }
+
+    private static int archiveYear(Connection conn, int year, boolean ownPartition) throws SQLException {
+        Timestamp from = Timestamp.valueOf(LocalDate.of(year, 1, 1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(LocalDate.of(year + 1, 1, 1).atStartOfDay());
+        int copied;
+        if (ownPartition) {
+            // Swapping the partition out is atomic: a row written to the year
+            // afterwards lands in the emptied partition and waits for the next
+            // run. Until the copy commits, the swapped-out rows read as missing.
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE expenses EXCHANGE PARTITION p" + year + " WITH TABLE " + STAGE);
+            }
+            copied = drainStage(conn);
+        } else {
+            copied = moveToArchive(conn, from, to);
+        }
+        System.err.println("Archived " + copied + " expenses from " + year + ".");
+        return copied;
+    }
+
+    /** Copies the rows of {@code table} not yet in expenses_archive; {@code range} is a WHERE clause or empty. */
+    private static String copyToArchive(String table, String range) {
+        return "INSERT INTO expenses_archive (id, user_id, category_id, amount, currency, receipt_path, date, notes) "
+                + "SELECT id, user_id, category_id, amount, currency, receipt_path, date, notes FROM " + table + " x"
+                + (range.isEmpty() ? " WHERE" : range + " AND")
+                + " NOT EXISTS (SELECT 1 FROM expenses_archive a WHERE a.id = x.id)";
+    }
+
+    /**
+     * Copies the year's rows from expenses into expenses_archive and deletes
+     * them in one transaction, which holds the whole year locked and in undo
+     * until it commits. It is not split into smaller commits because a row
+     * would then read twice through {@link #ALL_EXPENSES} between the copy and
+     * its delete, and an edit made in between would be lost. Partitioning
+     * avoids all of this; see {@link #drainStage}.
+     */
+    private static int moveToArchive(Connection conn, Timestamp from, Timestamp to) throws SQLException {
+        String range = " WHERE date >= ? AND date < ?";
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        int copied;
+        try {
+            try (PreparedStatement ps = conn.prepareStatement(copyToArchive("expenses", range))) {
+                ps.setTimestamp(1, from);
+                ps.setTimestamp(2, to);
+                copied = ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM expenses" + range)) {
+                ps.setTimestamp(1, from);
+                ps.setTimestamp(2, to);
+                ps.executeUpdate();
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return copied;
+    }
+
+    /**
+     * Copies the stage into expenses_archive and empties it. Nothing reads
+     * the stage, so the copy commits on its own and TRUNCATE then drops the
+     * rows without undo or row locks. A run that dies in between copies
+     * nothing twice next time.
+     */
+    private static int drainStage(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            int copied = stmt.executeUpdate(copyToArchive(STAGE, ""));
+            stmt.execute("TRUNCATE TABLE " + STAGE);
+            return copied;
+        }
+    }
+
+    /**
+     * Creates the unpartitioned twin of expenses that a year's partition is
+     * exchanged with. Left in place between runs; a run that died after the
+     * exchange leaves its rows there, and the next run archives them first.
+     */
+    private static void createStage(Connection conn) throws SQLException {
+        String sql = "SELECT 1 FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '"
+                + STAGE + "'";
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                if (rs.next())
+                    return;
+            }
+            stmt.execute("CREATE TABLE " + STAGE + " LIKE expenses");
+            stmt.execute("ALTER TABLE " + STAGE + " REMOVE PARTITIONING");
+        }
+    }
+
+    private static void compressArchive(Connection conn) throws SQLException {
+        String sql = "SELECT ROW_FORMAT FROM information_schema.TABLES "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'expenses_archive'";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next() && "Compressed".equalsIgnoreCase(rs.getString(1)))
+                return;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE expenses_archive ROW_FORMAT=COMPRESSED");
+        }
+    }
+
+    // ─── Partitioning (MySQL only) ───────────────────────
+
+    /**
+     * One-off conversion of expenses to yearly RANGE partitions. MySQL does not
+     * allow foreign keys on partitioned tables, so the expenses foreign keys
+     * are dropped (the application already scopes every row by user_id), and
+     * the primary key becomes (id, date) because it must contain the
+     * partitioning column. Rewrites the whole table; run it in a quiet period.
+     */
+    public static void partitionByYear(Connection conn) throws SQLException {
+        if (!isMySql(conn))
+            throw new SQLException("Partitioning is only supported on MySQL.");
+        if (!partitions(conn).isEmpty())
+            return;
+        try (Statement stmt = conn.createStatement()) {
+            List<String> foreignKeys = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT CONSTRAINT_NAME FROM information_schema.TABLE_CONSTRAINTS "
+                    + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'expenses' AND CONSTRAINT_TYPE = 'FOREIGN KEY'")) {
+                while (rs.next())
+                    foreignKeys.add(rs.getString(1));
+            }
+            for (String fk : foreignKeys)
+                stmt.execute("ALTER TABLE expenses DROP FOREIGN KEY " + fk);
+
+            int first;
+            try (ResultSet rs = stmt.executeQuery("SELECT YEAR(MIN(date)) FROM expenses")) {
+                rs.next();
+                first = rs.getInt(1) != 0 ? rs.getInt(1) : LocalDate.now().getYear();
+            }
+            StringBuilder ddl = new StringBuilder("ALTER TABLE expenses MODIFY date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "DROP PRIMARY KEY, ADD PRIMARY KEY (id, date) PARTITION BY RANGE (UNIX_TIMESTAMP(date)) (");
+            for (int year = first; year <= LocalDate.now().getYear() + 1; year++)
+                ddl.append(partitionDefinition(year)).append(", ");
+            ddl.append("PARTITION ").append(CATCH_ALL).append(" VALUES LESS THAN MAXVALUE)");
+            stmt.execute(ddl.toString());
+        }
+        System.err.println("Partitioned expenses by year.");
+    }
+
+    /** Makes sure this year and next have their own partitions; a no-op unless expenses is partitioned. */
+    public static void ensureFuturePartitions(Connection conn) throws SQLException {
+        List<String> existing = partitions(conn);
+        if (existing.isEmpty())
+            return;
+        StringBuilder missing = new StringBuilder();
+        int thisYear = LocalDate.now().getYear();
+        for (int year = thisYear; year <= thisYear + 1; year++) {
+            if (!existing.contains("p" + year))
+                missing.append(partitionDefinition(year)).append(", ");
+        }
+        if (missing.length() == 0)
+            return;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE expenses REORGANIZE PARTITION " + CATCH_ALL + " INTO (" + missing
+                    + "PARTITION " + CATCH_ALL + " VALUES LESS THAN MAXVALUE)");
+        }
+    }
+
+    private static String partitionDefinition(int year) {
+        return "PARTITION p" + year + " VALUES LESS THAN (UNIX_TIMESTAMP('" + (year + 1) + "-01-01 00:00:00'))";
+    }
+
+    /** Partition names of expenses, or an empty list if it is not partitioned (always, outside MySQL). */
+    static List<String> partitions(Connection conn) throws SQLException {
+        List<String> names = new ArrayList<>();
+        if (!isMySql(conn))
+            return names;
+        String sql = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() "
+                + "AND TABLE_NAME = 'expenses' AND PARTITION_NAME IS NOT NULL";
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next())
+                names.add(rs.getString(1));
+        }
+        return names;
+    }
+
+    private static boolean isMySql(Connection conn) throws SQLException {
+        return conn.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+    }
+}
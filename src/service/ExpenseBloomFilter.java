@@ -0,0 +1,82 @@
+package service;
+
+import model.Money;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Bloom filter over expense fingerprints (day, category, amount, currency).
+ * {@link #mightContain} never misses an added fingerprint and wrongly
+ * reports about 1% of others while at most {@link #capacity} are added; past
+ * that the error rate climbs and {@link #isFull} tells the owner to rebuild.
+ * Not thread-safe.
+ */
+final class ExpenseBloomFilter {
+
+    private static final int BITS_PER_ENTRY = 10;
+    private static final int HASHES = 7;
+    private static final int MIN_BITS = 1 << 13;
+
+    private final long[] words;
+    private final int mask;
+    private final int capacity;
+    private int size;
+
+    /** Sized for twice {@code expected} entries, so that a user can keep adding for a while. */
+    ExpenseBloomFilter(int expected) {
+        long wanted = Math.max(MIN_BITS, 2L * expected * BITS_PER_ENTRY);
+        int bits = (int) Math.min(1 << 30, Long.highestOneBit(wanted - 1) << 1);
+        words = new long[bits / 64];
+        mask = bits - 1;
+        capacity = bits / BITS_PER_ENTRY;
+    }
+
+    /** 64-bit hash of what makes two expenses the same; category case is ignored. */
+    static long fingerprint(String category, Money amount, LocalDate day) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : category.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8))
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        for (byte b : amount.getCurrency().getBytes(StandardCharsets.US_ASCII))
+            h = (h ^ b) * 0x100000001b3L;
+        h = mix(h ^ amount.getMinorUnits());
+        return mix(h ^ day.toEpochDay());
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    void add(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            words[bit >>> 6] |= 1L << bit;
+        }
+        size++;
+    }
+
+    boolean mightContain(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((words[bit >>> 6] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    boolean isFull() {
+        return size > capacity;
+    }
+}
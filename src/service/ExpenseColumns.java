@@ -0,0 +1,251 @@
+package service;
+
+import model.Expense;
+import model.Money;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One user's expenses as parallel primitive arrays: id, amount in paise,
+ * epoch day, year*12+month and a category id from a shared dictionary. Rows
+ * are unordered; deletes swap the last row into the hole. Aggregations are
+ * single passes over the arrays and match the GROUP BY queries in
+ * {@link ExpenseService}. Callers synchronize on the instance.
+ */
+class ExpenseColumns {
+
+    /** Category names are interned once for all users; ids index {@link #categoryNames}. */
+    private static final Map<String, Integer> categoryIds = new ConcurrentHashMap<>();
+    private static final List<String> categoryNames = new ArrayList<>();
+
+    private int[] ids = new int[16];
+    private long[] paise = new long[16];
+    private int[] epochDays = new int[16];
+    private int[] yearMonths = new int[16];
+    private int[] categories = new int[16];
+    private int size;
+    /** Ids above this were never loaded, so appending them cannot duplicate a row. */
+    private int maxId;
+
+    boolean loaded;
+    volatile long lastAccess = System.currentTimeMillis();
+
+    static int categoryId(String name) {
+        Integer id = categoryIds.get(name);
+        if (id != null)
+            return id;
+        synchronized (categoryNames) {
+            return categoryIds.computeIfAbsent(name, k -> {
+                categoryNames.add(k);
+                return categoryNames.size() - 1;
+            });
+        }
+    }
+
+    static String categoryName(int id) {
+        synchronized (categoryNames) {
+            return categoryNames.get(id);
+        }
+    }
+
+    private static int categoryCount() {
+        synchronized (categoryNames) {
+            return categoryNames.size();
+        }
+    }
+
+    private static int yearMonth(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    void load(List<Expense> expenses) {
+        size = 0;
+        maxId = 0;
+        for (Expense e : expenses)
+            add(e);
+        loaded = true;
+    }
+
+    /** Appends unless the row is already present (it may have been read by a concurrent load). */
+    void append(Expense e) {
+        if (e.getId() <= maxId && indexOf(e.getId()) >= 0)
+            return;
+        add(e);
+    }
+
+    private void add(Expense e) {
+        if (size == ids.length) {
+            int cap = size * 2;
+            ids = Arrays.copyOf(ids, cap);
+            paise = Arrays.copyOf(paise, cap);
+            epochDays = Arrays.copyOf(epochDays, cap);
+            yearMonths = Arrays.copyOf(yearMonths, cap);
+            categories = Arrays.copyOf(categories, cap);
+        }
+        LocalDate day = e.getDate().toLocalDate();
+        ids[size] = e.getId();
+        paise[size] = e.getAmount().getMinorUnits();
+        epochDays[size] = (int) day.toEpochDay();
+        yearMonths[size] = yearMonth(day.getYear(), day.getMonthValue());
+        categories[size] = categoryId(e.getCategory());
+        maxId = Math.max(maxId, e.getId());
+        size++;
+    }
+
+    void remove(int id) {
+        int i = indexOf(id);
+        if (i < 0)
+            return;
+        int last = --size;
+        ids[i] = ids[last];
+        paise[i] = paise[last];
+        epochDays[i] = epochDays[last];
+        yearMonths[i] = yearMonths[last];
+        categories[i] = categories[last];
+    }
+
+    private int indexOf(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id)
+                return i;
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // ─── Aggregations ────────────────────────────────────
+
+    long totalForMonth(int month, int year) {
+        int ym = yearMonth(year, month);
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            if (yearMonths[i] == ym)
+                total += paise[i];
+        }
+        return total;
+    }
+
+    int countForMonth(int month, int year) {
+        int ym = yearMonth(year, month);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (yearMonths[i] == ym)
+                count++;
+        }
+        return count;
+    }
+
+    /** Totals per category id for the month; -1 marks categories with no rows. */
+    long[] categoryTotals(int month, int year) {
+        int ym = yearMonth(year, month);
+        long[] totals = new long[categoryCount()];
+        Arrays.fill(totals, -1);
+        for (int i = 0; i < size; i++) {
+            if (yearMonths[i] == ym) {
+                int c = categories[i];
+                totals[c] = (totals[c] < 0 ? 0 : totals[c]) + paise[i];
+            }
+        }
+        return totals;
+    }
+
+    /** Category name to total, highest first, like ORDER BY total DESC. */
+    static Map<String, Money> sortedByTotal(long[] totals) {
+        Integer[] order = new Integer[totals.length];
+        int n = 0;
+        for (int c = 0; c < totals.length; c++) {
+            if (totals[c] >= 0)
+                order[n++] = c;
+        }
+        Arrays.sort(order, 0, n, (a, b) -> Long.compare(totals[b], totals[a]));
+        Map<String, Money> result = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++)
+            result.put(categoryName(order[i]), Money.ofMinor(totals[order[i]]));
+        return result;
+    }
+
+    /** Daily totals indexed by day of month (1-based); -1 marks days with no rows. */
+    long[] dailyTotals(int month, int year) {
+        int ym = yearMonth(year, month);
+        int firstDay = (int) LocalDate.of(year, month, 1).toEpochDay();
+        long[] totals = new long[32];
+        Arrays.fill(totals, -1);
+        for (int i = 0; i < size; i++) {
+            if (yearMonths[i] == ym) {
+                int d = epochDays[i] - firstDay + 1;
+                totals[d] = (totals[d] < 0 ? 0 : totals[d]) + paise[i];
+            }
+        }
+        return totals;
+    }
+
+    /** Totals per month from {@code fromYearMonth} on, indexed by offset; -1 marks empty months. */
+    long[] monthlyTotals(int fromYear, int fromMonth) {
+        int from = yearMonth(fromYear, fromMonth);
+        int to = from;
+        for (int i = 0; i < size; i++)
+            to = Math.max(to, yearMonths[i]);
+        long[] totals = new long[to - from + 1];
+        Arrays.fill(totals, -1);
+        for (int i = 0; i < size; i++) {
+            int m = yearMonths[i] - from;
+            if (m >= 0)
+                totals[m] = (totals[m] < 0 ? 0 : totals[m]) + paise[i];
+        }
+        return totals;
+    }
+
+    static int yearOf(int fromYear, int fromMonth, int offset) {
+        return (yearMonth(fromYear, fromMonth) + offset) / 12;
+    }
+
+    static int monthOf(int fromYear, int fromMonth, int offset) {
+        return (yearMonth(fromYear, fromMonth) + offset) % 12 + 1;
+    }
+
+    /**
+     * Per category: total since {@code start} divided by the number of distinct
+     * months that category appears in, highest total first.
+     */
+    Map<String, Money> averagePerActiveMonth(LocalDate start) {
+        int startDay = (int) start.toEpochDay();
+        int from = yearMonth(start.getYear(), start.getMonthValue());
+        int to = from;
+        for (int i = 0; i < size; i++) {
+            if (epochDays[i] >= startDay)
+                to = Math.max(to, yearMonths[i]);
+        }
+        int months = to - from + 1;
+        int cats = categoryCount();
+        long[] totals = new long[cats];
+        Arrays.fill(totals, -1);
+        boolean[] seen = new boolean[cats * months];
+        int[] activeMonths = new int[cats];
+        for (int i = 0; i < size; i++) {
+            if (epochDays[i] < startDay)
+                continue;
+            int c = categories[i];
+            totals[c] = (totals[c] < 0 ? 0 : totals[c]) + paise[i];
+            int cell = c * months + (yearMonths[i] - from);
+            if (!seen[cell]) {
+                seen[cell] = true;
+                activeMonths[c]++;
+            }
+        }
+        Map<String, Money> predictions = new LinkedHashMap<>();
+        for (var entry : sortedByTotal(totals).entrySet()) {
+            int c = categoryId(entry.getKey());
+            predictions.put(entry.getKey(), entry.getValue().dividedBy(activeMonths[c]));
+        }
+        return predictions;
+    }
+}
@@ -0,0 +1,404 @@
+package service;
+
+import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Append-only binary journal of expense, budget and recurring-expense writes,
+ * so that a derived view can be rebuilt by reading a few files front to back
+ * instead of scanning the expenses table.
+ * <p>
+ * Writes are numbered and appended to segment files named by their first
+ * sequence number. One writer thread takes whatever has queued up, writes it
+ * in one go and fsyncs once for all of it; each caller returns after its
+ * record is on disk. A torn record at the end of the last segment, left by a
+ * crash, is cut off when the journal is opened.
+ * <p>
+ * A snapshot holds the full current state, streamed from a {@link Source},
+ * as of a sequence number; segments it covers are then deleted.
+ * {@link #replay} reads the newest snapshot and the segments after it. The
+ * source is read while writes continue, so a write after the snapshot's
+ * number may already be in it; listeners apply records as upserts and
+ * deletes-if-present. Writes that bypass the journal (the CLI, tools) reach
+ * it with the next snapshot.
+ */
+public final class ExpenseJournal implements Closeable {
+
+    /** Receives writes, from {@link #writer()} or in replay order. */
+    public interface Listener {
+        default void expenseAdded(int userId, Expense expense) {
+        }
+
+        default void expenseDeleted(int userId, int id) {
+        }
+
+        default void budgetSet(int userId, String category, Money limit) {
+        }
+
+        default void budgetDeleted(int userId, String category) {
+        }
+
+        /** A new recurring expense, or one whose last applied date moved. */
+        default void recurringSaved(int userId, RecurringExpense recurring) {
+        }
+
+        default void recurringDeleted(int userId, int id) {
+        }
+    }
+
+    /** Everything currently stored, for a snapshot. */
+    public interface Source {
+        void replayInto(Listener listener) throws SQLException;
+    }
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final int SNAPSHOT_MAGIC = 0x454A534E;
+    private static final int MAX_BATCH = 4096;
+    private static final int READ_BUFFER = 1 << 20;
+
+    private static final class Pending {
+        final byte[] body;
+        final CompletableFuture<Long> written = new CompletableFuture<>();
+
+        Pending(byte[] body) {
+            this.body = body;
+        }
+    }
+
+    private static final Pending STOP = new Pending(null);
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private FileChannel segment;
+    private long nextSeq;
+    private volatile long lastSeq;
+    private volatile boolean closed;
+    private final Object snapshotLock = new Object();
+    private ScheduledExecutorService snapshotter;
+
+    private ExpenseJournal(Path dir, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+        long snapshotSeq = latestSnapshotSeq(dir);
+        List<Path> segments = files(dir, SEGMENT_PREFIX);
+        if (segments.isEmpty()) {
+            lastSeq = snapshotSeq;
+            openSegment(lastSeq + 1);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            JournalCodec.Scan scan;
+            try (DataInputStream in = open(last)) {
+                scan = JournalCodec.read(in, Long.MAX_VALUE, null);
+            }
+            segment = FileChannel.open(last, StandardOpenOption.WRITE);
+            if (!scan.complete()) {
+                System.err.println("Journal: cutting a torn record off " + last.getFileName() + " at byte "
+                        + scan.validBytes());
+                segment.truncate(scan.validBytes());
+                segment.force(true);
+            }
+            segment.position(scan.validBytes());
+            lastSeq = Math.max(snapshotSeq, scan.validBytes() > 0 ? scan.lastSeq() : seqOf(last) - 1);
+        }
+        nextSeq = lastSeq + 1;
+        writerThread = new Thread(this::run, "journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /** Opens or creates the journal in {@code dir}, starting a new segment after {@code segmentBytes}. */
+    public static ExpenseJournal open(Path dir, long segmentBytes) throws IOException {
+        return new ExpenseJournal(dir, segmentBytes);
+    }
+
+    /** Appends each call as a record and returns once it is on disk. */
+    public Listener writer() {
+        return new JournalCodec(this::append);
+    }
+
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    public long appendCount() {
+        return appends.get();
+    }
+
+    /** Number of fsyncs; appends per sync is the group-commit batch size. */
+    public long syncCount() {
+        return syncs.get();
+    }
+
+    // ─── Appending ───────────────────────────────────────
+
+    private void append(byte[] body) {
+        if (closed) {
+            System.err.println("Journal: append after close dropped");
+            return;
+        }
+        Pending p = new Pending(body);
+        queue.add(p);
+        try {
+            p.written.join();
+            appends.incrementAndGet();
+        } catch (CompletionException e) {
+            // The database write already happened; the next snapshot will include it
+            System.err.println("Journal append failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            stopping = batch.remove(STOP);
+            if (!batch.isEmpty())
+                write(batch);
+            batch.clear();
+        }
+        for (Pending p; (p = queue.poll()) != null;)
+            p.written.completeExceptionally(new IOException("journal closed"));
+    }
+
+    /** Writes a batch as one write and one fsync. */
+    private synchronized void write(List<Pending> batch) {
+        long start = 0;
+        long firstSeq = nextSeq;
+        try {
+            start = segment.position();
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buf);
+            for (Pending p : batch)
+                JournalCodec.writeFrame(out, nextSeq++, p.body);
+            ByteBuffer bytes = ByteBuffer.wrap(buf.toByteArray());
+            while (bytes.hasRemaining())
+                segment.write(bytes);
+            segment.force(false);
+            syncs.incrementAndGet();
+        } catch (IOException e) {
+            nextSeq = firstSeq;
+            try {
+                segment.truncate(start);
+                segment.position(start);
+            } catch (IOException ignored) {
+                // The torn tail is cut off when the journal is next opened
+            }
+            for (Pending p : batch)
+                p.written.completeExceptionally(e);
+            return;
+        }
+        lastSeq = nextSeq - 1;
+        long seq = firstSeq;
+        for (Pending p : batch)
+            p.written.complete(seq++);
+        try {
+            if (segment.position() >= segmentBytes)
+                roll();
+        } catch (IOException e) {
+            System.err.println("Journal: could not start a new segment: " + e.getMessage());
+        }
+    }
+
+    /** Starts a new segment unless the current one is empty; returns the last sequence number before it. */
+    private synchronized long roll() throws IOException {
+        if (segment.position() > 0) {
+            segment.close();
+            openSegment(nextSeq);
+        }
+        return nextSeq - 1;
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        segment = FileChannel.open(dir.resolve(name(SEGMENT_PREFIX, firstSeq, ".log")), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // ─── Snapshots ───────────────────────────────────────
+
+    /**
+     * Writes a snapshot of {@code source} and deletes the segments and older
+     * snapshots it replaces; returns the sequence number it covers.
+     */
+    public long snapshot(Source source) throws IOException, SQLException {
+        synchronized (snapshotLock) {
+            return writeSnapshot(source);
+        }
+    }
+
+    private long writeSnapshot(Source source) throws IOException, SQLException {
+        // Everything up to seq is in closed segments, and already in the source; appends go on meanwhile
+        long seq = roll();
+        Path tmp = dir.resolve("snapshot.tmp");
+        long started = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(ch), READ_BUFFER))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(seq);
+            source.replayInto(new JournalCodec(body -> {
+                try {
+                    JournalCodec.writeFrame(out, seq, body);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            out.flush();
+            ch.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(tmp, dir.resolve(name(SNAPSHOT_PREFIX, seq, ".bin")), StandardCopyOption.ATOMIC_MOVE);
+        for (Path p : files(dir, SNAPSHOT_PREFIX)) {
+            if (seqOf(p) < seq)
+                Files.delete(p);
+        }
+        for (Path p : files(dir, SEGMENT_PREFIX)) {
+            if (seqOf(p) <= seq)
+                Files.delete(p);
+        }
+        System.out.printf("Journal snapshot at #%d written in %d ms.%n", seq, (System.nanoTime() - started) / 1_000_000);
+        return seq;
+    }
+
+    /** Takes a snapshot every {@code intervalMillis}, the first one straight away if there is none yet. */
+    public synchronized void startSnapshots(Source source, long intervalMillis) throws IOException {
+        if (snapshotter != null)
+            return;
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-snapshots");
+            t.setDaemon(true);
+            return t;
+        });
+        long first = files(dir, SNAPSHOT_PREFIX).isEmpty() ? 0 : intervalMillis;
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(source);
+            } catch (IOException | SQLException | RuntimeException e) {
+                System.err.println("Journal snapshot failed: " + e.getMessage());
+            }
+        }, first, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // ─── Replay ──────────────────────────────────────────
+
+    /**
+     * Passes the newest snapshot and every later record in {@code dir} to the
+     * listener, in order; returns the last sequence number read. Safe to run
+     * while another process appends.
+     */
+    public static long replay(Path dir, Listener listener) throws IOException {
+        long from = 0;
+        List<Path> snapshots = files(dir, SNAPSHOT_PREFIX);
+        if (!snapshots.isEmpty()) {
+            Path latest = snapshots.get(snapshots.size() - 1);
+            try (DataInputStream in = open(latest)) {
+                if (in.readInt() != SNAPSHOT_MAGIC)
+                    throw new IOException("Not a journal snapshot: " + latest);
+                from = in.readLong();
+                if (!JournalCodec.read(in, -1, listener).complete())
+                    throw new IOException("Corrupt journal snapshot: " + latest);
+            }
+        }
+        long last = from;
+        List<Path> segments = files(dir, SEGMENT_PREFIX);
+        for (int i = 0; i < segments.size(); i++) {
+            try (DataInputStream in = open(segments.get(i))) {
+                JournalCodec.Scan scan = JournalCodec.read(in, from, listener);
+                last = Math.max(last, scan.lastSeq());
+                // Only the segment being written may end early
+                if (!scan.complete() && i < segments.size() - 1)
+                    throw new IOException("Corrupt journal segment: " + segments.get(i));
+            }
+        }
+        return last;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (snapshotter != null)
+                snapshotter.shutdownNow();
+        }
+        closed = true;
+        queue.add(STOP);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            segment.close();
+        }
+    }
+
+    // ─── Files ───────────────────────────────────────────
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), READ_BUFFER));
+    }
+
+    private static String name(String prefix, long seq, String suffix) {
+        return prefix + String.format("%020d", seq) + suffix;
+    }
+
+    private static long seqOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+    }
+
+    /** Files with the prefix, oldest first; the zero-padded names sort by sequence number. */
+    private static List<Path> files(Path dir, String prefix) throws IOException {
+        if (!Files.isDirectory(dir))
+            return List.of();
+        try (Stream<Path> list = Files.list(dir)) {
+            return list.filter(p -> p.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    private static long latestSnapshotSeq(Path dir) throws IOException {
+        List<Path> snapshots = files(dir, SNAPSHOT_PREFIX);
+        return snapshots.isEmpty() ? 0 : seqOf(snapshots.get(snapshots.size() - 1));
+    }
+}
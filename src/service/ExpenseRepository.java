@@ -0,0 +1,241 @@
+package service;
+
+import model.CategoryRule;
+import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+import model.Reminder;
+import model.User;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage for everything the API serves: users, expenses, categories, budgets,
+ * recurring items and reminders. {@link JdbcExpenseRepository} is backed by
+ * MySQL through {@link ExpenseService}; {@link InMemoryExpenseRepository} needs
+ * no database at all. Every user-scoped method takes the owning users.id,
+ * resolved once at login, and never returns another user's rows.
+ */
+public interface ExpenseRepository {
+
+    // ─── Users ───────────────────────────────────────────
+
+    User findUser(String username) throws SQLException;
+
+    User findUserById(int userId) throws SQLException;
+
+    /** Returns the new user's id, or 0 if the username is already taken. */
+    int createUser(String username, String passwordHash, String salt) throws SQLException;
+
+    boolean updatePassword(int userId, String passwordHash, String salt) throws SQLException;
+
+    // ─── Expenses ────────────────────────────────────────
+
+    /** The amount carries the expense's currency; {@code notes} is optional free text. */
+    Expense addExpense(int userId, String category, Money amount, String receiptPath, LocalDateTime date,
+            String notes) throws SQLException;
+
+    default Expense addExpense(int userId, String category, Money amount, String receiptPath, LocalDateTime date)
+            throws SQLException {
+        return addExpense(userId, category, amount, receiptPath, date, null);
+    }
+
+    /**
+     * Adds the rows, which need no ids, and returns them with their ids, in
+     * order. The default adds them one at a time through {@link #addExpense}
+     * so that every layer sees each add; the database stores them in one
+     * transaction.
+     */
+    default List<Expense> addExpenses(int userId, List<Expense> rows) throws SQLException {
+        List<Expense> added = new ArrayList<>(rows.size());
+        for (Expense e : rows)
+            added.add(addExpense(userId, e.getCategory(), e.getAmount(), e.getReceiptPath(), e.getDate(),
+                    e.getNotes()));
+        return added;
+    }
+
+    /** Removes the expense and returns it, or null if the user has no such expense. */
+    Expense deleteExpense(int userId, int id) throws SQLException;
+
+    /** Moves the expense to another category and returns it as it was, or null if the user has no such expense. */
+    Expense recategorizeExpense(int userId, int id, String category) throws SQLException;
+
+    /**
+     * Null filters are ignored. The keyword matches within the category or
+     * the notes. Results are newest first.
+     */
+    List<Expense> searchExpenses(int userId, String category, String keyword, Money minAmount,
+            Money maxAmount, LocalDate startDate, LocalDate endDate) throws SQLException;
+
+    /**
+     * Expenses whose category or notes contain every word of the query, best
+     * match first, at most {@code limit}. The default takes the newest
+     * keyword matches of the whole query; {@link SearchIndexRepository} ranks
+     * by word, with prefixes.
+     */
+    default List<Expense> searchText(int userId, String query, int limit) throws SQLException {
+        List<Expense> found = searchExpenses(userId, null, query, null, null, null, null);
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    /** The user's newest expenses, at most {@code limit}, newest first. */
+    default List<Expense> getRecentExpenses(int userId, int limit) throws SQLException {
+        List<Expense> all = searchExpenses(userId, null, null, null, null, null, null);
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    Money getTotalExpensesForMonth(int userId, int month, int year) throws SQLException;
+
+    /** Category with the highest spend in the month, or "N/A". */
+    String getTopCategoryForMonth(int userId, int month, int year) throws SQLException;
+
+    int getExpenseCount(int userId, int month, int year) throws SQLException;
+
+    /** Category totals for the month, highest first. */
+    Map<String, Money> getCategoryBreakdown(int userId, int month, int year) throws SQLException;
+
+    /** Average monthly spend per category over the last N months, highest total first. */
+    Map<String, Money> getPredictions(int userId, int monthsToLookBack) throws SQLException;
+
+    /** [{year, month, total}] for the last N months, oldest first; months without spend are omitted. */
+    List<Map<String, Object>> getMonthlyTrend(int userId, int months) throws SQLException;
+
+    /** Day of month to total for the month, in day order. */
+    Map<Integer, Money> getDailySpending(int userId, int month, int year) throws SQLException;
+
+    // ─── Categories ──────────────────────────────────────
+
+    List<String> getCategories() throws SQLException;
+
+    boolean addCategory(String name) throws SQLException;
+
+    boolean deleteCategory(String name) throws SQLException;
+
+    // ─── Budgets ─────────────────────────────────────────
+
+    Map<String, Money> getBudgets(int userId) throws SQLException;
+
+    boolean setBudget(int userId, String category, Money limit) throws SQLException;
+
+    boolean deleteBudget(int userId, String category) throws SQLException;
+
+    /** Returns [{category, limit, spent}] for the current month. */
+    default List<Map<String, Object>> getBudgetStatus(int userId) throws SQLException {
+        List<Map<String, Object>> result = new ArrayList<>();
+        LocalDate now = LocalDate.now();
+        Map<String, Money> budgets = getBudgets(userId);
+        Map<String, Money> spending = getCategoryBreakdown(userId, now.getMonthValue(), now.getYear());
+        for (var entry : budgets.entrySet()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("category", entry.getKey());
+            item.put("limit", entry.getValue());
+            item.put("spent", spending.getOrDefault(entry.getKey(), Money.ZERO));
+            result.add(item);
+        }
+        return result;
+    }
+
+    // ─── Recurring Expenses ──────────────────────────────
+
+    List<RecurringExpense> getRecurringExpenses(int userId) throws SQLException;
+
+    RecurringExpense addRecurringExpense(int userId, String description, Money amount, String category,
+            String interval, LocalDate startDate) throws SQLException;
+
+    boolean deleteRecurringExpense(int userId, int id) throws SQLException;
+
+    /** Books every due occurrence as an expense; returns how many were added. */
+    int applyRecurringExpenses(int userId) throws SQLException;
+
+    /** Records that occurrences through {@code date} were booked, for a layer that books them itself. */
+    boolean markRecurringApplied(int userId, int id, LocalDate date) throws SQLException;
+
+    // ─── Reminders ───────────────────────────────────────
+
+    /** All reminders, earliest due first. */
+    List<Reminder> getReminders(int userId) throws SQLException;
+
+    /** Reminders due from today through {@code daysAhead} days from now. */
+    default List<Reminder> getUpcomingReminders(int userId, int daysAhead) throws SQLException {
+        LocalDate today = LocalDate.now();
+        LocalDate last = today.plusDays(daysAhead);
+        List<Reminder> upcoming = new ArrayList<>();
+        for (Reminder r : getReminders(userId)) {
+            if (!r.getDueDate().isBefore(today) && !r.getDueDate().isAfter(last))
+                upcoming.add(r);
+        }
+        return upcoming;
+    }
+
+    Reminder addReminder(int userId, String title, LocalDate dueDate, String notes) throws SQLException;
+
+    boolean deleteReminder(int userId, int id) throws SQLException;
+
+    /** Reminders of every user due on or before {@code through} that were never delivered, by user id. */
+    Map<Integer, List<Reminder>> getUndeliveredReminders(LocalDate through) throws SQLException;
+
+    /** Records that a due reminder reached the user; false if it no longer exists. */
+    boolean markReminderDelivered(int userId, int id) throws SQLException;
+
+    // ─── Category Rules ──────────────────────────────────
+
+    /** The user's rules in the order they are tried: priority, then id. */
+    List<CategoryRule> getCategoryRules(int userId) throws SQLException;
+
+    /** Stores the rule and returns it under its new id; the id and hits passed in are ignored. */
+    CategoryRule addCategoryRule(int userId, CategoryRule rule) throws SQLException;
+
+    boolean deleteCategoryRule(int userId, int id) throws SQLException;
+
+    /** Adds to the stored hit counts, by rule id; ids that no longer exist are skipped. */
+    void addCategoryRuleHits(int userId, Map<Integer, Long> hits) throws SQLException;
+
+    // ─── Idempotency Keys ────────────────────────────────
+
+    /**
+     * Claims a client-chosen key for a new expense. Returns null if the caller
+     * now owns the key and should write, otherwise the id of the expense
+     * already written under it, or 0 while its owner is still writing. A claim
+     * left unfinished for a minute is handed to the next caller.
+     */
+    Integer claimIdempotencyKey(int userId, String key) throws SQLException;
+
+    /** Stores the expense written under a key this caller claimed. */
+    void completeIdempotencyKey(int userId, String key, int expenseId) throws SQLException;
+
+    /** Gives up a claim whose write failed, so that a retry can make it. */
+    void releaseIdempotencyKey(int userId, String key) throws SQLException;
+
+    /** Forgets keys claimed before {@code before}; returns how many. */
+    int purgeIdempotencyKeys(LocalDateTime before) throws SQLException;
+
+    // ─── Change Feed ─────────────────────────────────────
+
+    /** Writes to the user's rows after version {@code since}, oldest first; see {@link ChangeLog#since}. */
+    List<ChangeLog.Change> getChanges(int userId, long since, int limit) throws SQLException;
+
+    /** Adds a write stored outside this repository, by a layer stacked on it, to the change log. */
+    void logChange(int userId, String entity, Object key, char op) throws SQLException;
+
+    /** Version of the newest write logged so far, on the user's shard; later writes have higher versions. */
+    long getChangeVersion(int userId) throws SQLException;
+
+    /**
+     * Version up to which every write on the user's shard has either
+     * committed or failed; see {@link ChangeLog#settled}. Clients of the
+     * change feed are never given a version past it.
+     */
+    default long getSettledChangeVersion(int userId) throws SQLException {
+        return getChangeVersion(userId);
+    }
+
+    /** The user's expenses with the given ids, hot or archived; ids that do not exist are skipped. */
+    List<Expense> getExpensesById(int userId, Collection<Integer> ids) throws SQLException;
+}
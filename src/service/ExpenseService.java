@@ -1,111 +1,150 @@
 package service;
 
+import model.CategoryRule;
 import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+import model.Reminder;
+import model.User;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 public class ExpenseService {
 
+    @FunctionalInterface
+    private interface Write<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * Runs a write and its change-log row in one transaction, so that no
+     * committed change goes unreported to /api/changes. Joins the caller's
+     * transaction if one is already open. Categories must be registered
+     * before this, as in {@link #addExpenses}.
+     */
+    private static <T> T logged(Connection conn, Write<T> write) throws SQLException {
+        if (!conn.getAutoCommit())
+            return write.run();
+        conn.setAutoCommit(false);
+        try {
+            T result = write.run();
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
     // ─── Existing Methods ────────────────────────────────
 
-    public static BigDecimal getTotalExpensesForMonth(Connection conn, String currentUser, int month, int year)
+    public static Money getTotalExpensesForMonth(Connection conn, int userId, int month, int year)
             throws SQLException {
-        String sql = "SELECT SUM(amount) FROM expenses WHERE username = ? AND MONTH(date) = ? AND YEAR(date) = ?";
+        String sql = "SELECT SUM(amount) FROM " + monthTable(month, year) + " WHERE user_id = ? AND date >= ? AND date < ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
-            ps.setInt(2, month);
-            ps.setInt(3, year);
+            ps.setInt(1, userId);
+            setMonth(ps, 2, month, year);
             ResultSet rs = ps.executeQuery();
-            return (rs.next() && rs.getBigDecimal(1) != null) ? rs.getBigDecimal(1) : BigDecimal.ZERO;
+            BigDecimal total = rs.next() ? rs.getBigDecimal(1) : null;
+            return (total != null) ? Money.fromBigDecimal(total) : Money.ZERO;
         }
     }
 
-    public static String getTopCategoryForMonth(Connection conn, String currentUser, int month, int year)
+    public static String getTopCategoryForMonth(Connection conn, int userId, int month, int year)
             throws SQLException {
-        String sql = "SELECT category FROM expenses WHERE username = ? AND MONTH(date) = ? AND YEAR(date) = ? GROUP BY category ORDER BY SUM(amount) DESC LIMIT 1";
+        String sql = "SELECT category_id FROM " + monthTable(month, year)
+                + " WHERE user_id = ? AND date >= ? AND date < ? GROUP BY category_id ORDER BY SUM(amount) DESC LIMIT 1";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
-            ps.setInt(2, month);
-            ps.setInt(3, year);
+            ps.setInt(1, userId);
+            setMonth(ps, 2, month, year);
             ResultSet rs = ps.executeQuery();
-            return rs.next() ? rs.getString(1) : "N/A";
+            return rs.next() ? CategoryDictionary.nameOf(conn, rs.getInt(1)) : "N/A";
         }
     }
 
-    public static Map<String, BigDecimal> getCategoryBreakdown(Connection conn, String currentUser, int month, int year)
+    public static Map<String, Money> getCategoryBreakdown(Connection conn, int userId, int month, int year)
             throws SQLException {
-        String sql = "SELECT category, SUM(amount) AS total FROM expenses WHERE username = ? AND MONTH(date) = ? AND YEAR(date) = ? GROUP BY category ORDER BY total DESC";
-        Map<String, BigDecimal> breakdown = new LinkedHashMap<>();
+        String sql = "SELECT category_id, SUM(amount) AS total FROM " + monthTable(month, year)
+                + " WHERE user_id = ? AND date >= ? AND date < ? GROUP BY category_id ORDER BY total DESC";
+        Map<String, Money> breakdown = new LinkedHashMap<>();
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
-            ps.setInt(2, month);
-            ps.setInt(3, year);
+            ps.setInt(1, userId);
+            setMonth(ps, 2, month, year);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                breakdown.put(rs.getString("category"), rs.getBigDecimal("total"));
+                breakdown.put(CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                        Money.fromBigDecimal(rs.getBigDecimal("total")));
             }
         }
         return breakdown;
     }
 
-    public static Map<String, BigDecimal> getPredictions(Connection conn, String currentUser, int monthsToLookBack)
+    public static Map<String, Money> getPredictions(Connection conn, int userId, int monthsToLookBack)
             throws SQLException {
-        Map<String, BigDecimal> predictions = new LinkedHashMap<>();
+        Map<String, Money> predictions = new LinkedHashMap<>();
         LocalDate startDate = LocalDate.now().minusMonths(monthsToLookBack).withDayOfMonth(1);
-        String sql = """
-                SELECT category, SUM(amount) AS total_sum, COUNT(DISTINCT YEAR(date), MONTH(date)) AS month_count
-                FROM expenses WHERE username = ? AND date >= ? GROUP BY category ORDER BY total_sum DESC""";
+        String sql = "SELECT category_id, SUM(amount) AS total_sum, COUNT(DISTINCT YEAR(date) * 100 + MONTH(date)) AS month_count "
+                + "FROM " + ExpenseArchive.tableFrom(startDate) + " WHERE user_id = ? AND date >= ? "
+                + "GROUP BY category_id ORDER BY total_sum DESC";
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, currentUser);
+            ps.setInt(1, userId);
             ps.setDate(2, java.sql.Date.valueOf(startDate));
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                BigDecimal totalSum = rs.getBigDecimal("total_sum");
+                Money totalSum = Money.fromBigDecimal(rs.getBigDecimal("total_sum"));
                 int monthCount = rs.getInt("month_count");
                 if (monthCount > 0) {
-                    predictions.put(rs.getString("category"),
-                            totalSum.divide(BigDecimal.valueOf(monthCount), 2, RoundingMode.HALF_UP));
+                    predictions.put(CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                            totalSum.dividedBy(monthCount));
                 }
             }
         }
         return predictions;
     }
 
-    public static List<Expense> searchExpenses(Connection conn, String currentUser, String category, String keyword,
-            BigDecimal minAmount, BigDecimal maxAmount, LocalDate startDate, LocalDate endDate) throws SQLException {
+    public static List<Expense> searchExpenses(Connection conn, int userId, String category, String keyword,
+            Money minAmount, Money maxAmount, LocalDate startDate, LocalDate endDate) throws SQLException {
         List<Expense> results = new ArrayList<>();
         StringBuilder sql = new StringBuilder(
-                "SELECT id, category, amount, currency, receipt_path, date FROM expenses WHERE username = ?");
+                "SELECT id, category_id, amount, currency, receipt_path, date, notes FROM ")
+                .append(ExpenseArchive.tableFrom(startDate)).append(" WHERE user_id = ?");
         List<Object> params = new ArrayList<>();
-        params.add(currentUser);
+        params.add(userId);
 
         if (category != null && !category.trim().isEmpty()) {
-            sql.append(" AND category = ?");
-            params.add(category);
+            Integer categoryId = CategoryDictionary.lookup(conn, category);
+            if (categoryId == null)
+                return results;
+            sql.append(" AND category_id = ?");
+            params.add(categoryId);
         }
         if (keyword != null && !keyword.trim().isEmpty()) {
-            sql.append(" AND category LIKE ?");
+            sql.append(" AND (category_id IN (SELECT id FROM categories WHERE name LIKE ?) OR notes LIKE ?)");
+            params.add("%" + keyword + "%");
             params.add("%" + keyword + "%");
         }
         if (minAmount != null) {
             sql.append(" AND amount >= ?");
-            params.add(minAmount);
+            params.add(minAmount.toBigDecimal());
         }
         if (maxAmount != null) {
             sql.append(" AND amount <= ?");
-            params.add(maxAmount);
+            params.add(maxAmount.toBigDecimal());
         }
         if (startDate != null) {
             sql.append(" AND date >= ?");
@@ -125,11 +164,69 @@ public class ExpenseService {
             while (rs.next()) {
                 results.add(new Expense(
                         rs.getInt("id"),
-                        rs.getString("category"),
-                        rs.getBigDecimal("amount"),
-                        rs.getString("currency"),
+                        CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                        Money.fromBigDecimal(rs.getBigDecimal("amount"), rs.getString("currency")),
+                        rs.getString("receipt_path"),
+                        rs.getTimestamp("date").toLocalDateTime(),
+                        rs.getString("notes")));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The user's newest expenses, at most {@code limit}. Archived rows are all
+     * older than the hot table's, so they are read only when the hot table
+     * holds fewer than {@code limit}.
+     */
+    public static List<Expense> getRecentExpenses(Connection conn, int userId, int limit) throws SQLException {
+        List<Expense> results = latest(conn, "expenses", userId, limit);
+        return results.size() < limit ? latest(conn, ExpenseArchive.ALL_EXPENSES, userId, limit) : results;
+    }
+
+    private static List<Expense> latest(Connection conn, String table, int userId, int limit) throws SQLException {
+        List<Expense> results = new ArrayList<>();
+        String sql = "SELECT id, category_id, amount, currency, receipt_path, date, notes FROM " + table
+                + " WHERE user_id = ? ORDER BY date DESC LIMIT ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ps.setInt(2, limit);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                results.add(new Expense(
+                        rs.getInt("id"),
+                        CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                        Money.fromBigDecimal(rs.getBigDecimal("amount"), rs.getString("currency")),
                         rs.getString("receipt_path"),
-                        rs.getTimestamp("date").toLocalDateTime()));
+                        rs.getTimestamp("date").toLocalDateTime(),
+                        rs.getString("notes")));
+            }
+        }
+        return results;
+    }
+
+    /** The user's expenses with the given ids, hot or archived, newest first. */
+    public static List<Expense> getExpensesById(Connection conn, int userId, Collection<Integer> ids)
+            throws SQLException {
+        List<Expense> results = new ArrayList<>();
+        if (ids.isEmpty())
+            return results;
+        String sql = "SELECT id, category_id, amount, currency, receipt_path, date, notes FROM " + ExpenseArchive.ALL_EXPENSES
+                + " WHERE user_id = ? AND id IN (" + "?, ".repeat(ids.size() - 1) + "?) ORDER BY date DESC";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            int i = 2;
+            for (int id : ids)
+                ps.setInt(i++, id);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                results.add(new Expense(
+                        rs.getInt("id"),
+                        CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                        Money.fromBigDecimal(rs.getBigDecimal("amount"), rs.getString("currency")),
+                        rs.getString("receipt_path"),
+                        rs.getTimestamp("date").toLocalDateTime(),
+                        rs.getString("notes")));
             }
         }
         return results;
@@ -137,63 +234,262 @@ public class ExpenseService {
 
     // ─── Recurring Expenses logic ──────────────────────────
 
-    public static void applyRecurringExpenses(Connection conn, String username) throws SQLException {
-        String sql = "SELECT * FROM recurring_expenses WHERE username = ? AND (last_applied_date IS NULL OR last_applied_date < CURRENT_DATE)";
+    /** Adds an expense for every due occurrence of the user's recurring items; returns how many were added. */
+    public static int applyRecurringExpenses(Connection conn, int userId) throws SQLException {
+        int applied = 0;
+        LocalDate today = LocalDate.now();
+        for (RecurringExpense r : getRecurringExpenses(conn, userId)) {
+            List<LocalDate> due = r.dueDates(today);
+            if (due.isEmpty())
+                continue;
+            CategoryDictionary.idFor(conn, r.getCategory());
+            // The occurrences and the new last-applied date commit together, so none is added twice
+            applied += logged(conn, () -> {
+                for (LocalDate date : due)
+                    addExpense(conn, userId, r.getCategory(), r.getAmount(), null, date.atStartOfDay(),
+                            r.getDescription());
+                markRecurringApplied(conn, userId, r.getId(), due.get(due.size() - 1));
+                return due.size();
+            });
+        }
+        return applied;
+    }
+
+    public static boolean markRecurringApplied(Connection conn, int userId, int id, LocalDate date)
+            throws SQLException {
+        String sql = "UPDATE recurring_expenses SET last_applied_date = ? WHERE id = ? AND user_id = ?";
+        return logged(conn, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setDate(1, java.sql.Date.valueOf(date));
+                ps.setInt(2, id);
+                ps.setInt(3, userId);
+                if (ps.executeUpdate() == 0)
+                    return false;
+            }
+            ChangeLog.record(conn, userId, ChangeLog.RECURRING, id, ChangeLog.UPDATE);
+            return true;
+        });
+    }
+
+    public static List<RecurringExpense> getRecurringExpenses(Connection conn, int userId) throws SQLException {
+        List<RecurringExpense> items = new ArrayList<>();
+        String sql = "SELECT id, description, amount, category_id, interval_type, start_date, last_applied_date "
+                + "FROM recurring_expenses WHERE user_id = ? ORDER BY start_date";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, username);
+            ps.setInt(1, userId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                LocalDate lastApplied = rs.getDate("last_applied_date") != null
-                        ? rs.getDate("last_applied_date").toLocalDate()
-                        : null;
-                LocalDate startDate = rs.getDate("start_date").toLocalDate();
-                String interval = rs.getString("interval_type");
-                LocalDate nextDate = (lastApplied == null) ? startDate : calculateNextDate(lastApplied, interval);
-
-                while (nextDate.isBefore(LocalDate.now()) || nextDate.isEqual(LocalDate.now())) {
-                    // Add expense
-                    addExpense(conn, username, rs.getString("category"), rs.getBigDecimal("amount"), "INR", null,
-                            nextDate.atStartOfDay());
-                    lastApplied = nextDate;
-                    nextDate = calculateNextDate(lastApplied, interval);
+                java.sql.Date last = rs.getDate("last_applied_date");
+                items.add(new RecurringExpense(
+                        rs.getInt("id"),
+                        rs.getString("description"),
+                        Money.fromBigDecimal(rs.getBigDecimal("amount")),
+                        CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                        rs.getString("interval_type"),
+                        rs.getDate("start_date").toLocalDate(),
+                        last != null ? last.toLocalDate() : null));
+            }
+        }
+        return items;
+    }
+
+    public static int addRecurringExpense(Connection conn, int userId, String description, Money amount,
+            String category, String interval, LocalDate startDate) throws SQLException {
+        String sql = "INSERT INTO recurring_expenses (user_id, description, amount, category_id, interval_type, start_date) VALUES (?, ?, ?, ?, ?, ?)";
+        int categoryId = CategoryDictionary.idFor(conn, category);
+        return logged(conn, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, userId);
+                ps.setString(2, description);
+                ps.setBigDecimal(3, amount.toBigDecimal());
+                ps.setInt(4, categoryId);
+                ps.setString(5, interval);
+                ps.setDate(6, java.sql.Date.valueOf(startDate != null ? startDate : LocalDate.now()));
+                ps.executeUpdate();
+                int id = generatedId(ps);
+                ChangeLog.record(conn, userId, ChangeLog.RECURRING, id, ChangeLog.INSERT);
+                return id;
+            }
+        });
+    }
+
+    public static boolean deleteRecurringExpense(Connection conn, int userId, int id) throws SQLException {
+        String sql = "DELETE FROM recurring_expenses WHERE id = ? AND user_id = ?";
+        return logged(conn, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, id);
+                ps.setInt(2, userId);
+                if (ps.executeUpdate() == 0)
+                    return false;
+            }
+            ChangeLog.record(conn, userId, ChangeLog.RECURRING, id, ChangeLog.DELETE);
+            return true;
+        });
+    }
+
+    public static int addExpense(Connection conn, int userId, String cat, Money amt, String receipt,
+            java.time.LocalDateTime dt, String notes) throws SQLException {
+        String sql = "INSERT INTO expenses (user_id, category_id, amount, currency, receipt_path, date, notes) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        int categoryId = CategoryDictionary.idFor(conn, cat);
+        return logged(conn, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, userId);
+                ps.setInt(2, categoryId);
+                ps.setBigDecimal(3, amt.toBigDecimal());
+                ps.setString(4, amt.getCurrency());
+                ps.setString(5, receipt);
+                ps.setTimestamp(6, java.sql.Timestamp.valueOf(dt != null ? dt : java.time.LocalDateTime.now()));
+                ps.setString(7, notes);
+                ps.executeUpdate();
+                int id = generatedId(ps);
+                ChangeLog.record(conn, userId, ChangeLog.EXPENSE, id, ChangeLog.INSERT);
+                return id;
+            }
+        });
+    }
+
+    /**
+     * Inserts {@code rows.get(i)} for {@code userIds[i]} in one transaction:
+     * one batched INSERT, one batch of change-log rows, one commit. Returns
+     * the new ids in order. Categories are registered before the transaction
+     * starts, so a rollback cannot leave the dictionary cache pointing at rows
+     * that were never committed.
+     */
+    public static int[] addExpenses(Connection conn, int[] userIds, List<Expense> rows) throws SQLException {
+        int[] categoryIds = new int[rows.size()];
+        for (int i = 0; i < categoryIds.length; i++)
+            categoryIds[i] = CategoryDictionary.idFor(conn, rows.get(i).getCategory());
+        String sql = "INSERT INTO expenses (user_id, category_id, amount, currency, receipt_path, date, notes) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        int[] ids = new int[rows.size()];
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < ids.length; i++) {
+                    Expense e = rows.get(i);
+                    ps.setInt(1, userIds[i]);
+                    ps.setInt(2, categoryIds[i]);
+                    ps.setBigDecimal(3, e.getAmount().toBigDecimal());
+                    ps.setString(4, e.getAmount().getCurrency());
+                    ps.setString(5, e.getReceiptPath());
+                    ps.setTimestamp(6, Timestamp.valueOf(e.getDate()));
+                    ps.setString(7, e.getNotes());
+                    ps.addBatch();
                 }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (int i = 0; i < ids.length; i++) {
+                        if (!keys.next())
+                            throw new SQLException("Driver returned " + i + " generated keys for " + ids.length + " rows");
+                        ids[i] = keys.getInt(1);
+                    }
+                }
+            }
+            ChangeLog.record(conn, userIds, ChangeLog.EXPENSE, ids, ChangeLog.INSERT);
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            // Restoring autocommit would otherwise commit what was inserted
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return ids;
+    }
 
-                // Update recurring record
-                PreparedStatement up = conn
-                        .prepareStatement("UPDATE recurring_expenses SET last_applied_date = ? WHERE id = ?");
-                up.setDate(1, java.sql.Date.valueOf(lastApplied));
-                up.setInt(2, rs.getInt("id"));
-                up.executeUpdate();
+    /** Deletes one of the user's expenses, hot or archived, and returns it, or null if it did not exist. */
+    public static Expense deleteExpense(Connection conn, int userId, int id) throws SQLException {
+        return logged(conn, () -> {
+            Expense deleted = deleteExpense(conn, "expenses", userId, id);
+            if (deleted == null)
+                deleted = deleteExpense(conn, "expenses_archive", userId, id);
+            if (deleted != null)
+                ChangeLog.record(conn, userId, ChangeLog.EXPENSE, id, ChangeLog.DELETE);
+            return deleted;
+        });
+    }
+
+    /**
+     * Moves one of the user's expenses, hot or archived, to another category
+     * and returns it as it was, or null if it did not exist.
+     */
+    public static Expense recategorizeExpense(Connection conn, int userId, int id, String category)
+            throws SQLException {
+        int categoryId = CategoryDictionary.idFor(conn, category);
+        return logged(conn, () -> {
+            for (String table : new String[] { "expenses", "expenses_archive" }) {
+                Expense before = findExpense(conn, table, userId, id);
+                if (before == null)
+                    continue;
+                String sql = "UPDATE " + table + " SET category_id = ? WHERE id = ? AND user_id = ?";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setInt(1, categoryId);
+                    ps.setInt(2, id);
+                    ps.setInt(3, userId);
+                    if (ps.executeUpdate() == 0)
+                        return null;
+                }
+                ChangeLog.record(conn, userId, ChangeLog.EXPENSE, id, ChangeLog.UPDATE);
+                return before;
             }
+            return null;
+        });
+    }
+
+    private static Expense findExpense(Connection conn, String table, int userId, int id) throws SQLException {
+        String select = "SELECT id, category_id, amount, currency, receipt_path, date, notes FROM " + table + " WHERE id = ? AND user_id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(select)) {
+            ps.setInt(1, id);
+            ps.setInt(2, userId);
+            ResultSet rs = ps.executeQuery();
+            if (!rs.next())
+                return null;
+            return new Expense(
+                    rs.getInt("id"),
+                    CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                    Money.fromBigDecimal(rs.getBigDecimal("amount"), rs.getString("currency")),
+                    rs.getString("receipt_path"),
+                    rs.getTimestamp("date").toLocalDateTime(),
+                    rs.getString("notes"));
         }
     }
 
-    private static LocalDate calculateNextDate(LocalDate last, String interval) {
-        return switch (interval.toLowerCase()) {
-            case "daily" -> last.plusDays(1);
-            case "weekly" -> last.plusWeeks(1);
-            case "monthly" -> last.plusMonths(1);
-            default -> last.plusMonths(1);
-        };
+    private static Expense deleteExpense(Connection conn, String table, int userId, int id) throws SQLException {
+        Expense existing = findExpense(conn, table, userId, id);
+        if (existing == null)
+            return null;
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + table + " WHERE id = ? AND user_id = ?")) {
+            ps.setInt(1, id);
+            ps.setInt(2, userId);
+            return ps.executeUpdate() > 0 ? existing : null;
+        }
     }
 
-    public static void addExpense(Connection conn, String user, String cat, BigDecimal amt, String curr, String receipt,
-            java.time.LocalDateTime dt) throws SQLException {
-        String sql = "INSERT INTO expenses (username, category, amount, currency, receipt_path, date) VALUES (?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, user);
-            ps.setString(2, cat);
-            ps.setBigDecimal(3, amt);
-            ps.setString(4, (curr != null) ? curr : "INR");
-            ps.setString(5, receipt);
-            ps.setTimestamp(6, java.sql.Timestamp.valueOf(dt != null ? dt : java.time.LocalDateTime.now()));
-            ps.executeUpdate();
+    /** Table for a calendar-month query: the hot table alone unless that month has been archived. */
+    private static String monthTable(int month, int year) {
+        return ExpenseArchive.tableFrom(LocalDate.of(year, month, 1));
+    }
+
+    /**
+     * Binds [first of month, first of next month) at {@code index}. A range on
+     * the raw column, unlike MONTH(date) = ?, can use idx_exp_user_date and
+     * lets MySQL prune partitions.
+     */
+    private static void setMonth(PreparedStatement ps, int index, int month, int year) throws SQLException {
+        LocalDate first = LocalDate.of(year, month, 1);
+        ps.setTimestamp(index, Timestamp.valueOf(first.atStartOfDay()));
+        ps.setTimestamp(index + 1, Timestamp.valueOf(first.plusMonths(1).atStartOfDay()));
+    }
+
+    private static int generatedId(PreparedStatement ps) throws SQLException {
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            return keys.next() ? keys.getInt(1) : 0;
         }
     }
 
     public static List<String> getCategories(Connection conn) throws SQLException {
         List<String> categories = new ArrayList<>();
-        String sql = "SELECT name FROM categories ORDER BY name";
+        String sql = "SELECT name FROM categories WHERE active = TRUE ORDER BY name";
         try (Statement stmt = conn.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
@@ -203,16 +499,18 @@ public class ExpenseService {
         return categories;
     }
 
+    /** Lists the category, re-showing it if it was deleted or only known from an expense. */
     public static boolean addCategory(Connection conn, String name) throws SQLException {
-        String sql = "INSERT INTO categories (name) VALUES (?)";
+        String sql = "UPDATE categories SET active = TRUE WHERE id = ? AND active = FALSE";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, name);
+            ps.setInt(1, CategoryDictionary.idFor(conn, name));
             return ps.executeUpdate() > 0;
         }
     }
 
+    /** Hides the category from the list; rows that reference it keep their category_id. */
     public static boolean deleteCategory(Connection conn, String name) throws SQLException {
-        String sql = "DELETE FROM categories WHERE name = ?";
+        String sql = "UPDATE categories SET active = FALSE WHERE name = ? AND active = TRUE";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, name);
             return ps.executeUpdate() > 0;
@@ -221,55 +519,72 @@ public class ExpenseService {
 
     // ─── Budget Methods ──────────────────────────────────
 
-    public static Map<String, BigDecimal> getBudgets(Connection conn, String username) throws SQLException {
-        Map<String, BigDecimal> budgets = new LinkedHashMap<>();
-        String sql = "SELECT category, monthly_limit FROM budgets WHERE username = ? ORDER BY category";
+    public static Map<String, Money> getBudgets(Connection conn, int userId) throws SQLException {
+        Map<String, Money> budgets = new LinkedHashMap<>();
+        String sql = "SELECT c.name, b.monthly_limit FROM budgets b JOIN categories c ON c.id = b.category_id "
+                + "WHERE b.user_id = ? ORDER BY c.name";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, username);
+            ps.setInt(1, userId);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                budgets.put(rs.getString("category"), rs.getBigDecimal("monthly_limit"));
+                budgets.put(rs.getString("name"), Money.fromBigDecimal(rs.getBigDecimal("monthly_limit")));
             }
         }
         return budgets;
     }
 
-    public static boolean setBudget(Connection conn, String username, String category, BigDecimal limit)
+    public static boolean setBudget(Connection conn, int userId, String category, Money limit)
             throws SQLException {
-        String sql = "INSERT INTO budgets (username, category, monthly_limit) VALUES (?, ?, ?) "
+        String sql = "INSERT INTO budgets (user_id, category_id, monthly_limit) VALUES (?, ?, ?) "
                 + "ON DUPLICATE KEY UPDATE monthly_limit = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setString(2, category);
-            ps.setBigDecimal(3, limit);
-            ps.setBigDecimal(4, limit);
-            return ps.executeUpdate() > 0;
-        }
+        int categoryId = CategoryDictionary.idFor(conn, category);
+        String name = CategoryDictionary.nameOf(conn, categoryId);
+        return logged(conn, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                ps.setInt(2, categoryId);
+                ps.setBigDecimal(3, limit.toBigDecimal());
+                ps.setBigDecimal(4, limit.toBigDecimal());
+                if (ps.executeUpdate() == 0)
+                    return false;
+            }
+            ChangeLog.record(conn, userId, ChangeLog.BUDGET, name, ChangeLog.UPDATE);
+            return true;
+        });
     }
 
-    public static boolean deleteBudget(Connection conn, String username, String category) throws SQLException {
-        String sql = "DELETE FROM budgets WHERE username = ? AND category = ?";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setString(2, category);
-            return ps.executeUpdate() > 0;
-        }
+    public static boolean deleteBudget(Connection conn, int userId, String category) throws SQLException {
+        Integer categoryId = CategoryDictionary.lookup(conn, category);
+        if (categoryId == null)
+            return false;
+        String sql = "DELETE FROM budgets WHERE user_id = ? AND category_id = ?";
+        String name = CategoryDictionary.nameOf(conn, categoryId);
+        return logged(conn, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, userId);
+                ps.setInt(2, categoryId);
+                if (ps.executeUpdate() == 0)
+                    return false;
+            }
+            ChangeLog.record(conn, userId, ChangeLog.BUDGET, name, ChangeLog.DELETE);
+            return true;
+        });
     }
 
     /** Returns [{category, spent, limit}] for the current month */
-    public static List<Map<String, Object>> getBudgetStatus(Connection conn, String username) throws SQLException {
+    public static List<Map<String, Object>> getBudgetStatus(Connection conn, int userId) throws SQLException {
         List<Map<String, Object>> result = new ArrayList<>();
         int month = LocalDate.now().getMonthValue();
         int year = LocalDate.now().getYear();
 
-        Map<String, BigDecimal> budgets = getBudgets(conn, username);
-        Map<String, BigDecimal> spending = getCategoryBreakdown(conn, username, month, year);
+        Map<String, Money> budgets = getBudgets(conn, userId);
+        Map<String, Money> spending = getCategoryBreakdown(conn, userId, month, year);
 
         for (var entry : budgets.entrySet()) {
             Map<String, Object> item = new LinkedHashMap<>();
             item.put("category", entry.getKey());
             item.put("limit", entry.getValue());
-            item.put("spent", spending.getOrDefault(entry.getKey(), BigDecimal.ZERO));
+            item.put("spent", spending.getOrDefault(entry.getKey(), Money.ZERO));
             result.add(item);
         }
         return result;
@@ -278,22 +593,22 @@ public class ExpenseService {
     // ─── Trend Data ──────────────────────────────────────
 
     /** Monthly totals for the last N months */
-    public static List<Map<String, Object>> getMonthlyTrend(Connection conn, String username, int months)
+    public static List<Map<String, Object>> getMonthlyTrend(Connection conn, int userId, int months)
             throws SQLException {
         List<Map<String, Object>> trend = new ArrayList<>();
+        LocalDate start = LocalDate.now().minusMonths(months - 1).withDayOfMonth(1);
         String sql = "SELECT YEAR(date) AS y, MONTH(date) AS m, SUM(amount) AS total "
-                + "FROM expenses WHERE username = ? AND date >= ? "
+                + "FROM " + ExpenseArchive.tableFrom(start) + " WHERE user_id = ? AND date >= ? "
                 + "GROUP BY YEAR(date), MONTH(date) ORDER BY y, m";
-        LocalDate start = LocalDate.now().minusMonths(months - 1).withDayOfMonth(1);
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, username);
+            ps.setInt(1, userId);
             ps.setDate(2, java.sql.Date.valueOf(start));
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
                 Map<String, Object> point = new LinkedHashMap<>();
                 point.put("year", rs.getInt("y"));
                 point.put("month", rs.getInt("m"));
-                point.put("total", rs.getBigDecimal("total"));
+                point.put("total", Money.fromBigDecimal(rs.getBigDecimal("total")));
                 trend.add(point);
             }
         }
@@ -301,33 +616,384 @@ public class ExpenseService {
     }
 
     /** Daily spending for a given month (for heatmap) */
-    public static Map<Integer, BigDecimal> getDailySpending(Connection conn, String username, int month, int year)
+    public static Map<Integer, Money> getDailySpending(Connection conn, int userId, int month, int year)
             throws SQLException {
-        Map<Integer, BigDecimal> daily = new LinkedHashMap<>();
+        Map<Integer, Money> daily = new LinkedHashMap<>();
         String sql = "SELECT DAY(date) AS d, SUM(amount) AS total "
-                + "FROM expenses WHERE username = ? AND MONTH(date) = ? AND YEAR(date) = ? "
+                + "FROM " + monthTable(month, year) + " WHERE user_id = ? AND date >= ? AND date < ? "
                 + "GROUP BY DAY(date) ORDER BY d";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setInt(2, month);
-            ps.setInt(3, year);
+            ps.setInt(1, userId);
+            setMonth(ps, 2, month, year);
             ResultSet rs = ps.executeQuery();
             while (rs.next()) {
-                daily.put(rs.getInt("d"), rs.getBigDecimal("total"));
+                daily.put(rs.getInt("d"), Money.fromBigDecimal(rs.getBigDecimal("total")));
             }
         }
         return daily;
     }
 
     /** Get expense count for a user in a given month */
-    public static int getExpenseCount(Connection conn, String username, int month, int year) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM expenses WHERE username = ? AND MONTH(date) = ? AND YEAR(date) = ?";
+    public static int getExpenseCount(Connection conn, int userId, int month, int year) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM " + monthTable(month, year) + " WHERE user_id = ? AND date >= ? AND date < ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setInt(2, month);
-            ps.setInt(3, year);
+            ps.setInt(1, userId);
+            setMonth(ps, 2, month, year);
             ResultSet rs = ps.executeQuery();
             return rs.next() ? rs.getInt(1) : 0;
         }
     }
+
+    // ─── Reminders ───────────────────────────────────────
+
+    public static List<Reminder> getReminders(Connection conn, int userId) throws SQLException {
+        return queryReminders(conn, userId, -1);
+    }
+
+    /** Reminders due between today and {@code daysAhead} days from now. */
+    public static List<Reminder> getUpcomingReminders(Connection conn, int userId, int daysAhead)
+            throws SQLException {
+        return queryReminders(conn, userId, daysAhead);
+    }
+
+    private static List<Reminder> queryReminders(Connection conn, int userId, int daysAhead)
+            throws SQLException {
+        List<Reminder> reminders = new ArrayList<>();
+        String sql = "SELECT id, title, due_date, notes FROM reminders WHERE user_id = ?"
+                + (daysAhead >= 0 ? " AND due_date BETWEEN ? AND ?" : "") + " ORDER BY due_date ASC";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            if (daysAhead >= 0) {
+                ps.setDate(2, java.sql.Date.valueOf(LocalDate.now()));
+                ps.setDate(3, java.sql.Date.valueOf(LocalDate.now().plusDays(daysAhead)));
+            }
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                reminders.add(new Reminder(
+                        rs.getInt("id"),
+                        rs.getString("title"),
+                        rs.getDate("due_date").toLocalDate(),
+                        rs.getString("notes")));
+            }
+        }
+        return reminders;
+    }
+
+    public static int addReminder(Connection conn, int userId, String title, LocalDate dueDate, String notes)
+            throws SQLException {
+        String sql = "INSERT INTO reminders (user_id, title, due_date, notes) VALUES (?, ?, ?, ?)";
+        return logged(conn, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                ps.setInt(1, userId);
+                ps.setString(2, title);
+                ps.setDate(3, java.sql.Date.valueOf(dueDate));
+                ps.setString(4, notes);
+                ps.executeUpdate();
+                int id = generatedId(ps);
+                ChangeLog.record(conn, userId, ChangeLog.REMINDER, id, ChangeLog.INSERT);
+                return id;
+            }
+        });
+    }
+
+    public static boolean deleteReminder(Connection conn, int userId, int id) throws SQLException {
+        String sql = "DELETE FROM reminders WHERE id = ? AND user_id = ?";
+        return logged(conn, () -> {
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setInt(1, id);
+                ps.setInt(2, userId);
+                if (ps.executeUpdate() == 0)
+                    return false;
+            }
+            ChangeLog.record(conn, userId, ChangeLog.REMINDER, id, ChangeLog.DELETE);
+            return true;
+        });
+    }
+
+    /** Reminders on this database due on or before {@code through} that were never delivered, by user id. */
+    public static Map<Integer, List<Reminder>> getUndeliveredReminders(Connection conn, LocalDate through)
+            throws SQLException {
+        Map<Integer, List<Reminder>> pending = new LinkedHashMap<>();
+        String sql = "SELECT id, user_id, title, due_date, notes FROM reminders"
+                + " WHERE delivered_at IS NULL AND due_date <= ? ORDER BY due_date ASC";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setDate(1, java.sql.Date.valueOf(through));
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                pending.computeIfAbsent(rs.getInt("user_id"), k -> new ArrayList<>()).add(new Reminder(
+                        rs.getInt("id"),
+                        rs.getString("title"),
+                        rs.getDate("due_date").toLocalDate(),
+                        rs.getString("notes")));
+            }
+        }
+        return pending;
+    }
+
+    public static boolean markReminderDelivered(Connection conn, int userId, int id) throws SQLException {
+        String sql = "UPDATE reminders SET delivered_at = ? WHERE id = ? AND user_id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            ps.setInt(2, id);
+            ps.setInt(3, userId);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    // ─── Idempotency Keys ────────────────────────────────
+
+    /** A claim still unfinished after this long is taken to belong to a request that died. */
+    static final int ABANDONED_CLAIM_SECONDS = 60;
+
+    /**
+     * Inserts the key with no expense yet. Returns null if this call now owns
+     * it, otherwise the expense id stored under it (0 while its owner is still
+     * writing). An owner that never finished is replaced after
+     * {@link #ABANDONED_CLAIM_SECONDS}.
+     */
+    public static Integer claimIdempotencyKey(Connection conn, int userId, String key) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO idempotency_keys (user_id, idem_key, created_at) VALUES (?, ?, ?)")) {
+            ps.setInt(1, userId);
+            ps.setString(2, key);
+            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            ps.executeUpdate();
+            return null;
+        } catch (java.sql.SQLIntegrityConstraintViolationException e) {
+            /* Claimed before; see by whom */ }
+        String takeOver = "UPDATE idempotency_keys SET created_at = ? WHERE user_id = ? AND idem_key = ? AND expense_id = 0 AND created_at < ?";
+        try (PreparedStatement ps = conn.prepareStatement(takeOver)) {
+            long now = System.currentTimeMillis();
+            ps.setTimestamp(1, new Timestamp(now));
+            ps.setInt(2, userId);
+            ps.setString(3, key);
+            ps.setTimestamp(4, new Timestamp(now - ABANDONED_CLAIM_SECONDS * 1000L));
+            if (ps.executeUpdate() > 0)
+                return null;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT expense_id FROM idempotency_keys WHERE user_id = ? AND idem_key = ?")) {
+            ps.setInt(1, userId);
+            ps.setString(2, key);
+            ResultSet rs = ps.executeQuery();
+            // Released between the insert and this read: report it as in progress rather than race again
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    public static void completeIdempotencyKey(Connection conn, int userId, String key, int expenseId)
+            throws SQLException {
+        String sql = "UPDATE idempotency_keys SET expense_id = ? WHERE user_id = ? AND idem_key = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, expenseId);
+            ps.setInt(2, userId);
+            ps.setString(3, key);
+            ps.executeUpdate();
+        }
+    }
+
+    public static void releaseIdempotencyKey(Connection conn, int userId, String key) throws SQLException {
+        String sql = "DELETE FROM idempotency_keys WHERE user_id = ? AND idem_key = ? AND expense_id = 0";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ps.setString(2, key);
+            ps.executeUpdate();
+        }
+    }
+
+    public static int purgeIdempotencyKeys(Connection conn, Timestamp before) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM idempotency_keys WHERE created_at < ?")) {
+            ps.setTimestamp(1, before);
+            return ps.executeUpdate();
+        }
+    }
+
+    // ─── Category Rules ──────────────────────────────────
+
+    public static List<CategoryRule> getCategoryRules(Connection conn, int userId) throws SQLException {
+        List<CategoryRule> rules = new ArrayList<>();
+        String sql = "SELECT id, match_type, pattern, min_amount, max_amount, currency, category_id, priority, hits "
+                + "FROM category_rules WHERE user_id = ? ORDER BY priority, id";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) {
+                BigDecimal min = rs.getBigDecimal("min_amount");
+                BigDecimal max = rs.getBigDecimal("max_amount");
+                String currency = rs.getString("currency");
+                rules.add(new CategoryRule(
+                        rs.getInt("id"),
+                        rs.getString("match_type"),
+                        rs.getString("pattern"),
+                        min != null ? Money.fromBigDecimal(min, currency) : null,
+                        max != null ? Money.fromBigDecimal(max, currency) : null,
+                        CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                        rs.getInt("priority"),
+                        rs.getLong("hits")));
+            }
+        }
+        return rules;
+    }
+
+    /** Stores the rule, whose id is ignored, and returns the new id. */
+    public static int addCategoryRule(Connection conn, int userId, CategoryRule rule) throws SQLException {
+        String sql = "INSERT INTO category_rules (user_id, match_type, pattern, min_amount, max_amount, currency, category_id, priority) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        Money bound = rule.getMinAmount() != null ? rule.getMinAmount() : rule.getMaxAmount();
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, userId);
+            ps.setString(2, rule.getMatchType());
+            ps.setString(3, rule.getPattern());
+            ps.setBigDecimal(4, rule.getMinAmount() != null ? rule.getMinAmount().toBigDecimal() : null);
+            ps.setBigDecimal(5, rule.getMaxAmount() != null ? rule.getMaxAmount().toBigDecimal() : null);
+            ps.setString(6, bound != null ? bound.getCurrency() : Money.DEFAULT_CURRENCY);
+            ps.setInt(7, CategoryDictionary.idFor(conn, rule.getCategory()));
+            ps.setInt(8, rule.getPriority());
+            ps.executeUpdate();
+            return generatedId(ps);
+        }
+    }
+
+    public static boolean deleteCategoryRule(Connection conn, int userId, int id) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM category_rules WHERE id = ? AND user_id = ?")) {
+            ps.setInt(1, id);
+            ps.setInt(2, userId);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /** Adds to the stored hit counts, by rule id; rules deleted meanwhile are skipped. */
+    public static void addCategoryRuleHits(Connection conn, int userId, Map<Integer, Long> hits) throws SQLException {
+        String sql = "UPDATE category_rules SET hits = hits + ? WHERE id = ? AND user_id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (Map.Entry<Integer, Long> e : hits.entrySet()) {
+                ps.setLong(1, e.getValue());
+                ps.setInt(2, e.getKey());
+                ps.setInt(3, userId);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // ─── Users ───────────────────────────────────────────
+
+    public static User findUser(Connection conn, String username) throws SQLException {
+        return queryUser(conn, "SELECT id, username, password_hash, salt FROM users WHERE username = ?", username);
+    }
+
+    public static User findUserById(Connection conn, int userId) throws SQLException {
+        return queryUser(conn, "SELECT id, username, password_hash, salt FROM users WHERE id = ?", userId);
+    }
+
+    private static User queryUser(Connection conn, String sql, Object key) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setObject(1, key);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                return new User(rs.getInt("id"), rs.getString("username"), rs.getString("password_hash"),
+                        rs.getString("salt"));
+            }
+        }
+        return null;
+    }
+
+    /** Inserts a user and returns the new id, or 0 if the username is already taken. */
+    public static int createUser(Connection conn, String username, String passwordHash, String salt)
+            throws SQLException {
+        String sql = "INSERT INTO users (username, password_hash, salt) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, username);
+            ps.setString(2, passwordHash);
+            ps.setString(3, salt);
+            ps.executeUpdate();
+            return generatedId(ps);
+        } catch (java.sql.SQLIntegrityConstraintViolationException e) {
+            return 0;
+        }
+    }
+
+    /** Creates a user under an id reserved in the shard directory. */
+    public static void createUser(Connection conn, int id, String username, String passwordHash, String salt)
+            throws SQLException {
+        String sql = "INSERT INTO users (id, username, password_hash, salt) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, id);
+            ps.setString(2, username);
+            ps.setString(3, passwordHash);
+            ps.setString(4, salt);
+            ps.executeUpdate();
+        }
+    }
+
+    public static boolean updatePassword(Connection conn, int userId, String passwordHash, String salt)
+            throws SQLException {
+        String sql = "UPDATE users SET password_hash = ?, salt = ? WHERE id = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, passwordHash);
+            ps.setString(2, salt);
+            ps.setInt(3, userId);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    // ─── Journal Snapshot ────────────────────────────────
+
+    private static final int SCAN_PAGE = 10_000;
+
+    /** Passes every expense, budget and recurring expense on this database to the listener, for a snapshot. */
+    public static void replayAll(Connection conn, ExpenseJournal.Listener listener) throws SQLException {
+        for (String table : List.of("expenses", "expenses_archive"))
+            replayExpenses(conn, table, listener);
+        String budgets = "SELECT b.user_id, c.name, b.monthly_limit FROM budgets b JOIN categories c ON c.id = b.category_id";
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(budgets)) {
+            while (rs.next())
+                listener.budgetSet(rs.getInt(1), rs.getString(2), Money.fromBigDecimal(rs.getBigDecimal(3)));
+        }
+        String recurring = "SELECT id, user_id, description, amount, category_id, interval_type, start_date, "
+                + "last_applied_date FROM recurring_expenses";
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(recurring)) {
+            while (rs.next()) {
+                java.sql.Date last = rs.getDate("last_applied_date");
+                listener.recurringSaved(rs.getInt("user_id"), new RecurringExpense(
+                        rs.getInt("id"),
+                        rs.getString("description"),
+                        Money.fromBigDecimal(rs.getBigDecimal("amount")),
+                        CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                        rs.getString("interval_type"),
+                        rs.getDate("start_date").toLocalDate(),
+                        last != null ? last.toLocalDate() : null));
+            }
+        }
+    }
+
+    /** Pages through the table by primary key so that no result set holds it all. */
+    private static void replayExpenses(Connection conn, String table, ExpenseJournal.Listener listener)
+            throws SQLException {
+        String sql = "SELECT id, user_id, category_id, amount, currency, receipt_path, date, notes FROM " + table
+                + " WHERE id > ? ORDER BY id LIMIT " + SCAN_PAGE;
+        int after = 0;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            while (true) {
+                ps.setInt(1, after);
+                int rows = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        after = rs.getInt("id");
+                        rows++;
+                        listener.expenseAdded(rs.getInt("user_id"), new Expense(
+                                after,
+                                CategoryDictionary.nameOf(conn, rs.getInt("category_id")),
+                                Money.fromBigDecimal(rs.getBigDecimal("amount"), rs.getString("currency")),
+                                rs.getString("receipt_path"),
+                                rs.getTimestamp("date").toLocalDateTime(),
+                                rs.getString("notes")));
+                    }
+                }
+                if (rows < SCAN_PAGE)
+                    return;
+            }
+        }
+    }
 }
@@ -0,0 +1,324 @@
+package service;
+
+import model.Expense;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * One user's expenses as an inverted index, for {@link SearchIndexRepository}.
+ * Each word of an expense's category and notes maps to the documents that
+ * hold it, in the order they were added; the words are kept sorted, so the
+ * words a query word starts are one range of the map. A document keeps only
+ * the expense id, its date and its length in words, never the text.
+ * <p>
+ * A deleted or changed expense leaves a tombstone in the postings, skipped
+ * at query time, and a change is added again as a new document. Callers
+ * rebuild the index once tombstones outweigh a quarter of the live
+ * documents, and synchronize on the instance.
+ */
+final class ExpenseTextIndex {
+
+    /** BM25 term-frequency saturation and length normalization. */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    /** Weight of a word the query word only starts, against a whole-word match. */
+    private static final double PREFIX_WEIGHT = 0.5;
+
+    /** Documents holding one word, in increasing order, with how often it occurs in each. */
+    private static final class Postings {
+        int[] docs = new int[2];
+        byte[] counts = new byte[2];
+        int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) {
+                if (counts[size - 1] < Byte.MAX_VALUE)
+                    counts[size - 1]++;
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            docs[size] = doc;
+            counts[size++] = 1;
+        }
+    }
+
+    /** One query word and the indexed words it starts, with their weights. */
+    private record Term(List<Postings> postings, double[] weights, long size) {
+    }
+
+    /** Matching documents in increasing order, with their scores. */
+    private record Match(int[] docs, float[] scores) {
+    }
+
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    private final Map<Integer, Integer> docOfId = new HashMap<>();
+    /** By document: expense id, 0 for a tombstone. */
+    private int[] ids = new int[64];
+    private long[] epochSeconds = new long[64];
+    private short[] lengths = new short[64];
+    private int docs;
+    private int dead;
+    private long totalLength;
+    /** Best score so far per document while a query's first word is matched; all zero between queries. */
+    private float[] scratch = new float[0];
+    boolean loaded;
+    /** Change-log version up to which writes made below {@link SearchIndexRepository} are applied. */
+    long version;
+    volatile long lastAccess = System.currentTimeMillis();
+
+    /** Lowercased runs of letters and digits, in order; everything else separates words. */
+    static List<String> words(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null)
+            return out;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                out.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    /** Replaces the contents with the given expenses. */
+    void load(List<Expense> expenses) {
+        words.clear();
+        docOfId.clear();
+        docs = dead = 0;
+        totalLength = 0;
+        // Oldest first, so that document order follows the order rows were written in
+        for (int i = expenses.size() - 1; i >= 0; i--)
+            add(expenses.get(i));
+        loaded = true;
+    }
+
+    /** Indexes the expense; an expense already indexed under its id is replaced. */
+    void add(Expense e) {
+        if (docs == ids.length) {
+            ids = Arrays.copyOf(ids, docs * 2);
+            epochSeconds = Arrays.copyOf(epochSeconds, docs * 2);
+            lengths = Arrays.copyOf(lengths, docs * 2);
+        }
+        int doc = docs++;
+        Integer previous = docOfId.put(e.getId(), doc);
+        if (previous != null)
+            tombstone(previous);
+        ids[doc] = e.getId();
+        epochSeconds[doc] = e.getDate().toEpochSecond(ZoneOffset.UTC);
+        int length = 0;
+        for (String text : new String[] { e.getCategory(), e.getNotes() }) {
+            for (String word : words(text)) {
+                words.computeIfAbsent(word, k -> new Postings()).add(doc);
+                length++;
+            }
+        }
+        lengths[doc] = (short) Math.min(length, Short.MAX_VALUE);
+        totalLength += lengths[doc];
+    }
+
+    boolean contains(int id) {
+        return docOfId.containsKey(id);
+    }
+
+    /** Drops the expense; false if it is not indexed. */
+    boolean remove(int id) {
+        Integer doc = docOfId.remove(id);
+        if (doc == null)
+            return false;
+        tombstone(doc);
+        return true;
+    }
+
+    private void tombstone(int doc) {
+        ids[doc] = 0;
+        totalLength -= lengths[doc];
+        dead++;
+    }
+
+    int liveCount() {
+        return docs - dead;
+    }
+
+    /** True once tombstones make up more than a quarter of the documents. */
+    boolean needsRebuild() {
+        return dead > 64 && dead * 4 > docs;
+    }
+
+    // ─── Queries ─────────────────────────────────────────
+
+    /** The words of the query with what each starts in the index, rarest first; null if one matches nothing. */
+    private List<Term> terms(String query) {
+        List<Term> terms = new ArrayList<>();
+        Set<String> distinct = new LinkedHashSet<>(words(query));
+        for (String word : distinct) {
+            NavigableMap<String, Postings> range = words.subMap(word, true, word + Character.MAX_VALUE, false);
+            if (range.isEmpty())
+                return null;
+            List<Postings> postings = new ArrayList<>(range.size());
+            double[] weights = new double[range.size()];
+            long size = 0;
+            for (var entry : range.entrySet()) {
+                weights[postings.size()] = entry.getKey().equals(word) ? 1.0 : PREFIX_WEIGHT;
+                postings.add(entry.getValue());
+                size += entry.getValue().size;
+            }
+            terms.add(new Term(postings, weights, size));
+        }
+        terms.sort((a, b) -> Long.compare(a.size(), b.size()));
+        return terms;
+    }
+
+    private double score(Postings p, int i, double weight, double idf, double averageLength) {
+        int doc = p.docs[i];
+        double tf = p.counts[i];
+        return weight * idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[doc] / averageLength));
+    }
+
+    /**
+     * Rarity of a query word, from the documents holding any word it starts,
+     * so that a prefix of a rare word cannot outrank a common whole word.
+     * Always positive, which matching relies on, even when tombstones make a
+     * word outnumber live documents.
+     */
+    private double idf(Term term) {
+        return Math.log(1 + (Math.max(liveCount() - term.size(), 0) + 0.5) / (term.size() + 0.5));
+    }
+
+    /**
+     * Live documents matching every word of the query, each either whole or
+     * as the start of a word, with their BM25 scores; a document scores its
+     * best match per query word. Null if nothing matches. The first (rarest)
+     * word collects candidates; each further word only checks those, by
+     * binary search when they are few against its postings, by a merge
+     * otherwise.
+     */
+    private Match match(String query) {
+        List<Term> terms = terms(query);
+        if (terms == null || terms.isEmpty())
+            return null;
+        double averageLength = Math.max(1.0, (double) totalLength / Math.max(liveCount(), 1));
+        Term first = terms.get(0);
+        if (scratch.length < docs)
+            scratch = new float[ids.length];
+        int[] candidates = new int[(int) Math.min(first.size(), docs)];
+        int count = 0;
+        double firstIdf = idf(first);
+        for (int t = 0; t < first.postings().size(); t++) {
+            Postings p = first.postings().get(t);
+            for (int i = 0; i < p.size; i++) {
+                int doc = p.docs[i];
+                if (ids[doc] == 0)
+                    continue;
+                float s = (float) score(p, i, first.weights()[t], firstIdf, averageLength);
+                if (scratch[doc] == 0)
+                    candidates[count++] = doc;
+                scratch[doc] = Math.max(scratch[doc], s);
+            }
+        }
+        if (first.postings().size() > 1)
+            Arrays.sort(candidates, 0, count);
+        float[] scores = new float[count];
+        for (int i = 0; i < count; i++) {
+            scores[i] = scratch[candidates[i]];
+            scratch[candidates[i]] = 0;
+        }
+
+        float[] best = new float[count];
+        for (int w = 1; w < terms.size() && count > 0; w++) {
+            Term term = terms.get(w);
+            Arrays.fill(best, 0, count, 0f);
+            double idf = idf(term);
+            for (int t = 0; t < term.postings().size(); t++) {
+                Postings p = term.postings().get(t);
+                double weight = term.weights()[t];
+                if ((long) count * 32 < p.size) {
+                    for (int c = 0; c < count; c++) {
+                        int i = Arrays.binarySearch(p.docs, 0, p.size, candidates[c]);
+                        if (i >= 0)
+                            best[c] = Math.max(best[c], (float) score(p, i, weight, idf, averageLength));
+                    }
+                } else {
+                    for (int c = 0, i = 0; c < count && i < p.size;) {
+                        if (p.docs[i] < candidates[c]) {
+                            i++;
+                        } else if (p.docs[i] > candidates[c]) {
+                            c++;
+                        } else {
+                            best[c] = Math.max(best[c], (float) score(p, i, weight, idf, averageLength));
+                            c++;
+                            i++;
+                        }
+                    }
+                }
+            }
+            int kept = 0;
+            for (int c = 0; c < count; c++) {
+                if (best[c] > 0) {
+                    candidates[kept] = candidates[c];
+                    scores[kept++] = scores[c] + best[c];
+                }
+            }
+            count = kept;
+        }
+        return count == 0 ? null : new Match(Arrays.copyOf(candidates, count), Arrays.copyOf(scores, count));
+    }
+
+    /** Ids of the best {@code limit} matches, best first; equal scores go newest first. */
+    int[] search(String query, int limit) {
+        Match match = match(query);
+        if (match == null || limit <= 0)
+            return new int[0];
+        int[] matched = match.docs();
+        float[] scores = match.scores();
+        // Worst kept match on top, so each better one replaces it
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.min(limit, matched.length) + 1, (a, b) -> {
+            int c = Float.compare(scores[a], scores[b]);
+            if (c == 0)
+                c = Long.compare(epochSeconds[matched[a]], epochSeconds[matched[b]]);
+            return c != 0 ? c : Integer.compare(ids[matched[a]], ids[matched[b]]);
+        });
+        for (int i = 0; i < matched.length; i++) {
+            top.add(i);
+            if (top.size() > limit)
+                top.poll();
+        }
+        int[] result = new int[top.size()];
+        for (int i = result.length - 1; i >= 0; i--)
+            result[i] = ids[matched[top.poll()]];
+        return result;
+    }
+
+    /** Ids of every match dated from {@code from} (inclusive) to {@code to} (exclusive); null bounds are open. */
+    List<Integer> matching(String query, LocalDateTime from, LocalDateTime to) {
+        Match match = match(query);
+        if (match == null)
+            return List.of();
+        long lo = from != null ? from.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE;
+        long hi = to != null ? to.toEpochSecond(ZoneOffset.UTC) : Long.MAX_VALUE;
+        List<Integer> result = new ArrayList<>();
+        for (int doc : match.docs()) {
+            if (epochSeconds[doc] >= lo && epochSeconds[doc] < hi)
+                result.add(ids[doc]);
+        }
+        return result;
+    }
+}
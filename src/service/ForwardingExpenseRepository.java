@@ -0,0 +1,273 @@
+package service;
+
+import model.CategoryRule;
+import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+import model.Reminder;
+import model.User;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base for repository decorators: forwards every call to the wrapped
+ * repository so subclasses only override what they change.
+ */
+public abstract class ForwardingExpenseRepository implements ExpenseRepository {
+
+    protected final ExpenseRepository delegate;
+
+    protected ForwardingExpenseRepository(ExpenseRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public User findUser(String username) throws SQLException {
+        return delegate.findUser(username);
+    }
+
+    @Override
+    public User findUserById(int userId) throws SQLException {
+        return delegate.findUserById(userId);
+    }
+
+    @Override
+    public int createUser(String username, String passwordHash, String salt) throws SQLException {
+        return delegate.createUser(username, passwordHash, salt);
+    }
+
+    @Override
+    public boolean updatePassword(int userId, String passwordHash, String salt) throws SQLException {
+        return delegate.updatePassword(userId, passwordHash, salt);
+    }
+
+    // addExpenses is not forwarded: the default sends each row through this layer's addExpense
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        return delegate.addExpense(userId, category, amount, receiptPath, date, notes);
+    }
+
+    @Override
+    public Expense deleteExpense(int userId, int id) throws SQLException {
+        return delegate.deleteExpense(userId, id);
+    }
+
+    @Override
+    public Expense recategorizeExpense(int userId, int id, String category) throws SQLException {
+        return delegate.recategorizeExpense(userId, id, category);
+    }
+
+    @Override
+    public List<Expense> searchExpenses(int userId, String category, String keyword, Money minAmount,
+            Money maxAmount, LocalDate startDate, LocalDate endDate) throws SQLException {
+        return delegate.searchExpenses(userId, category, keyword, minAmount, maxAmount, startDate, endDate);
+    }
+
+    @Override
+    public List<Expense> searchText(int userId, String query, int limit) throws SQLException {
+        return delegate.searchText(userId, query, limit);
+    }
+
+    @Override
+    public List<Expense> getRecentExpenses(int userId, int limit) throws SQLException {
+        return delegate.getRecentExpenses(userId, limit);
+    }
+
+    @Override
+    public Money getTotalExpensesForMonth(int userId, int month, int year) throws SQLException {
+        return delegate.getTotalExpensesForMonth(userId, month, year);
+    }
+
+    @Override
+    public String getTopCategoryForMonth(int userId, int month, int year) throws SQLException {
+        return delegate.getTopCategoryForMonth(userId, month, year);
+    }
+
+    @Override
+    public int getExpenseCount(int userId, int month, int year) throws SQLException {
+        return delegate.getExpenseCount(userId, month, year);
+    }
+
+    @Override
+    public Map<String, Money> getCategoryBreakdown(int userId, int month, int year) throws SQLException {
+        return delegate.getCategoryBreakdown(userId, month, year);
+    }
+
+    @Override
+    public Map<String, Money> getPredictions(int userId, int monthsToLookBack) throws SQLException {
+        return delegate.getPredictions(userId, monthsToLookBack);
+    }
+
+    @Override
+    public List<Map<String, Object>> getMonthlyTrend(int userId, int months) throws SQLException {
+        return delegate.getMonthlyTrend(userId, months);
+    }
+
+    @Override
+    public Map<Integer, Money> getDailySpending(int userId, int month, int year) throws SQLException {
+        return delegate.getDailySpending(userId, month, year);
+    }
+
+    @Override
+    public List<String> getCategories() throws SQLException {
+        return delegate.getCategories();
+    }
+
+    @Override
+    public boolean addCategory(String name) throws SQLException {
+        return delegate.addCategory(name);
+    }
+
+    @Override
+    public boolean deleteCategory(String name) throws SQLException {
+        return delegate.deleteCategory(name);
+    }
+
+    @Override
+    public Map<String, Money> getBudgets(int userId) throws SQLException {
+        return delegate.getBudgets(userId);
+    }
+
+    @Override
+    public boolean setBudget(int userId, String category, Money limit) throws SQLException {
+        return delegate.setBudget(userId, category, limit);
+    }
+
+    @Override
+    public boolean deleteBudget(int userId, String category) throws SQLException {
+        return delegate.deleteBudget(userId, category);
+    }
+
+    @Override
+    public List<Map<String, Object>> getBudgetStatus(int userId) throws SQLException {
+        return delegate.getBudgetStatus(userId);
+    }
+
+    @Override
+    public List<RecurringExpense> getRecurringExpenses(int userId) throws SQLException {
+        return delegate.getRecurringExpenses(userId);
+    }
+
+    @Override
+    public RecurringExpense addRecurringExpense(int userId, String description, Money amount,
+            String category, String interval, LocalDate startDate) throws SQLException {
+        return delegate.addRecurringExpense(userId, description, amount, category, interval, startDate);
+    }
+
+    @Override
+    public boolean deleteRecurringExpense(int userId, int id) throws SQLException {
+        return delegate.deleteRecurringExpense(userId, id);
+    }
+
+    @Override
+    public int applyRecurringExpenses(int userId) throws SQLException {
+        return delegate.applyRecurringExpenses(userId);
+    }
+
+    @Override
+    public boolean markRecurringApplied(int userId, int id, LocalDate date) throws SQLException {
+        return delegate.markRecurringApplied(userId, id, date);
+    }
+
+    @Override
+    public List<Reminder> getReminders(int userId) throws SQLException {
+        return delegate.getReminders(userId);
+    }
+
+    @Override
+    public List<Reminder> getUpcomingReminders(int userId, int daysAhead) throws SQLException {
+        return delegate.getUpcomingReminders(userId, daysAhead);
+    }
+
+    @Override
+    public Reminder addReminder(int userId, String title, LocalDate dueDate, String notes) throws SQLException {
+        return delegate.addReminder(userId, title, dueDate, notes);
+    }
+
+    @Override
+    public boolean deleteReminder(int userId, int id) throws SQLException {
+        return delegate.deleteReminder(userId, id);
+    }
+
+    @Override
+    public Map<Integer, List<Reminder>> getUndeliveredReminders(LocalDate through) throws SQLException {
+        return delegate.getUndeliveredReminders(through);
+    }
+
+    @Override
+    public boolean markReminderDelivered(int userId, int id) throws SQLException {
+        return delegate.markReminderDelivered(userId, id);
+    }
+
+    @Override
+    public List<CategoryRule> getCategoryRules(int userId) throws SQLException {
+        return delegate.getCategoryRules(userId);
+    }
+
+    @Override
+    public CategoryRule addCategoryRule(int userId, CategoryRule rule) throws SQLException {
+        return delegate.addCategoryRule(userId, rule);
+    }
+
+    @Override
+    public boolean deleteCategoryRule(int userId, int id) throws SQLException {
+        return delegate.deleteCategoryRule(userId, id);
+    }
+
+    @Override
+    public void addCategoryRuleHits(int userId, Map<Integer, Long> hits) throws SQLException {
+        delegate.addCategoryRuleHits(userId, hits);
+    }
+
+    @Override
+    public Integer claimIdempotencyKey(int userId, String key) throws SQLException {
+        return delegate.claimIdempotencyKey(userId, key);
+    }
+
+    @Override
+    public void completeIdempotencyKey(int userId, String key, int expenseId) throws SQLException {
+        delegate.completeIdempotencyKey(userId, key, expenseId);
+    }
+
+    @Override
+    public void releaseIdempotencyKey(int userId, String key) throws SQLException {
+        delegate.releaseIdempotencyKey(userId, key);
+    }
+
+    @Override
+    public int purgeIdempotencyKeys(LocalDateTime before) throws SQLException {
+        return delegate.purgeIdempotencyKeys(before);
+    }
+
+    @Override
+    public List<ChangeLog.Change> getChanges(int userId, long since, int limit) throws SQLException {
+        return delegate.getChanges(userId, since, limit);
+    }
+
+    @Override
+    public void logChange(int userId, String entity, Object key, char op) throws SQLException {
+        delegate.logChange(userId, entity, key, op);
+    }
+
+    @Override
+    public long getChangeVersion(int userId) throws SQLException {
+        return delegate.getChangeVersion(userId);
+    }
+
+    @Override
+    public long getSettledChangeVersion(int userId) throws SQLException {
+        return delegate.getSettledChangeVersion(userId);
+    }
+
+    @Override
+    public List<Expense> getExpensesById(int userId, Collection<Integer> ids) throws SQLException {
+        return delegate.getExpensesById(userId, ids);
+    }
+}
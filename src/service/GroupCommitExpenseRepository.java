@@ -0,0 +1,242 @@
+package service;
+
+import model.Expense;
+import model.Money;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MySQL repository whose expense inserts are written behind a queue. Callers
+ * of {@link #addExpense} put the row on a bounded queue and wait; one writer
+ * thread takes the first row, keeps collecting for up to {@code maxDelayMillis}
+ * or until it has {@code maxBatch} rows, then inserts them with one batched
+ * statement and one commit per shard. Every caller in the batch is answered
+ * once that commit returns, so an acknowledged expense is as durable as with
+ * autocommit, but a burst of N inserts costs one log flush instead of N.
+ * <p>
+ * When the queue is full a caller waits up to a second for room and then
+ * fails, rather than letting the backlog grow without bound. Everything
+ * other than adding an expense goes straight to the database as before.
+ */
+public class GroupCommitExpenseRepository extends JdbcExpenseRepository implements Closeable {
+
+    private static final long OFFER_TIMEOUT_MILLIS = 1000;
+
+    private static final class Pending {
+        final int userId;
+        final Expense row;
+        final CompletableFuture<Integer> id = new CompletableFuture<>();
+
+        Pending(int userId, Expense row) {
+            this.userId = userId;
+            this.row = row;
+        }
+    }
+
+    private static final Pending STOP = new Pending(0, null);
+
+    private final BlockingQueue<Pending> queue;
+    private final long maxDelayNanos;
+    private final int maxBatch;
+    private final Thread writerThread;
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private volatile boolean closed;
+
+    public GroupCommitExpenseRepository(int capacity, long maxDelayMillis, int maxBatch) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.maxBatch = maxBatch;
+        writerThread = new Thread(this::run, "expense-ingest");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /** Expenses committed through the queue. */
+    public long rowCount() {
+        return rows.get();
+    }
+
+    /** Transactions committed; rows per commit is the batch size. */
+    public long commitCount() {
+        return commits.get();
+    }
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        if (closed)
+            throw new SQLException("Expense ingestion is shut down");
+        Pending p = new Pending(userId,
+                new Expense(0, category, amount, receiptPath, date != null ? date : LocalDateTime.now(), notes));
+        try {
+            if (!queue.offer(p, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                throw new SQLException("Too many expenses waiting to be written; try again");
+            // Queued after the writer's last drain, nobody would take it
+            if (closed && queue.remove(p))
+                throw new SQLException("Expense ingestion is shut down");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while queueing an expense", e);
+        }
+        try {
+            int id = p.id.join();
+            return new Expense(id, category, amount, receiptPath, p.row.getDate(), notes);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sql)
+                throw sql;
+            throw new SQLException(e.getCause());
+        }
+    }
+
+    // ─── Writer ──────────────────────────────────────────
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        try {
+            loop(batch);
+        } catch (Error e) {
+            System.err.println("Expense ingestion stopped: " + e);
+            abandon(batch, new SQLException("Expense ingestion stopped", e));
+            throw e;
+        }
+    }
+
+    /** With no writer left to answer them, fails the batch and everything queued, and refuses new rows. */
+    private void abandon(List<Pending> batch, SQLException e) {
+        closed = true;
+        fail(batch, e);
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        fail(left, e);
+    }
+
+    private void loop(List<Pending> batch) {
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    if (queue.drainTo(batch, maxBatch - batch.size()) > 0)
+                        continue;
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0 || batch.contains(STOP))
+                        break;
+                    Pending next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                abandon(batch, new SQLException("Expense ingestion stopped"));
+                return;
+            }
+            stopping = batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                try {
+                    write(batch);
+                } catch (RuntimeException e) {
+                    System.err.println("Expense batch of " + batch.size() + " failed: " + e);
+                    fail(batch, new SQLException("Expense batch failed", e));
+                }
+            }
+            batch.clear();
+        }
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        fail(left, new SQLException("Expense ingestion is shut down"));
+    }
+
+    /** One transaction per shard; a failure only fails the rows of that shard. */
+    private void write(List<Pending> batch) {
+        Map<Integer, List<Pending>> byShard = new LinkedHashMap<>();
+        for (Pending p : batch) {
+            try {
+                int shard = DatabaseManager.shardCount() == 1 ? 0 : ShardDirectory.shardOf(p.userId);
+                byShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(p);
+            } catch (SQLException | RuntimeException e) {
+                p.id.completeExceptionally(e);
+            }
+        }
+        for (Map.Entry<Integer, List<Pending>> entry : byShard.entrySet()) {
+            try (Connection conn = DatabaseManager.getShardConnection(entry.getKey())) {
+                write(conn, entry.getValue());
+            } catch (SQLException e) {
+                System.err.println("Expense batch of " + entry.getValue().size() + " failed: " + e.getMessage());
+                fail(entry.getValue(), e);
+            } catch (RuntimeException e) {
+                System.err.println("Expense batch of " + entry.getValue().size() + " failed: " + e);
+                fail(entry.getValue(), new SQLException("Expense batch failed", e));
+            }
+        }
+    }
+
+    /**
+     * Inserts the group in one transaction. If a row is rejected (an amount
+     * out of range, a receipt path too long), the halves are retried on their
+     * own until the offending rows are isolated, so only their callers fail.
+     * A lost connection fails the whole group.
+     */
+    private void write(Connection conn, List<Pending> group) throws SQLException {
+        int[] userIds = new int[group.size()];
+        List<Expense> expenses = new ArrayList<>(group.size());
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = group.get(i).userId;
+            expenses.add(group.get(i).row);
+        }
+        int[] ids;
+        try {
+            ids = ExpenseService.addExpenses(conn, userIds, expenses);
+        } catch (SQLException e) {
+            if (e.getSQLState() != null && e.getSQLState().startsWith("08"))
+                throw e;
+            if (group.size() == 1) {
+                group.get(0).id.completeExceptionally(e);
+                return;
+            }
+            int half = group.size() / 2;
+            write(conn, group.subList(0, half));
+            write(conn, group.subList(half, group.size()));
+            return;
+        }
+        commits.incrementAndGet();
+        rows.addAndGet(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            ReadReplicas.recordWrite(userIds[i]);
+            group.get(i).id.complete(ids[i]);
+        }
+    }
+
+    private static void fail(List<Pending> batch, SQLException e) {
+        for (Pending p : batch) {
+            if (p != STOP)
+                p.id.completeExceptionally(e);
+        }
+    }
+
+    /** Writes what is already queued, then stops; later adds fail. */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            queue.put(STOP);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
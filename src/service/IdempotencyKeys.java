@@ -0,0 +1,101 @@
+package service;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency-Key support for adding expenses. The repository holds every
+ * claimed key (idempotency_keys in MySQL) so that a retry is recognised on
+ * any server and after a restart; a bounded LRU map in front of it answers
+ * the common case, a client retrying within seconds, without a query. Keys
+ * are kept for {@code ttl} and then forgotten by an hourly purge.
+ * <p>
+ * Only finished keys are cached. A claim that is still in progress is always
+ * checked against the repository, which is what settles two requests racing
+ * with the same key.
+ */
+public final class IdempotencyKeys {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final ExpenseRepository repo;
+    private final long ttlMillis;
+    /** "userId:key" to {expense id, completed at}. */
+    private final Map<String, long[]> recent;
+    private ScheduledExecutorService purger;
+
+    public IdempotencyKeys(ExpenseRepository repo, int cacheSize, Duration ttl) {
+        this.repo = repo;
+        this.ttlMillis = ttl.toMillis();
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /** Printable ASCII, 1 to 100 characters; anything else is rejected before it is stored. */
+    public static boolean isValid(String key) {
+        if (key == null || key.isEmpty() || key.length() > MAX_KEY_LENGTH)
+            return false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x21 || c > 0x7E)
+                return false;
+        }
+        return true;
+    }
+
+    /** See {@link ExpenseRepository#claimIdempotencyKey}. */
+    public Integer claim(int userId, String key) throws SQLException {
+        synchronized (recent) {
+            long[] done = recent.get(userId + ":" + key);
+            if (done != null && System.currentTimeMillis() - done[1] < ttlMillis)
+                return (int) done[0];
+        }
+        return repo.claimIdempotencyKey(userId, key);
+    }
+
+    public void complete(int userId, String key, int expenseId) throws SQLException {
+        repo.completeIdempotencyKey(userId, key, expenseId);
+        synchronized (recent) {
+            recent.put(userId + ":" + key, new long[] { expenseId, System.currentTimeMillis() });
+        }
+    }
+
+    /** Call when the write failed; a failed release only delays a retry until the claim is abandoned. */
+    public void release(int userId, String key) {
+        try {
+            repo.releaseIdempotencyKey(userId, key);
+        } catch (SQLException e) {
+            System.err.println("Could not release idempotency key: " + e.getMessage());
+        }
+    }
+
+    /** Purges keys older than the TTL now and every hour. */
+    public synchronized void startPurge() {
+        if (purger != null)
+            return;
+        purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotency-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        purger.scheduleWithFixedDelay(() -> {
+            try {
+                int purged = repo.purgeIdempotencyKeys(LocalDateTime.now().minus(Duration.ofMillis(ttlMillis)));
+                if (purged > 0)
+                    System.err.println("Purged " + purged + " expired idempotency keys.");
+            } catch (SQLException e) {
+                System.err.println("Idempotency key purge failed: " + e.getMessage());
+            }
+        }, 0, 60, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,647 @@
+package service;
+
+import model.CategoryRule;
+import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+import model.Reminder;
+import model.User;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe, database-free repository for demo mode, tests and benchmarks.
+ * Each user's rows live in their own {@link UserData}, guarded by its monitor,
+ * so different users never contend. Ordering and grouping mirror the SQL in
+ * {@link ExpenseService}.
+ */
+public class InMemoryExpenseRepository implements ExpenseRepository, ExpenseJournal.Source {
+
+    private static final List<String> DEFAULT_CATEGORIES = List.of("Food", "Transport", "Rent", "Entertainment",
+            "Health", "Other");
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<Integer, User> usersById = new ConcurrentHashMap<>();
+    private final Map<Integer, UserData> data = new ConcurrentHashMap<>();
+    private final Set<String> categories = new ConcurrentSkipListSet<>(String.CASE_INSENSITIVE_ORDER);
+    private final AtomicInteger userIds = new AtomicInteger();
+    private final AtomicInteger expenseIds = new AtomicInteger();
+    private final AtomicInteger recurringIds = new AtomicInteger();
+    private final AtomicInteger reminderIds = new AtomicInteger();
+    private final AtomicInteger ruleIds = new AtomicInteger();
+    private final AtomicLong changeVersions = new AtomicLong();
+
+    private static class UserData {
+        final List<Expense> expenses = new ArrayList<>();
+        final Map<String, Money> budgets = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final List<RecurringExpense> recurring = new ArrayList<>();
+        final List<Reminder> reminders = new ArrayList<>();
+        final Set<Integer> deliveredReminders = new HashSet<>();
+        final List<ChangeLog.Change> changes = new ArrayList<>();
+        final List<CategoryRule> rules = new ArrayList<>();
+        /** Idempotency key to {expense id, 0 while unfinished; claimed at, epoch millis}. */
+        final Map<String, long[]> idempotencyKeys = new HashMap<>();
+    }
+
+    public InMemoryExpenseRepository() {
+        categories.addAll(DEFAULT_CATEGORIES);
+    }
+
+    private UserData dataFor(int userId) {
+        return data.computeIfAbsent(userId, k -> new UserData());
+    }
+
+    /** Callers hold the lock on {@code ud}. */
+    private void logChange(UserData ud, String entity, Object key, char op) {
+        ud.changes.add(new ChangeLog.Change(changeVersions.incrementAndGet(), entity, String.valueOf(key), op));
+    }
+
+    // ─── Users ───────────────────────────────────────────
+
+    @Override
+    public User findUser(String username) {
+        return copyOf((username == null) ? null : users.get(username));
+    }
+
+    @Override
+    public User findUserById(int userId) {
+        return copyOf(usersById.get(userId));
+    }
+
+    private static User copyOf(User u) {
+        return (u == null) ? null : new User(u.getId(), u.getUsername(), u.getPasswordHash(), u.getSalt());
+    }
+
+    @Override
+    public int createUser(String username, String passwordHash, String salt) {
+        // Like AUTO_INCREMENT, a failed insert still consumes an id
+        User created = new User(userIds.incrementAndGet(), username, passwordHash, salt);
+        if (users.putIfAbsent(username, created) != null)
+            return 0;
+        usersById.put(created.getId(), created);
+        return created.getId();
+    }
+
+    @Override
+    public boolean updatePassword(int userId, String passwordHash, String salt) {
+        User updated = usersById.computeIfPresent(userId,
+                (k, u) -> new User(u.getId(), u.getUsername(), passwordHash, salt));
+        if (updated == null)
+            return false;
+        users.put(updated.getUsername(), updated);
+        return true;
+    }
+
+    // ─── Expenses ────────────────────────────────────────
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) {
+        Expense e = new Expense(expenseIds.incrementAndGet(), category, amount, receiptPath,
+                (date != null) ? date : LocalDateTime.now(), notes);
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            ud.expenses.add(e);
+            logChange(ud, ChangeLog.EXPENSE, e.getId(), ChangeLog.INSERT);
+        }
+        return e;
+    }
+
+    @Override
+    public Expense deleteExpense(int userId, int id) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (int i = 0; i < ud.expenses.size(); i++) {
+                if (ud.expenses.get(i).getId() == id) {
+                    logChange(ud, ChangeLog.EXPENSE, id, ChangeLog.DELETE);
+                    return ud.expenses.remove(i);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Expense recategorizeExpense(int userId, int id, String category) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (int i = 0; i < ud.expenses.size(); i++) {
+                Expense e = ud.expenses.get(i);
+                if (e.getId() == id) {
+                    ud.expenses.set(i, new Expense(id, category, e.getAmount(), e.getReceiptPath(), e.getDate(),
+                            e.getNotes()));
+                    logChange(ud, ChangeLog.EXPENSE, id, ChangeLog.UPDATE);
+                    return e;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<Expense> searchExpenses(int userId, String category, String keyword, Money minAmount,
+            Money maxAmount, LocalDate startDate, LocalDate endDate) {
+        String kw = (keyword != null && !keyword.trim().isEmpty()) ? keyword.toLowerCase() : null;
+        String cat = (category != null && !category.trim().isEmpty()) ? category : null;
+        List<Expense> results = new ArrayList<>();
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (Expense e : ud.expenses) {
+                if (cat != null && !e.getCategory().equalsIgnoreCase(cat))
+                    continue;
+                if (kw != null && !e.getCategory().toLowerCase().contains(kw)
+                        && (e.getNotes() == null || !e.getNotes().toLowerCase().contains(kw)))
+                    continue;
+                // Like the SQL filter, amount bounds ignore currency
+                long units = e.getAmount().getMinorUnits();
+                if (minAmount != null && units < minAmount.getMinorUnits())
+                    continue;
+                if (maxAmount != null && units > maxAmount.getMinorUnits())
+                    continue;
+                LocalDate d = e.getDate().toLocalDate();
+                if (startDate != null && d.isBefore(startDate))
+                    continue;
+                if (endDate != null && d.isAfter(endDate))
+                    continue;
+                results.add(e);
+            }
+        }
+        results.sort(Comparator.comparing(Expense::getDate).reversed());
+        return results;
+    }
+
+    @Override
+    public Money getTotalExpensesForMonth(int userId, int month, int year) {
+        long total = 0;
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (Expense e : ud.expenses) {
+                if (inMonth(e, month, year))
+                    total += e.getAmount().getMinorUnits();
+            }
+        }
+        return Money.ofMinor(total);
+    }
+
+    @Override
+    public String getTopCategoryForMonth(int userId, int month, int year) {
+        Map<String, Money> breakdown = getCategoryBreakdown(userId, month, year);
+        return breakdown.isEmpty() ? "N/A" : breakdown.keySet().iterator().next();
+    }
+
+    @Override
+    public int getExpenseCount(int userId, int month, int year) {
+        int count = 0;
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (Expense e : ud.expenses) {
+                if (inMonth(e, month, year))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, Money> getCategoryBreakdown(int userId, int month, int year) {
+        Map<String, Long> totals = new HashMap<>();
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (Expense e : ud.expenses) {
+                if (inMonth(e, month, year))
+                    totals.merge(e.getCategory(), e.getAmount().getMinorUnits(), Long::sum);
+            }
+        }
+        return sortedByValueDesc(totals);
+    }
+
+    @Override
+    public Map<String, Money> getPredictions(int userId, int monthsToLookBack) {
+        LocalDate startDate = LocalDate.now().minusMonths(monthsToLookBack).withDayOfMonth(1);
+        Map<String, Long> totals = new HashMap<>();
+        Map<String, Set<Integer>> months = new HashMap<>();
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (Expense e : ud.expenses) {
+                LocalDate d = e.getDate().toLocalDate();
+                if (d.isBefore(startDate))
+                    continue;
+                totals.merge(e.getCategory(), e.getAmount().getMinorUnits(), Long::sum);
+                months.computeIfAbsent(e.getCategory(), k -> new HashSet<>()).add(d.getYear() * 100 + d.getMonthValue());
+            }
+        }
+        Map<String, Money> predictions = new LinkedHashMap<>();
+        for (var entry : sortedByValueDesc(totals).entrySet()) {
+            int monthCount = months.get(entry.getKey()).size();
+            predictions.put(entry.getKey(), entry.getValue().dividedBy(monthCount));
+        }
+        return predictions;
+    }
+
+    @Override
+    public List<Map<String, Object>> getMonthlyTrend(int userId, int months) {
+        LocalDate start = LocalDate.now().minusMonths(months - 1).withDayOfMonth(1);
+        TreeMap<Integer, Long> byMonth = new TreeMap<>();
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (Expense e : ud.expenses) {
+                LocalDate d = e.getDate().toLocalDate();
+                if (!d.isBefore(start))
+                    byMonth.merge(d.getYear() * 100 + d.getMonthValue(), e.getAmount().getMinorUnits(), Long::sum);
+            }
+        }
+        List<Map<String, Object>> trend = new ArrayList<>();
+        for (var entry : byMonth.entrySet()) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("year", entry.getKey() / 100);
+            point.put("month", entry.getKey() % 100);
+            point.put("total", Money.ofMinor(entry.getValue()));
+            trend.add(point);
+        }
+        return trend;
+    }
+
+    @Override
+    public Map<Integer, Money> getDailySpending(int userId, int month, int year) {
+        TreeMap<Integer, Long> daily = new TreeMap<>();
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (Expense e : ud.expenses) {
+                if (inMonth(e, month, year))
+                    daily.merge(e.getDate().getDayOfMonth(), e.getAmount().getMinorUnits(), Long::sum);
+            }
+        }
+        Map<Integer, Money> result = new LinkedHashMap<>();
+        daily.forEach((day, total) -> result.put(day, Money.ofMinor(total)));
+        return result;
+    }
+
+    private static boolean inMonth(Expense e, int month, int year) {
+        LocalDateTime d = e.getDate();
+        return d.getMonthValue() == month && d.getYear() == year;
+    }
+
+    /** Totals are summed in minor units regardless of currency, as SUM(amount) does. */
+    private static Map<String, Money> sortedByValueDesc(Map<String, Long> totals) {
+        Map<String, Money> sorted = new LinkedHashMap<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEachOrdered(e -> sorted.put(e.getKey(), Money.ofMinor(e.getValue())));
+        return sorted;
+    }
+
+    // ─── Categories ──────────────────────────────────────
+
+    @Override
+    public List<String> getCategories() {
+        return new ArrayList<>(categories);
+    }
+
+    @Override
+    public boolean addCategory(String name) {
+        return name != null && !name.trim().isEmpty() && categories.add(name);
+    }
+
+    @Override
+    public boolean deleteCategory(String name) {
+        return name != null && categories.remove(name);
+    }
+
+    // ─── Budgets ─────────────────────────────────────────
+
+    @Override
+    public Map<String, Money> getBudgets(int userId) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            return new LinkedHashMap<>(ud.budgets);
+        }
+    }
+
+    @Override
+    public boolean setBudget(int userId, String category, Money limit) {
+        if (limit == null || !limit.isPositive())
+            throw new IllegalArgumentException("Budget limit must be positive.");
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            ud.budgets.put(category, limit);
+            logChange(ud, ChangeLog.BUDGET, category, ChangeLog.UPDATE);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean deleteBudget(int userId, String category) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            if (ud.budgets.remove(category) == null)
+                return false;
+            logChange(ud, ChangeLog.BUDGET, category, ChangeLog.DELETE);
+            return true;
+        }
+    }
+
+    // ─── Recurring Expenses ──────────────────────────────
+
+    @Override
+    public List<RecurringExpense> getRecurringExpenses(int userId) {
+        UserData ud = dataFor(userId);
+        List<RecurringExpense> items;
+        synchronized (ud) {
+            items = new ArrayList<>(ud.recurring);
+        }
+        items.sort(Comparator.comparing(RecurringExpense::getStartDate));
+        return items;
+    }
+
+    @Override
+    public RecurringExpense addRecurringExpense(int userId, String description, Money amount,
+            String category, String interval, LocalDate startDate) {
+        RecurringExpense r = new RecurringExpense(recurringIds.incrementAndGet(), description, amount, category,
+                interval, startDate, null);
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            ud.recurring.add(r);
+            logChange(ud, ChangeLog.RECURRING, r.getId(), ChangeLog.INSERT);
+        }
+        return r;
+    }
+
+    @Override
+    public boolean deleteRecurringExpense(int userId, int id) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            if (!ud.recurring.removeIf(r -> r.getId() == id))
+                return false;
+            logChange(ud, ChangeLog.RECURRING, id, ChangeLog.DELETE);
+            return true;
+        }
+    }
+
+    @Override
+    public int applyRecurringExpenses(int userId) {
+        LocalDate today = LocalDate.now();
+        int applied = 0;
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (int i = 0; i < ud.recurring.size(); i++) {
+                RecurringExpense r = ud.recurring.get(i);
+                List<LocalDate> due = r.dueDates(today);
+                if (due.isEmpty())
+                    continue;
+                for (LocalDate date : due) {
+                    addExpense(userId, r.getCategory(), r.getAmount(), null, date.atStartOfDay(), r.getDescription());
+                    applied++;
+                }
+                ud.recurring.set(i, new RecurringExpense(r.getId(), r.getDescription(), r.getAmount(),
+                        r.getCategory(), r.getInterval(), r.getStartDate(), due.get(due.size() - 1)));
+                logChange(ud, ChangeLog.RECURRING, r.getId(), ChangeLog.UPDATE);
+            }
+        }
+        return applied;
+    }
+
+    @Override
+    public boolean markRecurringApplied(int userId, int id, LocalDate date) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (int i = 0; i < ud.recurring.size(); i++) {
+                RecurringExpense r = ud.recurring.get(i);
+                if (r.getId() == id) {
+                    ud.recurring.set(i, new RecurringExpense(r.getId(), r.getDescription(), r.getAmount(),
+                            r.getCategory(), r.getInterval(), r.getStartDate(), date));
+                    logChange(ud, ChangeLog.RECURRING, id, ChangeLog.UPDATE);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // ─── Reminders ───────────────────────────────────────
+
+    @Override
+    public List<Reminder> getReminders(int userId) {
+        UserData ud = dataFor(userId);
+        List<Reminder> items;
+        synchronized (ud) {
+            items = new ArrayList<>(ud.reminders);
+        }
+        items.sort(Comparator.comparing(Reminder::getDueDate));
+        return items;
+    }
+
+    @Override
+    public Reminder addReminder(int userId, String title, LocalDate dueDate, String notes) {
+        Reminder r = new Reminder(reminderIds.incrementAndGet(), title, dueDate, notes);
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            ud.reminders.add(r);
+            logChange(ud, ChangeLog.REMINDER, r.getId(), ChangeLog.INSERT);
+        }
+        return r;
+    }
+
+    @Override
+    public boolean deleteReminder(int userId, int id) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            if (!ud.reminders.removeIf(r -> r.getId() == id))
+                return false;
+            logChange(ud, ChangeLog.REMINDER, id, ChangeLog.DELETE);
+            return true;
+        }
+    }
+
+    @Override
+    public Map<Integer, List<Reminder>> getUndeliveredReminders(LocalDate through) {
+        Map<Integer, List<Reminder>> pending = new LinkedHashMap<>();
+        for (var entry : data.entrySet()) {
+            UserData ud = entry.getValue();
+            synchronized (ud) {
+                for (Reminder r : ud.reminders) {
+                    if (!r.getDueDate().isAfter(through) && !ud.deliveredReminders.contains(r.getId()))
+                        pending.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(r);
+                }
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean markReminderDelivered(int userId, int id) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            if (ud.reminders.stream().noneMatch(r -> r.getId() == id))
+                return false;
+            ud.deliveredReminders.add(id);
+            return true;
+        }
+    }
+
+    // ─── Category Rules ──────────────────────────────────
+
+    @Override
+    public List<CategoryRule> getCategoryRules(int userId) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            List<CategoryRule> rules = new ArrayList<>(ud.rules);
+            rules.sort(Comparator.comparingInt(CategoryRule::getPriority).thenComparingInt(CategoryRule::getId));
+            return rules;
+        }
+    }
+
+    @Override
+    public CategoryRule addCategoryRule(int userId, CategoryRule rule) {
+        CategoryRule stored = new CategoryRule(ruleIds.incrementAndGet(), rule.getMatchType(), rule.getPattern(),
+                rule.getMinAmount(), rule.getMaxAmount(), rule.getCategory(), rule.getPriority(), 0);
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            ud.rules.add(stored);
+        }
+        return stored;
+    }
+
+    @Override
+    public boolean deleteCategoryRule(int userId, int id) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            return ud.rules.removeIf(r -> r.getId() == id);
+        }
+    }
+
+    @Override
+    public void addCategoryRuleHits(int userId, Map<Integer, Long> hits) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            ud.rules.replaceAll(r -> !hits.containsKey(r.getId()) ? r
+                    : new CategoryRule(r.getId(), r.getMatchType(), r.getPattern(), r.getMinAmount(),
+                            r.getMaxAmount(), r.getCategory(), r.getPriority(), r.getHits() + hits.get(r.getId())));
+        }
+    }
+
+    // ─── Idempotency Keys ────────────────────────────────
+
+    @Override
+    public Integer claimIdempotencyKey(int userId, String key) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            long now = System.currentTimeMillis();
+            long[] claim = ud.idempotencyKeys.get(key);
+            if (claim == null
+                    || (claim[0] == 0 && claim[1] < now - ExpenseService.ABANDONED_CLAIM_SECONDS * 1000L)) {
+                ud.idempotencyKeys.put(key, new long[] { 0, now });
+                return null;
+            }
+            return (int) claim[0];
+        }
+    }
+
+    @Override
+    public void completeIdempotencyKey(int userId, String key, int expenseId) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            long[] claim = ud.idempotencyKeys.get(key);
+            if (claim != null)
+                claim[0] = expenseId;
+        }
+    }
+
+    @Override
+    public void releaseIdempotencyKey(int userId, String key) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            long[] claim = ud.idempotencyKeys.get(key);
+            if (claim != null && claim[0] == 0)
+                ud.idempotencyKeys.remove(key);
+        }
+    }
+
+    @Override
+    public int purgeIdempotencyKeys(LocalDateTime before) {
+        long cutoff = before.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        int purged = 0;
+        for (UserData ud : data.values()) {
+            synchronized (ud) {
+                int size = ud.idempotencyKeys.size();
+                ud.idempotencyKeys.values().removeIf(claim -> claim[1] < cutoff);
+                purged += size - ud.idempotencyKeys.size();
+            }
+        }
+        return purged;
+    }
+
+    // ─── Change Feed ─────────────────────────────────────
+
+    @Override
+    public List<ChangeLog.Change> getChanges(int userId, long since, int limit) {
+        long latest = changeVersions.get();
+        if (since > latest)
+            return List.of(new ChangeLog.Change(latest, ChangeLog.RESET, "", ChangeLog.UPDATE));
+        List<ChangeLog.Change> result = new ArrayList<>();
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (ChangeLog.Change c : ud.changes) {
+                if (c.version() > since && result.size() < limit)
+                    result.add(c);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void logChange(int userId, String entity, Object key, char op) {
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            logChange(ud, entity, key, op);
+        }
+    }
+
+    @Override
+    public long getChangeVersion(int userId) {
+        return changeVersions.get();
+    }
+
+    @Override
+    public List<Expense> getExpensesById(int userId, Collection<Integer> ids) {
+        List<Expense> found = new ArrayList<>();
+        UserData ud = dataFor(userId);
+        synchronized (ud) {
+            for (Expense e : ud.expenses) {
+                if (ids.contains(e.getId()))
+                    found.add(e);
+            }
+        }
+        return found;
+    }
+
+    // ─── Journal Snapshot ────────────────────────────────
+
+    @Override
+    public void replayInto(ExpenseJournal.Listener listener) {
+        for (var entry : data.entrySet()) {
+            int userId = entry.getKey();
+            UserData ud = entry.getValue();
+            synchronized (ud) {
+                ud.expenses.forEach(e -> listener.expenseAdded(userId, e));
+                ud.budgets.forEach((category, limit) -> listener.budgetSet(userId, category, limit));
+                ud.recurring.forEach(r -> listener.recurringSaved(userId, r));
+            }
+        }
+    }
+}
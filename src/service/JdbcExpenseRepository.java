@@ -0,0 +1,400 @@
+package service;
+
+import model.CategoryRule;
+import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+import model.Reminder;
+import model.User;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** MySQL-backed repository: one connection per call, to the user's shard; SQL lives in {@link ExpenseService}. */
+public class JdbcExpenseRepository implements ExpenseRepository, ExpenseJournal.Source {
+
+    @FunctionalInterface
+    interface SqlFunction<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    protected <T> T withConnection(SqlFunction<T> fn) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            return fn.apply(conn);
+        }
+    }
+
+    /** Runs on the shard that holds the user. */
+    protected <T> T withConnection(int userId, SqlFunction<T> fn) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(userId)) {
+            return fn.apply(conn);
+        }
+    }
+
+    /** Read-only reporting queries: served by a replica when one is configured. */
+    protected <T> T withReadConnection(int userId, SqlFunction<T> fn) throws SQLException {
+        try (Connection conn = DatabaseManager.getReadConnection(userId)) {
+            return fn.apply(conn);
+        }
+    }
+
+    /** Writes go to the primary and keep the user's reads there until replicas have caught up. */
+    protected <T> T withWrite(int userId, SqlFunction<T> fn) throws SQLException {
+        T result = withConnection(userId, fn);
+        ReadReplicas.recordWrite(userId);
+        return result;
+    }
+
+    /** Categories are shared by all users, so every shard keeps the same active set. */
+    private boolean onEveryShard(SqlFunction<Boolean> fn) throws SQLException {
+        boolean changed = false;
+        for (int shard = 0; shard < DatabaseManager.shardCount(); shard++) {
+            try (Connection conn = DatabaseManager.getShardConnection(shard)) {
+                changed |= fn.apply(conn);
+            }
+        }
+        return changed;
+    }
+
+    // ─── Users ───────────────────────────────────────────
+
+    @Override
+    public User findUser(String username) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection(username)) {
+            return ExpenseService.findUser(conn, username);
+        }
+    }
+
+    @Override
+    public User findUserById(int userId) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.findUserById(conn, userId));
+    }
+
+    @Override
+    public int createUser(String username, String passwordHash, String salt) throws SQLException {
+        if (DatabaseManager.shardCount() == 1)
+            return withConnection(conn -> ExpenseService.createUser(conn, username, passwordHash, salt));
+        int userId = ShardDirectory.register(username);
+        if (userId == 0)
+            return 0;
+        try {
+            withConnection(userId, conn -> {
+                ExpenseService.createUser(conn, userId, username, passwordHash, salt);
+                return null;
+            });
+        } catch (SQLException e) {
+            ShardDirectory.unregister(userId);
+            throw e;
+        }
+        return userId;
+    }
+
+    @Override
+    public boolean updatePassword(int userId, String passwordHash, String salt) throws SQLException {
+        return withWrite(userId, conn -> ExpenseService.updatePassword(conn, userId, passwordHash, salt));
+    }
+
+    // ─── Expenses ────────────────────────────────────────
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        LocalDateTime at = (date != null) ? date : LocalDateTime.now();
+        int id = withWrite(userId, conn -> ExpenseService.addExpense(conn, userId, category, amount, receiptPath, at,
+                notes));
+        return new Expense(id, category, amount, receiptPath, at, notes);
+    }
+
+    @Override
+    public List<Expense> addExpenses(int userId, List<Expense> rows) throws SQLException {
+        if (rows.isEmpty())
+            return List.of();
+        int[] userIds = new int[rows.size()];
+        Arrays.fill(userIds, userId);
+        int[] ids = withWrite(userId, conn -> ExpenseService.addExpenses(conn, userIds, rows));
+        List<Expense> added = new ArrayList<>(rows.size());
+        for (int i = 0; i < ids.length; i++) {
+            Expense e = rows.get(i);
+            added.add(new Expense(ids[i], e.getCategory(), e.getAmount(), e.getReceiptPath(), e.getDate(),
+                    e.getNotes()));
+        }
+        return added;
+    }
+
+    @Override
+    public Expense deleteExpense(int userId, int id) throws SQLException {
+        return withWrite(userId, conn -> ExpenseService.deleteExpense(conn, userId, id));
+    }
+
+    @Override
+    public Expense recategorizeExpense(int userId, int id, String category) throws SQLException {
+        return withWrite(userId, conn -> ExpenseService.recategorizeExpense(conn, userId, id, category));
+    }
+
+    @Override
+    public List<Expense> searchExpenses(int userId, String category, String keyword, Money minAmount,
+            Money maxAmount, LocalDate startDate, LocalDate endDate) throws SQLException {
+        return withReadConnection(userId, conn -> ExpenseService.searchExpenses(conn, userId, category, keyword, minAmount,
+                maxAmount, startDate, endDate));
+    }
+
+    @Override
+    public List<Expense> getRecentExpenses(int userId, int limit) throws SQLException {
+        return withReadConnection(userId, conn -> ExpenseService.getRecentExpenses(conn, userId, limit));
+    }
+
+    @Override
+    public Money getTotalExpensesForMonth(int userId, int month, int year) throws SQLException {
+        return withReadConnection(userId, conn -> ExpenseService.getTotalExpensesForMonth(conn, userId, month, year));
+    }
+
+    @Override
+    public String getTopCategoryForMonth(int userId, int month, int year) throws SQLException {
+        return withReadConnection(userId, conn -> ExpenseService.getTopCategoryForMonth(conn, userId, month, year));
+    }
+
+    @Override
+    public int getExpenseCount(int userId, int month, int year) throws SQLException {
+        return withReadConnection(userId, conn -> ExpenseService.getExpenseCount(conn, userId, month, year));
+    }
+
+    @Override
+    public Map<String, Money> getCategoryBreakdown(int userId, int month, int year) throws SQLException {
+        return withReadConnection(userId, conn -> ExpenseService.getCategoryBreakdown(conn, userId, month, year));
+    }
+
+    @Override
+    public Map<String, Money> getPredictions(int userId, int monthsToLookBack) throws SQLException {
+        return withReadConnection(userId, conn -> ExpenseService.getPredictions(conn, userId, monthsToLookBack));
+    }
+
+    @Override
+    public List<Map<String, Object>> getMonthlyTrend(int userId, int months) throws SQLException {
+        return withReadConnection(userId, conn -> ExpenseService.getMonthlyTrend(conn, userId, months));
+    }
+
+    @Override
+    public Map<Integer, Money> getDailySpending(int userId, int month, int year) throws SQLException {
+        return withReadConnection(userId, conn -> ExpenseService.getDailySpending(conn, userId, month, year));
+    }
+
+    // ─── Categories ──────────────────────────────────────
+
+    @Override
+    public List<String> getCategories() throws SQLException {
+        return withConnection(ExpenseService::getCategories);
+    }
+
+    @Override
+    public boolean addCategory(String name) throws SQLException {
+        return onEveryShard(conn -> ExpenseService.addCategory(conn, name));
+    }
+
+    @Override
+    public boolean deleteCategory(String name) throws SQLException {
+        return onEveryShard(conn -> ExpenseService.deleteCategory(conn, name));
+    }
+
+    // ─── Budgets ─────────────────────────────────────────
+
+    @Override
+    public Map<String, Money> getBudgets(int userId) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.getBudgets(conn, userId));
+    }
+
+    @Override
+    public boolean setBudget(int userId, String category, Money limit) throws SQLException {
+        return withWrite(userId, conn -> ExpenseService.setBudget(conn, userId, category, limit));
+    }
+
+    @Override
+    public boolean deleteBudget(int userId, String category) throws SQLException {
+        return withWrite(userId, conn -> ExpenseService.deleteBudget(conn, userId, category));
+    }
+
+    @Override
+    public List<Map<String, Object>> getBudgetStatus(int userId) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.getBudgetStatus(conn, userId));
+    }
+
+    // ─── Recurring Expenses ──────────────────────────────
+
+    @Override
+    public List<RecurringExpense> getRecurringExpenses(int userId) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.getRecurringExpenses(conn, userId));
+    }
+
+    @Override
+    public RecurringExpense addRecurringExpense(int userId, String description, Money amount,
+            String category, String interval, LocalDate startDate) throws SQLException {
+        LocalDate start = (startDate != null) ? startDate : LocalDate.now();
+        int id = withWrite(userId, conn -> ExpenseService.addRecurringExpense(conn, userId, description, amount,
+                category, interval, start));
+        return new RecurringExpense(id, description, amount, category, interval, start, null);
+    }
+
+    @Override
+    public boolean deleteRecurringExpense(int userId, int id) throws SQLException {
+        return withWrite(userId, conn -> ExpenseService.deleteRecurringExpense(conn, userId, id));
+    }
+
+    @Override
+    public int applyRecurringExpenses(int userId) throws SQLException {
+        return withWrite(userId, conn -> ExpenseService.applyRecurringExpenses(conn, userId));
+    }
+
+    @Override
+    public boolean markRecurringApplied(int userId, int id, LocalDate date) throws SQLException {
+        return withWrite(userId, conn -> ExpenseService.markRecurringApplied(conn, userId, id, date));
+    }
+
+    // ─── Reminders ───────────────────────────────────────
+
+    @Override
+    public List<Reminder> getReminders(int userId) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.getReminders(conn, userId));
+    }
+
+    @Override
+    public List<Reminder> getUpcomingReminders(int userId, int daysAhead) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.getUpcomingReminders(conn, userId, daysAhead));
+    }
+
+    @Override
+    public Reminder addReminder(int userId, String title, LocalDate dueDate, String notes) throws SQLException {
+        int id = withWrite(userId, conn -> ExpenseService.addReminder(conn, userId, title, dueDate, notes));
+        return new Reminder(id, title, dueDate, notes);
+    }
+
+    @Override
+    public boolean deleteReminder(int userId, int id) throws SQLException {
+        return withWrite(userId, conn -> ExpenseService.deleteReminder(conn, userId, id));
+    }
+
+    @Override
+    public Map<Integer, List<Reminder>> getUndeliveredReminders(LocalDate through) throws SQLException {
+        Map<Integer, List<Reminder>> pending = new LinkedHashMap<>();
+        for (int shard = 0; shard < DatabaseManager.shardCount(); shard++) {
+            try (Connection conn = DatabaseManager.getShardConnection(shard)) {
+                pending.putAll(ExpenseService.getUndeliveredReminders(conn, through));
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean markReminderDelivered(int userId, int id) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.markReminderDelivered(conn, userId, id));
+    }
+
+    // ─── Category Rules ──────────────────────────────────
+
+    @Override
+    public List<CategoryRule> getCategoryRules(int userId) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.getCategoryRules(conn, userId));
+    }
+
+    @Override
+    public CategoryRule addCategoryRule(int userId, CategoryRule rule) throws SQLException {
+        int id = withConnection(userId, conn -> ExpenseService.addCategoryRule(conn, userId, rule));
+        return new CategoryRule(id, rule.getMatchType(), rule.getPattern(), rule.getMinAmount(), rule.getMaxAmount(),
+                rule.getCategory(), rule.getPriority(), 0);
+    }
+
+    @Override
+    public boolean deleteCategoryRule(int userId, int id) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.deleteCategoryRule(conn, userId, id));
+    }
+
+    @Override
+    public void addCategoryRuleHits(int userId, Map<Integer, Long> hits) throws SQLException {
+        withConnection(userId, conn -> {
+            ExpenseService.addCategoryRuleHits(conn, userId, hits);
+            return null;
+        });
+    }
+
+    // ─── Idempotency Keys ────────────────────────────────
+
+    @Override
+    public Integer claimIdempotencyKey(int userId, String key) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.claimIdempotencyKey(conn, userId, key));
+    }
+
+    @Override
+    public void completeIdempotencyKey(int userId, String key, int expenseId) throws SQLException {
+        withConnection(userId, conn -> {
+            ExpenseService.completeIdempotencyKey(conn, userId, key, expenseId);
+            return null;
+        });
+    }
+
+    @Override
+    public void releaseIdempotencyKey(int userId, String key) throws SQLException {
+        withConnection(userId, conn -> {
+            ExpenseService.releaseIdempotencyKey(conn, userId, key);
+            return null;
+        });
+    }
+
+    @Override
+    public int purgeIdempotencyKeys(LocalDateTime before) throws SQLException {
+        int purged = 0;
+        for (int shard = 0; shard < DatabaseManager.shardCount(); shard++) {
+            try (Connection conn = DatabaseManager.getShardConnection(shard)) {
+                purged += ExpenseService.purgeIdempotencyKeys(conn, java.sql.Timestamp.valueOf(before));
+            }
+        }
+        return purged;
+    }
+
+    // ─── Change Feed ─────────────────────────────────────
+
+    @Override
+    public List<ChangeLog.Change> getChanges(int userId, long since, int limit) throws SQLException {
+        // Not from a replica: a client polling right after its own write must see it
+        return withConnection(userId, conn -> ChangeLog.since(conn, userId, since, limit));
+    }
+
+    @Override
+    public void logChange(int userId, String entity, Object key, char op) throws SQLException {
+        withConnection(userId, conn -> {
+            ChangeLog.record(conn, userId, entity, key, op);
+            return null;
+        });
+    }
+
+    @Override
+    public long getChangeVersion(int userId) throws SQLException {
+        return withConnection(userId, ChangeLog::latest);
+    }
+
+    @Override
+    public long getSettledChangeVersion(int userId) throws SQLException {
+        return withConnection(userId, conn -> ChangeLog.settled(conn, ChangeLog.latest(conn)));
+    }
+
+    @Override
+    public List<Expense> getExpensesById(int userId, Collection<Integer> ids) throws SQLException {
+        return withConnection(userId, conn -> ExpenseService.getExpensesById(conn, userId, ids));
+    }
+
+    // ─── Journal Snapshot ────────────────────────────────
+
+    @Override
+    public void replayInto(ExpenseJournal.Listener listener) throws SQLException {
+        for (int shard = 0; shard < DatabaseManager.shardCount(); shard++) {
+            try (Connection conn = DatabaseManager.getShardConnection(shard)) {
+                ExpenseService.replayAll(conn, listener);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package service;
+
+import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appends every expense, budget and recurring-expense write that succeeds to
+ * an {@link ExpenseJournal}, after the delegate has stored it. Sits directly
+ * on the base repository so that rows inserted below the other decorators are
+ * journaled too.
+ */
+public class JournalingRepository extends ForwardingExpenseRepository {
+
+    private final ExpenseJournal.Listener journal;
+
+    public JournalingRepository(ExpenseRepository delegate, ExpenseJournal journal) {
+        super(delegate);
+        this.journal = journal.writer();
+    }
+
+    // ─── Writes ──────────────────────────────────────────
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        Expense added = delegate.addExpense(userId, category, amount, receiptPath, date, notes);
+        journal.expenseAdded(userId, added);
+        return added;
+    }
+
+    @Override
+    public Expense deleteExpense(int userId, int id) throws SQLException {
+        Expense removed = delegate.deleteExpense(userId, id);
+        if (removed != null)
+            journal.expenseDeleted(userId, id);
+        return removed;
+    }
+
+    @Override
+    public Expense recategorizeExpense(int userId, int id, String category) throws SQLException {
+        Expense before = delegate.recategorizeExpense(userId, id, category);
+        // Replay applies an add as an upsert, so the new version simply replaces the old
+        if (before != null)
+            journal.expenseAdded(userId, new Expense(id, category, before.getAmount(), before.getReceiptPath(),
+                    before.getDate(), before.getNotes()));
+        return before;
+    }
+
+    @Override
+    public boolean setBudget(int userId, String category, Money limit) throws SQLException {
+        boolean changed = delegate.setBudget(userId, category, limit);
+        if (changed)
+            journal.budgetSet(userId, category, limit);
+        return changed;
+    }
+
+    @Override
+    public boolean deleteBudget(int userId, String category) throws SQLException {
+        boolean removed = delegate.deleteBudget(userId, category);
+        if (removed)
+            journal.budgetDeleted(userId, category);
+        return removed;
+    }
+
+    @Override
+    public RecurringExpense addRecurringExpense(int userId, String description, Money amount, String category,
+            String interval, LocalDate startDate) throws SQLException {
+        RecurringExpense added = delegate.addRecurringExpense(userId, description, amount, category, interval,
+                startDate);
+        journal.recurringSaved(userId, added);
+        return added;
+    }
+
+    @Override
+    public boolean deleteRecurringExpense(int userId, int id) throws SQLException {
+        boolean removed = delegate.deleteRecurringExpense(userId, id);
+        if (removed)
+            journal.recurringDeleted(userId, id);
+        return removed;
+    }
+
+    @Override
+    public int applyRecurringExpenses(int userId) throws SQLException {
+        // The expenses are inserted below this layer; the change log says which ones
+        long before = delegate.getChangeVersion(userId);
+        int added = delegate.applyRecurringExpenses(userId);
+        if (added == 0)
+            return 0;
+        List<Integer> ids = new ArrayList<>();
+        for (ChangeLog.Change c : delegate.getChanges(userId, before, Integer.MAX_VALUE)) {
+            if (c.entity().equals(ChangeLog.EXPENSE) && c.op() == ChangeLog.INSERT)
+                ids.add(Integer.parseInt(c.key()));
+        }
+        for (Expense e : delegate.getExpensesById(userId, ids))
+            journal.expenseAdded(userId, e);
+        for (RecurringExpense r : delegate.getRecurringExpenses(userId))
+            journal.recurringSaved(userId, r);
+        return added;
+    }
+}
@@ -0,0 +1,623 @@
+package service;
+
+import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps expenses in local memory-mapped files instead of the delegate, one
+ * {@link MappedExpenseSegment} per user in {@code dir}; users, budgets,
+ * recurring items and reminders stay with the delegate. Month aggregates
+ * read only the records of that month straight from the mapping, so the
+ * dashboard needs no query at all.
+ * <p>
+ * A user's expenses are copied from the delegate, ids included, the first
+ * time the user is seen; from then on the files are the only copy, so the
+ * CLI, which talks to the database, no longer sees them. Category names are
+ * numbered in a shared {@code categories.txt} and receipt paths are appended
+ * to a per-user strings file. A background task compacts files in which at
+ * least a quarter of the records are deleted.
+ * <p>
+ * Segment files are named {@code user-<id>.<generation>.seg}; a compaction
+ * writes the next generation rather than replacing the mapped file, and the
+ * older generations are deleted on the next start. A file named
+ * {@code user-<id>.seg} is generation 0.
+ */
+public class MappedExpenseRepository extends ForwardingExpenseRepository implements ExpenseJournal.Source {
+
+    private final Path dir;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("user-(\\d+)(?:\\.(\\d+))?\\.seg");
+
+    private final Map<Integer, MappedExpenseSegment> segments = new ConcurrentHashMap<>();
+    /** Each user's newest sealed segment file. */
+    private final Map<Integer, Path> segmentFiles = new ConcurrentHashMap<>();
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+    private final List<String> categoryNames = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService compactor;
+
+    public MappedExpenseRepository(ExpenseRepository delegate, Path dir) throws IOException {
+        super(delegate);
+        this.dir = dir;
+        Files.createDirectories(dir);
+        Path names = dir.resolve("categories.txt");
+        if (Files.exists(names)) {
+            for (String name : Files.readAllLines(names, StandardCharsets.UTF_8)) {
+                categoryIds.put(name, categoryNames.size());
+                categoryNames.add(name);
+            }
+        }
+        removeOldGenerations();
+    }
+
+    /** Keeps each user's newest sealed generation and deletes the rest, unsealed ones included. */
+    private void removeOldGenerations() throws IOException {
+        Map<Integer, TreeMap<Long, Path>> byUser = new HashMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.forEach(p -> {
+                Matcher m = SEGMENT_FILE.matcher(p.getFileName().toString());
+                if (m.matches())
+                    byUser.computeIfAbsent(Integer.parseInt(m.group(1)), k -> new TreeMap<>()).put(generation(p), p);
+            });
+        }
+        for (var entry : byUser.entrySet()) {
+            Path current = null;
+            for (Path p : entry.getValue().descendingMap().values()) {
+                if (current == null && MappedExpenseSegment.sealed(p))
+                    current = p;
+                else
+                    Files.delete(p);
+            }
+            if (current != null)
+                segmentFiles.put(entry.getKey(), current);
+        }
+    }
+
+    /** Compacts every {@code intervalMillis}. */
+    public synchronized void startCompaction(long intervalMillis) {
+        if (compactor != null)
+            return;
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "expense-compaction");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compact, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Rewrites files in which at least a quarter of the records are deleted; returns how many. */
+    public int compact() {
+        int compacted = 0;
+        for (var entry : segments.entrySet()) {
+            MappedExpenseSegment s = entry.getValue();
+            synchronized (s) {
+                if (s.deletedCount() == 0 || s.deletedCount() * 4 < s.deletedCount() + s.liveCount())
+                    continue;
+                try {
+                    Path old = s.file();
+                    s.compact(segmentFile(entry.getKey(), generation(old) + 1));
+                    segmentFiles.put(entry.getKey(), s.file());
+                    compacted++;
+                    try {
+                        Files.deleteIfExists(old);
+                    } catch (IOException e) {
+                        // Still mapped on Windows; removed on the next start
+                    }
+                } catch (IOException e) {
+                    System.err.println("Compacting expenses of user " + entry.getKey() + " failed: " + e.getMessage());
+                }
+            }
+        }
+        return compacted;
+    }
+
+    // ─── Files ───────────────────────────────────────────
+
+    private Path segmentFile(int userId, long generation) {
+        return dir.resolve("user-" + userId + "." + generation + ".seg");
+    }
+
+    private static long generation(Path segmentFile) {
+        Matcher m = SEGMENT_FILE.matcher(segmentFile.getFileName().toString());
+        return m.matches() && m.group(2) != null ? Long.parseLong(m.group(2)) : 0;
+    }
+
+    private Path stringsFile(int userId) {
+        return dir.resolve("user-" + userId + ".str");
+    }
+
+    /** The user's segment, opened, or created and filled from the delegate. Callers synchronize on it. */
+    private MappedExpenseSegment segmentFor(int userId) throws SQLException {
+        MappedExpenseSegment s = segments.get(userId);
+        if (s == null)
+            s = openSegment(userId);
+        s.lastAccess = System.currentTimeMillis();
+        return s;
+    }
+
+    private synchronized MappedExpenseSegment openSegment(int userId) throws SQLException {
+        MappedExpenseSegment s = segments.get(userId);
+        if (s != null)
+            return s;
+        Path file = segmentFiles.get(userId);
+        try {
+            if (file != null) {
+                s = MappedExpenseSegment.open(file);
+            } else {
+                // Sealed only once filled, so that a crash cannot leave a partial copy behind
+                s = MappedExpenseSegment.create(segmentFile(userId, 1));
+                List<Expense> existing = delegate.searchExpenses(userId, null, null, null, null, null, null);
+                for (int i = existing.size() - 1; i >= 0; i--)
+                    write(s, userId, existing.get(i).getId(), existing.get(i));
+                s.seal();
+                segmentFiles.put(userId, s.file());
+            }
+        } catch (IOException e) {
+            throw storageError(e);
+        }
+        segments.put(userId, s);
+        return s;
+    }
+
+    private static SQLException storageError(IOException e) {
+        return new SQLException("Expense storage: " + e.getMessage(), e);
+    }
+
+    private synchronized int categoryId(String name) throws IOException {
+        Integer id = categoryIds.get(name);
+        if (id != null)
+            return id;
+        // On disk before any record refers to it
+        Files.writeString(dir.resolve("categories.txt"), name + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        categoryIds.put(name, categoryNames.size());
+        categoryNames.add(name);
+        return categoryNames.size() - 1;
+    }
+
+    private String categoryName(int id) {
+        return categoryNames.get(id);
+    }
+
+    /** Up to four ASCII characters packed into an int. */
+    private static int packCurrency(String code) {
+        if (code.length() > 4 || !StandardCharsets.US_ASCII.newEncoder().canEncode(code))
+            throw new IllegalArgumentException("Unsupported currency: " + code);
+        int packed = 0;
+        for (int i = 0; i < 4; i++)
+            packed = packed << 8 | (i < code.length() ? code.charAt(i) : 0);
+        return packed;
+    }
+
+    private static String unpackCurrency(int packed) {
+        StringBuilder sb = new StringBuilder(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            char c = (char) (packed >>> shift & 0xFF);
+            if (c != 0)
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private long appendString(int userId, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        try (FileChannel ch = FileChannel.open(stringsFile(userId), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long at = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).flip();
+            while (buf.hasRemaining())
+                ch.write(buf);
+            ch.force(false);
+            return at;
+        }
+    }
+
+    private String readString(FileChannel ch, long at) throws IOException {
+        ByteBuffer len = ByteBuffer.allocate(4);
+        ch.read(len, at);
+        ByteBuffer bytes = ByteBuffer.allocate(len.flip().getInt());
+        ch.read(bytes, at + 4);
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    private void write(MappedExpenseSegment s, int userId, int id, Expense e) throws IOException {
+        long receipt = e.getReceiptPath() != null ? appendString(userId, e.getReceiptPath()) : -1;
+        long notes = e.getNotes() != null ? appendString(userId, e.getNotes()) : -1;
+        s.append(id, e.getAmount().getMinorUnits(), e.getDate().toEpochSecond(ZoneOffset.UTC),
+                categoryId(e.getCategory()), packCurrency(e.getCurrency()), receipt, notes);
+    }
+
+    /** Builds the expense in a slot; {@code strings} is opened on first need and closed by the caller. */
+    private Expense expense(MappedExpenseSegment s, int userId, int slot, FileChannel[] strings) throws IOException {
+        return new Expense(s.id(slot), categoryName(s.category(slot)),
+                Money.ofMinor(s.minor(slot), unpackCurrency(s.currency(slot))),
+                string(userId, s.receipt(slot), strings),
+                LocalDateTime.ofEpochSecond(s.epochSecond(slot), 0, ZoneOffset.UTC),
+                string(userId, s.notes(slot), strings));
+    }
+
+    /** The string at {@code at} in the user's strings file, or null if {@code at} is -1. */
+    private String string(int userId, long at, FileChannel[] strings) throws IOException {
+        if (at < 0)
+            return null;
+        if (strings[0] == null)
+            strings[0] = FileChannel.open(stringsFile(userId), StandardOpenOption.READ);
+        return readString(strings[0], at);
+    }
+
+    private List<Expense> expenses(MappedExpenseSegment s, int userId, List<Integer> slots) throws SQLException {
+        List<Expense> result = new ArrayList<>(slots.size());
+        FileChannel[] strings = new FileChannel[1];
+        try {
+            for (int slot : slots)
+                result.add(expense(s, userId, slot, strings));
+            if (strings[0] != null)
+                strings[0].close();
+        } catch (IOException e) {
+            throw storageError(e);
+        }
+        return result;
+    }
+
+    private static int yearMonth(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    // ─── Expenses ────────────────────────────────────────
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        MappedExpenseSegment s = segmentFor(userId);
+        Expense added;
+        synchronized (s) {
+            added = new Expense(s.nextId(), category, amount, receiptPath,
+                    (date != null ? date : LocalDateTime.now()).withNano(0), notes);
+            try {
+                write(s, userId, added.getId(), added);
+            } catch (IOException e) {
+                throw storageError(e);
+            }
+        }
+        delegate.logChange(userId, ChangeLog.EXPENSE, added.getId(), ChangeLog.INSERT);
+        return added;
+    }
+
+    @Override
+    public Expense deleteExpense(int userId, int id) throws SQLException {
+        MappedExpenseSegment s = segmentFor(userId);
+        Expense removed;
+        synchronized (s) {
+            int slot = s.slotOf(id);
+            if (slot < 0)
+                return null;
+            removed = expenses(s, userId, List.of(slot)).get(0);
+            s.delete(id);
+        }
+        delegate.logChange(userId, ChangeLog.EXPENSE, id, ChangeLog.DELETE);
+        return removed;
+    }
+
+    @Override
+    public Expense recategorizeExpense(int userId, int id, String category) throws SQLException {
+        MappedExpenseSegment s = segmentFor(userId);
+        Expense before;
+        synchronized (s) {
+            int slot = s.slotOf(id);
+            if (slot < 0)
+                return null;
+            before = expenses(s, userId, List.of(slot)).get(0);
+            try {
+                s.append(id, s.minor(slot), s.epochSecond(slot), categoryId(category), s.currency(slot),
+                        s.receipt(slot), s.notes(slot));
+            } catch (IOException e) {
+                throw storageError(e);
+            }
+        }
+        delegate.logChange(userId, ChangeLog.EXPENSE, id, ChangeLog.UPDATE);
+        return before;
+    }
+
+    @Override
+    public List<Expense> searchExpenses(int userId, String category, String keyword, Money minAmount,
+            Money maxAmount, LocalDate startDate, LocalDate endDate) throws SQLException {
+        String kw = (keyword != null && !keyword.trim().isEmpty()) ? keyword.toLowerCase() : null;
+        String cat = (category != null && !category.trim().isEmpty()) ? category : null;
+        long fromDay = startDate != null ? startDate.toEpochDay() : Long.MIN_VALUE;
+        long toDay = endDate != null ? endDate.toEpochDay() : Long.MAX_VALUE;
+        MappedExpenseSegment s = segmentFor(userId);
+        List<Expense> results;
+        synchronized (s) {
+            List<Integer> slots = new ArrayList<>();
+            int from = startDate != null ? yearMonth(startDate.getYear(), startDate.getMonthValue()) : Integer.MIN_VALUE;
+            int to = endDate != null ? yearMonth(endDate.getYear(), endDate.getMonthValue()) : Integer.MAX_VALUE;
+            FileChannel[] strings = new FileChannel[1];
+            try {
+                for (MappedExpenseSegment.Slots month : s.months(from, to).values()) {
+                    for (int i = 0; i < month.size; i++) {
+                        int slot = month.slots[i];
+                        String name = categoryName(s.category(slot));
+                        if (cat != null && !name.equalsIgnoreCase(cat))
+                            continue;
+                        // Like the SQL filter, amount bounds ignore currency
+                        long units = s.minor(slot);
+                        if (minAmount != null && units < minAmount.getMinorUnits())
+                            continue;
+                        if (maxAmount != null && units > maxAmount.getMinorUnits())
+                            continue;
+                        long day = s.epochDay(slot);
+                        if (day < fromDay || day > toDay)
+                            continue;
+                        // Notes are read from the strings file, so only when the category does not match
+                        if (kw != null && !name.toLowerCase().contains(kw)) {
+                            String notes = string(userId, s.notes(slot), strings);
+                            if (notes == null || !notes.toLowerCase().contains(kw))
+                                continue;
+                        }
+                        slots.add(slot);
+                    }
+                }
+                if (strings[0] != null)
+                    strings[0].close();
+            } catch (IOException e) {
+                throw storageError(e);
+            }
+            results = expenses(s, userId, slots);
+        }
+        results.sort(Comparator.comparing(Expense::getDate).reversed());
+        return results;
+    }
+
+    @Override
+    public List<Expense> getRecentExpenses(int userId, int limit) throws SQLException {
+        MappedExpenseSegment s = segmentFor(userId);
+        List<Expense> results;
+        synchronized (s) {
+            // Whole months, newest first, until they hold enough rows
+            List<Integer> slots = new ArrayList<>();
+            for (MappedExpenseSegment.Slots month : s.months(Integer.MIN_VALUE, Integer.MAX_VALUE).descendingMap().values()) {
+                for (int i = 0; i < month.size; i++)
+                    slots.add(month.slots[i]);
+                if (slots.size() >= limit)
+                    break;
+            }
+            results = expenses(s, userId, slots);
+        }
+        results.sort(Comparator.comparing(Expense::getDate).reversed());
+        return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+    }
+
+    @Override
+    public Money getTotalExpensesForMonth(int userId, int month, int year) throws SQLException {
+        MappedExpenseSegment s = segmentFor(userId);
+        long total = 0;
+        synchronized (s) {
+            for (MappedExpenseSegment.Slots m : s.months(yearMonth(year, month), yearMonth(year, month)).values()) {
+                for (int i = 0; i < m.size; i++)
+                    total += s.minor(m.slots[i]);
+            }
+        }
+        return Money.ofMinor(total);
+    }
+
+    @Override
+    public String getTopCategoryForMonth(int userId, int month, int year) throws SQLException {
+        Map<String, Money> breakdown = getCategoryBreakdown(userId, month, year);
+        return breakdown.isEmpty() ? "N/A" : breakdown.keySet().iterator().next();
+    }
+
+    @Override
+    public int getExpenseCount(int userId, int month, int year) throws SQLException {
+        MappedExpenseSegment s = segmentFor(userId);
+        synchronized (s) {
+            MappedExpenseSegment.Slots m = s.months(yearMonth(year, month), yearMonth(year, month))
+                    .get(yearMonth(year, month));
+            return m != null ? m.size : 0;
+        }
+    }
+
+    @Override
+    public Map<String, Money> getCategoryBreakdown(int userId, int month, int year) throws SQLException {
+        MappedExpenseSegment s = segmentFor(userId);
+        Map<String, Long> totals = new HashMap<>();
+        synchronized (s) {
+            for (MappedExpenseSegment.Slots m : s.months(yearMonth(year, month), yearMonth(year, month)).values()) {
+                for (int i = 0; i < m.size; i++)
+                    totals.merge(categoryName(s.category(m.slots[i])), s.minor(m.slots[i]), Long::sum);
+            }
+        }
+        return sortedByValueDesc(totals);
+    }
+
+    @Override
+    public Map<String, Money> getPredictions(int userId, int monthsToLookBack) throws SQLException {
+        LocalDate start = LocalDate.now().minusMonths(monthsToLookBack).withDayOfMonth(1);
+        MappedExpenseSegment s = segmentFor(userId);
+        Map<String, Long> totals = new HashMap<>();
+        Map<String, Set<Integer>> months = new HashMap<>();
+        synchronized (s) {
+            for (var entry : s.months(yearMonth(start.getYear(), start.getMonthValue()), Integer.MAX_VALUE)
+                    .entrySet()) {
+                MappedExpenseSegment.Slots m = entry.getValue();
+                for (int i = 0; i < m.size; i++) {
+                    String name = categoryName(s.category(m.slots[i]));
+                    totals.merge(name, s.minor(m.slots[i]), Long::sum);
+                    months.computeIfAbsent(name, k -> new HashSet<>()).add(entry.getKey());
+                }
+            }
+        }
+        Map<String, Money> predictions = new LinkedHashMap<>();
+        for (var entry : sortedByValueDesc(totals).entrySet())
+            predictions.put(entry.getKey(), entry.getValue().dividedBy(months.get(entry.getKey()).size()));
+        return predictions;
+    }
+
+    @Override
+    public List<Map<String, Object>> getMonthlyTrend(int userId, int months) throws SQLException {
+        LocalDate start = LocalDate.now().minusMonths(months - 1).withDayOfMonth(1);
+        MappedExpenseSegment s = segmentFor(userId);
+        TreeMap<Integer, Long> byMonth = new TreeMap<>();
+        synchronized (s) {
+            for (var entry : s.months(yearMonth(start.getYear(), start.getMonthValue()), Integer.MAX_VALUE)
+                    .entrySet()) {
+                MappedExpenseSegment.Slots m = entry.getValue();
+                long total = 0;
+                for (int i = 0; i < m.size; i++)
+                    total += s.minor(m.slots[i]);
+                if (m.size > 0)
+                    byMonth.put(entry.getKey(), total);
+            }
+        }
+        List<Map<String, Object>> trend = new ArrayList<>();
+        for (var entry : byMonth.entrySet()) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("year", entry.getKey() / 12);
+            point.put("month", entry.getKey() % 12 + 1);
+            point.put("total", Money.ofMinor(entry.getValue()));
+            trend.add(point);
+        }
+        return trend;
+    }
+
+    @Override
+    public Map<Integer, Money> getDailySpending(int userId, int month, int year) throws SQLException {
+        long firstDay = LocalDate.of(year, month, 1).toEpochDay();
+        MappedExpenseSegment s = segmentFor(userId);
+        TreeMap<Integer, Long> daily = new TreeMap<>();
+        synchronized (s) {
+            for (MappedExpenseSegment.Slots m : s.months(yearMonth(year, month), yearMonth(year, month)).values()) {
+                for (int i = 0; i < m.size; i++)
+                    daily.merge((int) (s.epochDay(m.slots[i]) - firstDay) + 1, s.minor(m.slots[i]), Long::sum);
+            }
+        }
+        Map<Integer, Money> result = new LinkedHashMap<>();
+        daily.forEach((day, total) -> result.put(day, Money.ofMinor(total)));
+        return result;
+    }
+
+    /** Totals are summed in minor units regardless of currency, as SUM(amount) does. */
+    private static Map<String, Money> sortedByValueDesc(Map<String, Long> totals) {
+        Map<String, Money> sorted = new LinkedHashMap<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEachOrdered(e -> sorted.put(e.getKey(), Money.ofMinor(e.getValue())));
+        return sorted;
+    }
+
+    @Override
+    public List<Expense> getExpensesById(int userId, Collection<Integer> ids) throws SQLException {
+        MappedExpenseSegment s = segmentFor(userId);
+        synchronized (s) {
+            List<Integer> slots = new ArrayList<>();
+            for (int id : ids) {
+                int slot = s.slotOf(id);
+                if (slot >= 0)
+                    slots.add(slot);
+            }
+            List<Expense> found = expenses(s, userId, slots);
+            found.sort(Comparator.comparing(Expense::getDate).reversed());
+            return found;
+        }
+    }
+
+    // ─── Budgets and Recurring Expenses ──────────────────
+
+    @Override
+    public List<Map<String, Object>> getBudgetStatus(int userId) throws SQLException {
+        // The delegate would add up its own expenses
+        LocalDate now = LocalDate.now();
+        Map<String, Money> spending = getCategoryBreakdown(userId, now.getMonthValue(), now.getYear());
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (var entry : getBudgets(userId).entrySet()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("category", entry.getKey());
+            item.put("limit", entry.getValue());
+            item.put("spent", spending.getOrDefault(entry.getKey(), Money.ZERO));
+            result.add(item);
+        }
+        return result;
+    }
+
+    @Override
+    public int applyRecurringExpenses(int userId) throws SQLException {
+        LocalDate today = LocalDate.now();
+        int applied = 0;
+        MappedExpenseSegment s = segmentFor(userId);
+        // Held throughout so that two requests cannot book the same occurrence
+        synchronized (s) {
+            for (RecurringExpense r : delegate.getRecurringExpenses(userId)) {
+                List<LocalDate> due = r.dueDates(today);
+                if (due.isEmpty())
+                    continue;
+                for (LocalDate date : due) {
+                    addExpense(userId, r.getCategory(), r.getAmount(), null, date.atStartOfDay(), r.getDescription());
+                    applied++;
+                }
+                delegate.markRecurringApplied(userId, r.getId(), due.get(due.size() - 1));
+            }
+        }
+        return applied;
+    }
+
+    // ─── Journal Snapshot ────────────────────────────────
+
+    @Override
+    public void replayInto(ExpenseJournal.Listener listener) throws SQLException {
+        if (delegate instanceof ExpenseJournal.Source source) {
+            // Everything but the delegate's expenses, which are stale
+            source.replayInto(new ExpenseJournal.Listener() {
+                @Override
+                public void budgetSet(int userId, String category, Money limit) {
+                    listener.budgetSet(userId, category, limit);
+                }
+
+                @Override
+                public void recurringSaved(int userId, RecurringExpense r) {
+                    listener.recurringSaved(userId, r);
+                }
+            });
+        }
+        for (int userId : new ArrayList<>(segmentFiles.keySet())) {
+            MappedExpenseSegment s = segmentFor(userId);
+            List<Expense> all;
+            synchronized (s) {
+                List<Integer> slots = new ArrayList<>();
+                for (MappedExpenseSegment.Slots m : s.months(Integer.MIN_VALUE, Integer.MAX_VALUE).values()) {
+                    for (int i = 0; i < m.size; i++)
+                        slots.add(m.slots[i]);
+                }
+                all = expenses(s, userId, slots);
+            }
+            all.forEach(e -> listener.expenseAdded(userId, e));
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * One user's expenses as fixed-width records in a memory-mapped file. After a
+ * 16-byte header ({@code [int magic][int version][int nextId][int unused]})
+ * each 48-byte record is:
+ *
+ * <pre>
+ *  0 int  id                 24 int  category id
+ *  4 int  flags (deleted)    28 int  currency, up to 4 ASCII chars
+ *  8 long amount, minor      32 long receipt offset in the strings file, or -1
+ * 16 long date, epoch second 40 int  notes offset in the strings file plus 1, or 0
+ *                            44 int  CRC-32 of bytes 0-43, flags left out
+ * </pre>
+ *
+ * Byte 40 was unused and always 0 before notes existed, so older files read
+ * as having no notes and keep their version.
+ *
+ * Records are appended in insertion order and the CRC is written last, so on
+ * open the first slot whose CRC does not match ends the file; a record torn by
+ * a crash is dropped and its slot reused. A delete only sets the flag;
+ * {@link #compact} writes the live records to a new file and switches to it. A
+ * file is only a segment once the magic is in its header, which {@link #seal}
+ * and {@link #compact} write last, so a file a crash left half filled is not
+ * mistaken for one. A change is
+ * appended as a new record with the same id before the old one is flagged;
+ * should a crash fall in between, open flags the older of the two. Slots are
+ * indexed by the month of their date, which is all the date index the month
+ * and range queries need. Callers synchronize on the instance.
+ */
+final class MappedExpenseSegment {
+
+    static final int HEADER = 16;
+    static final int RECORD = 48;
+    private static final int MAGIC = 0x4D455853;
+    private static final int VERSION = 1;
+    private static final int DELETED = 1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Growable list of slots. */
+    static final class Slots {
+        int[] slots = new int[8];
+        int size;
+
+        void add(int slot) {
+            if (size == slots.length)
+                slots = Arrays.copyOf(slots, size * 2);
+            slots[size++] = slot;
+        }
+    }
+
+    private Path file;
+    private MappedByteBuffer map;
+    private int capacity;
+    private int count;
+    private int deleted;
+    private int nextId;
+    private final Map<Integer, Integer> slotOfId = new HashMap<>();
+    private final TreeMap<Integer, Slots> months = new TreeMap<>();
+    volatile long lastAccess = System.currentTimeMillis();
+
+    private MappedExpenseSegment(Path file) {
+        this.file = file;
+    }
+
+    /** Opens the file, creating it if missing, and drops a torn record at its end. */
+    static MappedExpenseSegment open(Path file) throws IOException {
+        MappedExpenseSegment s = new MappedExpenseSegment(file);
+        boolean exists = Files.exists(file);
+        long size = exists ? Files.size(file) : 0;
+        s.capacity = Math.max(INITIAL_CAPACITY, (int) ((size - HEADER) / RECORD));
+        s.map(s.capacity);
+        if (!exists || s.map.getInt(0) != MAGIC) {
+            if (exists && size > 0)
+                throw new IOException("Not an expense segment: " + file);
+            s.map.putInt(0, MAGIC);
+            s.map.putInt(4, VERSION);
+            s.map.putInt(8, 1);
+            s.map.force(0, HEADER);
+        }
+        s.nextId = s.map.getInt(8);
+        while (s.count < s.capacity && s.valid(s.count)) {
+            s.indexSlot(s.count);
+            s.nextId = Math.max(s.nextId, s.id(s.count) + 1);
+            s.count++;
+        }
+        return s;
+    }
+
+    /** Creates an empty file to fill with {@link #append}; it is not a segment until {@link #seal}. */
+    static MappedExpenseSegment create(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        MappedExpenseSegment s = new MappedExpenseSegment(file);
+        s.map(INITIAL_CAPACITY);
+        s.map.putInt(4, VERSION);
+        s.map.putInt(8, 1);
+        s.nextId = 1;
+        return s;
+    }
+
+    /** Writes the magic once every record is on disk. */
+    void seal() {
+        map.force();
+        map.putInt(0, MAGIC);
+        map.force(0, 4);
+    }
+
+    /** Whether {@code file} is a sealed segment. */
+    static boolean sealed(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            return ch.read(magic, 0) == 4 && magic.flip().getInt() == MAGIC;
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    private void map(int records) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            map = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) records * RECORD);
+        }
+        capacity = records;
+    }
+
+    private static int offset(int slot) {
+        return HEADER + slot * RECORD;
+    }
+
+    private boolean valid(int slot) {
+        int off = offset(slot);
+        return map.getInt(off) > 0 && map.getInt(off + 44) == crc(off);
+    }
+
+    private int crc(int off) {
+        CRC32 crc = new CRC32();
+        crc.update(map.slice(off, 4));
+        crc.update(map.slice(off + 8, 36));
+        return (int) crc.getValue();
+    }
+
+    private void indexSlot(int slot) {
+        if (deleted(slot)) {
+            deleted++;
+            return;
+        }
+        Integer previous = slotOfId.put(id(slot), slot);
+        if (previous != null)
+            flagDeleted(previous);
+        months.computeIfAbsent(yearMonth(epochDay(slot)), k -> new Slots()).add(slot);
+    }
+
+    static int yearMonth(long epochDay) {
+        LocalDate d = LocalDate.ofEpochDay(epochDay);
+        return d.getYear() * 12 + d.getMonthValue() - 1;
+    }
+
+    // ─── Writes ──────────────────────────────────────────
+
+    /** Id the next {@link #append} without an id gets. */
+    int nextId() {
+        return nextId;
+    }
+
+    /** Appends a record and forces it to disk; a live record with the same {@code id} is replaced. */
+    void append(int id, long minor, long epochSecond, int category, int currency, long receipt, long notes)
+            throws IOException {
+        if (notes >= Integer.MAX_VALUE)
+            throw new IOException("Strings file too large for a notes offset: " + file);
+        if (count == capacity)
+            map(capacity * 2);
+        if (id >= nextId) {
+            nextId = id + 1;
+            map.putInt(8, nextId);
+            map.force(8, 4);
+        }
+        int off = offset(count);
+        map.putInt(off, id);
+        map.putInt(off + 4, 0);
+        map.putLong(off + 8, minor);
+        map.putLong(off + 16, epochSecond);
+        map.putInt(off + 24, category);
+        map.putInt(off + 28, currency);
+        map.putLong(off + 32, receipt);
+        map.putInt(off + 40, (int) (notes + 1));
+        map.putInt(off + 44, crc(off));
+        map.force(off, RECORD);
+        indexSlot(count++);
+    }
+
+    /** Flags the record deleted; returns its slot, or -1 if there is no such live record. */
+    int delete(int id) {
+        Integer slot = slotOfId.remove(id);
+        if (slot == null)
+            return -1;
+        flagDeleted(slot);
+        return slot;
+    }
+
+    private void flagDeleted(int slot) {
+        int off = offset(slot);
+        map.putInt(off + 4, map.getInt(off + 4) | DELETED);
+        map.force(off + 4, 4);
+        deleted++;
+        Slots s = months.get(yearMonth(epochDay(slot)));
+        for (int i = 0; i < s.size; i++) {
+            if (s.slots[i] == slot) {
+                s.slots[i] = s.slots[--s.size];
+                break;
+            }
+        }
+    }
+
+    int deletedCount() {
+        return deleted;
+    }
+
+    int liveCount() {
+        return count - deleted;
+    }
+
+    /**
+     * Writes the live records to {@code into}, seals it and switches to it.
+     * Ids are kept and never reused. The old file is left to the caller: it
+     * stays mapped until the mapping is collected, and on Windows a mapped
+     * file can be neither replaced nor deleted.
+     */
+    void compact(Path into) throws IOException {
+        if (deleted == 0)
+            return;
+        int live = count - deleted;
+        int records = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(live, 1)) * 2);
+        Files.deleteIfExists(into);
+        try (FileChannel ch = FileChannel.open(into, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) records * RECORD);
+            out.put(4, map, 4, HEADER - 4);
+            int to = 0;
+            for (int slot = 0; slot < count; slot++) {
+                if (!deleted(slot))
+                    out.put(offset(to++), map, offset(slot), RECORD);
+            }
+            out.force();
+            out.putInt(0, MAGIC);
+            out.force(0, 4);
+        }
+        file = into;
+        capacity = records;
+        map(records);
+        count = 0;
+        deleted = 0;
+        slotOfId.clear();
+        months.clear();
+        while (count < capacity && valid(count))
+            indexSlot(count++);
+    }
+
+    // ─── Reads ───────────────────────────────────────────
+
+    /** Live slots by year*12+month-1, from {@code fromYearMonth} through {@code toYearMonth}. */
+    NavigableMap<Integer, Slots> months(int fromYearMonth, int toYearMonth) {
+        return months.subMap(fromYearMonth, true, toYearMonth, true);
+    }
+
+    /** The live slot holding {@code id}, or -1. */
+    int slotOf(int id) {
+        return slotOfId.getOrDefault(id, -1);
+    }
+
+    boolean deleted(int slot) {
+        return (map.getInt(offset(slot) + 4) & DELETED) != 0;
+    }
+
+    int id(int slot) {
+        return map.getInt(offset(slot));
+    }
+
+    long minor(int slot) {
+        return map.getLong(offset(slot) + 8);
+    }
+
+    long epochSecond(int slot) {
+        return map.getLong(offset(slot) + 16);
+    }
+
+    long epochDay(int slot) {
+        return Math.floorDiv(epochSecond(slot), 86_400);
+    }
+
+    int category(int slot) {
+        return map.getInt(offset(slot) + 24);
+    }
+
+    int currency(int slot) {
+        return map.getInt(offset(slot) + 28);
+    }
+
+    long receipt(int slot) {
+        return map.getLong(offset(slot) + 32);
+    }
+
+    /** Offset of the notes in the strings file, or -1. */
+    long notes(int slot) {
+        return map.getInt(offset(slot) + 40) - 1L;
+    }
+}
@@ -0,0 +1,202 @@
+package service;
+
+import model.Money;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Streaming reader for OFX and QFX statements, both the SGML flavour (1.x,
+ * where leaf elements are not closed) and XML (2.x). Tags are scanned one at a
+ * time and only the current transaction's fields are kept; nothing resembling
+ * a document tree is built. A transaction's currency is its own
+ * {@code <CURRENCY>} if it has one, else the statement's {@code <CURDEF>},
+ * else the default given. The purchase date ({@code DTUSER}) is preferred to
+ * the posting date. Headers before the first tag are skipped.
+ */
+public final class OfxParser implements StatementParser {
+
+    private final String defaultCurrency;
+
+    public OfxParser(String defaultCurrency) {
+        this.defaultCurrency = defaultCurrency;
+    }
+
+    /** Buffered characters with a line count; avoids a lock per character. */
+    private static final class Chars {
+        private final Reader in;
+        private final char[] buf = new char[1 << 16];
+        private int pos, len;
+        long line = 1;
+
+        Chars(Reader in) {
+            this.in = in;
+        }
+
+        int peek() throws IOException {
+            if (pos == len) {
+                len = in.read(buf, 0, buf.length);
+                pos = 0;
+                if (len <= 0) {
+                    len = 0;
+                    return -1;
+                }
+            }
+            return buf[pos];
+        }
+
+        int next() throws IOException {
+            int c = peek();
+            if (c >= 0) {
+                pos++;
+                if (c == '\n')
+                    line++;
+            }
+            return c;
+        }
+    }
+
+    @Override
+    public void parse(Reader in, Sink sink) throws IOException, SQLException {
+        Chars chars = new Chars(in);
+        StringBuilder tag = new StringBuilder(16);
+        StringBuilder text = new StringBuilder(64);
+        StringBuilder amount = new StringBuilder(16);
+        String statementCurrency = defaultCurrency;
+        boolean inTxn = false, inCurrency = false;
+        String posted = null, user = null, name = null, memo = null, currency = null;
+        long txnLine = 0;
+        int c;
+        while ((c = chars.next()) >= 0) {
+            if (c != '<')
+                continue;
+            tag.setLength(0);
+            while ((c = chars.next()) >= 0 && c != '>')
+                tag.append((char) c);
+            if (tag.length() == 0 || tag.charAt(0) == '?' || tag.charAt(0) == '!')
+                continue;
+            boolean closing = tag.charAt(0) == '/';
+            String element = tag.substring(closing ? 1 : 0).trim().toUpperCase(Locale.ROOT);
+            if (closing) {
+                switch (element) {
+                    case "STMTTRN" -> {
+                        if (inTxn)
+                            emit(sink, txnLine, user != null ? user : posted, amount,
+                                    currency != null ? currency : statementCurrency, name != null ? name : memo);
+                        inTxn = false;
+                    }
+                    case "CURRENCY" -> inCurrency = false;
+                    case "STMTRS", "CCSTMTRS" -> statementCurrency = defaultCurrency;
+                    default -> {
+                    }
+                }
+                continue;
+            }
+
+            text.setLength(0);
+            while ((c = chars.peek()) >= 0 && c != '<')
+                text.append((char) chars.next());
+            String value = text.indexOf("&") >= 0 ? decode(text.toString().trim()) : text.toString().trim();
+            switch (element) {
+                case "STMTTRN" -> {
+                    inTxn = true;
+                    txnLine = chars.line;
+                    posted = user = name = memo = currency = null;
+                    amount.setLength(0);
+                }
+                case "CURDEF" -> {
+                    if (!value.isEmpty())
+                        statementCurrency = value.toUpperCase(Locale.ROOT);
+                }
+                case "CURRENCY" -> inCurrency = true;
+                case "CURSYM" -> {
+                    if (inTxn && inCurrency && !value.isEmpty())
+                        currency = value.toUpperCase(Locale.ROOT);
+                }
+                case "DTPOSTED" -> posted = value;
+                case "DTUSER" -> user = value;
+                case "TRNAMT" -> amount.append(value);
+                case "NAME" -> name = value;
+                case "MEMO" -> memo = value;
+                default -> {
+                }
+            }
+        }
+    }
+
+    private static void emit(Sink sink, long line, String date, StringBuilder amount, String currency,
+            String payee) throws SQLException {
+        if (date == null || date.length() < 8) {
+            sink.rejected(line, "Transaction has no date");
+            return;
+        }
+        if (amount.length() == 0) {
+            sink.rejected(line, "Transaction has no amount");
+            return;
+        }
+        Money money;
+        LocalDateTime at;
+        try {
+            // OFX allows a decimal comma
+            int comma = amount.indexOf(",");
+            if (comma >= 0 && amount.indexOf(".") < 0)
+                amount.setCharAt(comma, '.');
+            money = Money.parse(amount, currency);
+            at = parseDate(date);
+        } catch (NumberFormatException | DateTimeException e) {
+            sink.rejected(line, e.getMessage());
+            return;
+        }
+        sink.transaction(new Transaction(at, money, payee, null));
+    }
+
+    /** YYYYMMDD, optionally followed by HHMMSS, fractions and a time zone, which is ignored. */
+    static LocalDateTime parseDate(String s) {
+        for (int i = 0; i < 8; i++) {
+            if (!Character.isDigit(s.charAt(i)))
+                throw new DateTimeException("Invalid OFX date: " + s);
+        }
+        int hour = 0, minute = 0, second = 0;
+        if (s.length() >= 14 && s.chars().limit(14).allMatch(Character::isDigit)) {
+            hour = Integer.parseInt(s, 8, 10, 10);
+            minute = Integer.parseInt(s, 10, 12, 10);
+            second = Integer.parseInt(s, 12, 14, 10);
+        }
+        return LocalDateTime.of(Integer.parseInt(s, 0, 4, 10), Integer.parseInt(s, 4, 6, 10),
+                Integer.parseInt(s, 6, 8, 10), hour, minute, second);
+    }
+
+    private static String decode(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            int semi = ch == '&' ? s.indexOf(';', i) : -1;
+            if (semi < 0) {
+                sb.append(ch);
+                continue;
+            }
+            String entity = s.substring(i + 1, semi);
+            switch (entity) {
+                case "amp" -> sb.append('&');
+                case "lt" -> sb.append('<');
+                case "gt" -> sb.append('>');
+                case "quot" -> sb.append('"');
+                case "apos" -> sb.append('\'');
+                default -> {
+                    if (entity.startsWith("#") && entity.length() > 1 && entity.substring(1).chars().allMatch(Character::isDigit)) {
+                        sb.appendCodePoint(Integer.parseInt(entity.substring(1)));
+                    } else {
+                        sb.append(ch);
+                        continue;
+                    }
+                }
+            }
+            i = semi;
+        }
+        return sb.toString();
+    }
+}
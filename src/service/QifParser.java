@@ -0,0 +1,129 @@
+package service;
+
+import model.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Streaming reader for QIF (Quicken Interchange Format) statements: one field
+ * per line, keyed by its first character, each transaction ended by
+ * {@code ^}. Only bank, cash and card sections are read; account lists,
+ * categories, memorized items and investments are skipped. QIF has no
+ * currency, so every amount is in the one given. Dates are month first
+ * unless {@code dayFirst}; a two-digit year after an apostrophe is in the
+ * 2000s, otherwise before 70 it is too.
+ */
+public final class QifParser implements StatementParser {
+
+    private final String currency;
+    private final boolean dayFirst;
+
+    public QifParser(String currency, boolean dayFirst) {
+        this.currency = currency;
+        this.dayFirst = dayFirst;
+    }
+
+    @Override
+    public void parse(Reader in, Sink sink) throws IOException, SQLException {
+        BufferedReader lines = in instanceof BufferedReader b ? b : new BufferedReader(in, 1 << 16);
+        StringBuilder amount = new StringBuilder(16);
+        boolean transactions = true;
+        String date = null, payee = null, memo = null, category = null;
+        long lineNo = 0, start = 1;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNo++;
+            if (line.isEmpty())
+                continue;
+            char key = line.charAt(0);
+            if (key == '!') {
+                String header = line.trim();
+                if (header.regionMatches(true, 0, "!Type:", 0, 6)) {
+                    String type = header.substring(6).trim().toLowerCase();
+                    transactions = type.equals("bank") || type.equals("cash") || type.equals("ccard")
+                            || type.equals("oth a") || type.equals("oth l");
+                } else if (header.regionMatches(true, 0, "!Account", 0, 8)) {
+                    // An account block ends with ^ and is not followed by transactions until the next !Type
+                    transactions = false;
+                }
+                start = lineNo + 1;
+                continue;
+            }
+            if (!transactions)
+                continue;
+            String value = line.substring(1).trim();
+            switch (key) {
+                case 'D' -> date = value;
+                case 'T', 'U' -> {
+                    amount.setLength(0);
+                    for (int i = 0; i < value.length(); i++) {
+                        if (value.charAt(i) != ',')
+                            amount.append(value.charAt(i));
+                    }
+                }
+                case 'P' -> payee = value;
+                case 'M' -> memo = value;
+                case 'L' -> category = value;
+                case '^' -> {
+                    emit(sink, start, date, amount, payee != null ? payee : memo, category);
+                    date = payee = memo = category = null;
+                    amount.setLength(0);
+                    start = lineNo + 1;
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void emit(Sink sink, long line, String date, StringBuilder amount, String payee, String category)
+            throws SQLException {
+        if (date == null || date.isEmpty()) {
+            sink.rejected(line, "Transaction has no date");
+            return;
+        }
+        if (amount.length() == 0) {
+            sink.rejected(line, "Transaction has no amount");
+            return;
+        }
+        Money money;
+        LocalDateTime at;
+        try {
+            money = Money.parse(amount, currency);
+            at = parseDate(date, dayFirst).atStartOfDay();
+        } catch (NumberFormatException | DateTimeException e) {
+            sink.rejected(line, e.getMessage());
+            return;
+        }
+        // [Account] is a transfer to another account, not a category
+        if (category != null && (category.isEmpty() || category.startsWith("[")))
+            category = null;
+        // Subcategories and classes: Food:Groceries/Work is filed under Food
+        if (category != null)
+            category = category.split("[:/]", 2)[0].trim();
+        sink.transaction(new Transaction(at, money, payee, category));
+    }
+
+    /** M/D/Y, D/M/Y with {@code dayFirst}, or Y-M-D; any of / - . ' as separators, with stray spaces. */
+    static LocalDate parseDate(String s, boolean dayFirst) {
+        String[] parts = s.replace(" ", "").split("[/\\-.']");
+        if (parts.length != 3)
+            throw new DateTimeException("Invalid QIF date: " + s);
+        try {
+            int a = Integer.parseInt(parts[0]), b = Integer.parseInt(parts[1]), c = Integer.parseInt(parts[2]);
+            if (parts[0].length() == 4)
+                return LocalDate.of(a, b, c);
+            if (c < 100)
+                c += (s.indexOf('\'') >= 0 || c < 70) ? 2000 : 1900;
+            return dayFirst ? LocalDate.of(c, b, a) : LocalDate.of(c, a, b);
+        } catch (NumberFormatException e) {
+            throw new DateTimeException("Invalid QIF date: " + s);
+        }
+    }
+}
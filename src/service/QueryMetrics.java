@@ -0,0 +1,361 @@
+package service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Thin JDBC instrumentation layer. Connections handed out by
+ * {@link DatabaseManager#getConnection()} are wrapped so that every statement
+ * records its timing, row count and fetched bytes under a normalized SQL key.
+ * Statements slower than {@code db.slowQueryMs} are logged with the shapes
+ * (types and lengths, never values) of their bind parameters.
+ */
+public class QueryMetrics {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern IN_START = Pattern.compile("(?i)\\bIN\\s*\\(");
+    private static final Pattern VALUES_START = Pattern.compile("(?i)\\bVALUES\\s*\\(");
+    private static final int NORMALIZED_CACHE_LIMIT = 1024;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Map<String, StatementStats> stats = new ConcurrentHashMap<>();
+    private static final Map<String, String> normalizedCache = new ConcurrentHashMap<>();
+    private static volatile long slowQueryNanos = 200_000_000L;
+
+    /** Aggregated counters for one normalized statement. */
+    public static class StatementStats {
+        private final String sql;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        StatementStats(String sql) {
+            this.sql = sql;
+        }
+
+        void recordExecution(long nanos, boolean failed) {
+            executions.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            if (failed)
+                errors.increment();
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+    }
+
+    public static void setSlowQueryThresholdMs(long millis) {
+        slowQueryNanos = millis * 1_000_000L;
+    }
+
+    public static long getSlowQueryThresholdMs() {
+        return slowQueryNanos / 1_000_000L;
+    }
+
+    public static Connection instrument(Connection conn) {
+        return proxy(Connection.class, conn, new ConnectionHandler(conn));
+    }
+
+    /** Returns the N statements with the highest cumulative execution time. */
+    public static List<StatementStats> topStatements(int n) {
+        List<StatementStats> all = new ArrayList<>(stats.values());
+        all.sort(Comparator.comparingLong(StatementStats::getTotalNanos).reversed());
+        return all.size() > n ? all.subList(0, Math.max(n, 0)) : all;
+    }
+
+    public static void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Collapses whitespace and replaces literals, IN lists and multi-row VALUES
+     * lists with placeholders so that structurally identical statements share a key.
+     */
+    public static String normalize(String sql) {
+        if (sql == null)
+            return "";
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+        s = collapseInLists(s);
+        return collapseValuesList(s);
+    }
+
+    // Both collapses scan by hand: a regex over a 1000-row VALUES list overflows the stack.
+
+    private static String collapseInLists(String s) {
+        Matcher m = IN_START.matcher(s);
+        StringBuilder out = new StringBuilder(s.length());
+        int copied = 0;
+        while (m.find()) {
+            int i = m.end();
+            while (i < s.length() && (s.charAt(i) == '?' || s.charAt(i) == ',' || s.charAt(i) == ' '))
+                i++;
+            int firstParam = s.indexOf('?', m.end());
+            if (i < s.length() && s.charAt(i) == ')' && firstParam >= 0 && firstParam < i) {
+                out.append(s, copied, m.start()).append("IN (...)");
+                copied = i + 1;
+            }
+        }
+        return copied == 0 ? s : out.append(s, copied, s.length()).toString();
+    }
+
+    private static String collapseValuesList(String s) {
+        Matcher m = VALUES_START.matcher(s);
+        if (!m.find())
+            return s;
+        int firstEnd = tupleEnd(s, m.end() - 1);
+        if (firstEnd < 0)
+            return s;
+        int i = firstEnd;
+        int tuples = 1;
+        while (true) {
+            int j = i;
+            while (j < s.length() && s.charAt(j) == ' ')
+                j++;
+            if (j >= s.length() || s.charAt(j) != ',')
+                break;
+            j++;
+            while (j < s.length() && s.charAt(j) == ' ')
+                j++;
+            int end = (j < s.length() && s.charAt(j) == '(') ? tupleEnd(s, j) : -1;
+            if (end < 0)
+                break;
+            i = end;
+            tuples++;
+        }
+        if (tuples == 1)
+            return s;
+        return s.substring(0, firstEnd) + ", ..." + s.substring(i);
+    }
+
+    /** Index just past the parenthesised group opening at {@code open}, or -1. */
+    private static int tupleEnd(String s, int open) {
+        int depth = 0;
+        for (int i = open; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '(')
+                depth++;
+            else if (c == ')' && --depth == 0)
+                return i + 1;
+        }
+        return -1;
+    }
+
+    private static StatementStats statsFor(String sql) {
+        String key = normalizedCache.get(sql);
+        if (key == null) {
+            key = normalize(sql);
+            if (normalizedCache.size() < NORMALIZED_CACHE_LIMIT)
+                normalizedCache.put(sql, key);
+        }
+        return stats.computeIfAbsent(key, StatementStats::new);
+    }
+
+    private static void record(StatementStats st, long nanos, boolean failed, List<String> shapes, String outcome) {
+        st.recordExecution(nanos, failed);
+        if (nanos >= slowQueryNanos) {
+            System.err.printf("[slow-query] %.1f ms %s params=%s sql=%s%n", nanos / 1_000_000.0, outcome,
+                    shapes == null ? "[]" : shapes.toString(), st.getSql());
+        }
+    }
+
+    private static String shapeOf(Object value) {
+        if (value == null)
+            return "NULL";
+        if (value instanceof CharSequence cs)
+            return "String(" + cs.length() + ")";
+        if (value instanceof BigDecimal bd)
+            return "Decimal(" + bd.precision() + "," + bd.scale() + ")";
+        return value.getClass().getSimpleName();
+    }
+
+    private static long sizeOf(Object value) {
+        if (value == null)
+            return 0;
+        if (value instanceof CharSequence cs)
+            return cs.length();
+        if (value instanceof byte[] b)
+            return b.length;
+        if (value instanceof Integer || value instanceof Float)
+            return 4;
+        if (value instanceof BigDecimal bd)
+            return bd.unscaledValue().bitLength() / 8 + 1;
+        if (value instanceof Boolean || value instanceof Byte)
+            return 1;
+        if (value instanceof Short)
+            return 2;
+        return 8;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(QueryMetrics.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ─── Proxies ─────────────────────────────────────────
+
+    private static class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryMetrics.invoke(target, method, args);
+            if (result instanceof PreparedStatement ps && "prepareStatement".equals(method.getName())) {
+                String sql = (String) args[0];
+                return proxy(PreparedStatement.class, ps, new StatementHandler(ps, statsFor(sql), sql));
+            }
+            if (result instanceof Statement st && "createStatement".equals(method.getName())) {
+                return proxy(Statement.class, st, new StatementHandler(st, null, null));
+            }
+            return result;
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final StatementStats preparedStats;
+        private final String preparedSql;
+        private final List<String> shapes = new ArrayList<>();
+        private int batchSize;
+
+        StatementHandler(Statement target, StatementStats preparedStats, String preparedSql) {
+            this.target = target;
+            this.preparedStats = preparedStats;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (preparedStats != null && name.startsWith("set") && args != null && args.length >= 2
+                    && args[0] instanceof Integer idx) {
+                while (shapes.size() < idx)
+                    shapes.add("?");
+                shapes.set(idx - 1, shapeOf(args[1]));
+            }
+            if ("addBatch".equals(name))
+                batchSize++;
+            if ("clearParameters".equals(name))
+                shapes.clear();
+            if (!name.startsWith("execute"))
+                return QueryMetrics.invoke(target, method, args);
+
+            boolean adHoc = args != null && args.length > 0 && args[0] instanceof String;
+            String sql = adHoc ? (String) args[0] : preparedSql;
+            StatementStats st = adHoc ? statsFor(sql) : preparedStats;
+            if (st == null)
+                return QueryMetrics.invoke(target, method, args);
+
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = QueryMetrics.invoke(target, method, args);
+            } catch (Throwable t) {
+                record(st, System.nanoTime() - start, true, adHoc ? null : shapes, "error");
+                throw t;
+            }
+            long elapsed = System.nanoTime() - start;
+            String outcome;
+            if (result instanceof Integer || result instanceof Long) {
+                long n = ((Number) result).longValue();
+                st.rows.add(Math.max(n, 0));
+                outcome = "updated=" + n;
+            } else if (result instanceof int[] counts) {
+                outcome = "batch=" + (batchSize > 0 ? batchSize : counts.length);
+                for (int c : counts)
+                    if (c > 0)
+                        st.rows.add(c);
+                batchSize = 0;
+            } else {
+                outcome = result instanceof ResultSet ? "query" : "execute";
+            }
+            record(st, elapsed, false, adHoc ? null : shapes, outcome);
+            if (result instanceof ResultSet rs) {
+                return proxy(ResultSet.class, rs, new ResultSetHandler(rs, st));
+            }
+            return result;
+        }
+    }
+
+    private static class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final StatementStats st;
+
+        ResultSetHandler(ResultSet target, StatementStats st) {
+            this.target = target;
+            this.st = st;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = QueryMetrics.invoke(target, method, args);
+            String name = method.getName();
+            if ("next".equals(name)) {
+                if (Boolean.TRUE.equals(result))
+                    st.rows.increment();
+            } else if (name.startsWith("get") && args != null && args.length == 1) {
+                st.bytes.add(sizeOf(result));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read replicas per shard, used by {@link DatabaseManager#getReadConnection}
+ * for report-style queries so that exports and trends do not compete with
+ * inserts on the primary. Replicas are picked round-robin among the healthy
+ * ones. A replica is marked down when a connection to it fails, or when the
+ * background probe finds it unreachable or lagging more than
+ * {@code db.replicaMaxLagSeconds}. The same probe brings it back.
+ * <p>
+ * For {@code db.readYourWritesSeconds} after a user writes, that user's reads
+ * stay on the primary so they never see a replica that has not caught up yet.
+ */
+public final class ReadReplicas {
+
+    static final class Replica {
+        final String url;
+        final String user;
+        final String password;
+        volatile boolean healthy = true;
+
+        Replica(String url, String user, String password) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+        }
+    }
+
+    private static final Map<Integer, List<Replica>> replicasByShard = new ConcurrentHashMap<>();
+    private static final Map<Integer, AtomicInteger> cursors = new ConcurrentHashMap<>();
+    private static final Map<Integer, Long> lastWrite = new ConcurrentHashMap<>();
+    private static volatile long readYourWritesMillis = 5_000;
+    private static volatile int maxLagSeconds = 30;
+    private static ScheduledExecutorService probe;
+
+    private ReadReplicas() {
+    }
+
+    static void configure(int shard, List<String> urls, String user, String password) {
+        List<Replica> replicas = new ArrayList<>();
+        for (String url : urls)
+            replicas.add(new Replica(url, user, password));
+        replicasByShard.put(shard, replicas);
+        cursors.put(shard, new AtomicInteger());
+    }
+
+    static void setReadYourWritesSeconds(int seconds) {
+        readYourWritesMillis = seconds * 1000L;
+    }
+
+    static void setMaxLagSeconds(int seconds) {
+        maxLagSeconds = seconds;
+    }
+
+    static synchronized void startHealthChecks(int intervalSeconds) {
+        if (probe != null || replicasByShard.isEmpty())
+            return;
+        probe = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "replica-health");
+            t.setDaemon(true);
+            return t;
+        });
+        probe.scheduleWithFixedDelay(ReadReplicas::checkAll, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /** Remembers that the user just wrote, pinning their reads to the primary for a while. */
+    public static void recordWrite(int userId) {
+        lastWrite.put(userId, System.currentTimeMillis());
+    }
+
+    static boolean recentlyWrote(int userId) {
+        Long at = lastWrite.get(userId);
+        if (at == null)
+            return false;
+        if (System.currentTimeMillis() - at < readYourWritesMillis)
+            return true;
+        lastWrite.remove(userId, at);
+        return false;
+    }
+
+    /** Connection to a healthy replica of the shard, or null if it has none. */
+    static Connection connect(int shard) {
+        List<Replica> replicas = replicasByShard.get(shard);
+        if (replicas == null)
+            return null;
+        int start = cursors.get(shard).getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+            if (!replica.healthy)
+                continue;
+            try {
+                return DriverManager.getConnection(replica.url, replica.user, replica.password);
+            } catch (SQLException e) {
+                replica.healthy = false;
+                System.err.println("Replica " + replica.url + " is down: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private static void checkAll() {
+        for (List<Replica> replicas : replicasByShard.values()) {
+            for (Replica replica : replicas) {
+                boolean healthy = check(replica);
+                if (healthy != replica.healthy)
+                    System.err.println("Replica " + replica.url + (healthy ? " is back." : " is down."));
+                replica.healthy = healthy;
+            }
+        }
+    }
+
+    private static boolean check(Replica replica) {
+        try (Connection conn = DriverManager.getConnection(replica.url, replica.user, replica.password)) {
+            if (!conn.isValid(2))
+                return false;
+            Integer lag = lagSeconds(conn);
+            return lag == null || lag <= maxLagSeconds;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /** Seconds_Behind_Source on MySQL, or null if unknown (not MySQL, no privilege, not a replica). */
+    private static Integer lagSeconds(Connection conn) {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SHOW REPLICA STATUS")) {
+            if (!rs.next())
+                return null;
+            int lag = rs.getInt("Seconds_Behind_Source");
+            // NULL means replication is stopped
+            return rs.wasNull() ? Integer.MAX_VALUE : lag;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package service;
+
+import model.Reminder;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers reminders when they fall due. Only reminders due by tomorrow are
+ * held, in a {@link DelayQueue}, so the work done tracks reminders that are
+ * due rather than reminders stored. The queue is loaded from the repository
+ * at start and every {@code refreshMillis}. Reminders added or deleted through
+ * this repository are queued or cancelled straight away; changes made
+ * elsewhere (the CLI) are picked up on the next refresh.
+ * <p>
+ * A reminder fires at {@code notifyAt} on its due date, or at once if that has
+ * passed. It goes to every {@link Notifier} and is marked delivered only when
+ * all of them succeed. If one throws, the whole delivery is retried with
+ * backoff, so notifiers may see the same reminder more than once.
+ */
+public class ReminderScheduler extends ForwardingExpenseRepository {
+
+    /** Receives due reminders; throwing means "not delivered, try again later". */
+    public interface Notifier {
+        void deliver(int userId, Reminder reminder) throws Exception;
+    }
+
+    /** Writes a line to standard output. */
+    public static final Notifier LOG = (userId, r) -> System.out.printf("Reminder due for user %d: %s (%s)%n",
+            userId, r.getTitle(), r.getDueDate());
+
+    private static final long MIN_RETRY_MILLIS = 30_000;
+    private static final long MAX_RETRY_MILLIS = 3_600_000;
+
+    private static final class Due implements Delayed {
+        final int userId;
+        final Reminder reminder;
+        final long queuedAt = System.currentTimeMillis();
+        volatile long at;
+        int attempts;
+
+        Due(int userId, Reminder reminder, long at) {
+            this.userId = userId;
+            this.reminder = reminder;
+            this.at = at;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(at - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(at, ((Due) other).at);
+        }
+    }
+
+    private final DelayQueue<Due> queue = new DelayQueue<>();
+    private final Map<String, Due> scheduled = new ConcurrentHashMap<>();
+    private final List<Notifier> notifiers = new CopyOnWriteArrayList<>();
+    private final LocalTime notifyAt;
+    private final long refreshMillis;
+    private volatile LocalDate horizon = LocalDate.MIN;
+    private Thread worker;
+
+    public ReminderScheduler(ExpenseRepository delegate, LocalTime notifyAt, long refreshMillis) {
+        super(delegate);
+        this.notifyAt = notifyAt;
+        this.refreshMillis = refreshMillis;
+    }
+
+    public void addNotifier(Notifier notifier) {
+        notifiers.add(notifier);
+    }
+
+    /** Loads the queue and starts delivering on a daemon thread. */
+    public synchronized void start() {
+        if (worker != null)
+            return;
+        worker = new Thread(this::run, "reminder-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Reminders currently waiting to fire, including those waiting for a retry. */
+    public int pendingCount() {
+        return scheduled.size();
+    }
+
+    /** Moves the user's failed deliveries to now, e.g. once they can be reached again. */
+    public void retryNow(int userId) {
+        long now = System.currentTimeMillis();
+        for (Due due : scheduled.values()) {
+            if (due.userId == userId && due.attempts > 0 && queue.remove(due)) {
+                due.at = now;
+                queue.add(due);
+            }
+        }
+    }
+
+    // ─── Writes ──────────────────────────────────────────
+
+    @Override
+    public Reminder addReminder(int userId, String title, LocalDate dueDate, String notes) throws SQLException {
+        Reminder added = delegate.addReminder(userId, title, dueDate, notes);
+        schedule(userId, added);
+        return added;
+    }
+
+    @Override
+    public boolean deleteReminder(int userId, int id) throws SQLException {
+        boolean removed = delegate.deleteReminder(userId, id);
+        Due due = scheduled.remove(key(userId, id));
+        if (due != null)
+            queue.remove(due);
+        return removed;
+    }
+
+    // ─── Scheduling ──────────────────────────────────────
+
+    private static String key(int userId, int reminderId) {
+        return userId + ":" + reminderId;
+    }
+
+    private void schedule(int userId, Reminder r) {
+        // Later reminders are loaded by the refresh that moves the horizon past them
+        if (r.getDueDate().isAfter(horizon))
+            return;
+        long at = Math.max(System.currentTimeMillis(),
+                r.getDueDate().atTime(notifyAt).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        Due due = new Due(userId, r, at);
+        if (scheduled.putIfAbsent(key(userId, r.getId()), due) == null)
+            queue.add(due);
+    }
+
+    /** Queues undelivered reminders due by tomorrow and drops entries whose reminder is gone. */
+    private void refresh() throws SQLException {
+        long started = System.currentTimeMillis();
+        LocalDate through = LocalDate.now().plusDays(1);
+        Map<Integer, List<Reminder>> pending = delegate.getUndeliveredReminders(through);
+        horizon = through;
+        Set<String> current = new HashSet<>();
+        for (var entry : pending.entrySet()) {
+            for (Reminder r : entry.getValue()) {
+                current.add(key(entry.getKey(), r.getId()));
+                schedule(entry.getKey(), r);
+            }
+        }
+        scheduled.entrySet().removeIf(e -> {
+            // Entries queued during the load may be missing from it
+            if (current.contains(e.getKey()) || e.getValue().queuedAt >= started)
+                return false;
+            queue.remove(e.getValue());
+            return true;
+        });
+    }
+
+    private void run() {
+        long nextRefresh = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (System.currentTimeMillis() >= nextRefresh) {
+                    nextRefresh = System.currentTimeMillis() + refreshMillis;
+                    refresh();
+                }
+                Due due = queue.poll(Math.max(nextRefresh - System.currentTimeMillis(), 1), TimeUnit.MILLISECONDS);
+                if (due != null)
+                    fire(due);
+            } catch (InterruptedException e) {
+                return;
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Reminder scheduler: " + e.getMessage());
+            }
+        }
+    }
+
+    private void fire(Due due) throws SQLException {
+        String key = key(due.userId, due.reminder.getId());
+        if (scheduled.get(key) != due)
+            return;
+        try {
+            for (Notifier notifier : notifiers)
+                notifier.deliver(due.userId, due.reminder);
+        } catch (Exception e) {
+            due.attempts++;
+            due.at = System.currentTimeMillis()
+                    + Math.min(MIN_RETRY_MILLIS << Math.min(due.attempts - 1, 16), MAX_RETRY_MILLIS);
+            queue.add(due);
+            return;
+        }
+        scheduled.remove(key, due);
+        delegate.markReminderDelivered(due.userId, due.reminder.getId());
+    }
+}
@@ -0,0 +1,456 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned schema migrations. {@link #MIGRATIONS} is an ordered list of SQL
+ * scripts; each one that has run is recorded in schema_version with a CRC32
+ * of its statements. When the schema is current, startup costs one SELECT.
+ * A script edited after it was applied is refused instead of being skipped.
+ * Never change a released migration: append a new one.
+ * <p>
+ * CREATE INDEX statements are skipped if the index already exists. On MySQL
+ * they run as online ALTER TABLE ... ALGORITHM=INPLACE, LOCK=NONE so reads
+ * and writes continue while the index builds. A migration that failed
+ * part-way can then be re-run.
+ * <p>
+ * A database created before schema_version existed is adopted: tables still
+ * keyed by username are converted to integer keys, then the baseline
+ * versions are recorded as applied. Upgrade with one process at a time.
+ */
+public final class SchemaMigrator {
+
+    record Migration(int version, String description, String script) {
+    }
+
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "initial schema", """
+                    CREATE TABLE IF NOT EXISTS users (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        username VARCHAR(50) UNIQUE NOT NULL,
+                        password_hash VARCHAR(255) NOT NULL,
+                        salt VARCHAR(255) NOT NULL
+                    );
+                    -- Also the dictionary behind every category_id; deleted categories are only marked inactive
+                    CREATE TABLE IF NOT EXISTS categories (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        name VARCHAR(100) UNIQUE NOT NULL,
+                        active BOOLEAN NOT NULL DEFAULT TRUE
+                    );
+                    CREATE TABLE IF NOT EXISTS expenses (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        user_id INT NOT NULL,
+                        category_id INT NOT NULL,
+                        amount DECIMAL(10, 2) NOT NULL CHECK (amount > 0),
+                        currency VARCHAR(3) DEFAULT 'INR',
+                        receipt_path VARCHAR(255),
+                        date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        INDEX idx_exp_user_date (user_id, date),
+                        FOREIGN KEY (user_id) REFERENCES users(id),
+                        FOREIGN KEY (category_id) REFERENCES categories(id)
+                    );
+                    CREATE TABLE IF NOT EXISTS recurring_expenses (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        user_id INT NOT NULL,
+                        description VARCHAR(255) NOT NULL,
+                        amount DECIMAL(10, 2) NOT NULL CHECK (amount > 0),
+                        category_id INT NOT NULL,
+                        interval_type ENUM('daily', 'weekly', 'monthly') NOT NULL,
+                        start_date DATE NOT NULL,
+                        last_applied_date DATE,
+                        INDEX idx_rec_user (user_id),
+                        FOREIGN KEY (user_id) REFERENCES users(id),
+                        FOREIGN KEY (category_id) REFERENCES categories(id)
+                    );
+                    CREATE TABLE IF NOT EXISTS reminders (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        user_id INT NOT NULL,
+                        title VARCHAR(255) NOT NULL,
+                        due_date DATE NOT NULL,
+                        notes TEXT,
+                        INDEX idx_rem_user_due (user_id, due_date),
+                        INDEX idx_rem_due (due_date),
+                        FOREIGN KEY (user_id) REFERENCES users(id)
+                    );
+                    CREATE TABLE IF NOT EXISTS budgets (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        user_id INT NOT NULL,
+                        category_id INT NOT NULL,
+                        monthly_limit DECIMAL(10, 2) NOT NULL CHECK (monthly_limit > 0),
+                        UNIQUE KEY uq_budget_user_cat (user_id, category_id),
+                        FOREIGN KEY (user_id) REFERENCES users(id),
+                        FOREIGN KEY (category_id) REFERENCES categories(id)
+                    );
+                    """),
+            new Migration(2, "default categories", """
+                    INSERT INTO categories (name) VALUES
+                        ('Food'), ('Transport'), ('Rent'), ('Entertainment'), ('Health'), ('Other');
+                    """),
+            new Migration(3, "index expenses by user, category and date for filtered search", """
+                    CREATE INDEX idx_exp_user_cat_date ON expenses (user_id, category_id, date);
+                    """),
+            new Migration(4, "archive table for closed years of expenses", """
+                    CREATE TABLE IF NOT EXISTS expenses_archive (
+                        id INT PRIMARY KEY,
+                        user_id INT NOT NULL,
+                        category_id INT NOT NULL,
+                        amount DECIMAL(10, 2) NOT NULL,
+                        currency VARCHAR(3) DEFAULT 'INR',
+                        receipt_path VARCHAR(255),
+                        date TIMESTAMP NOT NULL,
+                        INDEX idx_arc_user_date (user_id, date)
+                    );
+                    """),
+            new Migration(5, "user directory for sharded deployments", """
+                    -- Only read on shard 0, and only when db.shards > 1; hands out ids that are unique across shards
+                    CREATE TABLE IF NOT EXISTS user_shards (
+                        user_id INT AUTO_INCREMENT PRIMARY KEY,
+                        username VARCHAR(50) UNIQUE NOT NULL,
+                        shard INT NOT NULL,
+                        moving BOOLEAN NOT NULL DEFAULT FALSE,
+                        INDEX idx_us_shard (shard)
+                    );
+                    """),
+            new Migration(6, "delivery marker for due reminders", """
+                    ALTER TABLE reminders ADD COLUMN delivered_at TIMESTAMP NULL;
+                    -- Reminders that were already due before the upgrade are not announced again
+                    UPDATE reminders SET delivered_at = CURRENT_TIMESTAMP WHERE due_date < CURRENT_DATE;
+                    CREATE INDEX idx_rem_pending ON reminders (delivered_at, due_date);
+                    """),
+            new Migration(7, "change log for incremental client sync", """
+                    CREATE TABLE IF NOT EXISTS changes (
+                        version BIGINT AUTO_INCREMENT PRIMARY KEY,
+                        user_id INT NOT NULL,
+                        entity VARCHAR(20) NOT NULL,
+                        entity_key VARCHAR(100) NOT NULL,
+                        op CHAR(1) NOT NULL,
+                        changed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        INDEX idx_chg_user_version (user_id, version),
+                        INDEX idx_chg_changed_at (changed_at)
+                    );
+                    """),
+            new Migration(8, "idempotency keys for retried expense writes", """
+                    CREATE TABLE IF NOT EXISTS idempotency_keys (
+                        user_id INT NOT NULL,
+                        idem_key VARCHAR(100) NOT NULL,
+                        -- 0 while the request that claimed the key is still writing
+                        expense_id INT NOT NULL DEFAULT 0,
+                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        PRIMARY KEY (user_id, idem_key),
+                        INDEX idx_idem_created (created_at)
+                    );
+                    """),
+            new Migration(9, "category rules for incoming expenses", """
+                    CREATE TABLE IF NOT EXISTS category_rules (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        user_id INT NOT NULL,
+                        match_type VARCHAR(10) NOT NULL,
+                        pattern VARCHAR(255),
+                        -- Optional range, in currency
+                        min_amount DECIMAL(10, 2),
+                        max_amount DECIMAL(10, 2),
+                        currency VARCHAR(3) DEFAULT 'INR',
+                        category_id INT NOT NULL,
+                        priority INT NOT NULL DEFAULT 100,
+                        hits BIGINT NOT NULL DEFAULT 0,
+                        INDEX idx_rule_user (user_id),
+                        FOREIGN KEY (user_id) REFERENCES users(id),
+                        FOREIGN KEY (category_id) REFERENCES categories(id)
+                    );
+                    """),
+            new Migration(10, "free-text notes on expenses", """
+                    -- Merchant or what was bought; searched by keyword along with the category
+                    ALTER TABLE expenses ADD COLUMN notes VARCHAR(255) NULL;
+                    ALTER TABLE expenses_archive ADD COLUMN notes VARCHAR(255) NULL;
+                    """));
+
+    /** Databases that predate schema_version already have everything up to this version. */
+    private static final int ADOPTED_BASELINE = 2;
+
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "(?is)CREATE\\s+INDEX\\s+(\\w+)\\s+ON\\s+(\\w+)\\s*(\\(.*\\))\\s*");
+
+    private SchemaMigrator() {
+    }
+
+    /** Applies every pending migration and returns how many ran. */
+    public static int migrate(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = appliedChecksums(conn);
+        if (applied == null) {
+            applied = new TreeMap<>();
+            boolean existing = tableExists(conn, "users");
+            if (existing)
+                adoptUnversioned(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("""
+                        CREATE TABLE IF NOT EXISTS schema_version (
+                            version INT PRIMARY KEY,
+                            description VARCHAR(200) NOT NULL,
+                            checksum BIGINT NOT NULL,
+                            installed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                            execution_ms BIGINT NOT NULL
+                        )""");
+            }
+            if (existing)
+                recordBaseline(conn, applied);
+        }
+        int ran = 0;
+        for (Migration m : MIGRATIONS) {
+            Long recorded = applied.get(m.version());
+            if (recorded == null) {
+                long started = System.currentTimeMillis();
+                for (String sql : statements(m.script()))
+                    execute(conn, sql);
+                long ms = System.currentTimeMillis() - started;
+                record(conn, m, ms);
+                System.err.println("Applied schema migration V" + m.version() + " (" + m.description() + ") in "
+                        + ms + " ms.");
+                ran++;
+            } else if (recorded != checksum(m.script())) {
+                throw new SQLException("Schema migration V" + m.version() + " (" + m.description()
+                        + ") was changed after it was applied; add a new migration instead.");
+            }
+        }
+        return ran;
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /** Version to checksum for every applied migration, or null if schema_version does not exist yet. */
+    private static Map<Integer, Long> appliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new TreeMap<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next())
+                applied.put(rs.getInt(1), rs.getLong(2));
+        } catch (SQLException e) {
+            if (tableExists(conn, "schema_version"))
+                throw e;
+            return null;
+        }
+        return applied;
+    }
+
+    private static void record(Connection conn, Migration m, long ms) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, m.version());
+            ps.setString(2, m.description());
+            ps.setLong(3, checksum(m.script()));
+            ps.setLong(4, ms);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        Matcher index = CREATE_INDEX.matcher(sql);
+        if (index.matches()) {
+            if (indexExists(conn, index.group(2), index.group(1)))
+                return;
+            if (isMySql(conn))
+                sql = onlineIndexBuild(sql);
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    // ─── Script handling ─────────────────────────────────
+
+    /** Splits a script on semicolons that end a line, dropping "--" comment lines. */
+    public static List<String> statements(String script) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--"))
+                continue;
+            if (current.length() > 0)
+                current.append('\n');
+            if (trimmed.endsWith(";")) {
+                current.append(line, 0, line.lastIndexOf(';'));
+                result.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(line);
+            }
+        }
+        if (!current.toString().isBlank())
+            result.add(current.toString().trim());
+        return result;
+    }
+
+    /** CRC32 of the statements with surrounding whitespace ignored, so re-indenting a script is harmless. */
+    public static long checksum(String script) {
+        CRC32 crc = new CRC32();
+        for (String sql : statements(script)) {
+            for (String line : sql.split("\n"))
+                crc.update(line.trim().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            crc.update(';');
+        }
+        return crc.getValue();
+    }
+
+    /** Rewrites CREATE INDEX as a MySQL online ALTER, or returns the statement unchanged. */
+    public static String onlineIndexBuild(String sql) {
+        Matcher m = CREATE_INDEX.matcher(sql);
+        if (!m.matches())
+            return sql;
+        return "ALTER TABLE " + m.group(2) + " ADD INDEX " + m.group(1) + " " + m.group(3)
+                + ", ALGORITHM=INPLACE, LOCK=NONE";
+    }
+
+    // ─── Adopting databases from before schema_version ───
+
+    private static final String[] KEYED_TABLES = { "expenses", "recurring_expenses", "reminders", "budgets" };
+
+    /**
+     * Brings a database created by the old start-up code to the baseline:
+     * adds columns that code added ad hoc and converts tables keyed by
+     * username and category text. schema_version is only created once this
+     * has succeeded, so a failed adoption is retried on the next start.
+     */
+    private static void adoptUnversioned(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            if (!hasColumn(conn, "categories", "active")) {
+                stmt.execute("ALTER TABLE categories ADD COLUMN active BOOLEAN NOT NULL DEFAULT TRUE");
+                stmt.execute("ALTER TABLE categories MODIFY name VARCHAR(100) NOT NULL");
+            }
+            List<String> legacy = renameLegacyTables(conn, stmt);
+            for (String sql : statements(MIGRATIONS.get(0).script()))
+                stmt.execute(sql);
+            copyLegacyTables(stmt, legacy);
+        }
+    }
+
+    private static void recordBaseline(Connection conn, Map<Integer, Long> applied) throws SQLException {
+        for (Migration m : MIGRATIONS) {
+            if (m.version() > ADOPTED_BASELINE)
+                break;
+            record(conn, m, 0);
+            applied.put(m.version(), checksum(m.script()));
+        }
+        System.err.println("Adopted existing database at schema version " + ADOPTED_BASELINE + ".");
+    }
+
+    /**
+     * Renames any table still keyed by username to {@code <table>_legacy} so
+     * the integer-keyed table can be created in its place. Returns the
+     * renamed tables.
+     */
+    private static List<String> renameLegacyTables(Connection conn, Statement stmt) throws SQLException {
+        List<String> renamed = new ArrayList<>();
+        for (String table : KEYED_TABLES) {
+            if (!hasColumn(conn, table, "username"))
+                continue;
+            if ("expenses".equals(table)) {
+                if (!hasColumn(conn, table, "currency"))
+                    stmt.execute("ALTER TABLE expenses ADD COLUMN currency VARCHAR(3) DEFAULT 'INR'");
+                if (!hasColumn(conn, table, "receipt_path"))
+                    stmt.execute("ALTER TABLE expenses ADD COLUMN receipt_path VARCHAR(255)");
+            }
+            stmt.execute("ALTER TABLE " + table + " RENAME TO " + table + "_legacy");
+            renamed.add(table);
+        }
+        return renamed;
+    }
+
+    /**
+     * Copies renamed tables into the new ones, resolving usernames to users.id
+     * and category names to categories.id. Ids are preserved. Rows whose
+     * user no longer exists stay behind in the _legacy table, which is kept
+     * until someone drops it by hand.
+     */
+    private static void copyLegacyTables(Statement stmt, List<String> legacy) throws SQLException {
+        for (String table : legacy) {
+            if (!"reminders".equals(table)) {
+                stmt.execute("INSERT INTO categories (name, active) SELECT DISTINCT COALESCE(category, 'Other'), FALSE FROM "
+                        + table + "_legacy WHERE COALESCE(category, 'Other') NOT IN (SELECT name FROM categories)");
+            }
+        }
+        for (String table : legacy) {
+            String columns = switch (table) {
+                case "expenses" -> "id, user_id, category_id, amount, currency, receipt_path, date";
+                case "recurring_expenses" ->
+                    "id, user_id, description, amount, category_id, interval_type, start_date, last_applied_date";
+                case "reminders" -> "id, user_id, title, due_date, notes";
+                default -> "id, user_id, category_id, monthly_limit";
+            };
+            String select = columns.replace("id, user_id", "t.id, u.id").replace("category_id", "c.id");
+            String joins = " JOIN users u ON u.username = t.username"
+                    + ("reminders".equals(table) ? ""
+                            : " JOIN categories c ON c.name = COALESCE(t.category, 'Other')");
+            int copied = stmt.executeUpdate("INSERT INTO " + table + " (" + columns + ") SELECT " + select
+                    + " FROM " + table + "_legacy t" + joins);
+            long left;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table + "_legacy")) {
+                rs.next();
+                left = rs.getLong(1) - copied;
+            }
+            System.err.println("Migrated " + copied + " rows of " + table + " to integer keys and left " + left
+                    + " whose user no longer exists; the old rows are kept in " + table + "_legacy.");
+        }
+    }
+
+    // ─── Metadata ────────────────────────────────────────
+
+    private static boolean isMySql(Connection conn) throws SQLException {
+        return conn.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+    }
+
+    /**
+     * Looks in the connection's own schema only (H2 also has an
+     * INFORMATION_SCHEMA.USERS), trying the name as written and upper-cased
+     * since drivers differ in how they fold identifiers.
+     */
+    private static boolean tableExists(Connection conn, String table) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String t : new String[] { table, table.toUpperCase() }) {
+            try (ResultSet rs = meta.getTables(conn.getCatalog(), conn.getSchema(), t, new String[] { "TABLE" })) {
+                if (rs.next())
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String t : new String[] { table, table.toUpperCase() }) {
+            try (ResultSet rs = meta.getColumns(conn.getCatalog(), conn.getSchema(), t, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME")))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean indexExists(Connection conn, String table, String index) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String t : new String[] { table, table.toUpperCase() }) {
+            try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), conn.getSchema(), t, false, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME")))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,205 @@
+package service;
+
+import model.Expense;
+import model.Money;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers keyword searches from an in-process {@link ExpenseTextIndex} per
+ * active user instead of a LIKE scan of every row. A keyword matches an
+ * expense when each of its words is, or starts, a word of the category or
+ * notes: "star bu" finds "Starbucks, Bus Station" but, unlike LIKE, "bucks"
+ * does not. {@link #searchText} ranks matches by BM25, whole words above
+ * prefixes and newest first among equals; the index yields ids, and only the
+ * page asked for is read from the delegate.
+ * <p>
+ * A user's index is built on first search, kept in step by this layer's
+ * writes, rebuilt when deletes have left too many tombstones and dropped
+ * after {@code idleMillis} without searches. Writes that reach the database
+ * some other way (the CLI, a statement import, another server) are read
+ * from the change log before each search, up to the settled version.
+ */
+public class SearchIndexRepository extends ForwardingExpenseRepository {
+
+    /** Ids per getExpensesById call when a keyword filter matches many rows. */
+    private static final int FETCH_CHUNK = 1000;
+    /** More changes than this since the last search rebuild the index rather than replay. */
+    private static final int MAX_REPLAY = 1000;
+
+    private final Map<Integer, ExpenseTextIndex> indexes = new ConcurrentHashMap<>();
+    private final long idleMillis;
+    private volatile long lastSweep = System.currentTimeMillis();
+
+    public SearchIndexRepository(ExpenseRepository delegate, long idleMillis) {
+        super(delegate);
+        this.idleMillis = idleMillis;
+    }
+
+    /** Returns the user's index, building it if needed. Callers synchronize on the result. */
+    private ExpenseTextIndex indexFor(int userId) throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep > idleMillis / 2) {
+            lastSweep = now;
+            indexes.values().removeIf(ix -> now - ix.lastAccess > idleMillis);
+        }
+        ExpenseTextIndex ix = indexes.computeIfAbsent(userId, k -> new ExpenseTextIndex());
+        ix.lastAccess = now;
+        synchronized (ix) {
+            if (!ix.loaded || ix.needsRebuild() || !catchUp(userId, ix))
+                load(userId, ix);
+        }
+        return ix;
+    }
+
+    private void load(int userId, ExpenseTextIndex ix) throws SQLException {
+        // Read first: anything written after it is replayed by the next catch-up
+        long version = delegate.getSettledChangeVersion(userId);
+        ix.load(delegate.searchExpenses(userId, null, null, null, null, null, null));
+        ix.version = version;
+    }
+
+    /**
+     * Applies the user's expense changes logged since the index was last
+     * brought up to date. False if there are too many, or the log cannot
+     * say, and the index should be rebuilt instead.
+     */
+    private boolean catchUp(int userId, ExpenseTextIndex ix) throws SQLException {
+        long settled = delegate.getSettledChangeVersion(userId);
+        if (settled <= ix.version)
+            return true;
+        List<ChangeLog.Change> changes = delegate.getChanges(userId, ix.version, MAX_REPLAY);
+        if (changes.size() == MAX_REPLAY || (!changes.isEmpty() && changes.get(0).entity().equals(ChangeLog.RESET)))
+            return false;
+        Set<Integer> fetch = new LinkedHashSet<>();
+        for (ChangeLog.Change c : changes) {
+            if (c.version() > settled)
+                break;
+            if (!c.entity().equals(ChangeLog.EXPENSE))
+                continue;
+            int id = Integer.parseInt(c.key());
+            if (c.op() == ChangeLog.DELETE) {
+                ix.remove(id);
+                fetch.remove(id);
+            } else if (c.op() == ChangeLog.UPDATE || !ix.contains(id)) {
+                // An insert made through this layer is indexed already
+                fetch.add(id);
+            }
+        }
+        if (!fetch.isEmpty()) {
+            for (Expense e : delegate.getExpensesById(userId, fetch))
+                ix.add(e);
+        }
+        ix.version = settled;
+        return true;
+    }
+
+    /** Number of users currently held in memory. */
+    public int residentUsers() {
+        return indexes.size();
+    }
+
+    // ─── Search ──────────────────────────────────────────
+
+    @Override
+    public List<Expense> searchText(int userId, String query, int limit) throws SQLException {
+        if (limit <= 0 || ExpenseTextIndex.words(query).isEmpty())
+            return new ArrayList<>();
+        ExpenseTextIndex ix = indexFor(userId);
+        int[] ids;
+        synchronized (ix) {
+            ids = ix.search(query, limit);
+        }
+        Map<Integer, Integer> rank = new HashMap<>();
+        for (int i = 0; i < ids.length; i++)
+            rank.put(ids[i], i);
+        List<Expense> found = new ArrayList<>(delegate.getExpensesById(userId, rank.keySet()));
+        found.sort(Comparator.comparing(e -> rank.get(e.getId())));
+        return found;
+    }
+
+    @Override
+    public List<Expense> searchExpenses(int userId, String category, String keyword, Money minAmount,
+            Money maxAmount, LocalDate startDate, LocalDate endDate) throws SQLException {
+        // Punctuation alone has no words to look up
+        if (keyword == null || ExpenseTextIndex.words(keyword).isEmpty())
+            return delegate.searchExpenses(userId, category, keyword, minAmount, maxAmount, startDate, endDate);
+        ExpenseTextIndex ix = indexFor(userId);
+        List<Integer> ids;
+        synchronized (ix) {
+            ids = ix.matching(keyword, startDate != null ? startDate.atStartOfDay() : null,
+                    endDate != null ? endDate.plusDays(1).atStartOfDay() : null);
+        }
+        String cat = (category != null && !category.trim().isEmpty()) ? category : null;
+        List<Expense> results = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += FETCH_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + FETCH_CHUNK, ids.size()));
+            for (Expense e : delegate.getExpensesById(userId, chunk)) {
+                if (cat != null && !e.getCategory().equalsIgnoreCase(cat))
+                    continue;
+                // Like the SQL filter, amount bounds ignore currency
+                long units = e.getAmount().getMinorUnits();
+                if (minAmount != null && units < minAmount.getMinorUnits())
+                    continue;
+                if (maxAmount != null && units > maxAmount.getMinorUnits())
+                    continue;
+                results.add(e);
+            }
+        }
+        results.sort(Comparator.comparing(Expense::getDate).reversed());
+        return results;
+    }
+
+    // ─── Writes ──────────────────────────────────────────
+
+    @Override
+    public Expense addExpense(int userId, String category, Money amount, String receiptPath,
+            LocalDateTime date, String notes) throws SQLException {
+        Expense added = delegate.addExpense(userId, category, amount, receiptPath, date, notes);
+        ExpenseTextIndex ix = indexes.get(userId);
+        if (ix != null) {
+            synchronized (ix) {
+                // Not loaded yet means the load will read this row from the delegate
+                if (ix.loaded)
+                    ix.add(added);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public Expense deleteExpense(int userId, int id) throws SQLException {
+        Expense removed = delegate.deleteExpense(userId, id);
+        ExpenseTextIndex ix = indexes.get(userId);
+        if (removed != null && ix != null) {
+            synchronized (ix) {
+                ix.remove(id);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Expense recategorizeExpense(int userId, int id, String category) throws SQLException {
+        Expense before = delegate.recategorizeExpense(userId, id, category);
+        ExpenseTextIndex ix = indexes.get(userId);
+        if (before != null && ix != null) {
+            synchronized (ix) {
+                if (ix.loaded)
+                    ix.add(new Expense(id, category, before.getAmount(), before.getReceiptPath(), before.getDate(),
+                            before.getNotes()));
+            }
+        }
+        return before;
+    }
+}
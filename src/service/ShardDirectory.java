@@ -0,0 +1,139 @@
+package service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which shard holds each user, kept in user_shards on shard 0. The table also
+ * hands out users.id, so ids stay unique across shards and a session's user id
+ * is enough to route every later call. Placements are cached for
+ * {@code db.shardCacheSeconds}; tools.ShardRebalancer waits out that window
+ * after flagging a user as moving, so no process keeps writing to the old
+ * shard. With a single shard none of this is consulted.
+ */
+public final class ShardDirectory {
+
+    private record Placement(int shard, long expiresAt) {
+    }
+
+    private static final Map<Integer, Placement> placements = new ConcurrentHashMap<>();
+    private static volatile long cacheMillis = 5_000;
+
+    private ShardDirectory() {
+    }
+
+    public static void setCacheSeconds(int seconds) {
+        cacheMillis = seconds * 1000L;
+    }
+
+    public static int getCacheSeconds() {
+        return (int) (cacheMillis / 1000);
+    }
+
+    /** Shard holding the user. Fails while the user is being moved. */
+    public static int shardOf(int userId) throws SQLException {
+        if (DatabaseManager.shardCount() == 1)
+            return 0;
+        Placement cached = placements.get(userId);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis())
+            return cached.shard();
+        try (Connection conn = DatabaseManager.getShardConnection(0);
+                PreparedStatement ps = conn.prepareStatement("SELECT shard, moving FROM user_shards WHERE user_id = ?")) {
+            ps.setInt(1, userId);
+            ResultSet rs = ps.executeQuery();
+            if (!rs.next())
+                throw new SQLException("Unknown user id " + userId);
+            if (rs.getBoolean("moving"))
+                throw new SQLException("User " + userId + " is being moved to another shard; try again shortly.");
+            return remember(userId, rs.getInt("shard"));
+        }
+    }
+
+    /** Shard holding the user, or the shard a new user of that name would be placed on. */
+    public static int shardOf(String username) throws SQLException {
+        if (DatabaseManager.shardCount() == 1)
+            return 0;
+        try (Connection conn = DatabaseManager.getShardConnection(0);
+                PreparedStatement ps = conn.prepareStatement("SELECT user_id FROM user_shards WHERE username = ?")) {
+            ps.setString(1, username);
+            ResultSet rs = ps.executeQuery();
+            if (rs.next())
+                return shardOf(rs.getInt(1));
+        }
+        return DatabaseManager.getShardRouter().shardFor(username);
+    }
+
+    /**
+     * Reserves a user id on the shard the ring picks for this username.
+     * Returns 0 if the name is taken on any shard.
+     */
+    public static int register(String username) throws SQLException {
+        int shard = DatabaseManager.getShardRouter().shardFor(username);
+        try (Connection conn = DatabaseManager.getShardConnection(0);
+                PreparedStatement ps = conn.prepareStatement("INSERT INTO user_shards (username, shard) VALUES (?, ?)",
+                        Statement.RETURN_GENERATED_KEYS)) {
+            ps.setString(1, username);
+            ps.setInt(2, shard);
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next())
+                    throw new SQLException("No id generated for " + username);
+                remember(keys.getInt(1), shard);
+                return keys.getInt(1);
+            }
+        } catch (java.sql.SQLIntegrityConstraintViolationException e) {
+            return 0;
+        }
+    }
+
+    /** Releases an id from {@link #register} whose users row could not be written. */
+    public static void unregister(int userId) throws SQLException {
+        placements.remove(userId);
+        try (Connection conn = DatabaseManager.getShardConnection(0);
+                PreparedStatement ps = conn.prepareStatement("DELETE FROM user_shards WHERE user_id = ?")) {
+            ps.setInt(1, userId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Flags a user as moving (or clears the flag) and optionally records a new
+     * shard. Only tools.ShardRebalancer calls this, from its own process, so
+     * the local cache is dropped rather than updated.
+     */
+    public static void setPlacement(int userId, int shard, boolean moving) throws SQLException {
+        placements.remove(userId);
+        try (Connection conn = DatabaseManager.getShardConnection(0);
+                PreparedStatement ps = conn.prepareStatement("UPDATE user_shards SET shard = ?, moving = ? WHERE user_id = ?")) {
+            ps.setInt(1, shard);
+            ps.setBoolean(2, moving);
+            ps.setInt(3, userId);
+            if (ps.executeUpdate() == 0)
+                throw new SQLException("Unknown user id " + userId);
+        }
+    }
+
+    /**
+     * Registers users that exist on shard 0 but not in the directory, i.e.
+     * everyone from before sharding was switched on. Their ids are kept.
+     */
+    static void adoptUnsharded(Connection shard0) throws SQLException {
+        String sql = "INSERT INTO user_shards (user_id, username, shard) SELECT id, username, 0 FROM users u "
+                + "WHERE NOT EXISTS (SELECT 1 FROM user_shards s WHERE s.user_id = u.id)";
+        try (Statement stmt = shard0.createStatement()) {
+            int adopted = stmt.executeUpdate(sql);
+            if (adopted > 0)
+                System.err.println("Registered " + adopted + " existing users on shard 0.");
+        }
+    }
+
+    private static int remember(int userId, int shard) {
+        placements.put(userId, new Placement(shard, System.currentTimeMillis() + cacheMillis));
+        return shard;
+    }
+}
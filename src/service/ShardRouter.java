@@ -0,0 +1,60 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring from username to shard index. Each shard owns
+ * {@link #VIRTUAL_NODES} points on the ring, so going from N to N + 1 shards
+ * only moves about 1/(N + 1) of the users, all of them to the new shard.
+ * <p>
+ * The ring only decides where a new user is placed and where an existing
+ * user ought to live; {@link ShardDirectory} records where each user
+ * actually is, and tools.ShardRebalancer moves users whose placement no
+ * longer matches the ring.
+ */
+public final class ShardRouter {
+
+    static final int VIRTUAL_NODES = 128;
+
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+    private final int shards;
+
+    public ShardRouter(int shards) {
+        if (shards < 1)
+            throw new IllegalArgumentException("At least one shard is required");
+        this.shards = shards;
+        for (int shard = 0; shard < shards; shard++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++)
+                ring.put(hash("shard-" + shard + "#" + v), shard);
+        }
+    }
+
+    public int shardCount() {
+        return shards;
+    }
+
+    /** Shard that should hold this user. */
+    public int shardFor(String username) {
+        if (shards == 1)
+            return 0;
+        Map.Entry<Long, Integer> owner = ring.ceilingEntry(hash(username));
+        return (owner != null ? owner : ring.firstEntry()).getValue();
+    }
+
+    /** First 8 bytes of MD5: evenly spread, and stable across JVMs unlike String.hashCode. */
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++)
+                h = (h << 8) | (digest[i] & 0xFF);
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package service;
+
+import model.Money;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.SQLException;
+
+/**
+ * Turns a parsed statement into expenses. Money out becomes an expense of
+ * the same amount and currency; money in (refunds, salary, transfers) is
+ * skipped. The category is chosen by the user's rules from the payee, else
+ * the statement's own category, else the payee itself, so that rules added
+ * later can still place it. The payee is kept as the notes. Rows the user
+ * already has are skipped as {@link DeduplicatingRepository.Import} describes.
+ */
+public class StatementImporter {
+
+    /** What one statement added; {@code nanos} covers reading and writing. */
+    public record Result(long rows, long imported, long duplicates, long credits, long rejected, long nanos) {
+        public double seconds() {
+            return nanos / 1e9;
+        }
+    }
+
+    /** Rows without payee or category. */
+    static final String FALLBACK_CATEGORY = "Other";
+    /** Width of categories.name; long payees are cut to fit. */
+    private static final int MAX_CATEGORY = 100;
+    /** Width of expenses.notes. */
+    private static final int MAX_NOTES = 255;
+    private static final int MAX_REPORTED = 10;
+
+    private final DeduplicatingRepository repo;
+    private final CategorizingRepository rules;
+    private final int batchSize;
+
+    public StatementImporter(DeduplicatingRepository repo, CategorizingRepository rules, int batchSize) {
+        this.repo = repo;
+        this.rules = rules;
+        this.batchSize = batchSize;
+    }
+
+    /** Reads the whole statement and adds its new expenses; {@code name} labels rejected lines in the log. */
+    public Result importStatement(int userId, String name, Reader in, StatementParser parser)
+            throws IOException, SQLException {
+        long started = System.nanoTime();
+        DeduplicatingRepository.Import batch = repo.startImport(userId, batchSize);
+        long[] counts = new long[4]; // rows, duplicates, credits, rejected
+        parser.parse(in, new StatementParser.Sink() {
+            @Override
+            public void transaction(StatementParser.Transaction t) throws SQLException {
+                counts[0]++;
+                if (t.amount().signum() >= 0) {
+                    counts[2]++;
+                    return;
+                }
+                Money spent = t.amount().abs();
+                String category = rules.categorize(userId, t.payee(), spent);
+                if (category == null)
+                    category = t.category() != null ? t.category() : t.payee() != null ? t.payee() : FALLBACK_CATEGORY;
+                if (category.length() > MAX_CATEGORY)
+                    category = category.substring(0, MAX_CATEGORY);
+                String notes = t.payee();
+                if (notes != null && notes.length() > MAX_NOTES)
+                    notes = notes.substring(0, MAX_NOTES);
+                if (!batch.add(category, spent, null, t.date(), notes))
+                    counts[1]++;
+            }
+
+            @Override
+            public void rejected(long line, String reason) {
+                if (counts[3]++ < MAX_REPORTED)
+                    System.err.println(name + ":" + line + ": skipped, " + reason);
+            }
+        });
+        long imported = batch.finish();
+        rules.flushHits();
+        return new Result(counts[0], imported, counts[1], counts[2], counts[3], System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,50 @@
+package service;
+
+import model.Money;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Reads a bank statement one transaction at a time, handing each to a
+ * {@link Sink} as soon as it is complete, so a file of any size is read in
+ * constant memory. Amounts are signed as on the statement: money out is
+ * negative.
+ */
+public interface StatementParser {
+
+    /** {@code category} is null unless the statement carries one. */
+    record Transaction(LocalDateTime date, Money amount, String payee, String category) {
+    }
+
+    interface Sink {
+        void transaction(Transaction t) throws SQLException;
+
+        /** A record that could not be read; parsing goes on with the next one. */
+        void rejected(long line, String reason);
+    }
+
+    void parse(Reader in, Sink sink) throws IOException, SQLException;
+
+    /**
+     * The parser for {@code format} ("ofx", "qif" or "csv"), or for the file's
+     * extension when format is null. {@code currency} applies where the
+     * statement does not say; {@code profile} names the CSV column profile.
+     */
+    static StatementParser forFile(Path file, String format, String profile, String currency) {
+        String type = format;
+        if (type == null) {
+            String name = file.getFileName().toString();
+            type = name.substring(name.lastIndexOf('.') + 1);
+        }
+        return switch (type.toLowerCase()) {
+            case "ofx", "qfx" -> new OfxParser(currency);
+            case "qif" -> new QifParser(currency, Boolean.parseBoolean(DatabaseManager.getSetting("import.qif.dayFirst", "false")));
+            case "csv", "txt" -> new CsvStatementParser(CsvStatementParser.Profile.fromSettings(profile), currency);
+            default -> throw new IllegalArgumentException("Unknown statement format: " + type);
+        };
+    }
+}
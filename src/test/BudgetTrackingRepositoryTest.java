@@ -0,0 +1,124 @@
+package test;
+
+import model.Expense;
+import model.Money;
+import service.BudgetTrackingRepository;
+import service.ExpenseRepository;
+import service.ForwardingExpenseRepository;
+import service.InMemoryExpenseRepository;
+
+import static test.SimpleAssert.*;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class BudgetTrackingRepositoryTest {
+
+    private static final int ALICE = 1;
+
+    public static void main(String[] args) {
+        BudgetTrackingRepositoryTest runner = new BudgetTrackingRepositoryTest();
+        try {
+            runner.testStatusMatchesSource();
+            runner.testThresholdCrossingsAreReportedOnce();
+            runner.testOtherMonthsDoNotCount();
+            runner.testConcurrentFirstAddsAllCount();
+            System.out.println("BudgetTrackingRepositoryTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("BudgetTrackingRepositoryTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    public void testStatusMatchesSource() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        source.setBudget(ALICE, "Food", Money.parse("100.00"));
+        source.addExpense(ALICE, "Food", Money.parse("30.00"), null, LocalDateTime.now());
+        BudgetTrackingRepository tracked = new BudgetTrackingRepository(source, 60_000);
+        assertEquals(source.getBudgetStatus(ALICE), tracked.getBudgetStatus(ALICE), "Initial status should match");
+
+        tracked.addExpense(ALICE, "Food", Money.parse("12.50"), null, LocalDateTime.now());
+        Expense gone = tracked.addExpense(ALICE, "Food", Money.parse("5.00"), null, LocalDateTime.now());
+        tracked.deleteExpense(ALICE, gone.getId());
+        tracked.setBudget(ALICE, "Rent", Money.parse("500.00"));
+        assertEquals(source.getBudgetStatus(ALICE), tracked.getBudgetStatus(ALICE), "Status should follow writes");
+
+        tracked.deleteBudget(ALICE, "Rent");
+        assertEquals(1, tracked.getBudgetStatus(ALICE).size(), "Deleted budget should be gone");
+        assertEquals(Money.parse("42.50"), tracked.getBudgetStatus(ALICE).get(0).get("spent"), "Spent after writes");
+    }
+
+    public void testConcurrentFirstAddsAllCount() throws Exception {
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        base.setBudget(ALICE, "Food", Money.parse("100.00"));
+        // Slow after reading, so every first add builds from a breakdown taken before any insert
+        ExpenseRepository slow = new ForwardingExpenseRepository(base) {
+            @Override
+            public Map<String, Money> getCategoryBreakdown(int userId, int month, int year) throws SQLException {
+                Map<String, Money> breakdown = super.getCategoryBreakdown(userId, month, year);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return breakdown;
+            }
+        };
+        BudgetTrackingRepository tracked = new BudgetTrackingRepository(slow, 60_000);
+        List<Integer> crossings = Collections.synchronizedList(new ArrayList<>());
+        tracked.setThresholdListener((user, category, percent, bp) -> crossings.add(percent));
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                    tracked.addExpense(ALICE, "Food", Money.parse("10.00"), null, LocalDateTime.now());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads)
+            t.join();
+        assertEquals(Money.parse("80.00"), tracked.getBudgetStatus(ALICE).get(0).get("spent"),
+                "Every concurrent first add is counted");
+        assertEquals(List.of(80), crossings, "The 80% crossing is reported once");
+    }
+
+    public void testThresholdCrossingsAreReportedOnce() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        source.setBudget(ALICE, "Food", Money.parse("100.00"));
+        BudgetTrackingRepository tracked = new BudgetTrackingRepository(source, 60_000);
+        List<String> crossings = new ArrayList<>();
+        tracked.setThresholdListener((user, category, percent, bp) -> crossings.add(category + ":" + percent + ":" + bp));
+
+        tracked.addExpense(ALICE, "Food", Money.parse("70.00"), null, LocalDateTime.now());
+        assertTrue(crossings.isEmpty(), "70% crosses nothing");
+        tracked.addExpense(ALICE, "Food", Money.parse("15.00"), null, LocalDateTime.now());
+        assertEquals(List.of("Food:80:8500"), crossings, "85% crosses 80%");
+        tracked.addExpense(ALICE, "Food", Money.parse("5.00"), null, LocalDateTime.now());
+        assertEquals(1, crossings.size(), "Staying between thresholds reports nothing");
+        tracked.addExpense(ALICE, "Food", Money.parse("40.00"), null, LocalDateTime.now());
+        assertEquals("Food:100:13000", crossings.get(1), "Only the highest threshold crossed is reported");
+        tracked.addExpense(ALICE, "Transport", Money.parse("999.00"), null, LocalDateTime.now());
+        assertEquals(2, crossings.size(), "Categories without a budget report nothing");
+    }
+
+    public void testOtherMonthsDoNotCount() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        source.setBudget(ALICE, "Food", Money.parse("100.00"));
+        BudgetTrackingRepository tracked = new BudgetTrackingRepository(source, 60_000);
+        tracked.getBudgetStatus(ALICE);
+        tracked.addExpense(ALICE, "Food", Money.parse("80.00"), null, LocalDateTime.now().minusMonths(2));
+        assertEquals(Money.ZERO, tracked.getBudgetStatus(ALICE).get(0).get("spent"), "Earlier months are not spent");
+        assertEquals(source.getBudgetStatus(ALICE), tracked.getBudgetStatus(ALICE), "Status should match source");
+    }
+}
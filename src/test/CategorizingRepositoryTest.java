@@ -0,0 +1,233 @@
+package test;
+
+import model.CategoryRule;
+import model.Expense;
+import model.Money;
+import service.CategorizingRepository;
+import service.ForwardingExpenseRepository;
+import service.InMemoryExpenseRepository;
+import service.MappedExpenseRepository;
+
+import static test.SimpleAssert.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class CategorizingRepositoryTest {
+
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+
+    public static void main(String[] args) {
+        CategorizingRepositoryTest runner = new CategorizingRepositoryTest();
+        try {
+            runner.testKeywordsAndPriority();
+            runner.testRegexRules();
+            runner.testSamePayeeTwice();
+            runner.testCategoryListIsCached();
+            runner.testAmountRanges();
+            runner.testRegexEscapes();
+            runner.testUserPatternLimits();
+            runner.testHitsAreStored();
+            runner.testRecategorizeHistory();
+            runner.testRecategorizedMappedExpenseSurvivesReopen();
+            System.out.println("CategorizingRepositoryTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("CategorizingRepositoryTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    private static CategoryRule keyword(String pattern, String category, int priority) {
+        return new CategoryRule(0, "keyword", pattern, null, null, category, priority, 0);
+    }
+
+    private static Expense add(CategorizingRepository repo, int userId, String text, String amount) throws Exception {
+        return repo.addExpense(userId, text, Money.parse(amount), null, LocalDateTime.of(2026, 4, 2, 10, 0));
+    }
+
+    public void testKeywordsAndPriority() throws Exception {
+        CategorizingRepository repo = new CategorizingRepository(new InMemoryExpenseRepository(), 60_000);
+        repo.addCategoryRule(ALICE, keyword("uber", "Transport", 100));
+        repo.addCategoryRule(ALICE, keyword("uber eats", "Food", 10));
+        repo.addCategoryRule(ALICE, keyword("she", "Wrong", 200));
+        repo.addCategoryRule(ALICE, keyword("hers", "Gifts", 50));
+
+        assertEquals("Transport", add(repo, ALICE, "UBER trip", "8.00").getCategory(), "Keywords ignore case");
+        assertEquals("Food", add(repo, ALICE, "Uber Eats order", "15.00").getCategory(),
+                "The lower priority wins when both match");
+        assertEquals("Gifts", add(repo, ALICE, "ushers", "5.00").getCategory(),
+                "Overlapping keywords are all found in one pass");
+        assertEquals("Groceries", add(repo, ALICE, "Groceries", "30.00").getCategory(),
+                "Without a match the text is kept");
+        assertEquals("uber", add(repo, BOB, "uber", "8.00").getCategory(), "Rules are per user");
+        LocalDateTime at = LocalDateTime.of(2026, 4, 2, 10, 0);
+        assertEquals("Transport", repo.addExpense(ALICE, "Misc", Money.parse("9.00"), null, at, "Uber home")
+                .getCategory(), "The notes are tried when the category matches nothing");
+        assertEquals("Gifts", repo.addExpense(ALICE, "For hers", Money.parse("9.00"), null, at, "Uber")
+                .getCategory(), "A match on the category comes first");
+        assertEquals("Food", repo.addExpense(ALICE, "Food", Money.parse("9.00"), null, at, "Uber Eats")
+                .getCategory(), "A category from the list is the user's choice and stays");
+        assertEquals("Transport", repo.addExpense(ALICE, " ", Money.parse("9.00"), null, at, "Uber home")
+                .getCategory(), "A blank category is filled in from the notes");
+
+        repo.addCategoryRule(ALICE, keyword("groc", "Food", 1));
+        assertEquals("Food", add(repo, ALICE, "Groceries", "30.00").getCategory(), "A new rule applies at once");
+    }
+
+    public void testSamePayeeTwice() throws Exception {
+        CategorizingRepository repo = new CategorizingRepository(new InMemoryExpenseRepository(), 60_000);
+        repo.addCategoryRule(ALICE, keyword("starbucks", "Food", 10));
+        for (int i = 0; i < 2; i++) {
+            Expense e = add(repo, ALICE, "Starbucks", "4.50");
+            assertEquals("Food", e.getCategory(), "The rule applies on add " + (i + 1));
+            // As the expenses handler does: list the category that was stored
+            if (!repo.getCategories().contains(e.getCategory()))
+                repo.addCategory(e.getCategory());
+        }
+        assertFalse(repo.getCategories().contains("Starbucks"), "The payee does not become a category");
+    }
+
+    public void testCategoryListIsCached() throws Exception {
+        int[] reads = { 0 };
+        CategorizingRepository repo = new CategorizingRepository(
+                new ForwardingExpenseRepository(new InMemoryExpenseRepository()) {
+                    @Override
+                    public List<String> getCategories() throws SQLException {
+                        reads[0]++;
+                        return super.getCategories();
+                    }
+                }, 60_000);
+        repo.addCategoryRule(ALICE, keyword("starbucks", "Food", 10));
+        for (int i = 0; i < 5; i++)
+            add(repo, ALICE, "Starbucks", "4.50");
+        assertEquals(1, reads[0], "The category list is read once, not per row");
+        repo.addCategory("Starbucks");
+        assertEquals("Starbucks", add(repo, ALICE, "Starbucks", "4.50").getCategory(),
+                "A category added since is the user's choice");
+        assertEquals(2, reads[0], "Adding a category rereads the list");
+    }
+
+    public void testRegexRules() throws Exception {
+        CategorizingRepository repo = new CategorizingRepository(new InMemoryExpenseRepository(), 60_000);
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "regex", "^amzn mktp [a-z]{2}", null, null, "Shopping", 10, 0));
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "regex", "netflix|spotify", null, null, "Subscriptions", 20, 0));
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "regex", "cafe\\s*\\d+", null, null, "Food", 30, 0));
+
+        assertEquals("Shopping", add(repo, ALICE, "AMZN Mktp US", "20.00").getCategory(), "Anchored regex");
+        assertEquals("AMZN Mktp 12", add(repo, ALICE, "AMZN Mktp 12", "20.00").getCategory(),
+                "The literal alone is not enough");
+        assertEquals("Subscriptions", add(repo, ALICE, "Spotify", "9.99").getCategory(),
+                "An alternation has no single literal but still matches");
+        assertEquals("Food", add(repo, ALICE, "Cafe 42", "4.50").getCategory(), "Regex with classes");
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "regex", "\\x41\\x42C corp", null, null, "Rent", 40, 0));
+        assertEquals("Rent", add(repo, ALICE, "xyz ABC corp", "900.00").getCategory(),
+                "Hex digits of an escape are not a literal to look for");
+    }
+
+    public void testAmountRanges() throws Exception {
+        CategorizingRepository repo = new CategorizingRepository(new InMemoryExpenseRepository(), 60_000);
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "amount", null, Money.parse("1000.00"), null, "Big", 50, 0));
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "keyword", "fuel", null, Money.parse("20.00"), "Snacks", 10, 0));
+        repo.addCategoryRule(ALICE, keyword("fuel", "Transport", 20));
+
+        assertEquals("Big", add(repo, ALICE, "Laptop", "1200.00").getCategory(), "Amount rule");
+        assertEquals("Rent", add(repo, ALICE, "Rent", "1500.00").getCategory(),
+                "An amount rule does not relabel a category the user picked");
+        assertEquals("Snacks", add(repo, ALICE, "Fuel station", "4.00").getCategory(), "Keyword inside its range");
+        assertEquals("Transport", add(repo, ALICE, "Fuel station", "60.00").getCategory(),
+                "Outside the range the next rule applies");
+        Expense euros = repo.addExpense(ALICE, "Laptop", Money.parse("1200.00", "EUR"), null, LocalDateTime.now());
+        assertEquals("Laptop", euros.getCategory(), "A range only matches its own currency");
+        boolean threw = false;
+        try {
+            new CategoryRule(0, "regex", "(", null, null, "Big", 0, 0);
+        } catch (IllegalArgumentException e) {
+            threw = true;
+        }
+        assertTrue(threw, "A regex must compile");
+    }
+
+    private static boolean rejected(String matchType, String pattern) {
+        try {
+            CategoryRule.checkUserPattern(matchType, pattern);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    public void testRegexEscapes() throws Exception {
+        CategorizingRepository repo = new CategorizingRepository(new InMemoryExpenseRepository(), 60_000);
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "regex", "\\u0044\\u0045Fg", null, null, "Unicode", 10, 0));
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "regex", "\\0107\\0110Ij", null, null, "Octal", 20, 0));
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "regex", "\\cIkl", null, null, "Control", 30, 0));
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "regex", "\\x{4D}\\x4EOp", null, null, "Hex", 40, 0));
+        repo.addCategoryRule(ALICE, new CategoryRule(0, "regex", "qr\\Q.*\\E", null, null, "Quoted", 50, 0));
+
+        assertEquals("Unicode", add(repo, ALICE, "DEFg", "1.00").getCategory(), "Unicode escapes");
+        assertEquals("Octal", add(repo, ALICE, "GHIj", "1.00").getCategory(), "Octal escapes");
+        assertEquals("Control", add(repo, ALICE, "\tkl", "1.00").getCategory(), "Control escape");
+        assertEquals("Hex", add(repo, ALICE, "MNOp", "1.00").getCategory(), "Braced and plain hex escapes");
+        assertEquals("Quoted", add(repo, ALICE, "qr.*", "1.00").getCategory(), "Quoted text");
+        assertEquals("qrst", add(repo, ALICE, "qrst", "1.00").getCategory(), "Quoted text is matched literally");
+    }
+
+    public void testUserPatternLimits() {
+        assertTrue(rejected("regex", "(a+)+$"), "Nested repetition");
+        assertTrue(rejected("regex", "((\\w+\\s?))*x"), "Nested repetition a level down");
+        assertTrue(rejected("regex", "(ab)\\1"), "Back-reference");
+        assertTrue(rejected("keyword", "x".repeat(CategoryRule.MAX_PATTERN + 1)), "Too long");
+        assertFalse(rejected("regex", "^amzn mktp [a-z]{2}"), "A bounded class repeat");
+        assertFalse(rejected("regex", "(uber|lyft)+ trip"), "A repeated group with nothing repeating inside");
+        assertFalse(rejected("regex", "cafe\\s*\\d+ [(+*)]"), "Quantifier characters inside a class");
+    }
+
+    public void testHitsAreStored() throws Exception {
+        CategorizingRepository repo = new CategorizingRepository(new InMemoryExpenseRepository(), 60_000);
+        CategoryRule coffee = repo.addCategoryRule(ALICE, keyword("coffee", "Food", 10));
+        for (int i = 0; i < 3; i++)
+            add(repo, ALICE, "Coffee", "3.00");
+        List<CategoryRule> rules = repo.getCategoryRules(ALICE);
+        assertEquals(1, rules.size(), "One rule");
+        assertEquals(3L, rules.get(0).getHits(), "Hits are flushed before listing");
+        add(repo, ALICE, "coffee beans", "12.00");
+        repo.flushHits();
+        assertEquals(4L, repo.getCategoryRules(ALICE).get(0).getHits(), "And by the periodic flush");
+        assertTrue(repo.deleteCategoryRule(ALICE, coffee.getId()), "Deleted");
+        assertEquals("Coffee", add(repo, ALICE, "Coffee", "3.00").getCategory(), "A deleted rule stops applying");
+    }
+
+    public void testRecategorizeHistory() throws Exception {
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        base.addExpense(ALICE, "Netflix", Money.parse("9.99"), null, LocalDateTime.of(2026, 1, 5, 9, 0));
+        base.addExpense(ALICE, "Rent", Money.parse("900.00"), null, LocalDateTime.of(2026, 1, 1, 9, 0));
+        CategorizingRepository repo = new CategorizingRepository(base, 60_000);
+        repo.addCategoryRule(ALICE, keyword("netflix", "Subscriptions", 10));
+        repo.addCategoryRule(ALICE, keyword("rent", "Rent", 20));
+
+        assertEquals(1, repo.recategorizeHistory(ALICE), "Only the expense whose category changes moves");
+        List<Expense> all = base.searchExpenses(ALICE, null, null, null, null, null, null);
+        assertTrue(all.stream().anyMatch(e -> e.getCategory().equals("Subscriptions")), "Moved");
+        assertEquals(0, repo.recategorizeHistory(ALICE), "Running again changes nothing");
+    }
+
+    public void testRecategorizedMappedExpenseSurvivesReopen() throws Exception {
+        Path dir = Files.createTempDirectory("mapped");
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        MappedExpenseRepository mapped = new MappedExpenseRepository(base, dir);
+        mapped.addExpense(ALICE, "Spotify", Money.parse("9.99"), null, LocalDateTime.of(2026, 2, 3, 9, 0));
+        mapped.addExpense(ALICE, "Food", Money.parse("5.00"), null, LocalDateTime.of(2026, 2, 3, 9, 0));
+        CategorizingRepository repo = new CategorizingRepository(mapped, 60_000);
+        repo.addCategoryRule(ALICE, keyword("spotify", "Subscriptions", 10));
+        assertEquals(1, repo.recategorizeHistory(ALICE), "One moved");
+
+        List<Expense> reopened = new MappedExpenseRepository(base, dir)
+                .searchExpenses(ALICE, null, null, null, null, null, null);
+        assertEquals(2, reopened.size(), "The update replaces the record rather than adding one");
+        assertTrue(reopened.stream().anyMatch(e -> e.getId() == 1 && e.getCategory().equals("Subscriptions")),
+                "The new category is read back under the same id");
+    }
+}
@@ -0,0 +1,88 @@
+package test;
+
+import model.Expense;
+import model.Money;
+import service.ColumnarAnalyticsRepository;
+import service.InMemoryExpenseRepository;
+
+import static test.SimpleAssert.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+public class ColumnarAnalyticsRepositoryTest {
+
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+    private static final int CAROL = 3;
+    private static final int DAVE = 4;
+
+    private static final String[] CATEGORIES = { "Food", "Transport", "Rent", "Health" };
+
+    public static void main(String[] args) {
+        ColumnarAnalyticsRepositoryTest runner = new ColumnarAnalyticsRepositoryTest();
+        try {
+            runner.testAggregatesMatchSource();
+            runner.testWritesAfterLoadAreVisible();
+            runner.testIdleUsersAreEvicted();
+            System.out.println("ColumnarAnalyticsRepositoryTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("ColumnarAnalyticsRepositoryTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    private static InMemoryExpenseRepository seeded() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        Random rnd = new Random(7);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 500; i++) {
+            Money amount = Money.ofMinor(100 + rnd.nextInt(500_000));
+            source.addExpense(ALICE, CATEGORIES[rnd.nextInt(CATEGORIES.length)], amount, null,
+                    now.minusDays(rnd.nextInt(400)));
+        }
+        return source;
+    }
+
+    public void testAggregatesMatchSource() throws Exception {
+        InMemoryExpenseRepository source = seeded();
+        ColumnarAnalyticsRepository columnar = new ColumnarAnalyticsRepository(source, 60_000);
+        LocalDate today = LocalDate.now();
+        for (int back = 0; back < 12; back++) {
+            LocalDate d = today.minusMonths(back);
+            int m = d.getMonthValue(), y = d.getYear();
+            assertEquals(source.getTotalExpensesForMonth(ALICE, m, y), columnar.getTotalExpensesForMonth(ALICE, m, y),
+                    "Monthly total should match for " + d);
+            assertEquals(source.getExpenseCount(ALICE, m, y), columnar.getExpenseCount(ALICE, m, y),
+                    "Monthly count should match for " + d);
+            assertEquals(source.getCategoryBreakdown(ALICE, m, y), columnar.getCategoryBreakdown(ALICE, m, y),
+                    "Breakdown should match for " + d);
+            assertEquals(source.getDailySpending(ALICE, m, y), columnar.getDailySpending(ALICE, m, y),
+                    "Daily spending should match for " + d);
+        }
+        assertEquals(source.getMonthlyTrend(ALICE, 6), columnar.getMonthlyTrend(ALICE, 6), "Trend should match");
+        assertEquals(source.getPredictions(ALICE, 3), columnar.getPredictions(ALICE, 3),
+                "Predictions should match");
+    }
+
+    public void testWritesAfterLoadAreVisible() throws Exception {
+        ColumnarAnalyticsRepository columnar = new ColumnarAnalyticsRepository(new InMemoryExpenseRepository(), 60_000);
+        LocalDate today = LocalDate.now();
+        int m = today.getMonthValue(), y = today.getYear();
+        assertEquals(0, columnar.getExpenseCount(BOB, m, y), "New user has no expenses");
+        Expense e = columnar.addExpense(BOB, "Food", Money.parse("42.50"), null, LocalDateTime.now());
+        assertEquals(Money.parse("42.50"), columnar.getTotalExpensesForMonth(BOB, m, y),
+                "Added expense should be counted without a reload");
+        columnar.deleteExpense(BOB, e.getId());
+        assertEquals(Money.ZERO, columnar.getTotalExpensesForMonth(BOB, m, y),
+                "Deleted expense should no longer be counted");
+    }
+
+    public void testIdleUsersAreEvicted() throws Exception {
+        ColumnarAnalyticsRepository columnar = new ColumnarAnalyticsRepository(new InMemoryExpenseRepository(), 20);
+        columnar.getExpenseCount(CAROL, 1, 2024);
+        Thread.sleep(50);
+        columnar.getExpenseCount(DAVE, 1, 2024);
+        assertEquals(1, columnar.residentUsers(), "Idle user should have been dropped");
+    }
+}
@@ -0,0 +1,73 @@
+package test;
+
+import model.Expense;
+import model.Money;
+import service.DeduplicatingRepository;
+import service.InMemoryExpenseRepository;
+
+import static test.SimpleAssert.*;
+import java.time.LocalDateTime;
+
+public class DeduplicatingRepositoryTest {
+
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+
+    public static void main(String[] args) {
+        DeduplicatingRepositoryTest runner = new DeduplicatingRepositoryTest();
+        try {
+            runner.testExistingRowsAreDuplicates();
+            runner.testAddsAreSeenAfterTheFilterIsBuilt();
+            runner.testNewRowsSkipTheDatabase();
+            System.out.println("DeduplicatingRepositoryTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("DeduplicatingRepositoryTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    public void testExistingRowsAreDuplicates() throws Exception {
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        LocalDateTime at = LocalDateTime.of(2026, 3, 14, 9, 30);
+        base.addExpense(ALICE, "Food", Money.parse("12.50"), null, at);
+        DeduplicatingRepository repo = new DeduplicatingRepository(base, 60_000);
+
+        assertTrue(repo.isDuplicate(ALICE, "food", Money.parse("12.50"), at.plusHours(8)),
+                "Same day, category and amount is a duplicate, whatever the time or case");
+        assertTrue(!repo.isDuplicate(ALICE, "Food", Money.parse("12.50", "EUR"), at), "Currency counts");
+        assertTrue(!repo.isDuplicate(ALICE, "Food", Money.parse("12.51"), at), "Amount counts");
+        assertTrue(!repo.isDuplicate(ALICE, "Food", Money.parse("12.50"), at.plusDays(1)), "Day counts");
+        assertTrue(!repo.isDuplicate(BOB, "Food", Money.parse("12.50"), at), "Other users' rows do not count");
+        assertEquals(null, repo.addExpenseIfNew(ALICE, "Food", Money.parse("12.50"), null, at),
+                "A duplicate is not added");
+        assertEquals(1, base.searchExpenses(ALICE, null, null, null, null, null, null).size(), "Still one row");
+    }
+
+    public void testAddsAreSeenAfterTheFilterIsBuilt() throws Exception {
+        DeduplicatingRepository repo = new DeduplicatingRepository(new InMemoryExpenseRepository(), 60_000);
+        LocalDateTime at = LocalDateTime.of(2026, 5, 1, 12, 0);
+        assertTrue(!repo.isDuplicate(ALICE, "Rent", Money.parse("900.00"), at), "Nothing yet");
+        Expense added = repo.addExpense(ALICE, "Rent", Money.parse("900.00"), null, at);
+        assertTrue(repo.isDuplicate(ALICE, "Rent", Money.parse("900.00"), at), "An add updates the filter");
+        repo.deleteExpense(ALICE, added.getId());
+        assertTrue(!repo.isDuplicate(ALICE, "Rent", Money.parse("900.00"), at),
+                "A deleted row is caught by the database check");
+        assertTrue(repo.addExpenseIfNew(ALICE, "Rent", Money.parse("900.00"), null, at) != null,
+                "So it can be imported again");
+    }
+
+    public void testNewRowsSkipTheDatabase() throws Exception {
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 10, 0);
+        for (int i = 0; i < 2000; i++)
+            base.addExpense(ALICE, "Food", Money.ofMinor(100 + i), null, start.plusDays(i % 365));
+        DeduplicatingRepository repo = new DeduplicatingRepository(base, 60_000);
+        for (int i = 0; i < 2000; i++)
+            assertTrue(!repo.isDuplicate(ALICE, "Transport", Money.ofMinor(100 + i), start.plusDays(i % 365)),
+                    "Different category");
+        assertTrue(repo.queryCount() < 100, "Most new rows are ruled out by the filter alone: " + repo.queryCount());
+        for (int i = 0; i < 2000; i += 97)
+            assertTrue(repo.isDuplicate(ALICE, "Food", Money.ofMinor(100 + i), start.plusDays(i % 365)),
+                    "Every stored row is found");
+    }
+}
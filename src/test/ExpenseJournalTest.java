@@ -0,0 +1,178 @@
+package test;
+
+import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+import service.ExpenseJournal;
+import service.InMemoryExpenseRepository;
+import service.JournalingRepository;
+
+import static test.SimpleAssert.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+public class ExpenseJournalTest {
+
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+
+    public static void main(String[] args) {
+        ExpenseJournalTest runner = new ExpenseJournalTest();
+        try {
+            runner.testReplayMatchesSource();
+            runner.testSnapshotReplacesSegments();
+            runner.testTornTailIsCutOff();
+            runner.testConcurrentAppendsShareSyncs();
+            System.out.println("ExpenseJournalTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("ExpenseJournalTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    /** Current state, as "user:id" to a description of the row. */
+    static class State implements ExpenseJournal.Listener {
+        final Map<String, String> rows = new TreeMap<>();
+
+        @Override
+        public void expenseAdded(int userId, Expense e) {
+            rows.put("e" + userId + ":" + e.getId(),
+                    e.getCategory() + " " + e.getAmount() + " " + e.getDate() + " " + e.getNotes());
+        }
+
+        @Override
+        public void expenseDeleted(int userId, int id) {
+            rows.remove("e" + userId + ":" + id);
+        }
+
+        @Override
+        public void budgetSet(int userId, String category, Money limit) {
+            rows.put("b" + userId + ":" + category, limit.toString());
+        }
+
+        @Override
+        public void budgetDeleted(int userId, String category) {
+            rows.remove("b" + userId + ":" + category);
+        }
+
+        @Override
+        public void recurringSaved(int userId, RecurringExpense r) {
+            rows.put("r" + userId + ":" + r.getId(), r.getAmount() + " " + r.getLastAppliedDate());
+        }
+
+        @Override
+        public void recurringDeleted(int userId, int id) {
+            rows.remove("r" + userId + ":" + id);
+        }
+    }
+
+    private static Map<String, String> replay(Path dir) throws Exception {
+        State state = new State();
+        ExpenseJournal.replay(dir, state);
+        return state.rows;
+    }
+
+    private static Map<String, String> stateOf(InMemoryExpenseRepository source) throws Exception {
+        State state = new State();
+        source.replayInto(state);
+        return state.rows;
+    }
+
+    private static void write(JournalingRepository repo) throws Exception {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        repo.addExpense(ALICE, "Food", Money.parse("12.50"), null, now, "Bakery");
+        Expense gone = repo.addExpense(ALICE, "Rent", Money.parse("900.00"), null, now);
+        repo.addExpense(BOB, "Travel", Money.parse("40.00", "EUR"), "r.png", now);
+        repo.deleteExpense(ALICE, gone.getId());
+        repo.setBudget(ALICE, "Food", Money.parse("100.00"));
+        repo.setBudget(BOB, "Rent", Money.parse("50.00"));
+        repo.deleteBudget(BOB, "Rent");
+        repo.addRecurringExpense(ALICE, "Gym", Money.parse("30.00"), "Health", "weekly", LocalDate.now().minusDays(7));
+        repo.applyRecurringExpenses(ALICE);
+    }
+
+    public void testReplayMatchesSource() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        // Tiny segments, so that replay has to cross several
+        try (ExpenseJournal journal = ExpenseJournal.open(dir, 64)) {
+            write(new JournalingRepository(source, journal));
+            assertEquals(11L, journal.appendCount(), "Writes, applied occurrences and the recurring update");
+        }
+        assertEquals(stateOf(source), replay(dir), "Replay should rebuild what the source holds");
+    }
+
+    public void testSnapshotReplacesSegments() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        try (ExpenseJournal journal = ExpenseJournal.open(dir, 1 << 20)) {
+            JournalingRepository repo = new JournalingRepository(source, journal);
+            write(repo);
+            long seq = journal.snapshot(source);
+            assertEquals(journal.lastSeq(), seq, "The snapshot covers everything written so far");
+            repo.addExpense(BOB, "Food", Money.parse("7.00"), null, LocalDateTime.now().withNano(0));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> names = files.map(p -> p.getFileName().toString()).sorted().toList();
+            assertEquals(2, names.size(), "One snapshot and the segment after it should be left: " + names);
+        }
+        assertEquals(stateOf(source), replay(dir), "Snapshot plus later records should match the source");
+    }
+
+    public void testTornTailIsCutOff() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        Path segment;
+        try (ExpenseJournal journal = ExpenseJournal.open(dir, 1 << 20)) {
+            new JournalingRepository(source, journal).setBudget(ALICE, "Food", Money.parse("10.00"));
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        // A crash halfway through a record
+        Files.write(segment, new byte[] { 0, 0, 0, 40, 0, 0, 0 }, StandardOpenOption.APPEND);
+        assertEquals(1, replay(dir).size(), "Replay should stop before the torn record");
+
+        try (ExpenseJournal journal = ExpenseJournal.open(dir, 1 << 20)) {
+            assertEquals(1L, journal.lastSeq(), "The torn record is not counted");
+            new JournalingRepository(source, journal).setBudget(ALICE, "Rent", Money.parse("20.00"));
+        }
+        assertEquals(stateOf(source), replay(dir), "Records after the cut should be readable");
+    }
+
+    public void testConcurrentAppendsShareSyncs() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        try (ExpenseJournal journal = ExpenseJournal.open(dir, 1 << 20)) {
+            JournalingRepository repo = new JournalingRepository(source, journal);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int userId = t + 1;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        try {
+                            repo.addExpense(userId, "Food", Money.parse("1.00"), null, LocalDateTime.now());
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread t : threads)
+                t.join();
+            assertEquals(800L, journal.appendCount(), "Every append should be acknowledged");
+            assertTrue(journal.syncCount() <= journal.appendCount(), "No more syncs than appends");
+        }
+        assertEquals(800, replay(dir).size(), "Every acknowledged append should be replayed");
+    }
+}
@@ -0,0 +1,122 @@
+package test;
+
+import model.Expense;
+import model.Money;
+import service.ChangeLog;
+import service.IdempotencyKeys;
+import service.InMemoryExpenseRepository;
+
+import static test.SimpleAssert.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public class InMemoryExpenseRepositoryTest {
+
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+
+    public static void main(String[] args) {
+        InMemoryExpenseRepositoryTest runner = new InMemoryExpenseRepositoryTest();
+        try {
+            runner.testDuplicateUserRejected();
+            runner.testExpensesAreScopedToUser();
+            runner.testMonthlyAggregates();
+            runner.testRecurringAppliedOnce();
+            runner.testChangesSinceVersion();
+            runner.testIdempotencyKeys();
+            System.out.println("InMemoryExpenseRepositoryTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("InMemoryExpenseRepositoryTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    public void testDuplicateUserRejected() throws Exception {
+        InMemoryExpenseRepository repo = new InMemoryExpenseRepository();
+        int id = repo.createUser("alice", "hash", "salt");
+        assertTrue(id > 0, "First signup should succeed");
+        assertEquals(0, repo.createUser("alice", "other", "salt"), "Duplicate username should be rejected");
+        assertEquals("hash", repo.findUser("alice").getPasswordHash(), "Original user should be kept");
+        assertEquals("alice", repo.findUserById(id).getUsername(), "Id lookup should find the same user");
+    }
+
+    public void testExpensesAreScopedToUser() throws Exception {
+        InMemoryExpenseRepository repo = new InMemoryExpenseRepository();
+        Expense mine = repo.addExpense(ALICE, "Food", Money.parse("120.00"), null, LocalDateTime.now());
+        repo.addExpense(BOB, "Food", Money.parse("80.00"), null, LocalDateTime.now());
+        assertEquals(1, repo.searchExpenses(ALICE, null, null, null, null, null, null).size(),
+                "Search should only return the caller's expenses");
+        assertEquals(null, repo.deleteExpense(BOB, mine.getId()), "Other users cannot delete the expense");
+        assertNotNull(repo.deleteExpense(ALICE, mine.getId()), "Owner can delete the expense");
+    }
+
+    public void testMonthlyAggregates() throws Exception {
+        InMemoryExpenseRepository repo = new InMemoryExpenseRepository();
+        LocalDateTime day = LocalDateTime.of(2024, 3, 10, 12, 0);
+        repo.addExpense(ALICE, "Food", Money.parse("100.00"), null, day);
+        repo.addExpense(ALICE, "Rent", Money.parse("500.00"), null, day);
+        repo.addExpense(ALICE, "Food", Money.parse("50.00"), null, day.plusDays(1));
+        repo.addExpense(ALICE, "Food", Money.parse("999.00"), null, day.plusMonths(1));
+        assertEquals(Money.parse("650.00"), repo.getTotalExpensesForMonth(ALICE, 3, 2024),
+                "Total should only include March");
+        assertEquals("Rent", repo.getTopCategoryForMonth(ALICE, 3, 2024), "Rent is the largest category");
+        Map<Integer, Money> daily = repo.getDailySpending(ALICE, 3, 2024);
+        assertEquals(Money.parse("600.00"), daily.get(10), "Same-day expenses should be summed");
+    }
+
+    public void testRecurringAppliedOnce() throws Exception {
+        InMemoryExpenseRepository repo = new InMemoryExpenseRepository();
+        repo.addRecurringExpense(ALICE, "Gym", Money.parse("30.00"), "Health", "weekly",
+                LocalDate.now().minusDays(14));
+        int first = repo.applyRecurringExpenses(ALICE);
+        assertEquals(3, first, "Start date and two weekly repeats are due");
+        assertEquals(0, repo.applyRecurringExpenses(ALICE), "Applying again should add nothing");
+        List<Expense> all = repo.searchExpenses(ALICE, "Health", null, null, null, null, null);
+        assertEquals(3, all.size(), "Each occurrence should be booked as an expense");
+    }
+
+    public void testChangesSinceVersion() throws Exception {
+        InMemoryExpenseRepository repo = new InMemoryExpenseRepository();
+        Expense kept = repo.addExpense(ALICE, "Food", Money.parse("10.00"), null, LocalDateTime.now());
+        repo.addExpense(BOB, "Food", Money.parse("20.00"), null, LocalDateTime.now());
+        List<ChangeLog.Change> all = repo.getChanges(ALICE, 0, 100);
+        assertEquals(1, all.size(), "Only the caller's changes are listed");
+        long version = all.get(0).version();
+
+        Expense gone = repo.addExpense(ALICE, "Rent", Money.parse("300.00"), null, LocalDateTime.now());
+        repo.deleteExpense(ALICE, gone.getId());
+        repo.setBudget(ALICE, "Food", Money.parse("100.00"));
+        List<ChangeLog.Change> since = repo.getChanges(ALICE, version, 100);
+        assertEquals(3, since.size(), "Insert, delete and budget follow the known version");
+        assertEquals(ChangeLog.DELETE, since.get(1).op(), "The delete is logged in order");
+        assertEquals(String.valueOf(kept.getId()), all.get(0).key(), "Expense changes are keyed by id");
+        assertEquals(2, repo.getChanges(ALICE, version, 2).size(), "The limit caps a page");
+        assertEquals(ChangeLog.RESET, repo.getChanges(ALICE, 1_000, 100).get(0).entity(),
+                "A version from the future asks the client to reload");
+    }
+
+    public void testIdempotencyKeys() throws Exception {
+        InMemoryExpenseRepository repo = new InMemoryExpenseRepository();
+        IdempotencyKeys keys = new IdempotencyKeys(repo, 2, Duration.ofHours(1));
+        assertEquals(null, keys.claim(ALICE, "k1"), "A new key is handed to the caller");
+        assertEquals(0, keys.claim(ALICE, "k1"), "A retry while the first is running is told to wait");
+        assertEquals(null, keys.claim(BOB, "k1"), "Keys are per user");
+        keys.complete(ALICE, "k1", 42);
+        assertEquals(42, keys.claim(ALICE, "k1"), "A retry gets the first expense");
+        assertEquals(42, repo.claimIdempotencyKey(ALICE, "k1"), "The key is stored, not only cached");
+
+        assertEquals(null, keys.claim(ALICE, "k2"), "Second key");
+        keys.release(ALICE, "k2");
+        assertEquals(null, keys.claim(ALICE, "k2"), "A released key can be claimed again");
+        keys.release(ALICE, "k1");
+        assertEquals(42, repo.claimIdempotencyKey(ALICE, "k1"), "A finished key is not released");
+
+        assertEquals(3, repo.purgeIdempotencyKeys(LocalDateTime.now().plusSeconds(1)), "Expired keys are purged");
+        assertEquals(null, repo.claimIdempotencyKey(ALICE, "k1"), "A purged key is new again");
+        assertTrue(!IdempotencyKeys.isValid("has space") && !IdempotencyKeys.isValid("")
+                && IdempotencyKeys.isValid("8c1d-4e"), "Keys are printable ASCII");
+    }
+}
@@ -0,0 +1,160 @@
+package test;
+
+import model.Expense;
+import model.Money;
+import service.ExpenseRepository;
+import service.InMemoryExpenseRepository;
+import service.MappedExpenseRepository;
+
+import static test.SimpleAssert.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class MappedExpenseRepositoryTest {
+
+    private static final int ALICE = 1;
+
+    public static void main(String[] args) {
+        MappedExpenseRepositoryTest runner = new MappedExpenseRepositoryTest();
+        try {
+            runner.testMatchesInMemory();
+            runner.testReopenDropsTornRecord();
+            runner.testCompactionKeepsIds();
+            runner.testStartupKeepsNewestSealedGeneration();
+            runner.testExistingExpensesAreImported();
+            System.out.println("MappedExpenseRepositoryTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("MappedExpenseRepositoryTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    /** Shared by every fill, so that two repositories filled a second apart still match. */
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    private static void fill(ExpenseRepository repo) throws Exception {
+        LocalDateTime now = NOW;
+        repo.addExpense(ALICE, "Food", Money.parse("120.00"), null, now, "Corner shop");
+        repo.addExpense(ALICE, "Rent", Money.parse("900.00"), "receipts/r.png", now.minusDays(1));
+        Expense gone = repo.addExpense(ALICE, "Food", Money.parse("15.00"), null, now);
+        repo.addExpense(ALICE, "Travel", Money.parse("40.00", "EUR"), null, now.minusMonths(1), "Train to Lyon");
+        repo.addExpense(ALICE, "Food", Money.parse("60.00"), null, now.minusMonths(2));
+        repo.addExpense(ALICE, "Food", Money.parse("5.00"), null, now.minusYears(2));
+        repo.deleteExpense(ALICE, gone.getId());
+    }
+
+    private static String describe(List<Expense> expenses) {
+        StringBuilder sb = new StringBuilder();
+        for (Expense e : expenses)
+            sb.append(e.getId()).append(' ').append(e.getCategory()).append(' ').append(e.getAmount()).append(' ')
+                    .append(e.getDate()).append(' ').append(e.getReceiptPath()).append(' ').append(e.getNotes())
+                    .append('\n');
+        return sb.toString();
+    }
+
+    public void testMatchesInMemory() throws Exception {
+        InMemoryExpenseRepository reference = new InMemoryExpenseRepository();
+        MappedExpenseRepository mapped = new MappedExpenseRepository(new InMemoryExpenseRepository(),
+                Files.createTempDirectory("mapped"));
+        fill(reference);
+        fill(mapped);
+        LocalDate today = LocalDate.now();
+        int m = today.getMonthValue();
+        int y = today.getYear();
+        assertEquals(describe(reference.searchExpenses(ALICE, null, null, null, null, null, null)),
+                describe(mapped.searchExpenses(ALICE, null, null, null, null, null, null)), "All expenses");
+        assertEquals(describe(reference.searchExpenses(ALICE, "food", "oo", Money.parse("10"), null,
+                today.minusMonths(3), today)),
+                describe(mapped.searchExpenses(ALICE, "food", "oo", Money.parse("10"), null, today.minusMonths(3),
+                        today)), "Filtered search");
+        assertEquals(describe(reference.searchExpenses(ALICE, null, "LYON", null, null, null, null)),
+                describe(mapped.searchExpenses(ALICE, null, "LYON", null, null, null, null)), "Keyword in the notes");
+        assertEquals(describe(reference.getRecentExpenses(ALICE, 3)), describe(mapped.getRecentExpenses(ALICE, 3)),
+                "Newest three");
+        assertEquals(reference.getTotalExpensesForMonth(ALICE, m, y), mapped.getTotalExpensesForMonth(ALICE, m, y),
+                "Month total");
+        assertEquals(reference.getExpenseCount(ALICE, m, y), mapped.getExpenseCount(ALICE, m, y), "Month count");
+        assertEquals(reference.getTopCategoryForMonth(ALICE, m, y), mapped.getTopCategoryForMonth(ALICE, m, y),
+                "Top category");
+        assertEquals(reference.getCategoryBreakdown(ALICE, m, y), mapped.getCategoryBreakdown(ALICE, m, y),
+                "Breakdown");
+        assertEquals(reference.getDailySpending(ALICE, m, y), mapped.getDailySpending(ALICE, m, y), "Daily");
+        assertEquals(reference.getMonthlyTrend(ALICE, 6), mapped.getMonthlyTrend(ALICE, 6), "Trend");
+        assertEquals(reference.getPredictions(ALICE, 3), mapped.getPredictions(ALICE, 3), "Predictions");
+        assertEquals(reference.getChanges(ALICE, 0, 100).size(), mapped.getChanges(ALICE, 0, 100).size(),
+                "Writes reach the change log");
+    }
+
+    public void testReopenDropsTornRecord() throws Exception {
+        Path dir = Files.createTempDirectory("mapped");
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        fill(new MappedExpenseRepository(base, dir));
+        String before = describe(new MappedExpenseRepository(base, dir).searchExpenses(ALICE, null, null, null,
+                null, null, null));
+        // A crash halfway through the seventh record: id written, CRC not
+        try (FileChannel ch = FileChannel.open(dir.resolve("user-1.1.seg"), StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.allocate(8).putInt(7).putInt(0).flip(), 16 + 6 * 48);
+        }
+        MappedExpenseRepository reopened = new MappedExpenseRepository(base, dir);
+        assertEquals(before, describe(reopened.searchExpenses(ALICE, null, null, null, null, null, null)),
+                "Reopening should keep every committed record and drop the torn one");
+        Expense next = reopened.addExpense(ALICE, "Food", Money.parse("1.00"), null, LocalDateTime.now());
+        assertEquals(7, next.getId(), "The next id follows the committed ones");
+        assertEquals(6, new MappedExpenseRepository(base, dir)
+                .searchExpenses(ALICE, null, null, null, null, null, null).size(), "The slot is reused");
+    }
+
+    public void testCompactionKeepsIds() throws Exception {
+        Path dir = Files.createTempDirectory("mapped");
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        MappedExpenseRepository mapped = new MappedExpenseRepository(base, dir);
+        for (int i = 0; i < 8; i++)
+            mapped.addExpense(ALICE, "Food", Money.parse("10.00"), null, LocalDateTime.now());
+        for (int id = 1; id <= 8; id += 2)
+            mapped.deleteExpense(ALICE, id);
+        long sizeBefore = Files.size(dir.resolve("user-1.1.seg"));
+        assertEquals(1, mapped.compact(), "Half deleted is worth compacting");
+        assertEquals(0, mapped.compact(), "Nothing left to compact");
+        List<Expense> left = mapped.searchExpenses(ALICE, null, null, null, null, null, null);
+        assertEquals(4, left.size(), "Live records survive");
+        assertTrue(left.stream().allMatch(e -> e.getId() % 2 == 0), "Ids are kept");
+        assertEquals(9, mapped.addExpense(ALICE, "Food", Money.parse("1.00"), null, LocalDateTime.now()).getId(),
+                "Ids of deleted records are not reused");
+        assertEquals(5, new MappedExpenseRepository(base, dir)
+                .searchExpenses(ALICE, null, null, null, null, null, null).size(), "Compacted file reopens");
+        assertTrue(Files.size(dir.resolve("user-1.2.seg")) <= sizeBefore, "Compaction does not grow the file");
+        assertFalse(Files.exists(dir.resolve("user-1.1.seg")), "The old generation is gone");
+    }
+
+    public void testStartupKeepsNewestSealedGeneration() throws Exception {
+        Path dir = Files.createTempDirectory("mapped");
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        fill(new MappedExpenseRepository(base, dir));
+        String before = describe(new MappedExpenseRepository(base, dir).searchExpenses(ALICE, null, null, null,
+                null, null, null));
+        // A file from before generations, and a compaction that crashed before sealing its output
+        Files.copy(dir.resolve("user-1.1.seg"), dir.resolve("user-1.seg"));
+        Files.write(dir.resolve("user-1.2.seg"), new byte[16 + 48]);
+        MappedExpenseRepository reopened = new MappedExpenseRepository(base, dir);
+        assertEquals(before, describe(reopened.searchExpenses(ALICE, null, null, null, null, null, null)),
+                "The unsealed generation is ignored");
+        assertTrue(Files.exists(dir.resolve("user-1.1.seg")), "The newest sealed generation stays");
+        assertFalse(Files.exists(dir.resolve("user-1.seg")), "The older generation is deleted");
+        assertFalse(Files.exists(dir.resolve("user-1.2.seg")), "The unsealed generation is deleted");
+    }
+
+    public void testExistingExpensesAreImported() throws Exception {
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        fill(base);
+        String expected = describe(base.searchExpenses(ALICE, null, null, null, null, null, null));
+        MappedExpenseRepository mapped = new MappedExpenseRepository(base, Files.createTempDirectory("mapped"));
+        assertEquals(expected, describe(mapped.searchExpenses(ALICE, null, null, null, null, null, null)),
+                "The delegate's expenses are copied, ids and receipts included");
+    }
+}
@@ -0,0 +1,79 @@
+package test;
+
+import model.Money;
+
+import static test.SimpleAssert.*;
+import java.math.BigDecimal;
+
+public class MoneyTest {
+
+    public static void main(String[] args) {
+        MoneyTest runner = new MoneyTest();
+        try {
+            runner.testParse();
+            runner.testParseRejectsGarbage();
+            runner.testFormatting();
+            runner.testArithmetic();
+            runner.testBigDecimalRoundTrip();
+            System.out.println("MoneyTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("MoneyTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    public void testParse() {
+        assertEquals(124950L, Money.parse("1249.5").getMinorUnits(), "One decimal place should scale");
+        assertEquals(-300L, Money.parse("-3").getMinorUnits(), "Integers and signs should parse");
+        assertEquals(7L, Money.parse("+0.07").getMinorUnits(), "Leading plus should parse");
+        assertEquals(1235L, Money.parse("12.345").getMinorUnits(), "Third decimal should round half up");
+        assertEquals(1234L, Money.parse(" 12.3449 ").getMinorUnits(), "Only the third decimal decides rounding");
+        assertEquals(50L, Money.parse(".5").getMinorUnits(), "Missing integer part is allowed");
+        assertEquals(Long.MAX_VALUE, Money.parse("92233720368547758.07").getMinorUnits(), "The largest amount");
+    }
+
+    public void testParseRejectsGarbage() {
+        // The last three overflow a long of minor units while reading digits, scaling and rounding
+        for (String bad : new String[] { "", "-", ".", "12a", "1.2.3", "1e5", "99999999999999999999",
+                "922337203685477581", "92233720368547758.075" }) {
+            boolean threw = false;
+            try {
+                Money.parse(bad);
+            } catch (NumberFormatException e) {
+                threw = true;
+            }
+            assertTrue(threw, "Should reject '" + bad + "'");
+        }
+    }
+
+    public void testFormatting() {
+        assertEquals("0.00", Money.ZERO.toPlainString(), "Zero keeps two decimals");
+        assertEquals("12.05", Money.ofMinor(1205).toPlainString(), "Single-digit cents are padded");
+        assertEquals("-0.50", Money.ofMinor(-50).toPlainString(), "Negative fractions keep their sign");
+        assertEquals("1249.50 INR", Money.parse("1249.5").toString(), "toString appends the currency");
+    }
+
+    public void testArithmetic() {
+        Money a = Money.parse("100.50");
+        Money b = Money.parse("200.25");
+        assertEquals(Money.parse("300.75"), a.plus(b), "Sums should be exact");
+        assertEquals(Money.parse("-99.75"), a.minus(b), "Differences should be exact");
+        assertEquals(Money.parse("33.50"), a.dividedBy(3), "Division should round half up");
+        assertEquals(8000L, Money.parse("80").basisPointsOf(Money.parse("100")), "80 of 100 is 8000 bp");
+        assertEquals(0L, a.basisPointsOf(Money.ZERO), "Share of zero is zero");
+        assertTrue(a.compareTo(b) < 0, "Comparison should follow amounts");
+        boolean threw = false;
+        try {
+            a.plus(Money.parse("1", "USD"));
+        } catch (IllegalArgumentException e) {
+            threw = true;
+        }
+        assertTrue(threw, "Mixing currencies should fail");
+    }
+
+    public void testBigDecimalRoundTrip() {
+        BigDecimal value = new BigDecimal("4821.37");
+        assertEquals(value, Money.fromBigDecimal(value).toBigDecimal(), "JDBC values should round-trip");
+        assertEquals(Money.parse("2.50"), Money.fromBigDecimal(new BigDecimal("2.5")), "Scale should normalise");
+    }
+}
@@ -0,0 +1,47 @@
+package test;
+
+import service.QueryMetrics;
+
+import static test.SimpleAssert.*;
+
+public class QueryMetricsTest {
+
+    public static void main(String[] args) {
+        QueryMetricsTest runner = new QueryMetricsTest();
+        try {
+            runner.testNormalizeCollapsesWhitespace();
+            runner.testNormalizeReplacesLiterals();
+            runner.testNormalizeCollapsesLists();
+            System.out.println("QueryMetricsTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("QueryMetricsTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    public void testNormalizeCollapsesWhitespace() {
+        String sql = """
+                SELECT category, SUM(amount)
+                FROM expenses   WHERE username = ?""";
+        assertEquals("SELECT category, SUM(amount) FROM expenses WHERE username = ?", QueryMetrics.normalize(sql),
+                "Whitespace should collapse to single spaces");
+    }
+
+    public void testNormalizeReplacesLiterals() {
+        assertEquals("SELECT * FROM expenses WHERE id = ? AND category = ?",
+                QueryMetrics.normalize("SELECT * FROM expenses WHERE id = 42 AND category = 'Food'"),
+                "Literals should become placeholders");
+        assertEquals("SELECT id FROM idx_rem_due_date",
+                QueryMetrics.normalize("SELECT id FROM idx_rem_due_date"),
+                "Identifiers should be left alone");
+    }
+
+    public void testNormalizeCollapsesLists() {
+        assertEquals("DELETE FROM expenses WHERE id IN (...)",
+                QueryMetrics.normalize("DELETE FROM expenses WHERE id IN (1, 2, 3)"),
+                "IN lists of any length should share a key");
+        assertEquals("INSERT INTO categories (name) VALUES (?), ...",
+                QueryMetrics.normalize("INSERT INTO categories (name) VALUES ('Food'), ('Transport'), ('Rent')"),
+                "Multi-row VALUES should share a key");
+    }
+}
@@ -0,0 +1,80 @@
+package test;
+
+import model.Reminder;
+import service.InMemoryExpenseRepository;
+import service.ReminderScheduler;
+
+import static test.SimpleAssert.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ReminderSchedulerTest {
+
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+
+    public static void main(String[] args) {
+        ReminderSchedulerTest runner = new ReminderSchedulerTest();
+        try {
+            runner.testDueRemindersAreDeliveredOnce();
+            runner.testFailedDeliveryIsRetried();
+            System.out.println("ReminderSchedulerTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("ReminderSchedulerTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    private static void waitFor(List<?> list, int size) throws InterruptedException {
+        for (int i = 0; i < 100 && list.size() < size; i++)
+            Thread.sleep(20);
+    }
+
+    public void testDueRemindersAreDeliveredOnce() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        LocalDate today = LocalDate.now();
+        source.addReminder(ALICE, "Rent", today, null);
+        source.addReminder(ALICE, "Insurance", today.plusDays(30), null);
+        ReminderScheduler scheduler = new ReminderScheduler(source, LocalTime.MIN, 60_000);
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        scheduler.addNotifier((user, r) -> delivered.add(user + ":" + r.getTitle()));
+        scheduler.start();
+        waitFor(delivered, 1);
+        assertEquals(List.of("1:Rent"), delivered, "Only the reminder due today should fire");
+
+        scheduler.addReminder(BOB, "Gym", today.minusDays(1), null);
+        Reminder cancelled = scheduler.addReminder(BOB, "Dentist", today.plusDays(1), null);
+        scheduler.deleteReminder(BOB, cancelled.getId());
+        waitFor(delivered, 2);
+        Thread.sleep(100);
+        assertEquals(List.of("1:Rent", "2:Gym"), delivered, "Added reminders fire, deleted ones do not");
+        assertTrue(source.getUndeliveredReminders(today).isEmpty(), "Delivered reminders should be marked");
+        assertEquals(0, scheduler.pendingCount(), "Nothing should be left waiting");
+    }
+
+    public void testFailedDeliveryIsRetried() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        source.addReminder(ALICE, "Taxes", LocalDate.now(), null);
+        ReminderScheduler scheduler = new ReminderScheduler(source, LocalTime.MIN, 60_000);
+        AtomicBoolean reachable = new AtomicBoolean();
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        scheduler.addNotifier((user, r) -> {
+            if (!reachable.get())
+                throw new IllegalStateException("offline");
+            delivered.add(r.getTitle());
+        });
+        scheduler.start();
+        Thread.sleep(200);
+        assertTrue(delivered.isEmpty(), "Nothing is delivered while the notifier fails");
+        assertEquals(1, scheduler.pendingCount(), "The failed reminder should wait for a retry");
+        assertEquals(1, source.getUndeliveredReminders(LocalDate.now()).size(), "It must not be marked delivered");
+
+        reachable.set(true);
+        scheduler.retryNow(ALICE);
+        waitFor(delivered, 1);
+        assertEquals(List.of("Taxes"), delivered, "The retry should deliver it");
+    }
+}
@@ -0,0 +1,121 @@
+package test;
+
+import service.SchemaMigrator;
+
+import static test.SimpleAssert.*;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/** The migrate and adopt tests run on an in-memory H2 database in MySQL mode, so H2 must be on the classpath. */
+public class SchemaMigratorTest {
+
+    public static void main(String[] args) {
+        SchemaMigratorTest runner = new SchemaMigratorTest();
+        try {
+            runner.testStatementsSplitOnLineEndingSemicolons();
+            runner.testChecksumIgnoresIndentationOnly();
+            runner.testOnlineIndexBuild();
+            runner.testMigrateIsIdempotent();
+            runner.testAdoptsUnversionedDatabase();
+            System.out.println("SchemaMigratorTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("SchemaMigratorTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    public void testStatementsSplitOnLineEndingSemicolons() {
+        List<String> sql = SchemaMigrator.statements("""
+                -- comment lines are dropped
+                CREATE TABLE a (
+                    note VARCHAR(10) DEFAULT 'x;y'
+                );
+                INSERT INTO a VALUES ('1');
+                """);
+        assertEquals(2, sql.size(), "Two statements expected");
+        assertTrue(sql.get(0).startsWith("CREATE TABLE a ("), "Comment should be dropped");
+        assertTrue(sql.get(0).contains("'x;y'"), "Semicolons inside a line should not split");
+        assertEquals("INSERT INTO a VALUES ('1')", sql.get(1), "Trailing semicolon should be removed");
+    }
+
+    public void testChecksumIgnoresIndentationOnly() {
+        long base = SchemaMigrator.checksum("CREATE INDEX i ON t (a);\n");
+        assertEquals(base, SchemaMigrator.checksum("    CREATE INDEX i ON t (a);   \n"),
+                "Re-indenting should not change the checksum");
+        assertTrue(base != SchemaMigrator.checksum("CREATE INDEX i ON t (a, b);\n"),
+                "Changing a statement should change the checksum");
+    }
+
+    public void testOnlineIndexBuild() {
+        assertEquals("ALTER TABLE expenses ADD INDEX idx_x (user_id, date), ALGORITHM=INPLACE, LOCK=NONE",
+                SchemaMigrator.onlineIndexBuild("CREATE INDEX idx_x ON expenses (user_id, date)"),
+                "CREATE INDEX should become an online ALTER");
+        assertEquals("DROP TABLE t", SchemaMigrator.onlineIndexBuild("DROP TABLE t"),
+                "Other statements are left alone");
+        assertTrue(SchemaMigrator.latestVersion() >= 3, "Latest version should include the search index");
+    }
+
+    public void testMigrateIsIdempotent() throws SQLException {
+        try (Connection conn = database("migrate")) {
+            assertEquals(SchemaMigrator.latestVersion(), SchemaMigrator.migrate(conn),
+                    "Every migration runs on an empty database");
+            assertEquals(0, SchemaMigrator.migrate(conn), "Nothing runs the second time");
+            assertEquals((long) SchemaMigrator.latestVersion(), count(conn, "SELECT MAX(version) FROM schema_version"),
+                    "The latest version is recorded");
+        }
+    }
+
+    public void testAdoptsUnversionedDatabase() throws SQLException {
+        try (Connection conn = database("adopt")) {
+            try (Statement stmt = conn.createStatement()) {
+                // The schema the start-up code created before schema_version, keyed by username
+                stmt.execute("""
+                        CREATE TABLE users (
+                            id INT AUTO_INCREMENT PRIMARY KEY,
+                            username VARCHAR(50) UNIQUE NOT NULL,
+                            password_hash VARCHAR(255) NOT NULL,
+                            salt VARCHAR(255) NOT NULL
+                        )""");
+                stmt.execute("CREATE TABLE categories (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(100) UNIQUE)");
+                stmt.execute("""
+                        CREATE TABLE expenses (
+                            id INT AUTO_INCREMENT PRIMARY KEY,
+                            username VARCHAR(50) NOT NULL,
+                            category VARCHAR(50),
+                            amount DECIMAL(10, 2) NOT NULL,
+                            date TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                        )""");
+                stmt.execute("INSERT INTO users (username, password_hash, salt) VALUES ('alice', 'h', 's')");
+                stmt.execute("INSERT INTO categories (name) VALUES ('Food')");
+                stmt.execute("INSERT INTO expenses (id, username, category, amount) VALUES (7, 'alice', 'Food', 12.50), "
+                        + "(8, 'alice', NULL, 3.00), (9, 'ghost', 'Food', 1.00)");
+            }
+            int ran = SchemaMigrator.migrate(conn);
+            assertEquals(SchemaMigrator.latestVersion() - 2, ran, "Only the migrations after the baseline run");
+            assertEquals(2L, count(conn, "SELECT COUNT(*) FROM expenses e JOIN users u ON u.id = e.user_id "
+                    + "WHERE u.username = 'alice' AND e.id IN (7, 8)"), "Alice's expenses keep their ids");
+            assertEquals(1L, count(conn, "SELECT COUNT(*) FROM expenses e JOIN categories c ON c.id = e.category_id "
+                    + "WHERE e.id = 8 AND c.name = 'Other'"), "A missing category becomes Other");
+            assertEquals(0L, count(conn, "SELECT COUNT(*) FROM expenses WHERE id = 9"),
+                    "Rows of a deleted user are not copied");
+            assertEquals(3L, count(conn, "SELECT COUNT(*) FROM expenses_legacy"), "The legacy table is kept");
+            assertEquals(0, SchemaMigrator.migrate(conn), "The adopted database is current");
+        }
+    }
+
+    private static Connection database(String name) throws SQLException {
+        return DriverManager.getConnection(
+                "jdbc:h2:mem:migrator_" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+    }
+
+    private static long count(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
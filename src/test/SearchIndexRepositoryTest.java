@@ -0,0 +1,134 @@
+package test;
+
+import model.Expense;
+import model.Money;
+import service.InMemoryExpenseRepository;
+import service.SearchIndexRepository;
+
+import static test.SimpleAssert.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+public class SearchIndexRepositoryTest {
+
+    private static final int ALICE = 1;
+    private static final int BOB = 2;
+
+    /** No word is part of another, so LIKE and word matching agree. */
+    private static final String[] CATEGORIES = { "Food", "Transport", "Rent", "Health" };
+    private static final String[] SHOPS = { "Tesco Metro", "Shell", "Uber trip", "Boots pharmacy", "Pret", null };
+
+    public static void main(String[] args) {
+        SearchIndexRepositoryTest runner = new SearchIndexRepositoryTest();
+        try {
+            runner.testRankingAndPrefixes();
+            runner.testKeywordFilterMatchesSource();
+            runner.testWritesAfterLoadAreVisible();
+            runner.testWritesBelowAreReplayed();
+            System.out.println("SearchIndexRepositoryTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("SearchIndexRepositoryTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    private static List<Integer> ids(List<Expense> expenses) {
+        return expenses.stream().map(Expense::getId).toList();
+    }
+
+    public void testRankingAndPrefixes() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        LocalDateTime t = LocalDateTime.of(2026, 3, 1, 9, 0);
+        Expense house = source.addExpense(ALICE, "Food", Money.parse("4.00"), null, t, "Coffeehouse on Main");
+        Expense beans = source.addExpense(ALICE, "Food", Money.parse("9.00"), null, t.plusDays(1), "Coffee beans");
+        Expense airport = source.addExpense(ALICE, "Travel", Money.parse("6.00"), null, t.plusDays(2),
+                "Airport coffee, gate 12");
+        Expense later = source.addExpense(ALICE, "Food", Money.parse("9.00"), null, t.plusDays(3), "Coffee beans");
+        source.addExpense(BOB, "Food", Money.parse("3.00"), null, t, "Coffee");
+        SearchIndexRepository search = new SearchIndexRepository(source, 60_000);
+
+        List<Integer> coffee = ids(search.searchText(ALICE, "coffee", 10));
+        assertEquals(4, coffee.size(), "Whole words and prefixes, Alice only");
+        assertEquals(house.getId(), coffee.get(3), "A prefix ranks below every whole word");
+        assertEquals(later.getId(), coffee.get(0), "Equal scores go newest first");
+        assertEquals(beans.getId(), coffee.get(1), "Shorter notes rank above longer ones");
+        assertEquals(List.of(airport.getId()), ids(search.searchText(ALICE, "COFF gate", 10)),
+                "Every word must match, ignoring case");
+        assertEquals(List.of(house.getId()), ids(search.searchText(ALICE, "main", 10)), "Any word of the notes");
+        assertEquals(2, search.searchText(ALICE, "food coffee", 2).size(), "Category words count; limit applies");
+        assertTrue(search.searchText(ALICE, "tea", 10).isEmpty(), "No such word");
+        assertTrue(search.searchText(ALICE, "--", 10).isEmpty(), "No words at all");
+        assertTrue(search.searchText(ALICE, "ouse", 10).isEmpty(), "Only the start of a word matches");
+    }
+
+    public void testKeywordFilterMatchesSource() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        Random rnd = new Random(11);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 2_000; i++) {
+            source.addExpense(ALICE, CATEGORIES[rnd.nextInt(CATEGORIES.length)],
+                    Money.ofMinor(100 + rnd.nextInt(50_000)), null, now.minusDays(rnd.nextInt(400)).withNano(0),
+                    SHOPS[rnd.nextInt(SHOPS.length)]);
+        }
+        SearchIndexRepository search = new SearchIndexRepository(source, 60_000);
+        LocalDate today = LocalDate.now();
+        for (String keyword : List.of("Food", "shell", "Boots pharmacy", "metro", "uber")) {
+            assertEquals(ids(source.searchExpenses(ALICE, null, keyword, null, null, null, null)),
+                    ids(search.searchExpenses(ALICE, null, keyword, null, null, null, null)), "Keyword " + keyword);
+        }
+        assertEquals(
+                ids(source.searchExpenses(ALICE, "Health", "pret", Money.parse("50"), Money.parse("300"),
+                        today.minusDays(200), today.minusDays(30))),
+                ids(search.searchExpenses(ALICE, "Health", "pret", Money.parse("50"), Money.parse("300"),
+                        today.minusDays(200), today.minusDays(30))),
+                "Keyword with every other filter");
+    }
+
+    public void testWritesAfterLoadAreVisible() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        SearchIndexRepository search = new SearchIndexRepository(source, 60_000);
+        LocalDateTime now = LocalDateTime.now();
+        Expense lunch = search.addExpense(ALICE, "Food", Money.parse("12.00"), null, now, "Lunch at Nando's");
+        assertEquals(1, search.searchText(ALICE, "nando", 10).size(), "Loaded with the first row");
+
+        Expense dinner = search.addExpense(ALICE, "Food", Money.parse("30.00"), null, now, "Dinner at Nando's");
+        assertEquals(2, search.searchText(ALICE, "nando", 10).size(), "Apostrophes split words");
+        search.recategorizeExpense(ALICE, dinner.getId(), "Dining");
+        assertEquals(List.of(dinner.getId()), ids(search.searchText(ALICE, "dining", 10)), "New category indexed");
+        assertTrue(search.searchText(ALICE, "food dinner", 10).isEmpty(), "Old category gone");
+        assertEquals("Dinner at Nando's", search.searchText(ALICE, "dining", 10).get(0).getNotes(),
+                "Notes kept on recategorize");
+        search.deleteExpense(ALICE, lunch.getId());
+        assertEquals(List.of(dinner.getId()), ids(search.searchText(ALICE, "nando", 10)), "Deleted row gone");
+
+        // Enough deletes to force a rebuild from the source
+        for (int i = 0; i < 200; i++) {
+            Expense e = search.addExpense(ALICE, "Misc", Money.parse("1.00"), null, now, "Batch " + i);
+            if (i % 2 == 0)
+                search.deleteExpense(ALICE, e.getId());
+        }
+        assertEquals(100, search.searchExpenses(ALICE, null, "batch", null, null, null, null).size(),
+                "Rebuilt index holds the live rows");
+        assertEquals(List.of(dinner.getId()), ids(search.searchText(ALICE, "nando", 10)), "And the older ones");
+    }
+
+    public void testWritesBelowAreReplayed() throws Exception {
+        InMemoryExpenseRepository source = new InMemoryExpenseRepository();
+        SearchIndexRepository search = new SearchIndexRepository(source, 60_000);
+        LocalDateTime now = LocalDateTime.now();
+        Expense tesco = source.addExpense(ALICE, "Food", Money.parse("20.00"), null, now, "Tesco Metro");
+        assertEquals(1, search.searchText(ALICE, "tesco", 10).size(), "Loaded");
+
+        // As a statement import or the CLI would, without going through the index
+        Expense imported = source.addExpense(ALICE, "Food", Money.parse("35.00"), null, now, "TESCO STORES 2291");
+        assertEquals(2, search.searchText(ALICE, "tesco", 10).size(), "An insert below is picked up");
+        source.recategorizeExpense(ALICE, imported.getId(), "Groceries");
+        assertEquals(List.of(imported.getId()), ids(search.searchText(ALICE, "groceries", 10)),
+                "So is a change of category");
+        source.deleteExpense(ALICE, tesco.getId());
+        assertEquals(List.of(imported.getId()), ids(search.searchText(ALICE, "tesco", 10)), "And a delete");
+        assertEquals(1, search.residentUsers(), "Without evicting the user");
+    }
+}
@@ -0,0 +1,54 @@
+package test;
+
+import service.ShardRouter;
+
+import static test.SimpleAssert.*;
+
+public class ShardRouterTest {
+
+    public static void main(String[] args) {
+        ShardRouterTest runner = new ShardRouterTest();
+        try {
+            runner.testSingleShardTakesEveryone();
+            runner.testSpreadIsRoughlyEven();
+            runner.testAddingAShardOnlyMovesUsersToIt();
+            System.out.println("ShardRouterTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("ShardRouterTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    public void testSingleShardTakesEveryone() {
+        ShardRouter router = new ShardRouter(1);
+        assertEquals(0, router.shardFor("alice"), "Only shard 0 exists");
+        assertEquals(0, router.shardFor(""), "Even an empty name maps to shard 0");
+    }
+
+    public void testSpreadIsRoughlyEven() {
+        ShardRouter router = new ShardRouter(4);
+        int[] counts = new int[4];
+        for (int i = 0; i < 20_000; i++)
+            counts[router.shardFor("user_" + i)]++;
+        for (int count : counts)
+            assertTrue(count > 3_500 && count < 6_500, "Each shard should get about a quarter, got " + count);
+        assertEquals(router.shardFor("user_42"), new ShardRouter(4).shardFor("user_42"),
+                "Placement must not depend on the instance");
+    }
+
+    public void testAddingAShardOnlyMovesUsersToIt() {
+        ShardRouter before = new ShardRouter(3);
+        ShardRouter after = new ShardRouter(4);
+        int moved = 0;
+        for (int i = 0; i < 20_000; i++) {
+            String name = "user_" + i;
+            int from = before.shardFor(name);
+            int to = after.shardFor(name);
+            if (from != to) {
+                assertEquals(3, to, name + " should only move to the new shard");
+                moved++;
+            }
+        }
+        assertTrue(moved > 3_500 && moved < 6_500, "About a quarter of the users should move, got " + moved);
+    }
+}
@@ -0,0 +1,236 @@
+package test;
+
+import model.CategoryRule;
+import model.Expense;
+import model.Money;
+import service.CategorizingRepository;
+import service.CsvStatementParser;
+import service.DeduplicatingRepository;
+import service.InMemoryExpenseRepository;
+import service.OfxParser;
+import service.QifParser;
+import service.StatementImporter;
+import service.StatementParser;
+
+import static test.SimpleAssert.*;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StatementImporterTest {
+
+    private static final int ALICE = 1;
+
+    private static final String OFX_SGML = """
+            OFXHEADER:100
+            DATA:OFXSGML
+            VERSION:102
+
+            <OFX>
+            <BANKMSGSRSV1><STMTTRNRS><STMTRS>
+            <CURDEF>USD
+            <BANKTRANLIST>
+            <STMTTRN>
+            <TRNTYPE>DEBIT
+            <DTPOSTED>20260302120000.000[-5:EST]
+            <TRNAMT>-42.10
+            <FITID>1
+            <NAME>Joe's Diner &amp; Bar
+            </STMTTRN>
+            <STMTTRN>
+            <TRNTYPE>CREDIT
+            <DTPOSTED>20260303
+            <TRNAMT>1500.00
+            <NAME>Salary
+            </STMTTRN>
+            <STMTTRN>
+            <TRNTYPE>DEBIT
+            <DTPOSTED>20260304
+            <TRNAMT>-9,99
+            <MEMO>Card purchase
+            <CURRENCY><CURRATE>1.08<CURSYM>EUR</CURRENCY>
+            </STMTTRN>
+            <STMTTRN>
+            <TRNTYPE>DEBIT
+            <TRNAMT>-1.00
+            </STMTTRN>
+            </BANKTRANLIST>
+            </STMTRS></STMTTRNRS></BANKMSGSRSV1>
+            </OFX>
+            """;
+
+    private static final String OFX_XML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <?OFX OFXHEADER="200" VERSION="220"?>
+            <OFX><CREDITCARDMSGSRSV1><CCSTMTTRNRS><CCSTMTRS><CURDEF>GBP</CURDEF>
+            <BANKTRANLIST><STMTTRN><TRNTYPE>DEBIT</TRNTYPE><DTPOSTED>20260110</DTPOSTED>
+            <DTUSER>20260108093000</DTUSER><TRNAMT>-5.50</TRNAMT><NAME>Coffee</NAME></STMTTRN>
+            </BANKTRANLIST></CCSTMTRS></CCSTMTTRNRS></CREDITCARDMSGSRSV1></OFX>
+            """;
+
+    private static final String QIF = """
+            !Account
+            NChecking
+            TBank
+            ^
+            !Type:Bank
+            D3/ 5'26
+            T-1,234.50
+            PRent March
+            LHousing:Rent
+            ^
+            D03/06/2026
+            U-20.00
+            MBus pass
+            L[Savings]
+            ^
+            D13/45/2026
+            T-5.00
+            ^
+            !Type:Cat
+            NFood
+            ^
+            """;
+
+    private static List<StatementParser.Transaction> parse(StatementParser parser, String text, List<String> rejected)
+            throws Exception {
+        List<StatementParser.Transaction> out = new ArrayList<>();
+        parser.parse(new StringReader(text), new StatementParser.Sink() {
+            @Override
+            public void transaction(StatementParser.Transaction t) {
+                out.add(t);
+            }
+
+            @Override
+            public void rejected(long line, String reason) {
+                rejected.add(line + ": " + reason);
+            }
+        });
+        return out;
+    }
+
+    public static void main(String[] args) {
+        StatementImporterTest runner = new StatementImporterTest();
+        try {
+            runner.testOfxSgml();
+            runner.testOfxXml();
+            runner.testQif();
+            runner.testCsvProfiles();
+            runner.testImportSkipsCreditsAndUsesRules();
+            runner.testReimportAddsNothing();
+            System.out.println("StatementImporterTest: ALL PASSED");
+        } catch (Throwable e) {
+            System.err.println("StatementImporterTest: FAILED");
+            e.printStackTrace();
+        }
+    }
+
+    public void testOfxSgml() throws Exception {
+        List<String> rejected = new ArrayList<>();
+        List<StatementParser.Transaction> rows = parse(new OfxParser("INR"), OFX_SGML, rejected);
+        assertEquals(3, rows.size(), "Three complete transactions");
+        assertEquals(Money.parse("-42.10", "USD"), rows.get(0).amount(), "Statement currency");
+        assertEquals(LocalDateTime.of(2026, 3, 2, 12, 0), rows.get(0).date(), "Time kept, zone ignored");
+        assertEquals("Joe's Diner & Bar", rows.get(0).payee(), "Entities decoded");
+        assertEquals(Money.parse("1500.00", "USD"), rows.get(1).amount(), "Credits are positive");
+        assertEquals(Money.parse("-9.99", "EUR"), rows.get(2).amount(), "Own currency and decimal comma");
+        assertEquals("Card purchase", rows.get(2).payee(), "Memo when there is no name");
+        assertEquals(1, rejected.size(), "The transaction without a date is reported");
+    }
+
+    public void testOfxXml() throws Exception {
+        List<StatementParser.Transaction> rows = parse(new OfxParser("INR"), OFX_XML, new ArrayList<>());
+        assertEquals(1, rows.size(), "One transaction");
+        assertEquals(Money.parse("-5.50", "GBP"), rows.get(0).amount(), "CURDEF of a card statement");
+        assertEquals(LocalDateTime.of(2026, 1, 8, 9, 30), rows.get(0).date(), "Purchase date preferred");
+    }
+
+    public void testQif() throws Exception {
+        List<String> rejected = new ArrayList<>();
+        List<StatementParser.Transaction> rows = parse(new QifParser("INR", false), QIF, rejected);
+        assertEquals(2, rows.size(), "Account and category lists are skipped");
+        assertEquals(LocalDateTime.of(2026, 3, 5, 0, 0), rows.get(0).date(), "Apostrophe year");
+        assertEquals(Money.parse("-1234.50", "INR"), rows.get(0).amount(), "Thousands separators");
+        assertEquals("Housing", rows.get(0).category(), "Top-level category");
+        assertEquals(null, rows.get(1).category(), "A transfer has no category");
+        assertEquals("Bus pass", rows.get(1).payee(), "Memo when there is no payee");
+        assertEquals(1, rejected.size(), "An impossible date is reported");
+        assertEquals(LocalDateTime.of(2026, 6, 3, 0, 0),
+                parse(new QifParser("INR", true), "!Type:Bank\nD03/06/2026\nT-1\n^\n", rejected).get(0).date(),
+                "Day first");
+    }
+
+    public void testCsvProfiles() throws Exception {
+        CsvStatementParser.Profile plain = new CsvStatementParser.Profile(',', 1, "Date", "yyyy-MM-dd", "Amount",
+                null, null, false, "Description", null, "Currency", '.');
+        String csv = "Date,Description,Amount,Currency\r\n"
+                + "2026-02-01,\"Tesco, Store 12\",-23.40,GBP\r\n"
+                + "2026-02-02,\"Say \"\"hi\"\"\nsecond line\",\"-1,020.00\",\r\n"
+                + "\r\n"
+                + "not a date,x,-1,\r\n";
+        List<String> rejected = new ArrayList<>();
+        List<StatementParser.Transaction> rows = parse(new CsvStatementParser(plain, "INR"), csv, rejected);
+        assertEquals(2, rows.size(), "Two rows; the blank line is skipped");
+        assertEquals("Tesco, Store 12", rows.get(0).payee(), "Quoted delimiter");
+        assertEquals(Money.parse("-23.40", "GBP"), rows.get(0).amount(), "Currency column");
+        assertEquals("Say \"hi\"\nsecond line", rows.get(1).payee(), "Quotes and line breaks inside a field");
+        assertEquals(Money.parse("-1020.00", "INR"), rows.get(1).amount(), "Blank currency uses the default");
+        assertEquals(List.of("6: Text 'not a date' could not be parsed at index 0"), rejected,
+                "Bad rows are reported with the line they start on");
+
+        CsvStatementParser.Profile split = new CsvStatementParser.Profile(';', 1, "0", "dd.MM.yyyy", null,
+                "Debit", "Credit", false, "Text", "Kategorie", null, ',');
+        rows = parse(new CsvStatementParser(split, "EUR"),
+                "Datum;Text;Debit;Credit;Kategorie\n01.03.2026;Miete;1.200,00;0,00;Wohnen\n02.03.2026;Gehalt;;3.000,00;\n",
+                new ArrayList<>());
+        assertEquals(Money.parse("-1200.00", "EUR"), rows.get(0).amount(), "Debit column, decimal comma");
+        assertEquals("Wohnen", rows.get(0).category(), "Category column");
+        assertEquals(Money.parse("3000.00", "EUR"), rows.get(1).amount(), "Credit column");
+
+        CsvStatementParser.Profile card = new CsvStatementParser.Profile('\t', 0, "0", "MM/dd/yyyy", "2",
+                null, null, true, "1", null, null, '.');
+        rows = parse(new CsvStatementParser(card, "USD"), "03/09/2026\tShell\t$45.00\n03/10/2026\tRefund\t(5.00)\n",
+                new ArrayList<>());
+        assertEquals(Money.parse("-45.00", "USD"), rows.get(0).amount(), "Positive charges are money out");
+        assertEquals(Money.parse("5.00", "USD"), rows.get(1).amount(), "A bracketed refund is money in");
+    }
+
+    public void testImportSkipsCreditsAndUsesRules() throws Exception {
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        CategorizingRepository rules = new CategorizingRepository(base, 60_000);
+        rules.addCategoryRule(ALICE, new CategoryRule(0, "keyword", "diner", null, null, "Food", 10, 0));
+        StatementImporter importer = new StatementImporter(new DeduplicatingRepository(base, 60_000), rules, 2);
+
+        StatementImporter.Result r = importer.importStatement(ALICE, "test.ofx", new StringReader(OFX_SGML),
+                new OfxParser("INR"));
+        assertEquals(3L, r.rows(), "Rows read");
+        assertEquals(2L, r.imported(), "Two debits imported");
+        assertEquals(1L, r.credits(), "The salary is skipped");
+        assertEquals(1L, r.rejected(), "One rejected");
+        List<Expense> all = base.searchExpenses(ALICE, null, null, null, null, null, null);
+        assertTrue(all.stream().anyMatch(e -> e.getCategory().equals("Food")
+                && e.getAmount().equals(Money.parse("42.10", "USD"))), "Categorized by rule, amount positive");
+        assertTrue(all.stream().anyMatch(e -> e.getCategory().equals("Card purchase")
+                && e.getCurrency().equals("EUR")), "Payee kept as category without a rule");
+        assertEquals(1L, rules.getCategoryRules(ALICE).get(0).getHits(), "The rule's hit is stored");
+    }
+
+    public void testReimportAddsNothing() throws Exception {
+        InMemoryExpenseRepository base = new InMemoryExpenseRepository();
+        DeduplicatingRepository dedup = new DeduplicatingRepository(base, 60_000);
+        StatementImporter importer = new StatementImporter(dedup, new CategorizingRepository(base, 60_000), 100);
+        String twoCoffees = "!Type:Bank\nD1/5/2026\nT-3.00\nPCoffee\n^\nD1/5/2026\nT-3.00\nPCoffee\n^\n";
+
+        assertEquals(2L, importer.importStatement(ALICE, "a.qif", new StringReader(twoCoffees),
+                new QifParser("INR", false)).imported(), "Identical rows in one statement are both real");
+        StatementImporter.Result again = importer.importStatement(ALICE, "a.qif", new StringReader(twoCoffees),
+                new QifParser("INR", false));
+        assertEquals(0L, again.imported(), "Importing it again adds nothing");
+        assertEquals(2L, again.duplicates(), "Both seen as duplicates");
+        String overlap = twoCoffees + "D1/6/2026\nT-4.00\nPLunch\n^\nD1/5/2026\nT-3.00\nPCoffee\n^\n";
+        assertEquals(2L, importer.importStatement(ALICE, "b.qif", new StringReader(overlap),
+                new QifParser("INR", false)).imported(), "An overlapping statement adds the lunch and a third coffee");
+        assertEquals(4, base.searchExpenses(ALICE, null, null, null, null, null, null).size(), "Four rows in all");
+    }
+}
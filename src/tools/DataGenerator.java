@@ -0,0 +1,394 @@
+package tools;
+
+import security.SecurityUtils;
+import service.CategoryDictionary;
+import service.DatabaseManager;
+import service.ExpenseService;
+import service.ShardDirectory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Populates the configured database with a deterministic, production-sized
+ * dataset: N users with years of expenses plus recurring items, budgets and
+ * reminders. All rows go through multi-row INSERT statements committed once per
+ * batch. The same --seed always produces the same data.
+ *
+ * <pre>
+ * java -cp "build;lib/mysql-connector-j-9.2.0.jar" tools.DataGenerator --users 1000 --years 3 --perDay 3
+ * </pre>
+ *
+ * Every generated user has the password {@code password}. The PBKDF2 hash is
+ * computed once and shared so that generating users is not dominated by hashing.
+ */
+public class DataGenerator {
+
+    /** Category, relative frequency, median amount, log-normal spread. */
+    private record CategoryProfile(String name, int weight, double median, double sigma) {
+    }
+
+    private static final List<CategoryProfile> PROFILES = List.of(
+            new CategoryProfile("Food", 40, 220, 0.7),
+            new CategoryProfile("Transport", 20, 120, 0.8),
+            new CategoryProfile("Shopping", 12, 900, 1.0),
+            new CategoryProfile("Entertainment", 10, 450, 0.8),
+            new CategoryProfile("Health", 6, 600, 1.1),
+            new CategoryProfile("Utilities", 7, 1200, 0.5),
+            new CategoryProfile("Other", 5, 300, 1.2));
+
+    private static final String[][] RECURRING = {
+            { "Streaming subscription", "Entertainment", "monthly", "649" },
+            { "Gym membership", "Health", "monthly", "1500" },
+            { "Broadband", "Utilities", "monthly", "999" },
+            { "Mobile plan", "Utilities", "monthly", "399" },
+            { "Weekly groceries", "Food", "weekly", "1800" },
+            { "Metro pass", "Transport", "weekly", "350" } };
+
+    private static final String[] REMINDER_TITLES = { "Pay credit card bill", "Renew insurance",
+            "File tax return", "Car service", "Pay electricity bill", "Review budget" };
+
+    private final int users;
+    private final int years;
+    private final double perDay;
+    private final long seed;
+    private final int batchRows;
+    private final String prefix;
+    private final LocalDate today = LocalDate.now();
+    private final int totalWeight = PROFILES.stream().mapToInt(CategoryProfile::weight).sum();
+
+    DataGenerator(int users, int years, double perDay, long seed, int batchRows, String prefix) {
+        this.users = users;
+        this.years = years;
+        this.perDay = perDay;
+        this.seed = seed;
+        this.batchRows = batchRows;
+        this.prefix = prefix;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+            opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        DataGenerator gen = new DataGenerator(
+                Integer.parseInt(opts.getOrDefault("users", "100")),
+                Integer.parseInt(opts.getOrDefault("years", "3")),
+                Double.parseDouble(opts.getOrDefault("perDay", "2.5")),
+                Long.parseLong(opts.getOrDefault("seed", "42")),
+                Integer.parseInt(opts.getOrDefault("batch", "1000")),
+                opts.getOrDefault("prefix", "gen"));
+        DatabaseManager.initializeDatabase();
+        for (int shard = 0; shard < DatabaseManager.shardCount(); shard++) {
+            try (Connection conn = DatabaseManager.getShardConnection(shard)) {
+                gen.generate(conn, shard);
+            }
+        }
+    }
+
+    /**
+     * Generates the users that belong on this shard. With more than one shard,
+     * ids are reserved in the shard directory first so they stay unique.
+     */
+    void generate(Connection conn, int shard) throws SQLException {
+        long started = System.nanoTime();
+        boolean sharded = DatabaseManager.shardCount() > 1;
+        ensureCategories(conn);
+        Set<String> existing = existingUsers(conn);
+
+        String salt = SecurityUtils.generateSalt();
+        String hash = SecurityUtils.hashPassword("password", salt);
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (BatchInserter usersIns = sharded
+                ? new BatchInserter(conn, "users", batchRows, "id", "username", "password_hash", "salt")
+                : new BatchInserter(conn, "users", batchRows, "username", "password_hash", "salt");
+                BatchInserter expensesIns = new BatchInserter(conn, "expenses", batchRows,
+                        "user_id", "category_id", "amount", "currency", "date");
+                BatchInserter recurringIns = new BatchInserter(conn, "recurring_expenses", batchRows,
+                        "user_id", "description", "amount", "category_id", "interval_type", "start_date",
+                        "last_applied_date");
+                BatchInserter budgetsIns = new BatchInserter(conn, "budgets", batchRows,
+                        "user_id", "category_id", "monthly_limit");
+                BatchInserter remindersIns = new BatchInserter(conn, "reminders", batchRows,
+                        "user_id", "title", "due_date", "notes")) {
+
+            List<String> created = new ArrayList<>();
+            Map<String, Integer> reserved = new HashMap<>();
+            int skipped = 0;
+            for (int u = 0; u < users; u++) {
+                String username = prefix + "_" + u;
+                if (sharded && DatabaseManager.getShardRouter().shardFor(username) != shard)
+                    continue;
+                if (existing.contains(username)) {
+                    skipped++;
+                    continue;
+                }
+                if (sharded) {
+                    int id = ShardDirectory.register(username);
+                    if (id == 0) {
+                        skipped++;
+                        continue;
+                    }
+                    reserved.put(username, id);
+                    usersIns.add(id, username, hash, salt);
+                } else {
+                    usersIns.add(username, hash, salt);
+                }
+                created.add(username);
+            }
+            // Users must exist before rows that reference them
+            usersIns.flush();
+            Map<String, Integer> ids = sharded ? reserved : userIds(conn);
+
+            for (String username : created) {
+                Random rnd = new Random(seed * 1_000_003L + username.hashCode());
+                int userId = ids.get(username);
+                generateExpenses(conn, rnd, userId, expensesIns);
+                generateRecurring(conn, rnd, userId, recurringIns);
+                generateBudgets(conn, rnd, userId, budgetsIns);
+                generateReminders(rnd, userId, remindersIns);
+            }
+            expensesIns.flush();
+            recurringIns.flush();
+            budgetsIns.flush();
+            remindersIns.flush();
+
+            double secs = (System.nanoTime() - started) / 1e9;
+            long rows = usersIns.total + expensesIns.total + recurringIns.total + budgetsIns.total
+                    + remindersIns.total;
+            if (sharded)
+                System.out.printf("Shard %d: ", shard);
+            System.out.printf("Generated %d users, %d expenses, %d recurring, %d budgets, %d reminders "
+                    + "in %.1f s (%.0f rows/s)%n", usersIns.total, expensesIns.total, recurringIns.total,
+                    budgetsIns.total, remindersIns.total, secs, rows / secs);
+            if (skipped > 0)
+                System.out.printf("Skipped %d users that already existed.%n", skipped);
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void generateExpenses(Connection conn, Random rnd, int userId, BatchInserter ins) throws SQLException {
+        int rentId = CategoryDictionary.idFor(conn, "Rent");
+        // Each user gets their own spending level and a fixed rent paid on the 1st
+        double userScale = Math.exp(rnd.nextGaussian() * 0.35);
+        BigDecimal rent = BigDecimal.valueOf(Math.round((8000 + rnd.nextInt(22000)) / 100.0) * 100L);
+        LocalDate start = today.minusYears(years).withDayOfMonth(1);
+        for (LocalDate d = start; !d.isAfter(today); d = d.plusDays(1)) {
+            if (d.getDayOfMonth() == 1)
+                ins.add(userId, rentId, rent, "INR", LocalDateTime.of(d, java.time.LocalTime.of(9, 0)));
+            int n = poisson(rnd, perDay * seasonality(d));
+            for (int i = 0; i < n; i++) {
+                CategoryProfile p = pickCategory(rnd);
+                double amount = p.median() * userScale * Math.exp(rnd.nextGaussian() * p.sigma());
+                BigDecimal amt = BigDecimal.valueOf(Math.max(1, Math.round(amount * 100)), 2);
+                LocalDateTime at = d.atTime(7 + rnd.nextInt(16), rnd.nextInt(60), rnd.nextInt(60));
+                ins.add(userId, CategoryDictionary.idFor(conn, p.name()), amt, "INR", at);
+            }
+        }
+    }
+
+    private void generateRecurring(Connection conn, Random rnd, int userId, BatchInserter ins) throws SQLException {
+        int count = 2 + rnd.nextInt(3);
+        Set<Integer> used = new HashSet<>();
+        while (used.size() < count) {
+            int idx = rnd.nextInt(RECURRING.length);
+            if (!used.add(idx))
+                continue;
+            String[] r = RECURRING[idx];
+            LocalDate start = today.minusDays(rnd.nextInt(365 * Math.max(years, 1)));
+            // Mark as applied up to the latest occurrence so logging in does not back-fill years of rows
+            LocalDate last = start;
+            while (true) {
+                LocalDate next = r[2].equals("weekly") ? last.plusWeeks(1) : last.plusMonths(1);
+                if (next.isAfter(today))
+                    break;
+                last = next;
+            }
+            ins.add(userId, r[0], new BigDecimal(r[3]), CategoryDictionary.idFor(conn, r[1]), r[2], java.sql.Date.valueOf(start),
+                    java.sql.Date.valueOf(last));
+        }
+    }
+
+    private void generateBudgets(Connection conn, Random rnd, int userId, BatchInserter ins) throws SQLException {
+        int count = 3 + rnd.nextInt(3);
+        for (int i = 0; i < count && i < PROFILES.size(); i++) {
+            CategoryProfile p = PROFILES.get(i);
+            double monthly = p.median() * perDay * 30 * p.weight() / totalWeight;
+            long limit = Math.max(500, Math.round(monthly * (0.9 + rnd.nextDouble() * 0.5) / 100) * 100);
+            ins.add(userId, CategoryDictionary.idFor(conn, p.name()), BigDecimal.valueOf(limit));
+        }
+    }
+
+    private void generateReminders(Random rnd, int userId, BatchInserter ins) throws SQLException {
+        int count = 3 + rnd.nextInt(5);
+        for (int i = 0; i < count; i++) {
+            LocalDate due = today.plusDays(rnd.nextInt(90) - 30);
+            String notes = rnd.nextBoolean() ? null : "Generated reminder #" + (i + 1);
+            ins.add(userId, REMINDER_TITLES[rnd.nextInt(REMINDER_TITLES.length)], java.sql.Date.valueOf(due),
+                    notes);
+        }
+    }
+
+    /** Weekend and festive-season uplift on the base daily rate. */
+    private static double seasonality(LocalDate d) {
+        double f = 1.0;
+        if (d.getDayOfWeek() == DayOfWeek.SATURDAY || d.getDayOfWeek() == DayOfWeek.SUNDAY)
+            f *= 1.25;
+        switch (d.getMonth()) {
+            case OCTOBER, NOVEMBER -> f *= 1.35;
+            case DECEMBER -> f *= 1.25;
+            case FEBRUARY -> f *= 0.9;
+            default -> {
+            }
+        }
+        return f;
+    }
+
+    private CategoryProfile pickCategory(Random rnd) {
+        int pick = rnd.nextInt(totalWeight);
+        for (CategoryProfile p : PROFILES) {
+            pick -= p.weight();
+            if (pick < 0)
+                return p;
+        }
+        return PROFILES.get(PROFILES.size() - 1);
+    }
+
+    private static int poisson(Random rnd, double lambda) {
+        double l = Math.exp(-lambda);
+        double p = 1.0;
+        int k = 0;
+        do {
+            k++;
+            p *= rnd.nextDouble();
+        } while (p > l);
+        return k - 1;
+    }
+
+    private static void ensureCategories(Connection conn) throws SQLException {
+        List<String> existing = ExpenseService.getCategories(conn);
+        List<String> needed = new ArrayList<>();
+        needed.add("Rent");
+        PROFILES.forEach(p -> needed.add(p.name()));
+        for (String name : needed) {
+            if (!existing.contains(name))
+                ExpenseService.addCategory(conn, name);
+        }
+    }
+
+    private Set<String> existingUsers(Connection conn) throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT username FROM users WHERE username LIKE ?")) {
+            ps.setString(1, prefix + "\\_%");
+            ResultSet rs = ps.executeQuery();
+            while (rs.next())
+                names.add(rs.getString(1));
+        }
+        return names;
+    }
+
+    private Map<String, Integer> userIds(Connection conn) throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT username, id FROM users WHERE username LIKE ?")) {
+            ps.setString(1, prefix + "\\_%");
+            ResultSet rs = ps.executeQuery();
+            while (rs.next())
+                ids.put(rs.getString(1), rs.getInt(2));
+        }
+        return ids;
+    }
+
+    /**
+     * Buffers rows and writes them as one multi-row INSERT per batch, committing
+     * after each statement. The full-size statement is prepared once and reused.
+     */
+    static class BatchInserter implements AutoCloseable {
+        private final Connection conn;
+        private final String table;
+        private final String[] columns;
+        private final int rowsPerStatement;
+        private final List<Object[]> pending = new ArrayList<>();
+        private PreparedStatement full;
+        long total;
+
+        BatchInserter(Connection conn, String table, int rowsPerStatement, String... columns) {
+            this.conn = conn;
+            this.table = table;
+            this.columns = columns;
+            this.rowsPerStatement = rowsPerStatement;
+        }
+
+        void add(Object... values) throws SQLException {
+            pending.add(values);
+            if (pending.size() >= rowsPerStatement)
+                flush();
+        }
+
+        void flush() throws SQLException {
+            if (pending.isEmpty())
+                return;
+            PreparedStatement ps;
+            boolean reuse = pending.size() == rowsPerStatement;
+            if (reuse) {
+                if (full == null)
+                    full = conn.prepareStatement(sql(rowsPerStatement));
+                ps = full;
+            } else {
+                ps = conn.prepareStatement(sql(pending.size()));
+            }
+            try {
+                int idx = 1;
+                for (Object[] row : pending) {
+                    for (Object v : row) {
+                        if (v instanceof LocalDateTime ldt)
+                            ps.setTimestamp(idx++, java.sql.Timestamp.valueOf(ldt));
+                        else
+                            ps.setObject(idx++, v);
+                    }
+                }
+                ps.executeUpdate();
+                conn.commit();
+            } finally {
+                if (!reuse)
+                    ps.close();
+            }
+            total += pending.size();
+            pending.clear();
+        }
+
+        private String sql(int rows) {
+            String tuple = "(" + "?, ".repeat(columns.length - 1) + "?)";
+            StringBuilder sb = new StringBuilder("INSERT INTO ").append(table).append(" (")
+                    .append(String.join(", ", columns)).append(") VALUES ");
+            for (int i = 0; i < rows; i++) {
+                if (i > 0)
+                    sb.append(", ");
+                sb.append(tuple);
+            }
+            return sb.toString();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            flush();
+            if (full != null)
+                full.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package tools;
+
+import service.DatabaseManager;
+import service.ExpenseArchive;
+
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Moves expenses older than the hot window ({@code archive.keepYears} in
+ * config/db.properties) into expenses_archive. Meant to run from cron shortly
+ * after New Year; running it more often is harmless.
+ *
+ * <pre>
+ * java -cp "build;lib/mysql-connector-j-9.2.0.jar" tools.ExpenseArchiver
+ * java -cp "build;lib/mysql-connector-j-9.2.0.jar" tools.ExpenseArchiver --partition true
+ * </pre>
+ *
+ * {@code --partition true} first converts expenses to yearly RANGE partitions
+ * (MySQL only, one-off, rewrites the table).
+ */
+public class ExpenseArchiver {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+            opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+
+        DatabaseManager.initializeDatabase();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (Boolean.parseBoolean(opts.getOrDefault("partition", "false"))) {
+                ExpenseArchive.partitionByYear(conn);
+                ExpenseArchive.ensureFuturePartitions(conn);
+            }
+            long started = System.nanoTime();
+            int moved = ExpenseArchive.archiveClosedYears(conn);
+            System.out.printf("Archived %d expenses dated before %s in %d ms.%n", moved, ExpenseArchive.hotSince(),
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+}
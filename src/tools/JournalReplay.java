@@ -0,0 +1,109 @@
+package tools;
+
+import model.Expense;
+import model.Money;
+import model.RecurringExpense;
+import service.DatabaseManager;
+import service.ExpenseJournal;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds per-user monthly spend from the expense journal alone, without
+ * touching the database, and reports how long it took. Like the monthly
+ * trend, amounts are summed whatever their currency. It reads the files
+ * only, so it can run next to the API that is writing them.
+ *
+ * <pre>
+ * java -cp build tools.JournalReplay
+ * java -cp build tools.JournalReplay --dir data/journal --user 42
+ * </pre>
+ *
+ * {@code --user} also prints that user's months.
+ */
+public class JournalReplay {
+
+    /** Monthly totals in minor units, kept up to date as records are applied. */
+    static class MonthlyRollup implements ExpenseJournal.Listener {
+        final Map<Integer, Map<Integer, Expense>> expenses = new HashMap<>();
+        final Map<Integer, Map<YearMonth, Long>> months = new HashMap<>();
+        long records;
+
+        @Override
+        public void expenseAdded(int userId, Expense e) {
+            records++;
+            // A snapshot may already hold a write that is replayed after it
+            Expense previous = expenses.computeIfAbsent(userId, k -> new HashMap<>()).put(e.getId(), e);
+            if (previous != null)
+                add(userId, previous, -1);
+            add(userId, e, 1);
+        }
+
+        @Override
+        public void expenseDeleted(int userId, int id) {
+            records++;
+            Expense removed = expenses.getOrDefault(userId, Map.of()).get(id);
+            if (removed != null) {
+                expenses.get(userId).remove(id);
+                add(userId, removed, -1);
+            }
+        }
+
+        @Override
+        public void budgetSet(int userId, String category, Money limit) {
+            records++;
+        }
+
+        @Override
+        public void budgetDeleted(int userId, String category) {
+            records++;
+        }
+
+        @Override
+        public void recurringSaved(int userId, RecurringExpense r) {
+            records++;
+        }
+
+        @Override
+        public void recurringDeleted(int userId, int id) {
+            records++;
+        }
+
+        private void add(int userId, Expense e, int sign) {
+            months.computeIfAbsent(userId, k -> new TreeMap<>())
+                    .merge(YearMonth.from(e.getDate()), sign * e.getAmount().getMinorUnits(), Long::sum);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+            opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        Path dir = Path.of(opts.getOrDefault("dir", DatabaseManager.getSetting("journal.dir", "data/journal")));
+
+        long bytes;
+        try (Stream<Path> files = Files.list(dir)) {
+            bytes = files.mapToLong(p -> p.toFile().length()).sum();
+        }
+        MonthlyRollup rollup = new MonthlyRollup();
+        long started = System.nanoTime();
+        long lastSeq = ExpenseJournal.replay(dir, rollup);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        int live = rollup.expenses.values().stream().mapToInt(Map::size).sum();
+        System.out.printf("Replayed %,d records up to #%d in %.2f s (%.1f MB/s): %,d users, %,d expenses.%n",
+                rollup.records, lastSeq, seconds, bytes / 1e6 / Math.max(seconds, 1e-9), rollup.months.size(), live);
+
+        if (opts.containsKey("user")) {
+            int userId = Integer.parseInt(opts.get("user"));
+            rollup.months.getOrDefault(userId, Map.of()).forEach((month, minor) ->
+                    System.out.printf("  %s  %s%n", month, Money.ofMinor(minor).toPlainString()));
+        }
+    }
+}
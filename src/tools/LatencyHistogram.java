@@ -0,0 +1,136 @@
+package tools;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear latency histogram in microseconds, in the spirit of
+ * HdrHistogram: 64 linear sub-buckets per power of two, so every recorded
+ * value is reported within ~1.6% of its true value.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_SHIFT = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(2 * SUB + MAX_SHIFT * SUB);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void recordMicros(long micros) {
+        long v = Math.max(0, micros);
+        counts.incrementAndGet(indexOf(v));
+        total.incrementAndGet();
+        sum.addAndGet(v);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long c = other.counts.get(i);
+            if (c > 0)
+                counts.addAndGet(i, c);
+        }
+        total.addAndGet(other.total.get());
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    public double getMeanMicros() {
+        long n = total.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /** Value at the given percentile (0-100), reported as the bucket's highest equivalent value. */
+    public long percentileMicros(double percentile) {
+        long n = total.get();
+        if (n == 0)
+            return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return Math.min(highestEquivalent(i), max.get());
+        }
+        return max.get();
+    }
+
+    /** Writes the percentile distribution in the .hgrm text format (values in milliseconds). */
+    public void writeHgrm(Path file) throws IOException {
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(file))) {
+            w.println("       Value     Percentile TotalCount 1/(1-Percentile)");
+            w.println();
+            long n = total.get();
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                long c = counts.get(i);
+                if (c == 0)
+                    continue;
+                seen += c;
+                double pct = (double) seen / n;
+                String inverse = pct >= 1.0 ? "" : String.format(Locale.ROOT, "%14.2f", 1 / (1 - pct));
+                w.printf(Locale.ROOT, "%12.3f %14.12f %10d %s%n",
+                        Math.min(highestEquivalent(i), max.get()) / 1000.0, pct, seen, inverse);
+            }
+            double mean = getMeanMicros();
+            w.printf(Locale.ROOT, "#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", mean / 1000.0,
+                    stdDevMicros(mean) / 1000.0);
+            w.printf(Locale.ROOT, "#[Max     = %12.3f, Total count    = %12d]%n", max.get() / 1000.0, n);
+            w.printf(Locale.ROOT, "#[Buckets = %12d, SubBuckets     = %12d]%n", MAX_SHIFT, SUB);
+        }
+    }
+
+    private double stdDevMicros(double mean) {
+        long n = total.get();
+        if (n == 0)
+            return 0;
+        double acc = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            long c = counts.get(i);
+            if (c > 0) {
+                double d = lowestEquivalent(i) - mean;
+                acc += d * d * c;
+            }
+        }
+        return Math.sqrt(acc / n);
+    }
+
+    static int indexOf(long v) {
+        if (v < 2 * SUB)
+            return (int) v;
+        int shift = (63 - Long.numberOfLeadingZeros(v)) - SUB_BITS;
+        if (shift > MAX_SHIFT)
+            return 2 * SUB + (MAX_SHIFT - 1) * SUB + (SUB - 1);
+        return 2 * SUB + (shift - 1) * SUB + (int) ((v >>> shift) - SUB);
+    }
+
+    static long lowestEquivalent(int index) {
+        if (index < 2 * SUB)
+            return index;
+        int shift = (index - 2 * SUB) / SUB + 1;
+        long sub = (index - 2 * SUB) % SUB + SUB;
+        return sub << shift;
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < 2 * SUB)
+            return index;
+        int shift = (index - 2 * SUB) / SUB + 1;
+        return lowestEquivalent(index) + (1L << shift) - 1;
+    }
+}
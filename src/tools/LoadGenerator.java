@@ -0,0 +1,269 @@
+package tools;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * End-to-end load generator for a locally running ExpenseAPI. Each virtual user
+ * signs up (or logs in), then loops over a weighted mix of dashboard polls,
+ * filtered expense lists, adds, reports, trends and exports with exponential
+ * think time. Prints throughput, p50/p95/p99 and error rate per endpoint and
+ * writes the overall latency distribution as an .hgrm file.
+ *
+ * <pre>
+ * java -cp build tools.LoadGenerator --users 200 --duration 60 --think 250 --hgrm loadtest.hgrm
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String[] CATEGORIES = { "Food", "Transport", "Rent", "Entertainment", "Health", "Other" };
+
+    /** Endpoint mix; weights are relative. */
+    private static final Map<String, Integer> MIX = new LinkedHashMap<>();
+    static {
+        MIX.put("dashboard", 30);
+        MIX.put("expenses", 25);
+        MIX.put("add", 15);
+        MIX.put("report", 10);
+        MIX.put("trends", 10);
+        MIX.put("daily-spending", 5);
+        MIX.put("export", 5);
+    }
+
+    private final String baseUrl;
+    private final int users;
+    private final long durationMs;
+    private final long thinkMs;
+    private final String userPrefix;
+    private final HttpClient client;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    static class EndpointStats {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+    }
+
+    LoadGenerator(String baseUrl, int users, long durationMs, long thinkMs, String userPrefix) {
+        this.baseUrl = baseUrl;
+        this.users = users;
+        this.durationMs = durationMs;
+        this.thinkMs = thinkMs;
+        this.userPrefix = userPrefix;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        String url = opts.getOrDefault("url", "http://localhost:8080");
+        URI uri = URI.create(url);
+        if (uri.getHost() == null || !InetAddress.getByName(uri.getHost()).isLoopbackAddress()) {
+            System.err.println("Refusing to run: --url must point at localhost (got " + url + ")");
+            System.exit(2);
+        }
+        LoadGenerator gen = new LoadGenerator(url,
+                Integer.parseInt(opts.getOrDefault("users", "50")),
+                Long.parseLong(opts.getOrDefault("duration", "30")) * 1000,
+                Long.parseLong(opts.getOrDefault("think", "200")),
+                opts.getOrDefault("prefix", "load"));
+        gen.run();
+        gen.report(Path.of(opts.getOrDefault("hgrm", "loadtest.hgrm")));
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--"))
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            opts.put(args[i].substring(2), args[i + 1]);
+        }
+        return opts;
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf("Driving %s with %d virtual users for %d s (think time %d ms)%n", baseUrl, users,
+                durationMs / 1000, thinkMs);
+        ExecutorService pool = newClientExecutor(users);
+        long deadline = System.currentTimeMillis() + durationMs;
+        for (int i = 0; i < users; i++) {
+            final int id = i;
+            pool.submit(() -> session(id, deadline));
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(durationMs + 60_000, TimeUnit.MILLISECONDS)) {
+            running = false;
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One client per virtual thread when the runtime supports it (JDK 21+);
+     * otherwise a platform thread per client.
+     */
+    private static ExecutorService newClientExecutor(int users) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("Virtual threads unavailable on this JDK; using " + users + " platform threads.");
+            return Executors.newFixedThreadPool(users);
+        }
+    }
+
+    private void session(int id, long deadline) {
+        Random rnd = new Random(id * 31L + 7);
+        String username = userPrefix + "_" + id;
+        String creds = "{\"username\":\"" + username + "\",\"password\":\"loadtest\"}";
+        String token = authenticate(creds);
+        if (token == null)
+            return;
+
+        int totalWeight = MIX.values().stream().mapToInt(Integer::intValue).sum();
+        while (running && System.currentTimeMillis() < deadline) {
+            int pick = rnd.nextInt(totalWeight);
+            String action = null;
+            for (var entry : MIX.entrySet()) {
+                pick -= entry.getValue();
+                if (pick < 0) {
+                    action = entry.getKey();
+                    break;
+                }
+            }
+            try {
+                perform(action, token, rnd);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (thinkMs > 0) {
+                long pause = (long) (-Math.log(1 - rnd.nextDouble()) * thinkMs);
+                try {
+                    Thread.sleep(Math.min(pause, thinkMs * 10));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private String authenticate(String creds) {
+        try {
+            HttpResponse<String> res = timed("signup", post("/api/signup", creds, null));
+            if (res == null || res.statusCode() == 409)
+                res = timed("login", post("/api/login", creds, null));
+            if (res == null)
+                return null;
+            Matcher m = TOKEN.matcher(res.body());
+            return m.find() ? m.group(1) : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void perform(String action, String token, Random rnd) throws InterruptedException {
+        LocalDate today = LocalDate.now();
+        switch (action) {
+            case "dashboard" -> timed(action, get("/api/dashboard", token));
+            case "expenses" -> {
+                // Page through history one month at a time, newest first
+                LocalDate start = today.withDayOfMonth(1).minusMonths(rnd.nextInt(6));
+                timed(action, get("/api/expenses?startDate=" + start + "&endDate="
+                        + start.plusMonths(1).minusDays(1), token));
+            }
+            case "add" -> {
+                String body = String.format(Locale.ROOT, "{\"category\":\"%s\",\"amount\":\"%.2f\",\"currency\":\"INR\"}",
+                        CATEGORIES[rnd.nextInt(CATEGORIES.length)], 10 + rnd.nextDouble() * 2000);
+                timed(action, post("/api/expenses", body, token));
+            }
+            case "report" -> timed(action, get("/api/report?month=" + today.getMonthValue() + "&year="
+                    + today.getYear(), token));
+            case "trends" -> timed(action, get("/api/trends?months=" + (6 + rnd.nextInt(2)), token));
+            case "daily-spending" -> timed(action, get("/api/daily-spending?month=" + today.getMonthValue()
+                    + "&year=" + today.getYear(), token));
+            case "export" -> timed(action, get("/api/export", token));
+            default -> throw new IllegalStateException("Unknown action " + action);
+        }
+    }
+
+    private HttpRequest get(String path, String token) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30));
+        if (token != null)
+            b.header("Authorization", "Bearer " + token);
+        return b.GET().build();
+    }
+
+    private HttpRequest post(String path, String json, String token) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json");
+        if (token != null)
+            b.header("Authorization", "Bearer " + token);
+        return b.POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    /** Sends the request and records latency; returns null on transport failure. */
+    private HttpResponse<String> timed(String endpoint, HttpRequest request) throws InterruptedException {
+        EndpointStats es = stats.computeIfAbsent(endpoint, k -> new EndpointStats());
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> res = client.send(request, HttpResponse.BodyHandlers.ofString());
+            es.histogram.recordMicros((System.nanoTime() - start) / 1000);
+            // 409 on signup just means the user exists from a previous run
+            if (res.statusCode() >= 400 && !(endpoint.equals("signup") && res.statusCode() == 409))
+                es.errors.incrementAndGet();
+            return res;
+        } catch (java.io.IOException e) {
+            es.histogram.recordMicros((System.nanoTime() - start) / 1000);
+            es.errors.incrementAndGet();
+            return null;
+        }
+    }
+
+    void report(Path hgrm) throws java.io.IOException {
+        double seconds = durationMs / 1000.0;
+        LatencyHistogram overall = new LatencyHistogram();
+        long totalErrors = 0;
+        System.out.println();
+        System.out.printf("%-16s %9s %9s %9s %9s %9s %9s %8s%n", "Endpoint", "Requests", "Req/s", "p50 ms",
+                "p95 ms", "p99 ms", "max ms", "Errors");
+        for (var entry : stats.entrySet()) {
+            LatencyHistogram h = entry.getValue().histogram;
+            long errors = entry.getValue().errors.get();
+            overall.add(h);
+            totalErrors += errors;
+            printRow(entry.getKey(), h, errors, seconds);
+        }
+        printRow("TOTAL", overall, totalErrors, seconds);
+        overall.writeHgrm(hgrm);
+        System.out.println("\nLatency distribution written to " + hgrm.toAbsolutePath());
+    }
+
+    private static void printRow(String name, LatencyHistogram h, long errors, double seconds) {
+        long n = h.getCount();
+        System.out.printf(Locale.ROOT, "%-16s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7.2f%%%n", name, n, n / seconds,
+                h.percentileMicros(50) / 1000.0, h.percentileMicros(95) / 1000.0, h.percentileMicros(99) / 1000.0,
+                h.getMaxMicros() / 1000.0, n == 0 ? 0.0 : errors * 100.0 / n);
+    }
+}
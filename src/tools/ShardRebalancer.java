@@ -0,0 +1,260 @@
+package tools;
+
+import service.CategoryDictionary;
+import service.ChangeLog;
+import service.DatabaseManager;
+import service.ShardDirectory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves users whose shard no longer matches the consistent-hash ring, e.g.
+ * after raising db.shards. Everyone else keeps working while this runs.
+ *
+ * <pre>
+ * java -cp "build;lib/mysql-connector-j-9.2.0.jar" tools.ShardRebalancer --dryRun true
+ * java -cp "build;lib/mysql-connector-j-9.2.0.jar" tools.ShardRebalancer --batch 100 --limit 5000
+ * java -cp "build;lib/mysql-connector-j-9.2.0.jar" tools.ShardRebalancer --user alice --to 2
+ * </pre>
+ *
+ * Users are moved in batches:
+ * <ol>
+ * <li>The batch is flagged as moving in the directory. The tool then waits
+ * out the directory cache, so every server has stopped sending those users
+ * to the old shard. Their requests fail until the move finishes.</li>
+ * <li>Each user's rows are copied to the target in one transaction.</li>
+ * <li>The directory is pointed at the target.</li>
+ * <li>The old rows are deleted.</li>
+ * </ol>
+ * Re-running after a crash is safe: a half-finished copy is discarded and
+ * redone, and leftovers on the old shard are swept.
+ * <p>
+ * users.id is kept. Other row ids are reassigned by the target. Archived
+ * expenses land in the target's hot table, and the next tools.ExpenseArchiver
+ * run archives them again.
+ */
+public class ShardRebalancer {
+
+    private record Move(int userId, String username, int from, int to) {
+    }
+
+    /** Child tables in delete order, with the columns copied (user_id and category_id are remapped). */
+    private static final Map<String, String[]> TABLES = new LinkedHashMap<>();
+    static {
+        TABLES.put("expenses", new String[] { "category_id", "amount", "currency", "receipt_path", "date",
+                "notes" });
+        TABLES.put("expenses_archive", new String[] { "category_id", "amount", "currency", "receipt_path", "date",
+                "notes" });
+        TABLES.put("recurring_expenses", new String[] { "description", "amount", "category_id", "interval_type",
+                "start_date", "last_applied_date" });
+        TABLES.put("budgets", new String[] { "category_id", "monthly_limit" });
+        TABLES.put("reminders", new String[] { "title", "due_date", "notes", "delivered_at" });
+        TABLES.put("category_rules", new String[] { "match_type", "pattern", "min_amount", "max_amount", "currency",
+                "category_id", "priority", "hits" });
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+            opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        boolean dryRun = Boolean.parseBoolean(opts.getOrDefault("dryRun", "false"));
+        int batch = Integer.parseInt(opts.getOrDefault("batch", "100"));
+        int limit = Integer.parseInt(opts.getOrDefault("limit", String.valueOf(Integer.MAX_VALUE)));
+        String onlyUser = opts.get("user");
+        Integer forcedShard = opts.containsKey("to") ? Integer.valueOf(opts.get("to")) : null;
+
+        DatabaseManager.initializeDatabase();
+        if (DatabaseManager.shardCount() == 1) {
+            System.out.println("Only one shard is configured (db.shards); nothing to rebalance.");
+            return;
+        }
+        if (forcedShard != null && (forcedShard < 0 || forcedShard >= DatabaseManager.shardCount()))
+            throw new IllegalArgumentException("--to must be between 0 and " + (DatabaseManager.shardCount() - 1));
+
+        List<Move> moves = plan(onlyUser, forcedShard, limit);
+        System.out.printf("%d users to move across %d shards.%n", moves.size(), DatabaseManager.shardCount());
+        if (dryRun) {
+            for (Move m : moves)
+                System.out.printf("  %s (id %d): shard %d -> %d%n", m.username(), m.userId(), m.from(), m.to());
+            return;
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < moves.size(); i += batch)
+            moveBatch(moves.subList(i, Math.min(i + batch, moves.size())));
+        int swept = sweepLeftovers();
+        System.out.printf("Moved %d users in %.1f s; removed leftovers of %d users.%n", moves.size(),
+                (System.nanoTime() - started) / 1e9, swept);
+    }
+
+    /** Users whose recorded shard differs from the ring (or from --to), plus any move left unfinished. */
+    private static List<Move> plan(String onlyUser, Integer forcedShard, int limit) throws SQLException {
+        List<Move> moves = new ArrayList<>();
+        String sql = "SELECT user_id, username, shard, moving FROM user_shards"
+                + (onlyUser != null ? " WHERE username = ?" : "") + " ORDER BY user_id";
+        try (Connection conn = DatabaseManager.getShardConnection(0);
+                PreparedStatement ps = conn.prepareStatement(sql)) {
+            if (onlyUser != null)
+                ps.setString(1, onlyUser);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next() && moves.size() < limit) {
+                String username = rs.getString("username");
+                int from = rs.getInt("shard");
+                int to = (forcedShard != null) ? forcedShard : DatabaseManager.getShardRouter().shardFor(username);
+                if (from != to || rs.getBoolean("moving"))
+                    moves.add(new Move(rs.getInt("user_id"), username, from, to));
+            }
+        }
+        return moves;
+    }
+
+    private static void moveBatch(List<Move> moves) throws SQLException, InterruptedException {
+        for (Move m : moves)
+            ShardDirectory.setPlacement(m.userId(), m.from(), true);
+        // Servers may still have the old placement cached; wait until every cache entry has expired
+        Thread.sleep(ShardDirectory.getCacheSeconds() * 1000L + 1000);
+        for (Move m : moves) {
+            if (m.from() != m.to()) {
+                copyUser(m);
+                ShardDirectory.setPlacement(m.userId(), m.to(), false);
+                deleteUser(m.from(), m.userId());
+            } else {
+                ShardDirectory.setPlacement(m.userId(), m.to(), false);
+            }
+            System.out.printf("Moved %s (id %d) from shard %d to %d.%n", m.username(), m.userId(), m.from(), m.to());
+        }
+    }
+
+    private static void copyUser(Move m) throws SQLException {
+        try (Connection src = DatabaseManager.getShardConnection(m.from());
+                Connection dst = DatabaseManager.getShardConnection(m.to())) {
+            dst.setAutoCommit(false);
+            try {
+                // Leftovers of an earlier attempt that died before the directory was updated
+                deleteRows(dst, m.userId());
+                try (PreparedStatement read = src.prepareStatement(
+                        "SELECT username, password_hash, salt FROM users WHERE id = ?");
+                        PreparedStatement write = dst.prepareStatement(
+                                "INSERT INTO users (id, username, password_hash, salt) VALUES (?, ?, ?, ?)")) {
+                    read.setInt(1, m.userId());
+                    ResultSet rs = read.executeQuery();
+                    if (!rs.next())
+                        throw new SQLException("User " + m.userId() + " is not on shard " + m.from());
+                    write.setInt(1, m.userId());
+                    for (int i = 1; i <= 3; i++)
+                        write.setObject(i + 1, rs.getObject(i));
+                    write.executeUpdate();
+                }
+                for (Map.Entry<String, String[]> table : TABLES.entrySet())
+                    copyRows(src, dst, table.getKey(), table.getValue(), m.userId());
+                // Change-log versions differ per shard, so synced clients must reload
+                ChangeLog.record(dst, m.userId(), ChangeLog.RESET, "", ChangeLog.UPDATE);
+                dst.commit();
+            } catch (SQLException e) {
+                dst.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static void copyRows(Connection src, Connection dst, String table, String[] columns, int userId)
+            throws SQLException {
+        String cols = String.join(", ", columns);
+        // Archived rows go back into expenses so the target assigns ids that cannot collide
+        String into = table.equals("expenses_archive") ? "expenses" : table;
+        String insert = "INSERT INTO " + into + " (user_id, " + cols + ") VALUES (?"
+                + ", ?".repeat(columns.length) + ")";
+        try (PreparedStatement read = src.prepareStatement("SELECT " + cols + " FROM " + table + " WHERE user_id = ?");
+                PreparedStatement write = dst.prepareStatement(insert)) {
+            read.setInt(1, userId);
+            ResultSet rs = read.executeQuery();
+            Map<Integer, Integer> categoryIds = new HashMap<>();
+            int pending = 0;
+            while (rs.next()) {
+                write.setInt(1, userId);
+                for (int i = 0; i < columns.length; i++) {
+                    Object value = rs.getObject(i + 1);
+                    if (columns[i].equals("category_id")) {
+                        int sourceId = rs.getInt(i + 1);
+                        Integer targetId = categoryIds.get(sourceId);
+                        if (targetId == null) {
+                            targetId = CategoryDictionary.idFor(dst, CategoryDictionary.nameOf(src, sourceId));
+                            categoryIds.put(sourceId, targetId);
+                        }
+                        value = targetId;
+                    }
+                    write.setObject(i + 2, value);
+                }
+                write.addBatch();
+                if (++pending == 1000) {
+                    write.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0)
+                write.executeBatch();
+        }
+    }
+
+    private static void deleteUser(int shard, int userId) throws SQLException {
+        try (Connection conn = DatabaseManager.getShardConnection(shard)) {
+            conn.setAutoCommit(false);
+            try {
+                deleteRows(conn, userId);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static void deleteRows(Connection conn, int userId) throws SQLException {
+        List<String> tables = new ArrayList<>(TABLES.keySet());
+        tables.add("changes");
+        // Not copied: a retry that spans a move is the one case a key does not catch
+        tables.add("idempotency_keys");
+        tables.add("users");
+        for (String table : tables) {
+            String column = table.equals("users") ? "id" : "user_id";
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + table + " WHERE " + column + " = ?")) {
+                ps.setInt(1, userId);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    /** Deletes rows of users that the directory places on another shard (a move that died after step 3). */
+    private static int sweepLeftovers() throws SQLException {
+        Map<Integer, Integer> placement = new LinkedHashMap<>();
+        try (Connection conn = DatabaseManager.getShardConnection(0); Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT user_id, shard FROM user_shards WHERE moving = FALSE")) {
+            while (rs.next())
+                placement.put(rs.getInt(1), rs.getInt(2));
+        }
+        int swept = 0;
+        for (int shard = 0; shard < DatabaseManager.shardCount(); shard++) {
+            List<Integer> stale = new ArrayList<>();
+            try (Connection conn = DatabaseManager.getShardConnection(shard); Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT id FROM users")) {
+                while (rs.next()) {
+                    Integer home = placement.get(rs.getInt(1));
+                    if (home != null && home != shard)
+                        stale.add(rs.getInt(1));
+                }
+            }
+            for (int userId : stale)
+                deleteUser(shard, userId);
+            swept += stale.size();
+        }
+        return swept;
+    }
+}
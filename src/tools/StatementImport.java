@@ -0,0 +1,136 @@
+package tools;
+
+import model.Money;
+import model.User;
+import service.CategorizingRepository;
+import service.DatabaseManager;
+import service.DeduplicatingRepository;
+import service.JdbcExpenseRepository;
+import service.StatementImporter;
+import service.StatementParser;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Imports bank statements from local files into a user's expenses. OFX/QFX,
+ * QIF and CSV are read as streams, so file size does not matter; the format
+ * comes from the extension unless --format says otherwise. CSV layouts are
+ * described by the import.csv.&lt;profile&gt;.* settings. Given a directory,
+ * every file in it is imported. Prints rows, results and throughput per file.
+ *
+ * <pre>
+ * java -cp "build;lib/mysql-connector-j-9.2.0.jar" tools.StatementImport --user alice --file statement.ofx
+ * java -cp "build;lib/mysql-connector-j-9.2.0.jar" tools.StatementImport --user alice --file exports --profile hdfc --currency INR
+ * java -cp build tools.StatementImport --file big.qif --dryRun true
+ * </pre>
+ *
+ * {@code --dryRun true} only parses, without a database, to check a file or
+ * a profile. Re-importing a statement adds nothing; see
+ * {@link DeduplicatingRepository.Import}.
+ */
+public class StatementImport {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+            opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        if (!opts.containsKey("file")) {
+            System.err.println("Usage: tools.StatementImport --user <username> --file <file or directory>"
+                    + " [--format ofx|qif|csv] [--profile name] [--currency INR] [--batch 500] [--dryRun true]");
+            System.exit(2);
+        }
+        boolean dryRun = Boolean.parseBoolean(opts.getOrDefault("dryRun", "false"));
+        String currency = opts.getOrDefault("currency", Money.DEFAULT_CURRENCY).toUpperCase();
+        int batch = Integer.parseInt(opts.getOrDefault("batch", "500"));
+
+        Path root = Path.of(opts.get("file"));
+        List<Path> files;
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> list = Files.list(root)) {
+                files = list.filter(Files::isRegularFile).sorted().toList();
+            }
+        } else {
+            files = List.of(root);
+        }
+
+        StatementImporter importer = null;
+        int userId = 0;
+        if (!dryRun) {
+            DatabaseManager.initializeDatabase();
+            JdbcExpenseRepository base = new JdbcExpenseRepository();
+            User user = base.findUser(opts.getOrDefault("user", ""));
+            if (user == null) {
+                System.err.println("No such user: " + opts.get("user"));
+                System.exit(1);
+            }
+            userId = user.getId();
+            // Filters and compiled rules live as long as the run
+            importer = new StatementImporter(new DeduplicatingRepository(base, Long.MAX_VALUE / 4),
+                    new CategorizingRepository(base, Long.MAX_VALUE / 4), batch);
+        }
+
+        long totalRows = 0, totalBytes = 0;
+        long started = System.nanoTime();
+        for (Path file : files) {
+            StatementParser parser;
+            try {
+                parser = StatementParser.forFile(file, opts.get("format"), opts.get("profile"), currency);
+            } catch (IllegalArgumentException e) {
+                System.err.println(file + ": " + e.getMessage());
+                continue;
+            }
+            long bytes = Files.size(file);
+            try (Reader in = new BufferedReader(
+                    new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+                StatementImporter.Result r = dryRun ? parseOnly(file.toString(), in, parser)
+                        : importer.importStatement(userId, file.toString(), in, parser);
+                System.out.printf("%s: %,d rows in %.2f s (%,.0f rows/s, %.1f MB/s): %,d imported, %,d duplicates,"
+                        + " %,d credits skipped, %,d rejected.%n", file.getFileName(), r.rows(), r.seconds(),
+                        r.rows() / Math.max(r.seconds(), 1e-9), bytes / 1e6 / Math.max(r.seconds(), 1e-9),
+                        r.imported(), r.duplicates(), r.credits(), r.rejected());
+                totalRows += r.rows();
+                totalBytes += bytes;
+            } catch (SQLException e) {
+                System.err.println(file + ": import failed after the last committed batch: " + e.getMessage());
+            }
+        }
+        if (files.size() > 1) {
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("%d files, %,d rows, %.1f MB in %.2f s.%n", files.size(), totalRows, totalBytes / 1e6,
+                    seconds);
+        }
+    }
+
+    /** Parses without writing: every money-out row counts as imported. */
+    private static StatementImporter.Result parseOnly(String name, Reader in, StatementParser parser)
+            throws Exception {
+        long started = System.nanoTime();
+        long[] counts = new long[3]; // rows, credits, rejected
+        parser.parse(in, new StatementParser.Sink() {
+            @Override
+            public void transaction(StatementParser.Transaction t) {
+                counts[0]++;
+                if (t.amount().signum() >= 0)
+                    counts[1]++;
+            }
+
+            @Override
+            public void rejected(long line, String reason) {
+                if (counts[2]++ < 10)
+                    System.err.println(name + ":" + line + ": skipped, " + reason);
+            }
+        });
+        return new StatementImporter.Result(counts[0], counts[0] - counts[1], 0, counts[1], counts[2],
+                System.nanoTime() - started);
+    }
+}
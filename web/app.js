@@ -39,6 +39,7 @@ async function api(path, opts = {}) {
     const res = await fetch(API + path, { ...opts, headers });
 
     if (res.status === 401 && !path.includes('/api/login') && !path.includes('/api/signup')) {
+        closeEvents();
         token = null;
         username = null;
         localStorage.removeItem('et_token');
@@ -57,6 +58,157 @@ async function api(path, opts = {}) {
     return data;
 }
 
+// ─── Batched Reads ───────────────────────────────────
+
+// GETs issued in the same tick go out as one POST /api/batch round trip
+let pendingReads = null;
+
+function read(path) {
+    return new Promise((resolve, reject) => {
+        if (!pendingReads) {
+            pendingReads = [];
+            queueMicrotask(flushReads);
+        }
+        pendingReads.push({ path, resolve, reject });
+    });
+}
+
+async function flushReads() {
+    const reads = pendingReads;
+    pendingReads = null;
+    if (reads.length === 1) {
+        api(reads[0].path).then(reads[0].resolve, reads[0].reject);
+        return;
+    }
+    try {
+        const data = await api('/api/batch', {
+            method: 'POST',
+            body: JSON.stringify({ requests: reads.map(r => r.path) })
+        });
+        data.responses.forEach((res, i) => {
+            if (res.status >= 200 && res.status < 300) reads[i].resolve(res.body);
+            else reads[i].reject(new Error(res.body?.error || 'Request failed'));
+        });
+    } catch (err) {
+        reads.forEach(r => r.reject(err));
+    }
+}
+
+// ─── Live Updates (Server-Sent Events) ───────────────
+
+let eventSource = null;
+
+function isPageActive(name) {
+    return document.getElementById(`page-${name}`)?.classList.contains('active');
+}
+
+// True while the event stream is connected; changes then arrive as events instead of being re-fetched
+function liveUpdates() {
+    return eventSource !== null && eventSource.readyState === EventSource.OPEN;
+}
+
+function refreshExpenseViews() {
+    if (isPageActive('dashboard')) loadDashboard();
+    if (isPageActive('expenses')) loadExpenses(expenseFilters);
+    if (isPageActive('budgets')) loadBudgets();
+}
+
+// "dd-MM-yyyy HH:mm" as sent by the API, to "yyyy-MM-dd" for comparing with date inputs
+function isoDay(dateStr) {
+    const [d, m, y] = dateStr.split(/[\s-]/);
+    return `${y}-${m}-${d}`;
+}
+
+function monthsAgo(dateStr) {
+    const [y, m] = isoDay(dateStr).split('-').map(Number);
+    const now = new Date();
+    return (now.getFullYear() - y) * 12 + now.getMonth() + 1 - m;
+}
+
+function matchesFilters(e, f) {
+    if (f.category && e.category.toLowerCase() !== f.category.toLowerCase()) return false;
+    if (f.minAmount && e.amount < parseFloat(f.minAmount)) return false;
+    if (f.maxAmount && e.amount > parseFloat(f.maxAmount)) return false;
+    if (f.startDate && isoDay(e.date) < f.startDate) return false;
+    if (f.endDate && isoDay(e.date) > f.endDate) return false;
+    return true;
+}
+
+/**
+ * Applies an expense event ({"action":"added","expenses":[..]} or
+ * {"action":"deleted","id":..}) to what is on screen. The list is edited in
+ * place; only the aggregates the row can move are fetched again.
+ */
+function applyExpenseEvent(e) {
+    const delta = JSON.parse(e.data);
+    const known = [...(shownExpenses || []), ...(recentExpenses || [])];
+    const rows = delta.action === 'added' ? delta.expenses : known.filter(x => x.id === delta.id).slice(0, 1);
+
+    if (shownExpenses) {
+        if (delta.action === 'deleted') {
+            shownExpenses = shownExpenses.filter(x => x.id !== delta.id);
+            if (isPageActive('expenses')) renderExpenses();
+        } else if (expenseFilters.keyword) {
+            // The server matches keywords word by word, which is not repeated here
+            if (isPageActive('expenses')) loadExpenses(expenseFilters);
+        } else {
+            shownExpenses = [...rows.filter(x => matchesFilters(x, expenseFilters)), ...shownExpenses];
+            if (isPageActive('expenses')) renderExpenses();
+        }
+    }
+
+    // A deleted row never shown here could be from any month
+    const age = rows.length ? Math.min(...rows.map(x => monthsAgo(x.date))) : 0;
+    if (isPageActive('dashboard')) {
+        if (age === 0) refreshDashboardStats();
+        // Predictions look back three months, the trend chart seven
+        if (age <= 3) loadPredictions();
+        if (age <= 6) refreshTrendChart();
+    }
+    if (isPageActive('budgets') && budgetRows && age === 0) {
+        if (!rows.length) {
+            loadBudgets();
+        } else {
+            const sign = delta.action === 'added' ? 1 : -1;
+            rows.forEach(x => {
+                const b = budgetRows.find(b => b.category.toLowerCase() === x.category.toLowerCase());
+                if (b) b.spent += sign * x.amount;
+            });
+            renderBudgets();
+        }
+    }
+}
+
+function openEvents() {
+    closeEvents();
+    eventSource = new EventSource(`${API}/api/events?token=${encodeURIComponent(token)}`);
+    eventSource.addEventListener('expense', applyExpenseEvent);
+    eventSource.addEventListener('budget', (e) => {
+        const b = JSON.parse(e.data);
+        toast(`${b.category}: ${b.percent}% of monthly budget used`, b.threshold >= 100 ? 'error' : 'info');
+    });
+    eventSource.addEventListener('recurring', (e) => {
+        toast(`${JSON.parse(e.data).applied} recurring expense(s) applied`, 'info');
+        refreshExpenseViews();
+    });
+    eventSource.addEventListener('rules', (e) => {
+        toast(`Category rules moved ${JSON.parse(e.data).recategorized} expense(s)`, 'info');
+        refreshExpenseViews();
+    });
+    eventSource.addEventListener('reminder', (e) => {
+        const r = JSON.parse(e.data);
+        toast(`Reminder due: ${r.title}`, 'info');
+        if (isPageActive('reminders')) loadReminders();
+    });
+}
+
+function closeEvents() {
+    if (eventSource) {
+        eventSource.close();
+        eventSource = null;
+    }
+}
+
 // ─── Toast Notifications ─────────────────────────────
 
 function toast(msg, type = 'info') {
@@ -172,7 +324,7 @@ function saveSession(t, u) {
 
 async function enterApp() {
     try {
-        await api('/api/categories');
+        await read('/api/categories');
     } catch (err) {
         return;
     }
@@ -182,9 +334,11 @@ async function enterApp() {
     showScreen('app-screen');
     initDateSelectors();
     showPage('dashboard');
+    openEvents();
 }
 
 function logout() {
+    closeEvents();
     token = null;
     username = null;
     localStorage.removeItem('et_token');
@@ -214,10 +368,22 @@ document.getElementById('theme-toggle').addEventListener('click', (e) => {
 
 // ─── Dashboard ───────────────────────────────────────
 
+// The dashboard's recent rows, kept to resolve delete events
+let recentExpenses = null;
+
 async function loadDashboard() {
     renderSkeleton('recent-body', 3, 3);
+    if (await refreshDashboardStats()) {
+        loadPredictions();
+        renderDashboardCharts();
+    }
+}
+
+// Month totals, budget alerts and recent expenses; false if they could not be loaded
+async function refreshDashboardStats() {
     try {
         const d = await api('/api/dashboard');
+        recentExpenses = d.recent || [];
 
         const safeSetText = (id, text) => {
             const el = document.getElementById(id);
@@ -261,11 +427,10 @@ async function loadDashboard() {
                 `).join('');
             }
         }
-
-        loadPredictions();
-        renderDashboardCharts();
+        return true;
     } catch (err) {
         if (err.message !== 'Session expired') toast(err.message, 'error');
+        return false;
     }
 }
 
@@ -293,13 +458,18 @@ async function loadPredictions() {
 
 // ─── Expenses ────────────────────────────────────────
 
+// Rows on the expenses page and the filters they were loaded with
+let shownExpenses = null;
+let expenseFilters = {};
+
 async function loadExpenses(filters = {}) {
     const tbody = document.getElementById('expenses-body');
     if (!tbody) return;
-    renderSkeleton('expenses-body', 5, 7);
+    renderSkeleton('expenses-body', 5, 8);
+    expenseFilters = filters;
 
     try {
-        const cats = await api('/api/categories');
+        const cats = await read('/api/categories');
         const sel = document.getElementById('filter-cat');
         if (sel) {
             const currentVal = sel.value;
@@ -311,29 +481,37 @@ async function loadExpenses(filters = {}) {
         const params = new URLSearchParams();
         Object.entries(filters).forEach(([k, v]) => { if (v) params.set(k, v); });
 
-        const expenses = await api('/api/expenses' + (params.toString() ? '?' + params.toString() : ''));
-
-        const countBadge = document.getElementById('expense-count-badge');
-        if (countBadge) countBadge.textContent = expenses.length;
-
-        if (expenses.length === 0) {
-            tbody.innerHTML = '<tr><td colspan="7"><div class="empty-state"><div class="empty-state-icon">💳</div>No expenses found</div></td></tr>';
-        } else {
-            tbody.innerHTML = expenses.map(e => `
-                <tr>
-                    <td>${e.id}</td>
-                    <td><span class="cat-chip">${esc(e.category)}</span></td>
-                    <td class="amount-cell">${e.amount.toFixed(2)}</td>
-                    <td><span class="currency-tag">${e.currency || 'INR'}</span></td>
-                    <td>${formatDate(e.date)}</td>
-                    <td>${e.receiptPath ? '<a href="' + esc(e.receiptPath) + '" target="_blank">📎</a>' : '—'}</td>
-                    <td><button class="btn-icon" onclick="deleteExpense(${e.id})">🗑️</button></td>
-                </tr>
-            `).join('');
-        }
+        shownExpenses = await api('/api/expenses' + (params.toString() ? '?' + params.toString() : ''));
+        renderExpenses();
     } catch (err) {
         if (err.message !== 'Session expired') toast(err.message, 'error');
-        tbody.innerHTML = '<tr><td colspan="7"><div class="empty-state">Failed to load expenses</div></td></tr>';
+        tbody.innerHTML = '<tr><td colspan="8"><div class="empty-state">Failed to load expenses</div></td></tr>';
+    }
+}
+
+function renderExpenses() {
+    const tbody = document.getElementById('expenses-body');
+    const expenses = shownExpenses;
+    if (!tbody || !expenses) return;
+
+    const countBadge = document.getElementById('expense-count-badge');
+    if (countBadge) countBadge.textContent = expenses.length;
+
+    if (expenses.length === 0) {
+        tbody.innerHTML = '<tr><td colspan="8"><div class="empty-state"><div class="empty-state-icon">💳</div>No expenses found</div></td></tr>';
+    } else {
+        tbody.innerHTML = expenses.map(e => `
+            <tr>
+                <td>${e.id}</td>
+                <td><span class="cat-chip">${esc(e.category)}</span></td>
+                <td class="amount-cell">${e.amount.toFixed(2)}</td>
+                <td><span class="currency-tag">${e.currency || 'INR'}</span></td>
+                <td>${formatDate(e.date)}</td>
+                <td>${e.notes ? esc(e.notes) : '—'}</td>
+                <td>${e.receiptPath ? '<a href="' + esc(e.receiptPath) + '" target="_blank">📎</a>' : '—'}</td>
+                <td><button class="btn-icon" onclick="deleteExpense(${e.id})">🗑️</button></td>
+            </tr>
+        `).join('');
     }
 }
 
@@ -342,7 +520,7 @@ async function deleteExpense(id) {
     try {
         await api(`/api/expenses?id=${id}`, { method: 'DELETE' });
         toast('Expense deleted', 'info');
-        loadExpenses();
+        if (!liveUpdates()) loadExpenses(expenseFilters);
     } catch (err) { toast(err.message, 'error'); }
 }
 
@@ -374,44 +552,54 @@ document.getElementById('export-csv-btn')?.addEventListener('click', async () =>
 
 // ─── Budgets ─────────────────────────────────────────
 
+// Budgets as last loaded; expense events adjust their spend in place
+let budgetRows = null;
+
 async function loadBudgets() {
     const grid = document.getElementById('budgets-grid');
     grid.innerHTML = '<p class="placeholder-text">Loading...</p>';
     try {
         const [budgets, cats] = await Promise.all([
-            api('/api/budgets'),
-            api('/api/categories')
+            read('/api/budgets'),
+            read('/api/categories')
         ]);
 
         const budgetCat = document.getElementById('budget-cat');
         budgetCat.innerHTML = cats.map(c => `<option value="${esc(c)}">${esc(c)}</option>`).join('');
 
-        if (budgets.length === 0) {
-            grid.innerHTML = '<div class="empty-state" style="grid-column:1/-1"><div class="empty-state-icon">🎯</div>No budgets set yet</div>';
-        } else {
-            grid.innerHTML = budgets.map(b => {
-                const pct = b.limit > 0 ? Math.min(b.spent / b.limit * 100, 150) : 0;
-                const over = pct >= 100;
-                return `
-                    <div class="budget-card">
-                        <div class="budget-card-header">
-                            <h4>${esc(b.category)}</h4>
-                            <button class="btn-icon" onclick="removeBudget('${esc(b.category)}')">🗑️</button>
-                        </div>
-                        <div class="progress-bar">
-                            <div class="progress-fill ${over ? 'over' : ''}" style="width: ${Math.min(pct, 100)}%"></div>
-                        </div>
-                        <div class="budget-stats">
-                            <span>₹${b.spent.toFixed(0)} / ₹${b.limit.toFixed(0)}</span>
-                            <span style="color:${over ? 'var(--danger)' : 'var(--success)'}">${pct.toFixed(0)}%</span>
-                        </div>
-                    </div>
-                `;
-            }).join('');
-        }
+        budgetRows = budgets;
+        renderBudgets();
     } catch (err) { toast(err.message, 'error'); }
 }
 
+function renderBudgets() {
+    const grid = document.getElementById('budgets-grid');
+    const budgets = budgetRows;
+    if (budgets.length === 0) {
+        grid.innerHTML = '<div class="empty-state" style="grid-column:1/-1"><div class="empty-state-icon">🎯</div>No budgets set yet</div>';
+    } else {
+        grid.innerHTML = budgets.map(b => {
+            const pct = b.limit > 0 ? Math.min(b.spent / b.limit * 100, 150) : 0;
+            const over = pct >= 100;
+            return `
+                <div class="budget-card">
+                    <div class="budget-card-header">
+                        <h4>${esc(b.category)}</h4>
+                        <button class="btn-icon" onclick="removeBudget('${esc(b.category)}')">🗑️</button>
+                    </div>
+                    <div class="progress-bar">
+                        <div class="progress-fill ${over ? 'over' : ''}" style="width: ${Math.min(pct, 100)}%"></div>
+                    </div>
+                    <div class="budget-stats">
+                        <span>₹${b.spent.toFixed(0)} / ₹${b.limit.toFixed(0)}</span>
+                        <span style="color:${over ? 'var(--danger)' : 'var(--success)'}">${pct.toFixed(0)}%</span>
+                    </div>
+                </div>
+            `;
+        }).join('');
+    }
+}
+
 document.getElementById('set-budget-btn')?.addEventListener('click', async () => {
     const cat = document.getElementById('budget-cat').value;
     const limit = parseFloat(document.getElementById('budget-limit').value);
@@ -443,8 +631,8 @@ async function loadRecurring() {
     list.innerHTML = '<p class="placeholder-text">Loading...</p>';
     try {
         const [schedules, cats] = await Promise.all([
-            api('/api/recurring'),
-            api('/api/categories')
+            read('/api/recurring'),
+            read('/api/categories')
         ]);
 
         const recCat = document.getElementById('rec-cat');
@@ -568,7 +756,7 @@ async function loadTrends() {
 
 async function renderTrendChart() {
     try {
-        const trend = await api('/api/trends?months=6');
+        const trend = await read('/api/trends?months=6');
         const canvas = document.getElementById('trend-chart');
         if (!canvas) return; // Silent return if element not found
         const ctx = canvas.getContext('2d');
@@ -657,7 +845,7 @@ async function renderHeatmap() {
     grid.innerHTML = '';
 
     try {
-        const daily = await api(`/api/daily-spending?month=${m}&year=${y}`);
+        const daily = await read(`/api/daily-spending?month=${m}&year=${y}`);
         const daysInMonth = new Date(y, m, 0).getDate();
         const startDay = new Date(y, m - 1, 1).getDay();
 
@@ -710,7 +898,7 @@ async function loadReport() {
     const month = document.getElementById('report-month').value;
     const year = document.getElementById('report-year').value;
     try {
-        const data = await api(`/api/report?month=${month}&year=${year}`);
+        const data = await read(`/api/report?month=${month}&year=${year}`);
 
         // Total
         document.getElementById('report-total').innerHTML = `Total: <strong>₹ ${data.total.toFixed(2)}</strong>`;
@@ -797,7 +985,7 @@ async function loadCategories() {
     if (!list) return;
     list.innerHTML = '<p class="placeholder-text">Loading...</p>';
     try {
-        const cats = await api('/api/categories');
+        const cats = await read('/api/categories');
         if (cats.length === 0) {
             list.innerHTML = '<div class="empty-state"><div class="empty-state-icon">🏷️</div>No categories yet</div>';
         } else {
@@ -870,7 +1058,7 @@ document.getElementById('change-pass-btn')?.addEventListener('click', async () =
 // ─── Add Expense Modal ───────────────────────────────
 
 function openAddExpenseModal() {
-    api('/api/categories').then(cats => {
+    read('/api/categories').then(cats => {
         const sel = document.getElementById('expense-cat');
         sel.innerHTML = '<option value="" disabled selected>Select category</option>' +
             cats.map(c => `<option value="${esc(c)}">${esc(c)}</option>`).join('');
@@ -888,15 +1076,19 @@ document.getElementById('submit-expense-btn')?.addEventListener('click', async (
                 category: document.getElementById('expense-cat').value,
                 amount: document.getElementById('expense-amount').value,
                 currency: document.getElementById('expense-currency').value,
+                notes: document.getElementById('expense-notes').value,
                 receiptPath: document.getElementById('expense-receipt').value
             })
         });
         toast('Expense added!', 'success');
         document.getElementById('add-expense-modal').classList.remove('show');
         document.getElementById('expense-amount').value = '';
+        document.getElementById('expense-notes').value = '';
         document.getElementById('expense-receipt').value = '';
-        if (document.getElementById('page-dashboard').classList.contains('active')) loadDashboard();
-        if (document.getElementById('page-expenses').classList.contains('active')) loadExpenses();
+        if (!liveUpdates()) {
+            if (document.getElementById('page-dashboard').classList.contains('active')) loadDashboard();
+            if (document.getElementById('page-expenses').classList.contains('active')) loadExpenses();
+        }
     } catch (err) {
         toast(err.message, 'error');
     } finally {
@@ -988,59 +1180,70 @@ document.getElementById('shortcuts-close')?.addEventListener('click', () => {
     document.getElementById('shortcuts-overlay').classList.remove('show');
 });
 
-async function renderDashboardCharts() {
+// Only the trend chart moves when an expense is added or deleted
+async function refreshTrendChart() {
     try {
-        const [trendData, cats] = await Promise.all([
-            api('/api/trends?months=7'),
-            api('/api/categories')
-        ]);
+        drawTrendChart(await read('/api/trends?months=7'));
+    } catch (e) { console.error('Chart error:', e); }
+}
 
-        // 1. Portfolio Growth Chart (Line)
-        const trendCanvas = document.getElementById('dash-trend-canvas');
-        if (trendCanvas) {
-            const ctx = trendCanvas.getContext('2d');
-            if (dashTrendInstance) dashTrendInstance.destroy();
+function drawTrendChart(trendData) {
+    // Portfolio Growth Chart (Line)
+    const trendCanvas = document.getElementById('dash-trend-canvas');
+    if (trendCanvas) {
+        const ctx = trendCanvas.getContext('2d');
+        if (dashTrendInstance) dashTrendInstance.destroy();
 
-            const labels = trendData.map(t => {
-                const monthNames = ['', 'Jan', 'Feb', 'Mar', 'Apr', 'May', 'Jun', 'Jul', 'Aug', 'Sep', 'Oct', 'Nov', 'Dec'];
-                return monthNames[t.month];
-            });
-            const values = trendData.map(t => t.total);
+        const labels = trendData.map(t => {
+            const monthNames = ['', 'Jan', 'Feb', 'Mar', 'Apr', 'May', 'Jun', 'Jul', 'Aug', 'Sep', 'Oct', 'Nov', 'Dec'];
+            return monthNames[t.month];
+        });
+        const values = trendData.map(t => t.total);
 
-            const gradient = ctx.createLinearGradient(0, 0, 0, 300);
-            gradient.addColorStop(0, 'rgba(188, 19, 254, 0.4)');
-            gradient.addColorStop(1, 'rgba(188, 19, 254, 0)');
+        const gradient = ctx.createLinearGradient(0, 0, 0, 300);
+        gradient.addColorStop(0, 'rgba(188, 19, 254, 0.4)');
+        gradient.addColorStop(1, 'rgba(188, 19, 254, 0)');
 
-            dashTrendInstance = new Chart(ctx, {
-                type: 'line',
-                data: {
-                    labels: labels,
-                    datasets: [{
-                        data: values,
-                        borderColor: '#bc13fe',
-                        backgroundColor: gradient,
-                        borderWidth: 3,
-                        fill: true,
-                        tension: 0.4,
-                        pointRadius: 0,
-                        pointHoverRadius: 6
-                    }]
-                },
-                options: {
-                    responsive: true,
-                    maintainAspectRatio: false,
-                    plugins: { legend: { display: false }, tooltip: { enabled: true } },
-                    scales: {
-                        x: { grid: { display: false }, ticks: { color: '#6b7280', font: { size: 11 } } },
-                        y: {
-                            beginAtZero: true,
-                            grid: { color: 'rgba(255,255,255,0.03)' },
-                            ticks: { color: '#6b7280', font: { size: 11 } }
-                        }
+        dashTrendInstance = new Chart(ctx, {
+            type: 'line',
+            data: {
+                labels: labels,
+                datasets: [{
+                    data: values,
+                    borderColor: '#bc13fe',
+                    backgroundColor: gradient,
+                    borderWidth: 3,
+                    fill: true,
+                    tension: 0.4,
+                    pointRadius: 0,
+                    pointHoverRadius: 6
+                }]
+            },
+            options: {
+                responsive: true,
+                maintainAspectRatio: false,
+                plugins: { legend: { display: false }, tooltip: { enabled: true } },
+                scales: {
+                    x: { grid: { display: false }, ticks: { color: '#6b7280', font: { size: 11 } } },
+                    y: {
+                        beginAtZero: true,
+                        grid: { color: 'rgba(255,255,255,0.03)' },
+                        ticks: { color: '#6b7280', font: { size: 11 } }
                     }
                 }
-            });
-        }
+            }
+        });
+    }
+}
+
+async function renderDashboardCharts() {
+    try {
+        const [trendData, cats] = await Promise.all([
+            read('/api/trends?months=7'),
+            read('/api/categories')
+        ]);
+
+        drawTrendChart(trendData);
 
         // 2. Allocation Chart (Donut)
         const allocCanvas = document.getElementById('dash-alloc-canvas');